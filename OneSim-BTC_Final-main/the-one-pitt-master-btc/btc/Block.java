@@ -1,13 +1,14 @@
 package btc;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Date;
 
 public class Block {
 	
-	public String hash;
-	public String previousHash; 
-	public String merkleRoot;
+	public Hash256 hash;
+	public Hash256 previousHash; 
+	public Hash256 merkleRoot;
 	public ArrayList<Transaction> transactions = new ArrayList<Transaction>(); //our data will be a simple message.
 	public long timeStamp; //as number of milliseconds since 1/1/1970.
 	public int nonce;
@@ -18,7 +19,7 @@ public class Block {
 
 	
 	//Block Constructor.  
-	public Block(String previousHash ) {
+	public Block(Hash256 previousHash ) {
 		this.previousHash = previousHash;
 		this.timeStamp = new Date().getTime();
 		
@@ -26,22 +27,20 @@ public class Block {
 	}
 	
 	//Calculate new hash based on blocks contents
-	public String calculateHash() {
-		String calculatedhash = StringUtil.applySha256( 
-				previousHash +
-				Long.toString(timeStamp) +
-				Integer.toString(nonce) + 
-				merkleRoot
-				);
-		return calculatedhash;
+	public Hash256 calculateHash() {
+		MessageDigest digest = StringUtil.sha256();
+		previousHash.update(digest);
+		StringUtil.update(digest, timeStamp);
+		StringUtil.update(digest, nonce);
+		(merkleRoot != null ? merkleRoot : Hash256.ZERO).update(digest);
+		return Hash256.digest(digest);
 	}
 	
 	//Increases nonce value until hash target is reached.
 	public void mineBlock(int difficulty) {
 		merkleRoot = StringUtil.getMerkleRoot(transactions);
-		String target = StringUtil.getDificultyString(difficulty); //Create a string with difficulty * "0" 
                 //selama hash belum ketemu yang bener
-		while(!hash.substring( 0, difficulty).equals(target)) {
+		while(!hash.hasLeadingZeros(difficulty)) {
 			nonce ++;
 			hash = calculateHash();
 		}
@@ -53,7 +52,7 @@ public class Block {
 		//process transaction and check if valid, unless block is genesis block then ignore.
 		if(transaction == null) return false;	
                 //block benar
-		if((!"0".equals(previousHash))) {
+		if((!Hash256.ZERO.equals(previousHash))) {
                     //proses transaksinya gagal
 			if((transaction.processTransaction() != true)) {
 				System.out.println("Transaction failed to process. Discarded.");
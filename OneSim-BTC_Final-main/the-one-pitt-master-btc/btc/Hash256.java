@@ -0,0 +1,140 @@
+package btc;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Immutable 32 byte SHA-256 digest used as the id of blocks, transactions
+ * and transaction outputs. The hash code is computed once from the (already
+ * uniformly distributed) digest bytes, so map lookups don't need to hash
+ * the whole id. Hex conversion is only done by {@link #toString()}.
+ */
+public final class Hash256 {
+	/** Length of the digest in bytes */
+	public static final int LENGTH = 32;
+	/** The all-zero id used for the genesis block and transactions */
+	public static final Hash256 ZERO = new Hash256(new byte[LENGTH]);
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final byte[] bytes;
+	private final int hashCode;
+
+	/**
+	 * Creates a new id that takes ownership of the given array.
+	 */
+	private Hash256(byte[] bytes) {
+		this.bytes = bytes;
+		this.hashCode = ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16)
+				| ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+	}
+
+	/**
+	 * Returns an id with a copy of the given digest
+	 * @param digest The 32 byte digest
+	 * @return The id
+	 */
+	public static Hash256 of(byte[] digest) {
+		if (digest.length != LENGTH) {
+			throw new IllegalArgumentException("Digest length " +
+					digest.length + " != " + LENGTH);
+		}
+		return new Hash256(digest.clone());
+	}
+
+	/**
+	 * Completes the hash computation of a digest and returns the result
+	 * as an id. The digest is reset.
+	 * @param md The SHA-256 message digest
+	 * @return The id
+	 */
+	public static Hash256 digest(MessageDigest md) {
+		return new Hash256(md.digest());
+	}
+
+	/**
+	 * Reads an id from the current position of a buffer
+	 * @param buf The buffer
+	 * @return The id
+	 */
+	public static Hash256 read(ByteBuffer buf) {
+		byte[] b = new byte[LENGTH];
+		buf.get(b);
+		return new Hash256(b);
+	}
+
+	/**
+	 * Writes the raw bytes of this id to a buffer
+	 * @param buf The buffer
+	 */
+	public void write(ByteBuffer buf) {
+		buf.put(bytes);
+	}
+
+	/**
+	 * Feeds the raw bytes of this id to a message digest
+	 * @param md The message digest
+	 */
+	public void update(MessageDigest md) {
+		md.update(bytes);
+	}
+
+	/**
+	 * Returns a copy of the raw bytes of this id
+	 * @return a copy of the raw bytes of this id
+	 */
+	public byte[] toByteArray() {
+		return bytes.clone();
+	}
+
+	/**
+	 * Returns true if the hex presentation of this id starts with (at least)
+	 * the given number of zeros, i.e., if a block with this hash is mined
+	 * with the given difficulty.
+	 * @param nrofZeros Number of leading zero hex digits
+	 * @return true if the id has the leading zeros, false if not
+	 */
+	public boolean hasLeadingZeros(int nrofZeros) {
+		int fullBytes = nrofZeros / 2;
+		for (int i = 0; i < fullBytes; i++) {
+			if (bytes[i] != 0) {
+				return false;
+			}
+		}
+		if (nrofZeros % 2 == 1) {
+			return (bytes[fullBytes] & 0xf0) == 0;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof Hash256)) {
+			return false;
+		}
+		Hash256 other = (Hash256)o;
+		return hashCode == other.hashCode && Arrays.equals(bytes, other.bytes);
+	}
+
+	/**
+	 * Returns the id as a 64 character hex string
+	 */
+	@Override
+	public String toString() {
+		char[] hex = new char[LENGTH * 2];
+		for (int i = 0; i < LENGTH; i++) {
+			hex[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+			hex[2 * i + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(hex);
+	}
+}
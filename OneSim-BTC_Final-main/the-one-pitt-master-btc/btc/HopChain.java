@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package btc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Append-only chain of the hop attestations (signatures) of a message. The
+ * attestations are kept in an array, so reading the attestation of a hop
+ * takes constant time. A chain can be extended in place ({@link #add(byte[])}),
+ * in which case every holder of the chain sees the new attestation, or
+ * persistently ({@link #append(byte[], Hash256)}), in which case the old
+ * chain stays as it was and the new chain shares the attestations of the
+ * old one instead of copying them. Hence replicates of a message can have
+ * chains of their own that share their common prefix.
+ * <P>
+ * In a hash-chained chain, every attestation comes with the digest
+ * <CODE>H(previous digest || message ID || hop)</CODE> that the hop signed
+ * (see {@link #link(Hash256, String, String)}), so the whole chain can be
+ * verified in one pass over the hops.</P>
+ */
+public final class HopChain extends AbstractList<byte[]>
+		implements RandomAccess {
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * Attestations shared by the chains that have the same prefix. Only the
+	 * chain that ends at the last attestation of the store can append to it.
+	 */
+	private static final class Store {
+		private byte[][] attestations;
+		private Hash256[] digests;
+		private int count;
+
+		private Store(int capacity) {
+			this.attestations = new byte[capacity][];
+			this.digests = new Hash256[capacity];
+		}
+	}
+
+	private Store store;
+	private int length;
+
+	/**
+	 * Creates a new, empty, chain
+	 */
+	public HopChain() {
+		this(new Store(INITIAL_CAPACITY), 0);
+	}
+
+	private HopChain(Store store, int length) {
+		this.store = store;
+		this.length = length;
+	}
+
+	/**
+	 * Returns the attestation of a hop
+	 * @param index Index of the attestation
+	 * @return The attestation
+	 */
+	@Override
+	public byte[] get(int index) {
+		checkIndex(index);
+		return store.attestations[index];
+	}
+
+	/**
+	 * Returns the digest a hop signed in a hash-chained chain
+	 * @param index Index of the attestation
+	 * @return The digest or null if the attestation has no digest
+	 */
+	public Hash256 getDigest(int index) {
+		checkIndex(index);
+		return store.digests[index];
+	}
+
+	/**
+	 * Returns the digest of the last attestation
+	 * @return The digest or null if the chain is empty or the last
+	 * attestation has no digest
+	 */
+	public Hash256 lastDigest() {
+		return length == 0 ? null : store.digests[length - 1];
+	}
+
+	/**
+	 * Returns true if the attestations of the chain are hash-chained
+	 * @return true if the first attestation has a digest
+	 */
+	public boolean isHashChained() {
+		return length > 0 && store.digests[0] != null;
+	}
+
+	@Override
+	public int size() {
+		return length;
+	}
+
+	/**
+	 * Returns a new chain that has the attestations of this chain and the
+	 * given one. This chain isn't changed.
+	 * @param attestation The new attestation
+	 * @param digest The digest the attestation signs or null if the chain
+	 * isn't hash-chained
+	 * @return The new chain
+	 */
+	public HopChain append(byte[] attestation, Hash256 digest) {
+		Store s = this.store;
+		if (length < s.count) {
+			/* someone has already extended the shared prefix -> copy it */
+			Store copy = new Store(Math.max(INITIAL_CAPACITY, length * 2));
+			System.arraycopy(s.attestations, 0, copy.attestations, 0, length);
+			System.arraycopy(s.digests, 0, copy.digests, 0, length);
+			copy.count = length;
+			s = copy;
+		}
+		else if (length == s.attestations.length) {
+			byte[][] attestations = new byte[length * 2][];
+			Hash256[] digests = new Hash256[length * 2];
+			System.arraycopy(s.attestations, 0, attestations, 0, length);
+			System.arraycopy(s.digests, 0, digests, 0, length);
+			s.attestations = attestations;
+			s.digests = digests;
+		}
+
+		s.attestations[length] = attestation;
+		s.digests[length] = digest;
+		s.count++;
+		return new HopChain(s, length + 1);
+	}
+
+	/**
+	 * Appends an attestation to this chain
+	 * @param attestation The new attestation
+	 * @param digest The digest the attestation signs or null if the chain
+	 * isn't hash-chained
+	 */
+	public void appendInPlace(byte[] attestation, Hash256 digest) {
+		HopChain extended = append(attestation, digest);
+		this.store = extended.store;
+		this.length = extended.length;
+		this.modCount++;
+	}
+
+	/**
+	 * Appends an attestation (without a digest) to this chain
+	 * @param attestation The new attestation
+	 * @return true
+	 */
+	@Override
+	public boolean add(byte[] attestation) {
+		appendInPlace(attestation, null);
+		return true;
+	}
+
+	/**
+	 * Returns the next digest of a hash chain:
+	 * <CODE>H(previous || messageId || hop)</CODE>
+	 * @param previous The previous digest or null for the first hop
+	 * @param messageId ID of the message
+	 * @param hop Name of the hop
+	 * @return The digest
+	 */
+	public static Hash256 link(Hash256 previous, String messageId,
+			String hop) {
+		MessageDigest md = StringUtil.sha256();
+		(previous != null ? previous : Hash256.ZERO).update(md);
+		md.update(messageId.getBytes(StandardCharsets.UTF_8));
+		md.update((byte)0);
+		md.update(hop.getBytes(StandardCharsets.UTF_8));
+		return Hash256.digest(md);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index: " + index +
+					", Size: " + length);
+		}
+	}
+}
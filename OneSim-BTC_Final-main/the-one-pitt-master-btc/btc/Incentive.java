@@ -6,11 +6,14 @@
 package btc;
 
 import core.DTNHost;
+import core.IntMap;
 import core.Message;
 import core.SimClock;
 import core.SimScenario;
+import core.SimulationContext;
 import core.Tuple;
 import core.UpdateListener;
+import input.MessageCreateEventBtc;
 import input.RumusMatematika;
 import java.security.PublicKey;
 import java.util.*;
@@ -32,37 +35,62 @@ public class Incentive {
 
     private static boolean blacklistActive = true;
 
-    private static Map<Message, List<DTNHost>> ack = new HashMap<Message, List<DTNHost>>();
-    private static Map<String, Tuple<Transaction, Boolean>> deposits = new HashMap<String, Tuple<Transaction, Boolean>>();
-    private static Map<Message, Map<DTNHost, Set<String>>> verificating = new HashMap<Message, Map<DTNHost, Set<String>>>();
-    private static Map<DTNHost, Set<byte[]>> trustToken = new HashMap<DTNHost, Set<byte[]>>();
-    private static Map<Message, Set<String>> pending = new HashMap<Message, Set<String>>();
+    private Map<Message, List<DTNHost>> ack = new HashMap<Message, List<DTNHost>>();
+    /** deposits by the interned IDs of the messages */
+    private IntMap<Tuple<Transaction, Boolean>> deposits = new IntMap<Tuple<Transaction, Boolean>>();
+    private Map<Message, Map<DTNHost, Set<String>>> verificating = new HashMap<Message, Map<DTNHost, Set<String>>>();
+    private Map<DTNHost, Set<byte[]>> trustToken = new HashMap<DTNHost, Set<byte[]>>();
+    private Map<Message, Set<String>> pending = new HashMap<Message, Set<String>>();
     
-    public static Map<DTNHost, Double> detectionTime = new HashMap<DTNHost, Double>();
+    private Map<DTNHost, Double> detectionTime = new HashMap<DTNHost, Double>();
 
-    private static Map<DTNHost, List<DTNHost>> detectedAccomplice = new HashMap<DTNHost, List<DTNHost>>();
+    private Map<DTNHost, List<DTNHost>> detectedAccomplice = new HashMap<DTNHost, List<DTNHost>>();
 
-    private static Set<Message> finished = new HashSet<Message>();
+    private Set<Message> finished = new HashSet<Message>();
 
     public static Set<Message> getFinished() {
-        return finished;
+        return current().finished;
     }
-    private static Set<DTNHost> blacklist = new HashSet<DTNHost>();
+    private Set<DTNHost> blacklist = new HashSet<DTNHost>();
 
+    /**
+     * Creates the incentive state of one simulation. Use {@link #current()}
+     * to get the state of the current simulation context.
+     */
     public Incentive() {
     }
 
+    /**
+     * Returns the incentive state of the current simulation context
+     * @return the incentive state of the current simulation context
+     */
+    public static Incentive current() {
+        return SimulationContext.current().getIncentive();
+    }
+
+    public static Map<DTNHost, Double> getDetectionTime() {
+        return current().detectionTime;
+    }
+
     public static void setAck(Message m, Map<DTNHost, PublicKey> publicKeys) {
+        Incentive state = current();
         int in = 0;
         //baca node yang dilewati pesan
         List<DTNHost> nodes = m.getHops();
         //ambil signatures yang diberikan di pesan
-        List<byte[]> signatures = (List<byte[]>) m.getProperty("signatures");
+        List<byte[]> signatures = m.get(MessageCreateEventBtc.SIGNATURES);
         //membuat list untuk menampung host yang sudah diverifikasi
         List<DTNHost> verified = new ArrayList<DTNHost>();
+        //hop yang di-hash-chain diverifikasi dalam satu kali lintasan
+        boolean hashChained = signatures instanceof HopChain
+                && ((HopChain) signatures).isHashChained();
+        Hash256 expected = null;
 
         //membaca semua host di dalam nodes (node yang dilewati pesan)
         for (DTNHost host : nodes) {
+            if (hashChained) {
+                expected = HopChain.link(expected, m.getId(), host.toString());
+            }
             //mengecualikan node pertama (pembuat pesan) dan node terakhir (tujuan)
             if (in > 0 && (in < nodes.size() - 1)) {
 
@@ -71,11 +99,12 @@ public class Incentive {
                 wallet yang dicatat di pesan maka wallet dicatat
                 ke dalam verified list
                  */
-                String validation = m.toString() + host.toString();
+                String validation = hashChained ? expected.toString()
+                        : m.toString() + host.toString();
 
                 try {
                     String signature = do_RSADecryption(signatures.get(in), publicKeys.get(host));
-                    if (signature.matches(validation)) {
+                    if (signature.equals(validation)) {
 //                        System.out.println("verified : "+host);
                         verified.add(host);
                     } else {
@@ -95,10 +124,11 @@ public class Incentive {
             //index naik untuk membaca isi list wallet dari awal hingga akhir
             in++;
         }
-        ack.put(m, verified);
+        state.ack.put(m, verified);
     }
 
     public static void setTrustToken(Map.Entry<DTNHost, Set<byte[]>> tToken, DTNHost sender, DTNHost verificator, Map<DTNHost, PublicKey> publicKeys) {
+        Incentive state = current();
         //membaca pesan dari List messages
         DTNHost host = tToken.getKey();
         Set<byte[]> messages = tToken.getValue();
@@ -111,15 +141,17 @@ public class Incentive {
                 System.out.println(ex);
                         QLearn.updateQ(sender, verificator, false);
             }
-            for (Map.Entry<Message, List<DTNHost>> entry : ack.entrySet()) {
+            /* compare the interned IDs instead of the strings */
+            int tokenId = Message.internId(trusttoken);
+            for (Map.Entry<Message, List<DTNHost>> entry : state.ack.entrySet()) {
                 Message m = entry.getKey();
                 List<DTNHost> hosts = entry.getValue();
-                if (m.toString().equals(trusttoken)) {
+                if (m.getInternedId() == tokenId) {
                     if (hosts.contains(host)) {
                         Set<String> verificators;
                         Map<DTNHost, Set<String>> tup;
-                        if (verificating.containsKey(m)) {
-                            tup = verificating.get(m);
+                        if (state.verificating.containsKey(m)) {
+                            tup = state.verificating.get(m);
                             if (tup.containsKey(sender)) {
                                 verificators = tup.get(sender);
                             } else {
@@ -136,13 +168,13 @@ public class Incentive {
                             if (sender != host) {
                         QLearn.updateQ(sender, verificator, false);
                             } else {
-                                if (!QLearn.suspended.contains(sender)) {
+                                if (!QLearn.getSuspended().contains(sender)) {
                                     QLearn.updateQ(sender, verificator, true);
                                 }
                             }
-                            SimScenario.getInstance().getFb().setVariable("directTrust", QLearn.directTrust.get(verificator).get(sender));
+                            SimScenario.getInstance().getFb().setVariable("directTrust", QLearn.getDirectTrust().get(verificator).get(sender));
                             SimScenario.getInstance().getFb().setVariable("indirectTrust", QLearn.getAvgIT(sender));
-                            SimScenario.getInstance().getFb().setVariable("suspension", QLearn.suspension.get(sender));
+                            SimScenario.getInstance().getFb().setVariable("suspension", QLearn.getSuspension().get(sender));
                             SimScenario.getInstance().getFb().evaluate();
                             double trust = SimScenario.getInstance().getFb().getVariable("trust").getValue();
 //                            JFuzzyChart.get().chart(SimScenario.getInstance().getFb().getVariable("trust"),SimScenario.getInstance().getFb().getVariable("trust").getDefuzzifier(), true);
@@ -153,7 +185,7 @@ public class Incentive {
                             }
                         }
                         tup.put(sender, verificators);
-                        verificating.put(m, tup);
+                        state.verificating.put(m, tup);
                     } else {
                         System.out.println("Message : " + entry.getKey());
                         System.out.println("Host " + hosts);
@@ -171,7 +203,8 @@ public class Incentive {
     }
 
     public static void createIncentive() {
-        for (Map.Entry<Message, Map<DTNHost, Set<String>>> entry : verificating.entrySet()) {
+        Incentive state = current();
+        for (Map.Entry<Message, Map<DTNHost, Set<String>>> entry : state.verificating.entrySet()) {
             Message message = entry.getKey();
             Map<DTNHost, Set<String>> value1 = entry.getValue();
 
@@ -194,11 +227,11 @@ public class Incentive {
                 int totalVerificator = (int) Math.round(SimScenario.getInstance().getVerificator().size() / 2.0);
                 if (counterOk >= totalVerificator || counterFail >= totalVerificator) {
                     //tambahi if iki
-                    if (!finished.contains(message)) {
+                    if (!state.finished.contains(message)) {
                         Set<String> hasil;
 
-                        if (pending.containsKey(message)) {
-                            hasil = pending.get(message);
+                        if (state.pending.containsKey(message)) {
+                            hasil = state.pending.get(message);
                         } else {
                             hasil = new HashSet<String>();
                         }
@@ -213,12 +246,12 @@ public class Incentive {
                             if (counterFail >= totalVerificator) {
                                 hasil.add(fail);
                                 if (blacklistActive) {
-                                    detectionTime.put(host, SimClock.getTime());
-                                    blacklist.add(host);
+                                    state.detectionTime.put(host, SimClock.getTime());
+                                    state.blacklist.add(host);
                                 }
                             }
                         }
-                        pending.put(message, hasil);
+                        state.pending.put(message, hasil);
                     }
                 } else {
                     break;
@@ -229,7 +262,7 @@ public class Incentive {
 
         }
 
-        if (!pending.isEmpty()) {
+        if (!state.pending.isEmpty()) {
 //            System.out.println("finished : " + finished);
             prosesPayment();
 //            System.out.println("blacklist : " + blacklist);
@@ -237,28 +270,29 @@ public class Incentive {
     }
 
     public static void prosesPayment() {
+        Incentive state = current();
         //tambahi tobedel iki
         Set<Message> toBeDel = new HashSet<Message>();
-        for (Map.Entry<Message, Set<String>> entry : pending.entrySet()) {
+        for (Map.Entry<Message, Set<String>> entry : state.pending.entrySet()) {
             Message m = entry.getKey();
-            if (!(finished.contains(m))) {
-                if (ack.get(m).size() == pending.get(m).size()) {
-                    if (deposits.containsKey(m.toString())) {
-                        Tuple<Transaction, Boolean> tup = deposits.get(m.toString());
-                        float rewards = (float) m.getProperty("rewards");
+            if (!(state.finished.contains(m))) {
+                if (state.ack.get(m).size() == state.pending.get(m).size()) {
+                    Tuple<Transaction, Boolean> tup = state.deposits.get(m.getInternedId());
+                    if (tup != null) {
+                        float rewards = m.get(MessageCreateEventBtc.REWARDS);
                         if (!tup.getValue()) {
                             BlockChain.addTransaction(m.getFrom().getWallet().sendFunds(m.getTo().getWallet().publicKey, rewards));
                             Tuple<Transaction, Boolean> newTup = new Tuple<Transaction, Boolean>(tup.getKey(), true);
-                            deposits.put(m.toString(), newTup);
+                            state.deposits.put(m.getInternedId(), newTup);
                         }
 
-                        List<DTNHost> hosts = ack.get(m);
+                        List<DTNHost> hosts = state.ack.get(m);
                         List<DTNHost> pay = new ArrayList<DTNHost>();
 
                         for (DTNHost d : hosts) {
                             String ok = "+" + d;
-                            if (!QLearn.suspended.contains(d)) {
-                                if (pending.get(m).contains(ok)) {
+                            if (!QLearn.getSuspended().contains(d)) {
+                                if (state.pending.get(m).contains(ok)) {
                                     pay.add(d);
                                 }
                             }
@@ -280,7 +314,7 @@ public class Incentive {
                         }
                         //tambahi tobedel iki
                         toBeDel.add(m);
-                        finished.add(m);
+                        state.finished.add(m);
                     }
                 }
             }
@@ -290,16 +324,17 @@ public class Incentive {
         for (Message m : toBeDel) {
 //            System.out.println("tobedel = " + m);
 //            System.out.println("contains key " + pending.containsKey(m));
-            pending.remove(m);
+            state.pending.remove(m);
 //            System.out.println("removed : " + ack.get(m));
-            ack.remove(m);
+            state.ack.remove(m);
 
         }
     }
 
-    public static void setDeposit(String message, Transaction trx) {
+    public static void setDeposit(int message, Transaction trx) {
+        Incentive state = current();
         Tuple<Transaction, Boolean> tup = new Tuple<Transaction, Boolean>(trx, false);
-        deposits.put(message, tup);
+        state.deposits.put(message, tup);
     }
 
     public static String do_RSADecryption(byte[] cipherText, PublicKey publicKey) throws Exception {
@@ -312,23 +347,23 @@ public class Incentive {
     }
 
     public static Map<Message, List<DTNHost>> getAck() {
-        return ack;
+        return current().ack;
     }
 
     public static Set<DTNHost> getBlacklist() {
-        return blacklist;
+        return current().blacklist;
     }
 
     public static Map<DTNHost, Set<byte[]>> getTrustToken() {
-        return trustToken;
+        return current().trustToken;
     }
 
     public static Map<Message, Map<DTNHost, Set<String>>> getVerificating() {
-        return verificating;
+        return current().verificating;
     }
 
     public static Map<Message, Set<String>> getPending() {
-        return pending;
+        return current().pending;
     }
 
     public static boolean isBlacklistActive() {
@@ -344,7 +379,7 @@ public class Incentive {
     }
 
     public static Map<DTNHost, List<DTNHost>> getDetectedAccomplice() {
-        return detectedAccomplice;
+        return current().detectedAccomplice;
     }
 
 }
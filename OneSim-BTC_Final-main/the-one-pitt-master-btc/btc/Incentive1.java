@@ -6,6 +6,7 @@
 package btc;
 
 import core.*;
+import input.MessageCreateEventBtc;
 import input.RumusMatematika;
 import java.security.PublicKey;
 import java.util.*;
@@ -41,7 +42,7 @@ public class Incentive1 {
         //baca node yang dilewati pesan
         List<DTNHost> nodes = m.getHops();
         //ambil signatures yang diberikan di pesan
-        List<byte[]> signatures = (List<byte[]>) m.getProperty("signatures");
+        List<byte[]> signatures = m.get(MessageCreateEventBtc.SIGNATURES);
         //membuat list untuk menampung host yang sudah diverifikasi
         List<DTNHost> verified = new ArrayList<DTNHost>();
 
@@ -103,7 +104,7 @@ public class Incentive1 {
         //membuat list untuk menyimpan wallet dan jumlah incentive
         List<Tuple<Wallet, Float>> incentive = new ArrayList<Tuple<Wallet, Float>>();
         //membuat jumlah incentive
-        float rewards = (float) m.getProperty("rewards");
+        float rewards = m.get(MessageCreateEventBtc.REWARDS);
 
         float amount = rewards / verified.size();
 
@@ -208,7 +209,7 @@ public class Incentive1 {
                                 Tuple<Transaction, Boolean> tup = deposits.get(m.toString());
 
                                 if (!tup.getValue()) {
-                                    BlockChain.addTransaction(m.getFrom().getWallet().sendFunds(m.getTo().getWallet().publicKey, (float) m.getProperty("rewards")));
+                                    BlockChain.addTransaction(m.getFrom().getWallet().sendFunds(m.getTo().getWallet().publicKey, m.get(MessageCreateEventBtc.REWARDS)));
 //                                    System.out.println("deposit " + m + " : " + tup.getKey().value);
                                     Tuple<Transaction, Boolean> newTup = new Tuple<Transaction, Boolean>(tup.getKey(), true);
                                     deposits.put(m.toString(), newTup);
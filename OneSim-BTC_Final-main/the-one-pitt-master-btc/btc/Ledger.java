@@ -0,0 +1,198 @@
+package btc;
+import java.security.PublicKey;
+import java.util.*;
+//import java.util.Base64;
+//import com.google.gson.GsonBuilder;
+
+/**
+ * The block chain, unspent transaction outputs and coinbase wallet of one
+ * simulation. Each {@link core.SimulationContext} owns its own ledger and
+ * {@link BlockChain} gives static access to the ledger of the current
+ * context.
+ */
+public class Ledger {
+	
+    private ArrayList<Block> blockchain = new ArrayList<Block>();
+    private HashMap<Hash256, TransactionOutput> UTXOs = new HashMap<Hash256, TransactionOutput>();
+    private Block pending;
+
+    private Transaction genesisTransaction;
+    private Wallet coinbase = new Wallet();
+    
+    private List<Transaction> trxGenesis = new ArrayList<Transaction>();
+    
+    /** Journal the mined blocks are streamed to (null if not journaling) */
+    private LedgerJournal journal;
+    /** Names of the owners of the public keys, for the journal */
+    private IdentityHashMap<PublicKey, String> owners = new IdentityHashMap<PublicKey, String>();
+    
+    public Ledger() {
+        registerOwner(coinbase.publicKey, "coinbase");
+    }
+    
+    public ArrayList<Block> getBlockchain() {
+        return blockchain;
+    }
+    
+    public HashMap<Hash256, TransactionOutput> getUTXOs() {
+        return UTXOs;
+    }
+    
+    public Wallet getCoinbase() {
+        return coinbase;
+    }
+	
+        public Block getPreviousBlock(){
+            return blockchain.get(blockchain.size()-1);
+        }
+        
+	public Boolean isChainValid() {
+		Block currentBlock; 
+		Block previousBlock;
+		HashMap<Hash256,TransactionOutput> tempUTXOs = new HashMap<Hash256,TransactionOutput>(); //a temporary working list of unspent transactions at a given block state.
+		tempUTXOs.put(genesisTransaction.outputs.get(0).id, genesisTransaction.outputs.get(0));
+		
+		//loop through blockchain to check hashes:
+		for(int i=1; i < blockchain.size(); i++) {
+			
+			currentBlock = blockchain.get(i);
+			previousBlock = blockchain.get(i-1);
+			//compare registered hash and calculated hash:
+			if(!currentBlock.hash.equals(currentBlock.calculateHash()) ){
+				System.out.println("#Current Hashes not equal");
+				return false;
+			}
+			//compare previous hash and registered previous hash
+			if(!previousBlock.hash.equals(currentBlock.previousHash) ) {
+				System.out.println("#Previous Hashes not equal");
+				return false;
+			}
+			//check if hash is solved
+			if(!currentBlock.hash.hasLeadingZeros(BlockChain.difficulty)) {
+				System.out.println("#This block hasn't been mined");
+				return false;
+			}
+			
+			//loop thru blockchains transactions:
+			TransactionOutput tempOutput;
+			for(int t=0; t <currentBlock.transactions.size(); t++) {
+				Transaction currentTransaction = currentBlock.transactions.get(t);
+				
+				if(!currentTransaction.verifySignature()) {
+					System.out.println("#Signature on Transaction(" + t + ") is Invalid");
+					return false; 
+				}
+				if(currentTransaction.getInputsValue() != currentTransaction.getOutputsValue()) {
+					System.out.println("#Inputs are note equal to outputs on Transaction(" + t + ")");
+					return false; 
+				}
+				
+				for(TransactionInput input: currentTransaction.inputs) {	
+					tempOutput = tempUTXOs.get(input.transactionOutputId);
+					
+					if(tempOutput == null) {
+						System.out.println("#Referenced input on Transaction(" + t + ") is Missing");
+						return false;
+					}
+					
+					if(input.UTXO.value != tempOutput.value) {
+						System.out.println("#Referenced input Transaction(" + t + ") value is Invalid");
+						return false;
+					}
+					
+					tempUTXOs.remove(input.transactionOutputId);
+				}
+				
+				for(TransactionOutput output: currentTransaction.outputs) {
+					tempUTXOs.put(output.id, output);
+				}
+				
+				if( currentTransaction.outputs.get(0).reciepient != currentTransaction.reciepient) {
+					System.out.println("#Transaction(" + t + ") output reciepient is not who it should be");
+					return false;
+				}
+				if( currentTransaction.outputs.get(1).reciepient != currentTransaction.sender) {
+					System.out.println("#Transaction(" + t + ") output 'change' is not sender.");
+					return false;
+				}
+				
+			}
+			
+		}
+		System.out.println("Blockchain is valid");
+		return true;
+	}
+	
+	public void addBlock(Block newBlock) {
+		newBlock.mineBlock(BlockChain.difficulty);
+		blockchain.add(newBlock);
+		if (journal != null) {
+			journal.writeBlock(newBlock);
+		}
+	}
+	
+	/**
+	 * Sets the journal all mined blocks are written to. Blocks that have
+	 * already been mined (e.g., the genesis block) are written right away.
+	 * @param j The journal or null to stop journaling
+	 */
+	public void setJournal(LedgerJournal j) {
+		journal = j;
+		if (journal != null) {
+			for (Block b : blockchain) {
+				journal.writeBlock(b);
+			}
+		}
+	}
+	
+	/**
+	 * Registers a human readable owner name for a public key
+	 * @param key The public key
+	 * @param name Name of the key's owner (e.g., the host's name)
+	 */
+	public void registerOwner(PublicKey key, String name) {
+		owners.put(key, name);
+	}
+	
+	/**
+	 * Returns the registered owner name of a public key
+	 * @param key The public key
+	 * @return The owner's name or null if the key isn't registered
+	 */
+	public String getOwnerName(PublicKey key) {
+		return owners.get(key);
+	}
+        
+        
+    public void addTransaction(Transaction newTrx){
+        //jika blockchain hanya berisi genesis
+        if (blockchain.size() == 1) {
+            //jika pending block belum di mining maka dia akan mining
+            if (pending == null) {
+                pending = new Block(getPreviousBlock().hash);
+            }
+        }
+        if (pending.nrofTrx() == 3) {
+            addBlock(pending);
+            Block temp = new Block(getPreviousBlock().hash) ;
+            pending  = temp;
+        } 
+            pending.addTransaction(newTrx);
+    }
+    
+    public void addTransactionGenesis(Transaction newTrx){
+        
+        if(trxGenesis.size()<4){
+            trxGenesis.add(newTrx);
+            genesisTransaction = newTrx;
+        }
+        
+        if (trxGenesis.size()==4 && blockchain.isEmpty()){
+            Block genesis = new Block(Hash256.ZERO);
+            for(Transaction trx : trxGenesis){
+                genesis.addTransaction(trx);
+            }
+            addBlock(genesis);  
+        } 
+    }
+}
\ No newline at end of file
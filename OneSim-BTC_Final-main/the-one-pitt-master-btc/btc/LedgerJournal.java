@@ -0,0 +1,277 @@
+package btc;
+
+import core.SimClock;
+import core.SimError;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Append-only binary journal of the mined blocks. Every block is streamed
+ * through a {@link FileChannel} as one length-prefixed record right after
+ * it has been added to the {@link BlockChain}, so the ledger can be
+ * analysed offline with {@link LedgerJournalReader} without keeping the
+ * whole chain on heap.
+ * <P>
+ * File layout: header <CODE>[int MAGIC][short VERSION]</CODE> followed by
+ * records <CODE>[int length][byte type][payload]</CODE>, where the length
+ * covers the type byte and the payload. Public keys are written only once,
+ * as {@link #REC_KEY} records, and referred to by their key id afterwards.
+ * Block, transaction and output ids are written as their raw 32 bytes.
+ * </P>
+ */
+public class LedgerJournal {
+	/** Magic number in the beginning of a journal file ("LDGR") */
+	public static final int MAGIC = 0x4C444752;
+	/** Version of the journal format */
+	public static final short VERSION = 2;
+	/** Size of the file header in bytes */
+	public static final int HEADER_SIZE = 6;
+	/** Record type of a public key (owner) record */
+	public static final byte REC_KEY = 1;
+	/** Record type of a mined block record */
+	public static final byte REC_BLOCK = 2;
+	/** Key id used for missing (null) keys */
+	public static final int NO_KEY = -1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+	private FileChannel channel;
+	private ByteBuffer out;
+	private ByteBuffer rec;
+	private IdentityHashMap<PublicKey, Integer> keyIds;
+	private int nrofBlocks;
+	private long bytesWritten;
+
+	/**
+	 * Creates a new journal. An existing file with the same name is
+	 * truncated.
+	 * @param file The file to write the journal to
+	 */
+	public LedgerJournal(File file) {
+		this.file = file;
+		this.keyIds = new IdentityHashMap<PublicKey, Integer>();
+		this.out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.rec = ByteBuffer.allocate(1024);
+		try {
+			this.channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException e) {
+			throw new SimError("Couldn't open ledger journal '" + file +
+					"'\n" + e.getMessage(), e);
+		}
+		out.putInt(MAGIC);
+		out.putShort(VERSION);
+	}
+
+	/**
+	 * Appends a mined block and all of its transactions to the journal.
+	 * Records of the keys the block refers to are written first if they
+	 * haven't been written yet.
+	 * @param block The block to write
+	 */
+	public void writeBlock(Block block) {
+		if (channel == null) {
+			throw new SimError("Ledger journal '" + file + "' is closed");
+		}
+		for (Transaction t : block.transactions) {
+			keyId(t.sender);
+			keyId(t.reciepient);
+			for (TransactionOutput o : t.outputs) {
+				keyId(o.reciepient);
+			}
+		}
+
+		beginRecord(REC_BLOCK);
+		rec.putDouble(SimClock.getTime());
+		rec.putLong(block.timeStamp);
+		rec.putInt(block.nonce);
+		putHash(block.hash);
+		putHash(block.previousHash);
+		putHash(block.merkleRoot);
+		ensureCapacity(4);
+		rec.putInt(block.transactions.size());
+		for (Transaction t : block.transactions) {
+			writeTransaction(t);
+		}
+		endRecord();
+		nrofBlocks++;
+	}
+
+	private void writeTransaction(Transaction t) {
+		putHash(t.transactionId);
+		ensureCapacity(16);
+		rec.putInt(keyId(t.sender));
+		rec.putInt(keyId(t.reciepient));
+		rec.putFloat(t.value);
+
+		ArrayList<TransactionInput> inputs = t.inputs;
+		int nrofInputs = (inputs == null ? 0 : inputs.size());
+		rec.putInt(nrofInputs);
+		for (int i = 0; i < nrofInputs; i++) {
+			putHash(inputs.get(i).transactionOutputId);
+		}
+
+		ensureCapacity(4);
+		rec.putInt(t.outputs.size());
+		for (TransactionOutput o : t.outputs) {
+			putHash(o.id);
+			ensureCapacity(8);
+			rec.putInt(keyId(o.reciepient));
+			rec.putFloat(o.value);
+		}
+	}
+
+	/**
+	 * Returns the id of a key, writing a key record first if the key
+	 * hasn't been seen before. Must not be called for a new key while a
+	 * block record is being built.
+	 */
+	private int keyId(PublicKey key) {
+		if (key == null) {
+			return NO_KEY;
+		}
+		Integer id = keyIds.get(key);
+		if (id != null) {
+			return id;
+		}
+
+		id = keyIds.size();
+		keyIds.put(key, id);
+		String owner = BlockChain.getOwnerName(key);
+		byte[] encoded = key.getEncoded();
+
+		beginRecord(REC_KEY);
+		rec.putInt(id);
+		putString(owner != null ? owner : "key" + id);
+		ensureCapacity(4 + encoded.length);
+		rec.putInt(encoded.length);
+		rec.put(encoded);
+		endRecord();
+		return id;
+	}
+
+	private void beginRecord(byte type) {
+		rec.clear();
+		rec.putInt(0); // length is filled in by endRecord
+		rec.put(type);
+	}
+
+	private void endRecord() {
+		rec.putInt(0, rec.position() - 4);
+		rec.flip();
+		try {
+			if (rec.remaining() > out.remaining()) {
+				flush();
+			}
+			if (rec.remaining() > out.capacity()) {
+				while (rec.hasRemaining()) {
+					channel.write(rec);
+				}
+			}
+			else {
+				out.put(rec);
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't write ledger journal '" + file +
+					"'\n" + e.getMessage(), e);
+		}
+		bytesWritten += rec.limit();
+		rec.clear();
+	}
+
+	/**
+	 * Writes a string as a short length and UTF-8 bytes. Null strings are
+	 * written as length -1.
+	 */
+	private void putString(String s) {
+		if (s == null) {
+			ensureCapacity(2);
+			rec.putShort((short)-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		ensureCapacity(2 + bytes.length);
+		rec.putShort((short)bytes.length);
+		rec.put(bytes);
+	}
+
+	/**
+	 * Writes the raw bytes of an id. Missing (null) ids are written as
+	 * {@link Hash256#ZERO}.
+	 */
+	private void putHash(Hash256 h) {
+		ensureCapacity(Hash256.LENGTH);
+		(h != null ? h : Hash256.ZERO).write(rec);
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (rec.remaining() >= bytes) {
+			return;
+		}
+		int size = Math.max(rec.capacity() * 2, rec.position() + bytes);
+		ByteBuffer bigger = ByteBuffer.allocate(size);
+		rec.flip();
+		bigger.put(rec);
+		rec = bigger;
+	}
+
+	private void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Writes all buffered records to the file and closes it. Calling this
+	 * for an already closed journal does nothing.
+	 */
+	public void close() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			flush();
+			channel.force(false);
+			channel.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't close ledger journal '" + file +
+					"'\n" + e.getMessage(), e);
+		}
+		channel = null;
+	}
+
+	/**
+	 * Returns the number of blocks written to the journal
+	 * @return the number of blocks written to the journal
+	 */
+	public int getNrofBlocks() {
+		return nrofBlocks;
+	}
+
+	/**
+	 * Returns the number of record bytes written (excluding the header)
+	 * @return the number of record bytes written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Returns the journal file
+	 * @return the journal file
+	 */
+	public File getFile() {
+		return file;
+	}
+}
@@ -0,0 +1,311 @@
+package btc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline reader for ledger journals written by {@link LedgerJournal}. The
+ * file is memory-mapped in windows and replayed one block at a time, so the
+ * size of the ledger is not limited by the heap. A truncated last record
+ * (e.g., from an aborted run) ends the replay silently.
+ * <P>
+ * Usage: <CODE>java btc.LedgerJournalReader journalFile [time]</CODE>
+ * prints the balances of all owners at the given simulation time (or at the
+ * end of the run) and the payouts received by each host.
+ * </P>
+ */
+public class LedgerJournalReader implements Closeable {
+	/** Maximum size of one mapped window of the file */
+	private static final long MAX_WINDOW = 64L * 1024 * 1024;
+
+	private FileChannel channel;
+	private long size;
+	private Map<Integer, String> owners;
+
+	/**
+	 * Visitor for the records of a journal
+	 */
+	public interface Visitor {
+		/**
+		 * Called for every block in the order they were mined.
+		 * @param block The block
+		 * @return true if the replay should continue, false to stop
+		 */
+		public boolean block(BlockRecord block);
+	}
+
+	/** A block as read from the journal */
+	public static class BlockRecord {
+		/** Simulation time when the block was mined */
+		public double simTime;
+		public long timeStamp;
+		public int nonce;
+		public Hash256 hash;
+		public Hash256 previousHash;
+		public Hash256 merkleRoot;
+		public List<TransactionRecord> transactions;
+	}
+
+	/** A transaction as read from the journal */
+	public static class TransactionRecord {
+		public Hash256 transactionId;
+		/** Owner names of the sender and recipient (null for missing keys) */
+		public String sender;
+		public String reciepient;
+		public float value;
+		/** Ids of the outputs spent by this transaction */
+		public Hash256[] inputs;
+		public OutputRecord[] outputs;
+	}
+
+	/** A transaction output as read from the journal */
+	public static class OutputRecord {
+		public Hash256 id;
+		public String reciepient;
+		public float value;
+	}
+
+	/**
+	 * Opens a journal file for reading
+	 * @param file The journal file
+	 * @throws IOException if the file can't be read or isn't a journal
+	 */
+	public LedgerJournalReader(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.size = channel.size();
+		this.owners = new HashMap<Integer, String>();
+
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY,
+				0, Math.min(size, LedgerJournal.HEADER_SIZE));
+		if (size < LedgerJournal.HEADER_SIZE ||
+				header.getInt() != LedgerJournal.MAGIC) {
+			channel.close();
+			throw new IOException("'" + file + "' is not a ledger journal");
+		}
+		short version = header.getShort();
+		if (version != LedgerJournal.VERSION) {
+			channel.close();
+			throw new IOException("Unsupported ledger journal version " +
+					version + " in '" + file + "'");
+		}
+	}
+
+	/**
+	 * Replays all the blocks of the journal to a visitor
+	 * @param visitor The visitor
+	 * @throws IOException if reading the file fails
+	 */
+	public void replay(Visitor visitor) throws IOException {
+		long pos = LedgerJournal.HEADER_SIZE;
+		long windowStart = 0;
+		MappedByteBuffer window = null;
+
+		while (pos + 4 <= size) {
+			if (window == null || pos + 4 > windowStart + window.limit()) {
+				windowStart = pos;
+				window = map(pos, 4);
+			}
+			int length = window.getInt((int)(pos - windowStart));
+			if (length < 1 || pos + 4 + length > size) {
+				return; // truncated record
+			}
+			if (pos + 4 + length > windowStart + window.limit()) {
+				windowStart = pos;
+				window = map(pos, 4 + length);
+			}
+			window.position((int)(pos - windowStart) + 4);
+			byte type = window.get();
+
+			if (type == LedgerJournal.REC_KEY) {
+				int id = window.getInt();
+				owners.put(id, getString(window));
+			}
+			else if (type == LedgerJournal.REC_BLOCK) {
+				if (!visitor.block(readBlock(window))) {
+					return;
+				}
+			}
+			pos += 4 + length;
+		}
+	}
+
+	private MappedByteBuffer map(long pos, int minSize) throws IOException {
+		long len = Math.min(size - pos, Math.max(MAX_WINDOW, minSize));
+		return channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+	}
+
+	private BlockRecord readBlock(MappedByteBuffer buf) {
+		BlockRecord b = new BlockRecord();
+		b.simTime = buf.getDouble();
+		b.timeStamp = buf.getLong();
+		b.nonce = buf.getInt();
+		b.hash = Hash256.read(buf);
+		b.previousHash = Hash256.read(buf);
+		b.merkleRoot = Hash256.read(buf);
+
+		int nrofTrx = buf.getInt();
+		b.transactions = new ArrayList<TransactionRecord>(nrofTrx);
+		for (int i = 0; i < nrofTrx; i++) {
+			TransactionRecord t = new TransactionRecord();
+			t.transactionId = Hash256.read(buf);
+			t.sender = owners.get(buf.getInt());
+			t.reciepient = owners.get(buf.getInt());
+			t.value = buf.getFloat();
+			t.inputs = new Hash256[buf.getInt()];
+			for (int j = 0; j < t.inputs.length; j++) {
+				t.inputs[j] = Hash256.read(buf);
+			}
+			t.outputs = new OutputRecord[buf.getInt()];
+			for (int j = 0; j < t.outputs.length; j++) {
+				OutputRecord o = new OutputRecord();
+				o.id = Hash256.read(buf);
+				o.reciepient = owners.get(buf.getInt());
+				o.value = buf.getFloat();
+				t.outputs[j] = o;
+			}
+			b.transactions.add(t);
+		}
+		return b;
+	}
+
+	private static String getString(MappedByteBuffer buf) {
+		short len = buf.getShort();
+		if (len < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[len];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the number of blocks in the journal
+	 * @return the number of blocks in the journal
+	 * @throws IOException if reading the file fails
+	 */
+	public int getNrofBlocks() throws IOException {
+		final int[] count = {0};
+		replay(new Visitor() {
+			public boolean block(BlockRecord block) {
+				count[0]++;
+				return true;
+			}
+		});
+		return count[0];
+	}
+
+	/**
+	 * Returns the balances of all owners at the given simulation time by
+	 * replaying the unspent transaction outputs of the blocks mined up to
+	 * (and including) that time. Outputs without a recorded owner are not
+	 * included.
+	 * @param time The simulation time
+	 * @return Map of owner names to balances, sorted by the name
+	 * @throws IOException if reading the file fails
+	 */
+	public Map<String, Float> balancesAt(final double time) throws IOException {
+		final Map<Hash256, OutputRecord> utxos =
+			new HashMap<Hash256, OutputRecord>();
+		replay(new Visitor() {
+			public boolean block(BlockRecord block) {
+				if (block.simTime > time) {
+					return false;
+				}
+				for (TransactionRecord t : block.transactions) {
+					for (Hash256 in : t.inputs) {
+						utxos.remove(in);
+					}
+					for (OutputRecord o : t.outputs) {
+						utxos.put(o.id, o);
+					}
+				}
+				return true;
+			}
+		});
+
+		Map<String, Float> balances = new TreeMap<String, Float>();
+		for (OutputRecord o : utxos.values()) {
+			if (o.reciepient == null) {
+				continue; // no recorded owner
+			}
+			Float old = balances.get(o.reciepient);
+			balances.put(o.reciepient, (old == null ? 0 : old) + o.value);
+		}
+		return balances;
+	}
+
+	/**
+	 * Returns the total value each host has been paid. Change returned to
+	 * the sender and the initial balances of the genesis block are not
+	 * counted as payouts.
+	 * @return Map of owner names to the sum of the received payments
+	 * @throws IOException if reading the file fails
+	 */
+	public Map<String, Float> payoutsPerHost() throws IOException {
+		final Map<String, Float> payouts = new TreeMap<String, Float>();
+		replay(new Visitor() {
+			public boolean block(BlockRecord block) {
+				if (Hash256.ZERO.equals(block.previousHash)) {
+					return true; // genesis block
+				}
+				for (TransactionRecord t : block.transactions) {
+					for (OutputRecord o : t.outputs) {
+						if (o.reciepient == null ||
+								o.reciepient.equals(t.sender)) {
+							continue;
+						}
+						Float old = payouts.get(o.reciepient);
+						payouts.put(o.reciepient,
+								(old == null ? 0 : old) + o.value);
+					}
+				}
+				return true;
+			}
+		});
+		return payouts;
+	}
+
+	/**
+	 * Closes the journal file
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: LedgerJournalReader journalFile [time]");
+			return;
+		}
+		double time = Double.MAX_VALUE;
+		if (args.length > 1) {
+			time = Double.parseDouble(args[1]);
+		}
+
+		LedgerJournalReader reader = new LedgerJournalReader(new File(args[0]));
+		try {
+			System.out.println("Blocks: " + reader.getNrofBlocks());
+			System.out.println("Balances" +
+					(args.length > 1 ? " at " + args[1] : "") + ":");
+			for (Map.Entry<String, Float> e : reader.balancesAt(time).entrySet()) {
+				System.out.println(e.getKey() + " " + e.getValue());
+			}
+			System.out.println("Payouts:");
+			for (Map.Entry<String, Float> e : reader.payoutsPerHost().entrySet()) {
+				System.out.println(e.getKey() + " " + e.getValue());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+}
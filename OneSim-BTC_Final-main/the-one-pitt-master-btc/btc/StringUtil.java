@@ -7,6 +7,38 @@ import java.util.List;
 
 public class StringUtil {
 	
+	private static final ThreadLocal<MessageDigest> SHA256 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	};
+	
+	//Returns a reset SHA-256 digest of the calling thread; feed it raw bytes and finish with Hash256.digest
+	public static MessageDigest sha256() {
+		MessageDigest digest = SHA256.get();
+		digest.reset();
+		return digest;
+	}
+	
+	//Feeds the big-endian bytes of an int to a digest
+	public static void update(MessageDigest digest, int value) {
+		digest.update((byte)(value >>> 24));
+		digest.update((byte)(value >>> 16));
+		digest.update((byte)(value >>> 8));
+		digest.update((byte)value);
+	}
+	
+	//Feeds the big-endian bytes of a long to a digest
+	public static void update(MessageDigest digest, long value) {
+		update(digest, (int)(value >>> 32));
+		update(digest, (int)value);
+	}
+	
 	//Applies Sha256 to a string and returns the result. 
 	public static String applySha256(String input){
 		
@@ -72,25 +104,28 @@ public class StringUtil {
 		return Base64.getEncoder().encodeToString(key.getEncoded());
 	}
 	
-	public static String getMerkleRoot(ArrayList<Transaction> transactions) {
+	public static Hash256 getMerkleRoot(ArrayList<Transaction> transactions) {
 		int count = transactions.size();
 		
-		List<String> previousTreeLayer = new ArrayList<String>();
+		List<Hash256> previousTreeLayer = new ArrayList<Hash256>();
 		for(Transaction transaction : transactions) {
 			previousTreeLayer.add(transaction.transactionId);
 		}
-		List<String> treeLayer = previousTreeLayer;
+		List<Hash256> treeLayer = previousTreeLayer;
 		
 		while(count > 1) {
-			treeLayer = new ArrayList<String>();
+			treeLayer = new ArrayList<Hash256>();
 			for(int i=1; i < previousTreeLayer.size(); i+=2) {
-				treeLayer.add(applySha256(previousTreeLayer.get(i-1) + previousTreeLayer.get(i)));
+				MessageDigest digest = sha256();
+				previousTreeLayer.get(i-1).update(digest);
+				previousTreeLayer.get(i).update(digest);
+				treeLayer.add(Hash256.digest(digest));
 			}
 			count = treeLayer.size();
 			previousTreeLayer = treeLayer;
 		}
 		
-		String merkleRoot = (treeLayer.size() == 1) ? treeLayer.get(0) : "";
+		Hash256 merkleRoot = (treeLayer.size() == 1) ? treeLayer.get(0) : Hash256.ZERO;
 		return merkleRoot;
 	}
 }
@@ -1,10 +1,11 @@
 package btc;
 import java.security.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 public class Transaction {
 	
-	public String transactionId; //Contains a hash of transaction*
+	public Hash256 transactionId; //Contains a hash of transaction*
 	public PublicKey sender; //Senders address/public key.
 	public PublicKey reciepient; //Recipients address/public key.
 	public float value; //Contains the amount we wish to send to the recipient.
@@ -30,9 +31,10 @@ public class Transaction {
 			return false;
 		}
 				
+		HashMap<Hash256, TransactionOutput> UTXOs = BlockChain.getUTXOs();
 		//Gathers transaction inputs (Making sure they are unspent):
 		for(TransactionInput i : inputs) {
-			i.UTXO = BlockChain.UTXOs.get(i.transactionOutputId);
+			i.UTXO = UTXOs.get(i.transactionOutputId);
 		}
 
 		//Checks if transaction is valid:
@@ -52,13 +54,13 @@ public class Transaction {
 				
 		//Add outputs to Unspent list
 		for(TransactionOutput o : outputs) {
-			BlockChain.UTXOs.put(o.id , o);
+			UTXOs.put(o.id , o);
 		}
 		
 		//Remove transaction inputs from UTXO lists as spent:
 		for(TransactionInput i : inputs) {
 			if(i.UTXO == null) continue; //if Transaction can't be found skip it 
-			BlockChain.UTXOs.remove(i.UTXO.id);
+			UTXOs.remove(i.UTXO.id);
 		}
 		
 		return true;
@@ -92,12 +94,13 @@ public class Transaction {
 		return total;
 	}
 	
-	private String calulateHash() {
+	private Hash256 calulateHash() {
 		sequence++; //increase the sequence to avoid 2 identical transactions having the same hash
-		return StringUtil.applySha256(
-				StringUtil.getStringFromKey(sender) +
-				StringUtil.getStringFromKey(reciepient) +
-				Float.toString(value) + sequence
-				);
+		MessageDigest digest = StringUtil.sha256();
+		digest.update(sender.getEncoded());
+		digest.update(reciepient.getEncoded());
+		StringUtil.update(digest, Float.floatToIntBits(value));
+		StringUtil.update(digest, sequence);
+		return Hash256.digest(digest);
 	}
 }
@@ -1,10 +1,10 @@
 package btc;
 
 public class TransactionInput {
-	public String transactionOutputId; //Reference to TransactionOutputs -> transactionId
+	public Hash256 transactionOutputId; //Reference to TransactionOutputs -> transactionId
 	public TransactionOutput UTXO; //Contains the Unspent transaction output
 	
-	public TransactionInput(String transactionOutputId) {
+	public TransactionInput(Hash256 transactionOutputId) {
 		this.transactionOutputId = transactionOutputId;
 	}
 }
@@ -1,19 +1,24 @@
 package btc;
 
+import java.security.MessageDigest;
 import java.security.PublicKey;
 
 public class TransactionOutput {
-	public String id;
+	public Hash256 id;
 	public PublicKey reciepient; //also known as the new owner of these coins.
 	public float value; //the amount of coins they own
-	public String parentTransactionId; //the id of the transaction this output was created in
+	public Hash256 parentTransactionId; //the id of the transaction this output was created in
 	
 	//Constructor
-	public TransactionOutput(PublicKey reciepient, float value, String parentTransactionId) {
+	public TransactionOutput(PublicKey reciepient, float value, Hash256 parentTransactionId) {
 		this.reciepient = reciepient;
 		this.value = value;
 		this.parentTransactionId = parentTransactionId;
-		this.id = StringUtil.applySha256(StringUtil.getStringFromKey(reciepient)+Float.toString(value)+parentTransactionId);
+		MessageDigest digest = StringUtil.sha256();
+		digest.update(reciepient.getEncoded());
+		StringUtil.update(digest, Float.floatToIntBits(value));
+		parentTransactionId.update(digest);
+		this.id = Hash256.digest(digest);
 	}
 	
 	//Check if coin belongs to you
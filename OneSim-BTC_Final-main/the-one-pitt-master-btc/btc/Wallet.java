@@ -11,7 +11,7 @@ public class Wallet {
     public PrivateKey privateKey;
     public PublicKey publicKey;
 
-    public HashMap<String, TransactionOutput> UTXOs = new HashMap<String, TransactionOutput>();
+    public HashMap<Hash256, TransactionOutput> UTXOs = new HashMap<Hash256, TransactionOutput>();
 
     public Wallet() {
         generateKeyPair();
@@ -19,7 +19,10 @@ public class Wallet {
 
     public void generateKeyPair() {
         try {
-            Security.addProvider(new org.bouncycastle.jce.provider.BouncyCastleProvider());
+            if (Security.getProvider("BC") == null) {
+                // registered once per JVM, e.g., by BatchExecutor
+                Security.addProvider(new org.bouncycastle.jce.provider.BouncyCastleProvider());
+            }
             KeyPairGenerator keyGen = KeyPairGenerator.getInstance("ECDSA", "BC");
             SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
             ECGenParameterSpec ecSpec = new ECGenParameterSpec("prime192v1");
@@ -37,7 +40,7 @@ public class Wallet {
 
     public float getBalance() {
         float total = 0;
-        for (Map.Entry<String, TransactionOutput> item : BlockChain.UTXOs.entrySet()) {
+        for (Map.Entry<Hash256, TransactionOutput> item : BlockChain.getUTXOs().entrySet()) {
             TransactionOutput UTXO = item.getValue();
             if (UTXO.isMine(publicKey)) { //if output belongs to me ( if coins belong to me )
                 UTXOs.put(UTXO.id, UTXO); //add it to our list of unspent transactions.
@@ -55,7 +58,7 @@ public class Wallet {
         ArrayList<TransactionInput> inputs = new ArrayList<TransactionInput>();
 
         float total = 0;
-        for (Map.Entry<String, TransactionOutput> item : UTXOs.entrySet()) {
+        for (Map.Entry<Hash256, TransactionOutput> item : UTXOs.entrySet()) {
             TransactionOutput UTXO = item.getValue();
             total += UTXO.value;
             inputs.add(new TransactionInput(UTXO.id));
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import report.Report;
+import ui.DTNSimTextUI;
+
+/**
+ * Runs batch mode run indices concurrently. Every run is executed by a worker
+ * thread in a class loader of its own, so the static state of the simulator
+ * classes is never shared between runs. Progress of the runs is passed to the
+ * coordinating thread through an {@link AtomicLongArray} (a class that all
+ * the class loaders share) and printed by {@link DTNSimTextUI}.
+ * <P>
+ * Every run is given an additional settings file that overrides
+ * {@link Report#REPORTDIR_SETTING} with a run specific sub directory (see
+ * {@link #RUN_REPORT_DIRS_S}) so that concurrent runs don't overwrite each
+ * other's reports.</P>
+ */
+public class BatchExecutor {
+	/** Name space of the batch settings ({@value}) */
+	public static final String BATCH_NS = "Batch";
+	/** Number of concurrent runs -setting id ({@value}). Default is one,
+	 * i.e., runs are executed sequentially as before. Can be overridden with
+	 * the {@link DTNSim#WORKERS_FLAG} command line option. */
+	public static final String NROF_WORKERS_S = "nrofWorkers";
+	/** Use run specific report directories -setting id ({@value}). Boolean,
+	 * default is true. */
+	public static final String RUN_REPORT_DIRS_S = "runReportDirs";
+	/** Name format of the run specific report directories */
+	public static final String RUN_DIR_FORMAT = "run%03d/";
+
+	/**
+	 * Listener for finished runs. Called by the worker thread of the run.
+	 */
+	public interface RunListener {
+		/**
+		 * Called when a run has finished successfully
+		 * @param slot Index of the run in the executed set of runs
+		 */
+		public void runDone(int slot);
+
+		/**
+		 * Called when a run has failed. The other runs of the batch are
+		 * still run.
+		 * @param slot Index of the run in the executed set of runs
+		 * @param cause The error that ended the run
+		 */
+		public void runFailed(int slot, SimError cause);
+	}
+
+	private String[] confFiles;
+	private int nrofWorkers;
+	private boolean runReportDirs;
+	private URL[] classPath;
+
+	/**
+	 * Creates a new executor.
+	 * @param confFiles Settings files of the runs
+	 * @param nrofWorkers Maximum number of concurrent runs
+	 */
+	public BatchExecutor(String[] confFiles, int nrofWorkers) {
+		this.confFiles = confFiles;
+		this.nrofWorkers = nrofWorkers;
+
+		Settings s = new Settings(BATCH_NS);
+		this.runReportDirs = true;
+		if (s.contains(RUN_REPORT_DIRS_S)) {
+			this.runReportDirs = s.getBoolean(RUN_REPORT_DIRS_S);
+		}
+		this.classPath = parseClassPath(System.getProperty("java.class.path"));
+
+		/* security providers are global to the JVM: if a run registered the
+		 * wallets' provider, its class loader would be kept alive and the
+		 * later runs would use its classes */
+		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+	}
+
+	/**
+	 * Returns the number of workers defined in the settings, or one if the
+	 * setting is not defined.
+	 * @return The number of workers
+	 */
+	public static int getNrofWorkersSetting() {
+		Settings s = new Settings(BATCH_NS);
+		if (s.contains(NROF_WORKERS_S)) {
+			return Math.max(1, s.getInt(NROF_WORKERS_S));
+		}
+		return 1;
+	}
+
+	private static URL[] parseClassPath(String cp) {
+		List<URL> urls = new ArrayList<URL>();
+		for (String entry : cp.split(File.pathSeparator)) {
+			if (entry.length() == 0) {
+				continue;
+			}
+			try {
+				urls.add(new File(entry).toURI().toURL());
+			} catch (MalformedURLException e) {
+				throw new SimError("Invalid class path entry " + entry, e);
+			}
+		}
+		return urls.toArray(new URL[0]);
+	}
+
+	/**
+	 * Runs the given range of run indices and returns when all of them are
+	 * done.
+	 * @param firstRun Index of the first run
+	 * @param endRun Index of the last run + 1
+	 */
+	public void run(int firstRun, int endRun) {
+		int nrofRuns = endRun - firstRun;
+		String[][] runConfs = new String[nrofRuns][];
+		int[] runIndices = new int[nrofRuns];
+		double[] endTimes = new double[nrofRuns];
+
+		for (int i = firstRun; i < endRun; i++) {
+			runConfs[i - firstRun] = createRunSettings(i);
+			runIndices[i - firstRun] = i;
+			endTimes[i - firstRun] = getEndTime(i);
+		}
+		execute(runConfs, runIndices, endTimes, null);
+	}
+
+	/**
+	 * Executes a set of runs and returns when all of them are done. If a
+	 * listener is given, failed runs are reported to it and the rest of the
+	 * runs are completed; otherwise a failed run fails the whole batch.
+	 * @param runConfs Settings files of each run
+	 * @param runIndices Run index of each run
+	 * @param endTimes Simulation end time of each run (for the progress)
+	 * @param listener Listener that is informed about finished runs or null
+	 */
+	public void execute(String[][] runConfs, int[] runIndices,
+			double[] endTimes, final RunListener listener) {
+		int nrofRuns = runConfs.length;
+		final AtomicLongArray progress =
+			new AtomicLongArray(nrofRuns * DTNSimTextUI.PROGRESS_FIELDS);
+		ExecutorService pool = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(nrofWorkers, nrofRuns)));
+		List<Future<?>> results = new ArrayList<Future<?>>();
+
+		for (int i = 0; i < nrofRuns; i++) {
+			final int slot = i;
+			final String[] runConf = runConfs[i];
+			final int runIndex = runIndices[i];
+
+			progress.set(slot * DTNSimTextUI.PROGRESS_FIELDS +
+					DTNSimTextUI.PROGRESS_END, (long)(endTimes[i] * 1000));
+			results.add(pool.submit(new Runnable() {
+				public void run() {
+					try {
+						runIsolated(runConf, runIndex, progress, slot);
+					} catch (SimError e) {
+						if (listener == null) {
+							throw e;
+						}
+						listener.runFailed(slot, e);
+						return;
+					}
+					if (listener != null) {
+						listener.runDone(slot);
+					}
+				}
+			}));
+		}
+		pool.shutdown();
+
+		long startTime = System.currentTimeMillis();
+		try {
+			while (!pool.awaitTermination(DTNSimTextUI.UI_UP_INTERVAL,
+					TimeUnit.MILLISECONDS)) {
+				DTNSimTextUI.printBatchProgress(progress, startTime);
+			}
+			for (Future<?> f : results) {
+				f.get(); // propagates failures of the runs
+			}
+		} catch (Exception e) {
+			pool.shutdownNow();
+			throw new SimError("Batch run failed: " + e.getMessage(), e);
+		}
+		DTNSimTextUI.printBatchProgress(progress, startTime);
+	}
+
+	/**
+	 * Returns the end time of a run, as defined in the settings
+	 */
+	private double getEndTime(int runIndex) {
+		int oldIndex = Settings.getRunIndex();
+		Settings.setRunIndex(runIndex);
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		double endTime = s.getDouble(SimScenario.END_TIME_S);
+		Settings.setRunIndex(oldIndex);
+		return endTime;
+	}
+
+	/**
+	 * Creates the list of settings files for a run, including the run
+	 * specific overrides file (if needed).
+	 */
+	private String[] createRunSettings(int runIndex) {
+		if (!runReportDirs) {
+			return confFiles;
+		}
+
+		int oldIndex = Settings.getRunIndex();
+		Settings.setRunIndex(runIndex);
+		String reportDir = new Settings().getSetting(Report.REPORTDIR_SETTING);
+		Settings.setRunIndex(oldIndex);
+		if (!reportDir.endsWith("/")) {
+			reportDir += "/";
+		}
+		reportDir += String.format(RUN_DIR_FORMAT, runIndex + 1);
+
+		List<String> overrides = new ArrayList<String>();
+		overrides.add(Report.REPORTDIR_SETTING + " = " + reportDir);
+		return addOverrides(confFiles, "run" + (runIndex + 1), overrides);
+	}
+
+	/**
+	 * Writes settings to a temporary settings file and returns the given
+	 * settings files with the new file appended, so that the given settings
+	 * override the ones of the other files.
+	 * @param confFiles The settings files
+	 * @param name Prefix for the name of the temporary file
+	 * @param overrides The setting lines to write (e.g. "Group.speed = 1,2")
+	 * @return The settings files including the new file
+	 */
+	public static String[] addOverrides(String[] confFiles, String name,
+			List<String> overrides) {
+		String[] runConf = new String[confFiles.length + 1];
+		System.arraycopy(confFiles, 0, runConf, 0, confFiles.length);
+		try {
+			File file = File.createTempFile(name + "_", ".txt");
+			file.deleteOnExit();
+			PrintWriter out = new PrintWriter(new FileWriter(file));
+			for (String line : overrides) {
+				out.println(line);
+			}
+			out.close();
+			runConf[confFiles.length] = file.getPath();
+		} catch (IOException e) {
+			throw new SimError("Can't create settings file for " + name +
+					": " + e.getMessage(), e);
+		}
+		return runConf;
+	}
+
+	/**
+	 * Runs one run in a new class loader that doesn't share any simulator
+	 * classes with the other runs.
+	 */
+	private void runIsolated(String[] runConf, int runIndex,
+			AtomicLongArray progress, int slot) {
+		ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+		URLClassLoader loader = new URLClassLoader(classPath, parent);
+		Thread thread = Thread.currentThread();
+		ClassLoader oldLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(loader);
+
+		try {
+			Class<?> sim = loader.loadClass(DTNSim.class.getName());
+			Method m = sim.getMethod("runIsolated", String[].class, int.class,
+					AtomicLongArray.class, int.class);
+			m.invoke(null, runConf, runIndex, progress, slot);
+		} catch (InvocationTargetException e) {
+			throw new SimError("Run " + (runIndex + 1) + " failed: " +
+					e.getCause(), e);
+		} catch (ReflectiveOperationException e) {
+			throw new SimError("Can't start run " + (runIndex + 1), e);
+		} finally {
+			thread.setContextClassLoader(oldLoader);
+			try {
+				loader.close();
+			} catch (IOException e) {
+				// nothing to do; the loader is garbage anyway
+			}
+		}
+	}
+}
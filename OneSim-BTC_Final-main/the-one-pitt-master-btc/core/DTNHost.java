@@ -5,7 +5,6 @@
 package core;
 
 import btc.*;
-import static btc.BlockChain.*;
 import java.util.*;
 
 import movement.MovementModel;
@@ -18,10 +17,10 @@ import routing.RoutingInfo;
  */
 public class DTNHost implements Comparable<DTNHost> {
 
-    private static int nextAddress = 0;
     private int address;
 
     private Coord location; 	// where is the host
+    private PositionStore positions; // location by address, kept in sync
     private Coord destination;	// where is it going
 
     private MessageRouter router;
@@ -29,13 +28,24 @@ public class DTNHost implements Comparable<DTNHost> {
     private Path path;
     private double speed;
     private double nextTimeToMove;
+    /** has the host moved since its last update */
+    private boolean moved;
+    /** was the host active at its last update */
+    private boolean activeAtUpdate;
     private String name;
     private List<MessageListener> msgListeners;
     private List<MovementListener> movListeners;
     private List<NetworkInterface> net;
+    /** read-only view of the connections of all the interfaces */
+    private List<Connection> connections;
+    /** connections of all the interfaces (if there are many of them) */
+    private ArrayList<Connection> allConnections;
+    /** have the connections changed since allConnections was collected */
+    private boolean connectionsChanged;
     private ModuleCommunicationBus comBus;
 
     private Wallet wallet;
+    private SimulationContext context;
     
     private double negativeFactor;
 
@@ -77,9 +87,12 @@ public class DTNHost implements Comparable<DTNHost> {
             String groupId, List<NetworkInterface> interf,
             ModuleCommunicationBus comBus,
             MovementModel mmProto, MessageRouter mRouterProto) {
+        this.context = SimulationContext.current();
         this.comBus = comBus;
         this.location = new Coord(0, 0);
         this.address = getNextAddress();
+        this.positions = context.getPositions();
+        this.positions.ensureCapacity(this.address);
         this.name = groupId + address;
         this.net = new ArrayList<NetworkInterface>();
 
@@ -88,6 +101,14 @@ public class DTNHost implements Comparable<DTNHost> {
             ni.setHost(this);
             net.add(ni);
         }
+        if (net.size() == 1) { // the interface's own list is always current
+            this.connections = Collections.unmodifiableList(
+                    net.get(0).getConnections());
+        } else {
+            this.allConnections = new ArrayList<Connection>();
+            this.connections = Collections.unmodifiableList(allConnections);
+            this.connectionsChanged = true;
+        }
 
         // TODO - think about the names of the interfaces and the nodes
         //this.name = groupId + ((NetworkInterface)net.get(1)).getAddress();
@@ -97,9 +118,11 @@ public class DTNHost implements Comparable<DTNHost> {
         // create instances by replicating the prototypes
         this.movement = mmProto.replicate();
         this.movement.setComBus(comBus);
+        this.movement.setHostAddress(this.address);
         setRouter(mRouterProto.replicate());
 
-        this.location = movement.getInitialLocation();
+        this.location = movement.getInitialLocation().clone();
+        this.positions.set(address, location.getX(), location.getY());
 
         this.nextTimeToMove = movement.nextPathAvailable();
         this.path = null;
@@ -111,7 +134,17 @@ public class DTNHost implements Comparable<DTNHost> {
         }
 
         this.wallet = new Wallet();
+        BlockChain.registerOwner(wallet.publicKey, this.name);
+
+    }
 
+    /**
+     * Returns the simulation context this host belongs to
+     *
+     * @return the simulation context of this host
+     */
+    public SimulationContext getContext() {
+        return this.context;
     }
 
     public Wallet getWallet() {
@@ -120,11 +153,12 @@ public class DTNHost implements Comparable<DTNHost> {
 
     public void setInitBalance(float balance) {
         if (balance > 0) {
-            genesisTransaction = new Transaction(coinbase.publicKey, wallet.publicKey, balance, null);
+            Wallet coinbase = BlockChain.getCoinbase();
+            Transaction genesisTransaction = new Transaction(coinbase.publicKey, wallet.publicKey, balance, null);
             genesisTransaction.generateSignature(coinbase.privateKey);	 //manually sign the genesis transaction	
-            genesisTransaction.transactionId = "0"; //manually set the transaction id
+            genesisTransaction.transactionId = Hash256.ZERO; //manually set the transaction id
             genesisTransaction.outputs.add(new TransactionOutput(genesisTransaction.reciepient, genesisTransaction.value, genesisTransaction.transactionId)); //manually add the Transactions Output
-            UTXOs.put(genesisTransaction.outputs.get(0).id, genesisTransaction.outputs.get(0)); //its important to store our first transaction in the UTXOs list.
+            BlockChain.getUTXOs().put(genesisTransaction.outputs.get(0).id, genesisTransaction.outputs.get(0)); //its important to store our first transaction in the UTXOs list.
             BlockChain.addTransactionGenesis(genesisTransaction);
         }
     }
@@ -135,15 +169,15 @@ public class DTNHost implements Comparable<DTNHost> {
      *
      * @return The next address.
      */
-    private synchronized static int getNextAddress() {
-        return nextAddress++;
+    private static int getNextAddress() {
+        return SimulationContext.current().nextHostAddress();
     }
 
     /**
      * Reset the host and its interfaces
      */
     public static void reset() {
-        nextAddress = 0;
+        SimulationContext.current().resetHostAddresses();
     }
 
     /**
@@ -201,30 +235,51 @@ public class DTNHost implements Comparable<DTNHost> {
      * @param con The connection object whose state changed
      */
     public void connectionUp(Connection con) {
+        this.connectionsChanged = true;
         this.router.changedConnection(con);
+        this.router.wakeUp();
     }
 
     public void connectionDown(Connection con) {
+        this.connectionsChanged = true;
         this.router.changedConnection(con);
+        this.router.wakeUp();
     }
 
     /**
-     * Returns a copy of the list of connections this host has with other hosts
+     * Returns the connections this host has with other hosts. The list is a
+     * read-only view that is kept up to date, i.e., it changes when
+     * connections go up or down, so it must be copied if it is iterated
+     * while connections can change.
      *
-     * @return a copy of the list of connections this host has with other hosts
+     * @return the connections this host has with other hosts
      */
     public List<Connection> getConnections() {
-        List<Connection> lc = new ArrayList<Connection>();
+        if (this.allConnections == null) {
+            return this.connections;
+        }
 
-        for (NetworkInterface i : net) {
-            lc.addAll(i.getConnections());
+        /* interfaces remove a connection from their lists only after
+         * informing the hosts, so check also the number of connections */
+        int count = 0;
+        for (int i = 0, n = net.size(); i < n; i++) {
+            count += net.get(i).getConnections().size();
+        }
+        if (this.connectionsChanged || count != allConnections.size()) {
+            allConnections.clear();
+            for (int i = 0, n = net.size(); i < n; i++) {
+                allConnections.addAll(net.get(i).getConnections());
+            }
+            this.connectionsChanged = false;
         }
 
-        return lc;
+        return this.connections;
     }
 
     /**
-     * Returns the current location of this host.
+     * Returns the current location of this host. The same object is
+     * updated when the host moves (but not when the location is set with
+     * {@link #setLocation(Coord)}).
      *
      * @return The location
      */
@@ -232,6 +287,39 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.location;
     }
 
+    /**
+     * Returns the squared distance between this host and another host
+     *
+     * @param other The other host
+     * @return The squared distance
+     * @see PositionStore
+     */
+    public double distanceSquared(DTNHost other) {
+        return this.positions.distanceSquared(this.address, other.address);
+    }
+
+    /**
+     * Returns the waypoint this host is currently moving towards.
+     *
+     * @return The waypoint or null if the host is waiting (or inactive)
+     */
+    public Coord getDestination() {
+        if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
+            return null;
+        }
+        return this.destination;
+    }
+
+    /**
+     * Returns the speed this host moves towards its destination with
+     *
+     * @return The speed (m/s)
+     * @see #getDestination()
+     */
+    public double getSpeed() {
+        return this.speed;
+    }
+
     /**
      * Returns the Path this node is currently traveling or null if no path is
      * in use at the moment.
@@ -249,6 +337,18 @@ public class DTNHost implements Comparable<DTNHost> {
      */
     public void setLocation(Coord location) {
         this.location = location.clone();
+        this.positions.set(this.address, location.getX(), location.getY());
+        this.moved = true;
+    }
+
+    /**
+     * Sets the location of this host in its coordinates and the position
+     * store
+     */
+    private void setPosition(double x, double y) {
+        this.location.setLocation(x, y);
+        this.positions.set(this.address, x, y);
+        this.moved = true;
     }
 
     /**
@@ -378,7 +478,9 @@ public class DTNHost implements Comparable<DTNHost> {
      * @param simulateConnections Should network layer be updated too
      */
     public void update(boolean simulateConnections) {
-        if (!isActive()) {
+        this.activeAtUpdate = isActive();
+        this.moved = false;
+        if (!this.activeAtUpdate) {
             return;
         }
 
@@ -387,7 +489,85 @@ public class DTNHost implements Comparable<DTNHost> {
                 i.update();
             }
         }
-        this.router.update();
+        if (this.router.needsUpdate()) {
+            this.router.update();
+        }
+    }
+
+    /**
+     * Returns true if updating this node would not do anything: its
+     * activeness hasn't changed since the last update and it is either
+     * inactive, or its router doesn't need an update and none of its
+     * interfaces needs one (see {@link NetworkInterface#isQuiescent(boolean)}).
+     *
+     * @return true if the update of this node can be skipped
+     */
+    public boolean isQuiescent() {
+        boolean active = isActive();
+        if (active != this.activeAtUpdate) {
+            return false; // activeness changed
+        }
+        if (!active) {
+            return true;
+        }
+        if (this.router.needsUpdate()) {
+            return false;
+        }
+        for (int i = 0, n = this.net.size(); i < n; i++) {
+            if (!this.net.get(i).isQuiescent(this.moved)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if this node has moved or its activeness has changed
+     * since its last update, i.e., if the connectivity of this node may have
+     * changed in a way that its update would detect
+     *
+     * @return true if the node has changed since its last update
+     */
+    public boolean hasChangedSinceUpdate() {
+        return this.moved || isActive() != this.activeAtUpdate;
+    }
+
+    /**
+     * Returns true if this node can be moved concurrently with other nodes,
+     * i.e., its movement model is thread safe and there are no movement
+     * listeners to inform about new destinations.
+     *
+     * @return true if this node can be moved concurrently
+     */
+    public boolean canMoveConcurrently() {
+        return this.movement.isThreadSafe() &&
+                (this.movListeners == null || this.movListeners.isEmpty());
+    }
+
+    /**
+     * Returns the next simulation time when this node's location or
+     * activeness can change, if the node is idle, i.e., it is waiting at a
+     * waypoint (or is inactive) and none of its connections is transferring.
+     *
+     * @return The time when the node stops being idle, or the current time
+     * if the node is not idle
+     */
+    public double getIdleUntil() {
+        double now = SimClock.getTime();
+        double change = this.movement.nextActivenessChange();
+
+        if (isActive()) {
+            if (now >= this.nextTimeToMove) {
+                return now; // moving
+            }
+            change = Math.min(change, this.nextTimeToMove);
+        }
+        for (int i = 0, n = getConnections().size(); i < n; i++) {
+            if (getConnections().get(i).getMessage() != null) {
+                return now; // transferring
+            }
+        }
+        return change;
     }
 
     /**
@@ -399,7 +579,7 @@ public class DTNHost implements Comparable<DTNHost> {
     public void move(double timeIncrement) {
         double possibleMovement;
         double distance;
-        double dx, dy;
+        double x, y, dx, dy;
 
         if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
             return;
@@ -410,25 +590,31 @@ public class DTNHost implements Comparable<DTNHost> {
             }
         }
 
+        x = this.location.getX();
+        y = this.location.getY();
         possibleMovement = timeIncrement * speed;
-        distance = this.location.distance(this.destination);
+        dx = x - this.destination.getX();
+        dy = y - this.destination.getY();
+        distance = Math.sqrt(dx*dx + dy*dy);
 
         while (possibleMovement >= distance) {
             // node can move past its next destination
-            this.location.setLocation(this.destination); // snap to destination
+            x = this.destination.getX(); // snap to destination
+            y = this.destination.getY();
+            setPosition(x, y); // listeners of the next waypoint may read it
             possibleMovement -= distance;
             if (!setNextWaypoint()) { // get a new waypoint
                 return; // no more waypoints left
             }
-            distance = this.location.distance(this.destination);
+            dx = x - this.destination.getX();
+            dy = y - this.destination.getY();
+            distance = Math.sqrt(dx*dx + dy*dy);
         }
 
         // move towards the point for possibleMovement amount
-        dx = (possibleMovement / distance) * (this.destination.getX()
-                - this.location.getX());
-        dy = (possibleMovement / distance) * (this.destination.getY()
-                - this.location.getY());
-        this.location.translate(dx, dy);
+        dx = (possibleMovement / distance) * (this.destination.getX() - x);
+        dy = (possibleMovement / distance) * (this.destination.getY() - y);
+        setPosition(x + dx, y + dy);
     }
 
     /**
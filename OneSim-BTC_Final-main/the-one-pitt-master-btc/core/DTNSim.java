@@ -8,6 +8,7 @@ import gui.DTNSimGUI;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import ui.DTNSimTextUI;
 
@@ -20,6 +21,13 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the batch mode run range, the next
+	 * argument is the number of runs to execute concurrently 
+	 * (see {@link BatchExecutor}) */
+	public static final String WORKERS_FLAG = "-w";
+	/** Parameter sweep mode -flag ({@value}). Runs all combinations of the
+	 * run array values (see {@link ParameterSweep}) */
+	public static final String SWEEP_FLAG = "-s";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -37,27 +45,39 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
+	 * If the first argument is {@link #SWEEP_FLAG}, a parameter sweep is run
+	 * with the following settings files. In both batch and sweep mode, the
+	 * settings files can be preceded by {@link #WORKERS_FLAG} and the number
+	 * of concurrent runs.
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
 		boolean batchMode = false;
+		boolean sweepMode = false;
 		int nrofRuns[] = {0,1};
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofWorkers = -1;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
 		
 		if (args.length > 0) {
-			if (args[0].equals(BATCH_MODE_FLAG)) {
+			if (args[0].equals(BATCH_MODE_FLAG) || args[0].equals(SWEEP_FLAG)) {
 				batchMode = true;
-                if (args.length == 1) {
+				sweepMode = args[0].equals(SWEEP_FLAG);
+                if (args.length == 1 || sweepMode) {
                     firstConfIndex = 1;
                 }
                 else {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
+                }
+                if (args.length > firstConfIndex + 1 &&
+                        args[firstConfIndex].equals(WORKERS_FLAG)) {
+                    nrofWorkers = parseNrofWorkers(args[firstConfIndex + 1]);
+                    firstConfIndex += 2;
                 }
 			}
 			else { /* GUI mode */				
@@ -78,8 +98,27 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			if (nrofWorkers < 0 && !sweepMode) {
+				nrofWorkers = BatchExecutor.getNrofWorkersSetting();
+			}
+			if (sweepMode) {
+				String[] runConf = new String[confFiles.length-firstConfIndex];
+				System.arraycopy(confFiles, firstConfIndex, runConf, 0, 
+						runConf.length);
+				new ParameterSweep(runConf, nrofWorkers).run();
+			}
+			else if (nrofWorkers > 1 && nrofRuns[1] - nrofRuns[0] > 1) {
+				print("Running runs " + (nrofRuns[0]+1) + "-" + nrofRuns[1] + 
+						" with " + nrofWorkers + " workers");
+				String[] runConf = new String[confFiles.length-firstConfIndex];
+				System.arraycopy(confFiles, firstConfIndex, runConf, 0, 
+						runConf.length);
+				new BatchExecutor(runConf, nrofWorkers).run(nrofRuns[0], 
+						nrofRuns[1]);
+			}
+			else for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
 				print("Run " + (i+1) + "/" + nrofRuns[1]);
+				SimulationContext.bind(new SimulationContext());
 				Settings.setRunIndex(i);
 				resetForNextRun();
 				new DTNSimTextUI().start();
@@ -93,6 +132,23 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Runs one run of a parallel batch. This method is called by 
+	 * {@link BatchExecutor} in a class loader of its own, so all the static
+	 * state of the simulator is private to this run.
+	 * @param confFiles Settings files of the run
+	 * @param runIndex Run index of the run
+	 * @param progress Progress array of the batch
+	 * @param slot Index of this run's fields in the progress array
+	 */
+	public static void runIsolated(String[] confFiles, int runIndex,
+			AtomicLongArray progress, int slot) {
+		initSettings(confFiles, 0);
+		Settings.setRunIndex(runIndex);
+		resetForNextRun();
+		new DTNSimTextUI(progress, slot).start();
+	}
+	
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
@@ -216,6 +272,26 @@ public class DTNSim {
 		return val;
 	}
 	
+	/**
+	 * Parses the number of concurrent runs from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of workers
+	 */
+	private static int parseNrofWorkers(String arg) {
+		int val = 0;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			val = 0;
+		}
+		if (val < 1) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of workers");
+			System.exit(-1);
+		}
+		return val;
+	}
+	
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
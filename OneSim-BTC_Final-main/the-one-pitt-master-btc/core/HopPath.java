@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable path of nodes a message has passed. A path is a node that
+ * points to the path before its last hop, so adding a hop takes constant
+ * time and the replicates of a message share the common prefix of their
+ * paths instead of copying it.
+ */
+public final class HopPath {
+	/** The path with no hops */
+	public static final HopPath EMPTY = new HopPath(null, null, 0);
+
+	private final HopPath parent;
+	private final DTNHost host;
+	private final int length;
+	/** the hops of the path in an array, created when first needed */
+	private volatile DTNHost[] hops;
+
+	private HopPath(HopPath parent, DTNHost host, int length) {
+		this.parent = parent;
+		this.host = host;
+		this.length = length;
+	}
+
+	/**
+	 * Returns a path that has the hops of this path and the given hop. This
+	 * path isn't changed.
+	 * @param node The new last hop
+	 * @return The new path
+	 */
+	public HopPath append(DTNHost node) {
+		return new HopPath(this, node, length + 1);
+	}
+
+	/**
+	 * Returns the number of nodes on the path
+	 * @return The number of nodes
+	 */
+	public int length() {
+		return this.length;
+	}
+
+	/**
+	 * Returns the last node of the path
+	 * @return The last node or null if the path is empty
+	 */
+	public DTNHost getLast() {
+		return this.host;
+	}
+
+	/**
+	 * Returns the path without its last node
+	 * @return The path before the last hop or null if the path is empty
+	 */
+	public HopPath getParent() {
+		return this.parent;
+	}
+
+	/**
+	 * Returns true if a node is on the path. Doesn't create the array of
+	 * the hops.
+	 * @param node The node to look for
+	 * @return true if the node is on the path
+	 */
+	public boolean contains(Object node) {
+		for (HopPath p = this; p.length > 0; p = p.parent) {
+			if (node == null ? p.host == null : node.equals(p.host)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a read-only list view of the nodes on the path, from the first
+	 * node to the last one. The hops are copied to an array the first time
+	 * an element of the list is accessed.
+	 * @return The nodes on the path
+	 */
+	public List<DTNHost> asList() {
+		return new Hops();
+	}
+
+	/**
+	 * Returns the hops of the path in an array
+	 */
+	private DTNHost[] hops() {
+		DTNHost[] result = this.hops;
+		if (result == null) {
+			result = new DTNHost[length];
+			int i = length;
+			for (HopPath p = this; i > 0; p = p.parent) {
+				if (p.hops != null) { /* copy the cached prefix */
+					System.arraycopy(p.hops, 0, result, 0, i);
+					break;
+				}
+				result[--i] = p.host;
+			}
+			this.hops = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Read-only list view of the hops of the path
+	 */
+	private class Hops extends AbstractList<DTNHost> implements RandomAccess {
+		@Override
+		public DTNHost get(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("Index: " + index +
+						", Size: " + length);
+			}
+			return hops()[index];
+		}
+
+		@Override
+		public int size() {
+			return length;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return HopPath.this.contains(o);
+		}
+
+		@Override
+		public Iterator<DTNHost> iterator() {
+			final DTNHost[] array = hops();
+			return new Iterator<DTNHost>() {
+				private int next = 0;
+
+				public boolean hasNext() {
+					return next < array.length;
+				}
+
+				public DTNHost next() {
+					if (next >= array.length) {
+						throw new NoSuchElementException();
+					}
+					return array[next++];
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
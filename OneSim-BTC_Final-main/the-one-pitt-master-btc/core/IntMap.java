@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Hash map from primitive int keys to (non-null) values. The keys are kept
+ * in an open addressing table with linear probing, so looking up, adding
+ * and removing a mapping doesn't allocate (or box) anything.
+ * @param <V> Type of the values
+ */
+public class IntMap<V> {
+	private static final int MIN_CAPACITY = 16;
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+
+	/**
+	 * Creates a new, empty, map
+	 */
+	public IntMap() {
+		this.keys = new int[MIN_CAPACITY];
+		this.values = new Object[MIN_CAPACITY];
+	}
+
+	/**
+	 * Returns the slot of a key, or the empty slot where it would be
+	 */
+	private int slot(int key) {
+		int mask = keys.length - 1;
+		int i = mix(key) & mask;
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private static int mix(int key) {
+		int h = key * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if there's no mapping for the key
+	 */
+	@SuppressWarnings(value = "unchecked")
+	public V get(int key) {
+		return (V)values[slot(key)];
+	}
+
+	/**
+	 * Returns true if the map has a mapping for a key
+	 * @param key The key
+	 * @return true if the key is in the map
+	 */
+	public boolean containsKey(int key) {
+		return values[slot(key)] != null;
+	}
+
+	/**
+	 * Maps a key to a value
+	 * @param key The key
+	 * @param value The value (must not be null)
+	 * @return The previous value of the key or null if there was none
+	 */
+	@SuppressWarnings(value = "unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null value for key " + key);
+		}
+		int i = slot(key);
+		V old = (V)values[i];
+		keys[i] = key;
+		values[i] = value;
+		if (old == null && ++size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		return old;
+	}
+
+	/**
+	 * Removes the mapping of a key
+	 * @param key The key
+	 * @return The removed value or null if there was no mapping for the key
+	 */
+	@SuppressWarnings(value = "unchecked")
+	public V remove(int key) {
+		int i = slot(key);
+		V old = (V)values[i];
+		if (old == null) {
+			return null;
+		}
+		values[i] = null;
+		size--;
+
+		/* move the following keys of the same probe run to fill the gap */
+		int mask = keys.length - 1;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = mix(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Adds all the mappings of another map to this map
+	 * @param other The other map
+	 */
+	@SuppressWarnings(value = "unchecked")
+	public void putAll(IntMap<? extends V> other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			if (other.values[i] != null) {
+				put(other.keys[i], (V)other.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the keys of the map in a new array
+	 * @return The keys (in no particular order)
+	 */
+	public int[] keys() {
+		int[] result = new int[size];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] != null) {
+				result[n++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of mappings in the map
+	 * @return The number of mappings
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the map is empty
+	 * @return true if the map has no mappings
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all the mappings
+	 */
+	public void clear() {
+		this.keys = new int[MIN_CAPACITY];
+		this.values = new Object[MIN_CAPACITY];
+		this.size = 0;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
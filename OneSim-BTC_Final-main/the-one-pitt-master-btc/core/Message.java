@@ -4,11 +4,7 @@
  */
 package core;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -20,12 +16,12 @@ public class Message implements Comparable<Message> {
 	private DTNHost to;
 	/** Identifier of the message */
 	private String id;
+	/** Interned integer form of the identifier or -1 if not resolved yet */
+	private int internedId;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path; 
-	/** Next unique identifier to be given */
-	private static int nextUniqueId;
+	/** Path of nodes this message has passed (shared with the replicates) */
+	private HopPath path;
 	/** Unique ID of this message */
 	private int uniqueId;
 	/** The time this message was received */
@@ -41,10 +37,14 @@ public class Message implements Comparable<Message> {
 	/** if this message is a response message, this is set to the request msg*/
 	private Message requestMsg;
 	
-	/** Container for generic message properties. Note that all values
-	 * stored in the properties should be immutable because only a shallow
-	 * copy of the properties is made when replicating messages */
-	private Map<String, Object> properties;
+	/** Values of the message attributes (see {@link MessageAttribute}),
+	 * indexed by the attribute slots, or null if no attribute is set.
+	 * Note that all values should be immutable because only a shallow
+	 * copy of the attributes is made when replicating messages */
+	private Object[] attributes;
+	/** true if the attribute array may be shared with a replicate, in which
+	 * case it must be copied before it is changed */
+	private boolean attributesShared;
 	
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -67,18 +67,18 @@ public class Message implements Comparable<Message> {
 		this.to = to;
 		this.id = id;
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
-		this.uniqueId = nextUniqueId;
+		this.path = HopPath.EMPTY;
+		this.uniqueId = SimulationContext.current().nextMessageId();
+		this.internedId = -1;
 		
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
 		this.initTtl = INFINITE_TTL;
 		this.responseSize = 0;
 		this.requestMsg = null;
-		this.properties = null;
+		this.attributes = null;
 		this.appID = null;
 		
-		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 	
@@ -106,6 +106,29 @@ public class Message implements Comparable<Message> {
 		return this.id;
 	}
 	
+	/**
+	 * Returns the ID of the message as an integer. Messages with the same ID
+	 * (i.e., the replicates of a message) have the same interned ID, so it
+	 * can be used as a key instead of the ID string.
+	 * @return The interned message id
+	 */
+	public int getInternedId() {
+		if (this.internedId < 0) {
+			this.internedId = SimulationContext.current().internMessageId(id);
+		}
+		return this.internedId;
+	}
+	
+	/**
+	 * Returns the interned integer form of a message ID
+	 * @param id The message ID
+	 * @return The interned ID
+	 * @see #getInternedId()
+	 */
+	public static int internId(String id) {
+		return SimulationContext.current().internMessageId(id);
+	}
+	
 	/**
 	 * Returns an ID that is unique per message instance 
 	 * (different for replicates too)
@@ -128,14 +151,22 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = this.path.append(node);
 	}
 	
 	/**
 	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * @return The list as a read-only view
 	 */
 	public List<DTNHost> getHops() {
+		return this.path.asList();
+	}
+	
+	/**
+	 * Returns the path of nodes this message has passed so far
+	 * @return The path
+	 */
+	public HopPath getPath() {
 		return this.path;
 	}
 	
@@ -144,7 +175,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return this.path.length() -1;
 	}
 	
 	/** 
@@ -163,6 +194,18 @@ public class Message implements Comparable<Message> {
 		}
 	}
 	
+	
+	/**
+	 * Returns the simulation time after which {@link #getTtl()} returns zero
+	 * or less, i.e., when routers consider the message expired.
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + (this.initTtl - 1) * 60.0;
+	}
 	
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
@@ -256,19 +299,64 @@ public class Message implements Comparable<Message> {
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.path = m.path;
 		this.timeCreated = m.timeCreated;
+		this.internedId = m.internedId;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
 		this.initTtl = m.initTtl;
 		this.appID = m.appID;
 		
-		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
+		if (m.attributes != null) {
+			/* share the attributes until either message changes them */
+			this.attributes = m.attributes;
+			this.attributesShared = true;
+			m.attributesShared = true;
+		}
+	}
+	
+	/**
+	 * Returns the value of an attribute of this message
+	 * @param attribute The attribute
+	 * @return The value or null if the attribute isn't set
+	 */
+	public <T> T get(MessageAttribute<T> attribute) {
+		int i = attribute.getIndex();
+		if (this.attributes == null || i >= this.attributes.length) {
+			return null;
+		}
+		return attribute.cast(this.attributes[i]);
+	}
+	
+	/**
+	 * Sets the value of an attribute of this message. The value is shared
+	 * with the replicates made after this call, so it should be immutable.
+	 * @param attribute The attribute
+	 * @param value The new value (or null to unset the attribute)
+	 */
+	public <T> void set(MessageAttribute<T> attribute, T value) {
+		int i = attribute.getIndex();
+		if (this.attributes == null || i >= this.attributes.length) {
+			if (value == null) {
+				return;
 			}
+			Object[] grown = new Object[Math.max(i + 1,
+					MessageAttribute.getNrofSlots())];
+			if (this.attributes != null) {
+				System.arraycopy(this.attributes, 0, grown, 0,
+						this.attributes.length);
+			}
+			this.attributes = grown;
+			this.attributesShared = false;
 		}
+		else if (this.attributesShared) {
+			if (this.attributes[i] == value) {
+				return;
+			}
+			this.attributes = this.attributes.clone();
+			this.attributesShared = false;
+		}
+		this.attributes[i] = value;
 	}
 	
 	/**
@@ -276,13 +364,16 @@ public class Message implements Comparable<Message> {
 	 * it should be such that no other class accidently uses the same value.
 	 * The value can be any object but it's good idea to store only immutable
 	 * objects because when message is replicated, only a shallow copy of the
-	 * properties is made.  
+	 * properties is made. The properties are stored as
+	 * {@link MessageAttribute}s named by their keys; new code should declare
+	 * a typed attribute and use {@link #get(MessageAttribute)} and
+	 * {@link #set(MessageAttribute, Object)} instead.
 	 * @param key The key which is used to lookup the value
 	 * @param value The value to store
 	 * @throws SimError if the message already has a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.properties != null && this.properties.containsKey(key)) {
+		if (this.getProperty(key) != null) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("Message " + this + " already contains value " + 
 					"for a key " + key);
@@ -298,10 +389,11 @@ public class Message implements Comparable<Message> {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.properties == null) {
+		MessageAttribute<?> attribute = MessageAttribute.forName(key);
+		if (attribute == null) {
 			return null;
 		}
-		return this.properties.get(key);
+		return get(attribute);
 	}
 	
 	/**
@@ -310,15 +402,14 @@ public class Message implements Comparable<Message> {
 	 * checks for name space clashes.
 	 * @param key The key which is used to lookup the value
 	 * @param value The new value to store
+	 * @throws SimError if the value isn't of the type of the attribute
+	 * declared with the key
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.properties == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.properties = new HashMap<String, Object>();
-		}		
-
-		this.properties.put(key, value);
+		MessageAttribute<Object> attribute =
+			MessageAttribute.register(key, Object.class);
+		attribute.checkType(value);
+		set(attribute, value);
 	}
 	
 	/**
@@ -336,14 +427,14 @@ public class Message implements Comparable<Message> {
 	 * @see String#compareTo(String)
 	 */
 	public int compareTo(Message m) {
-		return toString().compareTo(m.toString());
+		return this.id.compareTo(m.id);
 	}
 	
 	/**
 	 * Resets all static fields to default values
 	 */
 	public static void reset() {
-		nextUniqueId = 0;
+		SimulationContext.current().resetMessageIds();
 	}
 
 	/**
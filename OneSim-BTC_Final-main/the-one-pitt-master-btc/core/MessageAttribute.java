@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A typed attribute of messages. Every attribute is declared once (usually
+ * as a constant of the class that uses it) and gets its own slot in the
+ * messages' attribute arrays, so reading and writing an attribute value is
+ * an array access instead of a map lookup. Attributes are identified by
+ * their names; the string based properties of {@link Message} use the same
+ * attributes.
+ * @param <T> Type of the attribute values
+ */
+public final class MessageAttribute<T> {
+	/** all declared attributes by their names */
+	private static final ConcurrentHashMap<String, MessageAttribute<?>>
+		attributes = new ConcurrentHashMap<String, MessageAttribute<?>>();
+	/** number of slots (declared attributes) */
+	private static volatile int nrofSlots = 0;
+
+	private final String name;
+	private final Class<?> type;
+	private final int index;
+
+	private MessageAttribute(String name, Class<?> type, int index) {
+		this.name = name;
+		this.type = type;
+		this.index = index;
+	}
+
+	/**
+	 * Declares an attribute. If an attribute with the same name has been
+	 * declared already, that attribute is returned.
+	 * @param name Name of the attribute; it should be such that no other
+	 * class accidentally uses the same name
+	 * @param type Type of the attribute values
+	 * @return The attribute
+	 * @throws SimError if an attribute with the same name but an
+	 * incompatible type has been declared
+	 */
+	@SuppressWarnings(value = "unchecked")
+	public static synchronized <T> MessageAttribute<T> register(String name,
+			Class<? super T> type) {
+		MessageAttribute<?> a = attributes.get(name);
+		if (a == null) {
+			a = new MessageAttribute<T>(name, type, nrofSlots);
+			attributes.put(name, a);
+			nrofSlots++;
+		}
+		else if (!a.type.isAssignableFrom(type) &&
+				!type.isAssignableFrom(a.type)) {
+			throw new SimError("Message attribute " + name + " is already " +
+					"declared with type " + a.type.getName());
+		}
+		return (MessageAttribute<T>)a;
+	}
+
+	/**
+	 * Returns the attribute with the given name
+	 * @param name Name of the attribute
+	 * @return The attribute or null if no such attribute has been declared
+	 */
+	public static MessageAttribute<?> forName(String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * Returns the number of declared attributes, i.e., the size of an
+	 * attribute array that has a slot for all of them
+	 * @return The number of attributes
+	 */
+	static int getNrofSlots() {
+		return nrofSlots;
+	}
+
+	/**
+	 * Returns the name of the attribute
+	 * @return the name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the type of the attribute values
+	 * @return the type
+	 */
+	public Class<?> getType() {
+		return this.type;
+	}
+
+	/**
+	 * Returns the slot of the attribute in the attribute arrays
+	 * @return the slot index
+	 */
+	int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Checks that a value is of the attribute's type
+	 * @param value The value
+	 * @throws SimError if the value isn't null or of the attribute's type
+	 */
+	void checkType(Object value) {
+		if (value != null && !type.isInstance(value)) {
+			throw new SimError("Invalid value " + value + " for message " +
+					"attribute " + name + " of type " + type.getName());
+		}
+	}
+
+	/**
+	 * Casts an attribute value to the attribute's type
+	 */
+	@SuppressWarnings(value = "unchecked")
+	T cast(Object value) {
+		return (T)value;
+	}
+
+	public String toString() {
+		return name;
+	}
+}
@@ -4,7 +4,6 @@
  */
 package core;
 
-import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
@@ -34,8 +33,6 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
-	private static int nextAddress = 0;
-	private static Random rng;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -59,8 +56,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * Resets the static fields of the class
 	 */
 	public static void reset() {
-		nextAddress = 0;
-		rng = new Random(0);
+		SimulationContext.current().resetNetAddresses(new Random(0));
 	}
 	
 	/**
@@ -104,7 +100,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.transmitSpeed = ni.transmitSpeed;
 		
 		/* draw lastScanTime of [0 -- scanInterval] */
-		this.lastScanTime = rng.nextDouble() * scanInterval;
+		this.lastScanTime = SimulationContext.current().getNetRng().nextDouble() * scanInterval;
 	}
 
 	/**
@@ -124,7 +120,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		comBus.subscribe(RANGE_ID, this);
 		comBus.subscribe(SPEED_ID, this);
 		
-		optimizer = ConnectivityGrid.ConnectivityGridFactory(
+		optimizer = ConnectivityOptimizer.getOptimizer(
 				this.interfacetype.hashCode(), transmitRange);
 		optimizer.addInterface(this);		
 	}
@@ -149,8 +145,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * subsequent calls.
 	 * @return The next address.
 	 */
-	private synchronized static int getNextNetAddress() {
-		return nextAddress++;	
+	private static int getNextNetAddress() {
+		return SimulationContext.current().nextNetAddress();
 	}
 
 	/**
@@ -185,6 +181,27 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.connections;
 	}
 	
+	/**
+	 * Returns the scan interval of this interface
+	 * @return The scan interval (seconds) or 0 if the interface scans
+	 * continuously
+	 */
+	public double getScanInterval() {
+		return this.scanInterval;
+	}
+
+	/**
+	 * Returns true if an update of this interface would not change anything,
+	 * e.g., because it has no connections and nothing that could create one
+	 * has changed since the last update. This version always returns false;
+	 * interfaces that can tell may override this.
+	 * @param moved True if the host has moved since its last update
+	 * @return true if the update of this interface can be skipped
+	 */
+	public boolean isQuiescent(boolean moved) {
+		return false;
+	}
+
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -271,8 +288,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			smallerRange = myRange;
 		}
 
-		return this.host.getLocation().distance(
-				anotherInterface.getHost().getLocation()) <= smallerRange;
+		return this.host.distanceSquared(anotherInterface.getHost()) <=
+			smallerRange * smallerRange;
 	}
 	
 	/**
@@ -0,0 +1,576 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import report.Report;
+
+/**
+ * Runs a parameter sweep over all the run arrays of the settings. Unlike in
+ * the batch mode, where the run index selects the n:th value of every run
+ * array, the sweep runs every combination (the Cartesian product) of the run
+ * array values, optionally repeated with different random number generator
+ * seeds. The runs are executed with a {@link BatchExecutor}.
+ * <P>
+ * Numeric values of the selected reports (see {@link #REPORTS_S}) are parsed
+ * after each run and stored in the run's directory. When all runs are done,
+ * the mean and the 95% confidence interval of every value over the
+ * repetitions are written to one CSV file with one row per configuration.
+ * Runs whose values already exist (for the same setting values) are not run
+ * again, so an interrupted sweep can be resumed by starting it again.</P>
+ * <P>
+ * A report line is parsed as <CODE>name: value</CODE>,
+ * <CODE>name = value</CODE> or <CODE>name,value[,value...]</CODE>; lines
+ * with only numbers are named after their line number.</P>
+ */
+public class ParameterSweep {
+	/** Name space of the sweep settings ({@value}) */
+	public static final String SWEEP_NS = "Sweep";
+	/** Number of repetitions of each configuration -setting id ({@value}).
+	 * Default is one. */
+	public static final String NROF_REPS_S = "nrofRepetitions";
+	/** Settings that are given a different value for every repetition
+	 * -setting id ({@value}). CSV, default is
+	 * {@link #DEF_SEED_SETTINGS}. The value of repetition n is the original
+	 * value (or zero) + n. */
+	public static final String SEED_SETTINGS_S = "seedSettings";
+	/** Directory of the run directories and results -setting id ({@value}).
+	 * Default is the "sweep" sub directory of the report directory. */
+	public static final String DIR_S = "dir";
+	/** Names of the report classes whose values are collected -setting id
+	 * ({@value}). CSV, default is {@link #DEF_REPORTS}. The reports must be
+	 * enabled in the Report settings as usual. */
+	public static final String REPORTS_S = "reports";
+	/** Name of the results CSV file in the sweep directory -setting id
+	 * ({@value}). Default is {@link #DEF_OUTPUT}. */
+	public static final String OUTPUT_S = "output";
+
+	/** Default value for the seed settings ({@value}) */
+	public static final String DEF_SEED_SETTINGS = "MovementModel.rngSeed";
+	/** Default value for the collected reports ({@value}) */
+	public static final String DEF_REPORTS =
+		"MessageStatsReport,ConfusionMatrix,ReportTarikStatic";
+	/** Default name of the results file ({@value}) */
+	public static final String DEF_OUTPUT = "sweep.csv";
+	/** Name of the file where the values of a run are stored ({@value}) */
+	public static final String STATS_FILE = "stats.txt";
+
+	private static final String SETTING_PREFIX = "setting.";
+	private static final String STAT_PREFIX = "stat.";
+	/** Two-sided 95% critical values of Student's t for 1-30 degrees of
+	 * freedom */
+	private static final double[] T_95 = {12.706, 4.303, 3.182, 2.776,
+		2.571, 2.447, 2.365, 2.306, 2.262, 2.228, 2.201, 2.179, 2.160, 2.145,
+		2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064,
+		2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+	/** Critical value of the normal distribution for large samples */
+	private static final double Z_95 = 1.960;
+
+	private String[] confFiles;
+	private int nrofWorkers;
+	private int nrofReps;
+	private String[] seedSettings;
+	private String[] reports;
+	private File dir;
+	private File output;
+
+	/**
+	 * Creates a new sweep. Settings must have been initialized with the
+	 * given settings files.
+	 * @param confFiles Settings files of the sweep
+	 * @param nrofWorkers Maximum number of concurrent runs, or -1 to use
+	 * the {@link BatchExecutor#NROF_WORKERS_S} setting or, if that is not
+	 * set, the number of available processors
+	 */
+	public ParameterSweep(String[] confFiles, int nrofWorkers) {
+		this.confFiles = confFiles;
+		this.nrofWorkers = nrofWorkers;
+		if (nrofWorkers < 1) {
+			Settings batch = new Settings(BatchExecutor.BATCH_NS);
+			this.nrofWorkers = batch.contains(BatchExecutor.NROF_WORKERS_S) ?
+					BatchExecutor.getNrofWorkersSetting() :
+					Runtime.getRuntime().availableProcessors();
+		}
+
+		Settings s = new Settings(SWEEP_NS);
+		this.nrofReps = 1;
+		if (s.contains(NROF_REPS_S)) {
+			this.nrofReps = s.getInt(NROF_REPS_S);
+		}
+		this.seedSettings = DEF_SEED_SETTINGS.split(",");
+		if (s.contains(SEED_SETTINGS_S)) {
+			this.seedSettings = s.getCsvSetting(SEED_SETTINGS_S);
+		}
+		this.reports = DEF_REPORTS.split(",");
+		if (s.contains(REPORTS_S)) {
+			this.reports = s.getCsvSetting(REPORTS_S);
+		}
+
+		String dirName;
+		if (s.contains(DIR_S)) {
+			dirName = s.getSetting(DIR_S);
+		}
+		else {
+			dirName = new Settings().getSetting(Report.REPORTDIR_SETTING);
+			if (!dirName.endsWith("/")) {
+				dirName += "/";
+			}
+			dirName += "sweep";
+		}
+		this.dir = new File(dirName);
+		this.output = new File(dir, s.contains(OUTPUT_S) ?
+				s.getSetting(OUTPUT_S) : DEF_OUTPUT);
+
+		if (nrofReps < 1) {
+			throw new SettingsError("Invalid number of repetitions " +
+					nrofReps + " for " + SWEEP_NS + "." + NROF_REPS_S);
+		}
+	}
+
+	/**
+	 * Returns all combinations of the values of the given run arrays. The
+	 * value of the last setting changes fastest.
+	 * @param arrays Map of setting names to their run array values
+	 * @return List of configurations, each of them a map of setting names
+	 * to values
+	 */
+	public static List<Map<String, String>> expand(
+			Map<String, String[]> arrays) {
+		List<Map<String, String>> configs =
+			new ArrayList<Map<String, String>>();
+		configs.add(new LinkedHashMap<String, String>());
+
+		for (Map.Entry<String, String[]> e : arrays.entrySet()) {
+			List<Map<String, String>> next =
+				new ArrayList<Map<String, String>>();
+			for (Map<String, String> c : configs) {
+				for (String value : e.getValue()) {
+					Map<String, String> n = new LinkedHashMap<String, String>(c);
+					n.put(e.getKey(), value);
+					next.add(n);
+				}
+			}
+			configs = next;
+		}
+		return configs;
+	}
+
+	/**
+	 * Runs all the runs of the sweep that haven't been run yet and writes
+	 * the results file.
+	 */
+	public void run() {
+		Map<String, String[]> arrays = Settings.getRunArrays();
+		if (nrofReps > 1) {
+			for (String seed : seedSettings) {
+				if (arrays.containsKey(seed)) {
+					throw new SettingsError("Seed setting " + seed +
+							" can't be a run array when " + SWEEP_NS + "." +
+							NROF_REPS_S + " is more than one");
+				}
+			}
+		}
+		Settings.setRunIndex(0);
+		List<Map<String, String>> configs = expand(arrays);
+
+		List<String[]> runConfs = new ArrayList<String[]>();
+		List<Double> endTimes = new ArrayList<Double>();
+		final List<File> runDirs = new ArrayList<File>();
+		final List<Map<String, String>> runSettings =
+			new ArrayList<Map<String, String>>();
+		final List<String> failures =
+			Collections.synchronizedList(new ArrayList<String>());
+
+		for (int c = 0; c < configs.size(); c++) {
+			for (int r = 0; r < nrofReps; r++) {
+				File runDir = getRunDir(c, r);
+				Map<String, String> values = getRunSettings(configs.get(c), r);
+				if (readStats(runDir, values) != null) {
+					continue; // done in an earlier sweep
+				}
+
+				List<String> overrides = new ArrayList<String>();
+				for (Map.Entry<String, String> e : values.entrySet()) {
+					overrides.add(e.getKey() + " = " + e.getValue());
+				}
+				overrides.add(Report.REPORTDIR_SETTING + " = " +
+						runDir.getPath() + "/");
+				runConfs.add(BatchExecutor.addOverrides(confFiles,
+						runDir.getName(), overrides));
+				endTimes.add(getEndTime(values));
+				runDirs.add(runDir);
+				runSettings.add(values);
+			}
+		}
+
+		int nrofRuns = configs.size() * nrofReps;
+		System.out.println("Sweep of " + configs.size() + " configurations x " +
+				nrofReps + " repetitions: " + (nrofRuns - runDirs.size()) +
+				" runs done earlier, " + runDirs.size() + " to run");
+
+		if (runDirs.size() > 0) {
+			double[] times = new double[endTimes.size()];
+			for (int i = 0; i < times.length; i++) {
+				times[i] = endTimes.get(i);
+			}
+			new BatchExecutor(confFiles, nrofWorkers).execute(
+					runConfs.toArray(new String[0][]),
+					new int[runConfs.size()], times,
+					new BatchExecutor.RunListener() {
+						public void runDone(int slot) {
+							try {
+								collectStats(runDirs.get(slot),
+										runSettings.get(slot));
+							} catch (SimError e) {
+								runFailed(slot, e);
+							}
+						}
+						public void runFailed(int slot, SimError cause) {
+							failures.add(runDirs.get(slot).getPath() + ": " +
+									cause.getMessage());
+						}
+					});
+		}
+
+		writeResults(configs, arrays.keySet());
+		System.out.println("Sweep results written to " + output.getPath());
+		if (!failures.isEmpty()) {
+			System.err.println(failures.size() + " run(s) failed and are " +
+					"not included in the results (they are run again by " +
+					"the next sweep):");
+			for (String failure : failures) {
+				System.err.println("  " + failure);
+			}
+		}
+	}
+
+	private File getRunDir(int config, int rep) {
+		return new File(new File(dir, String.format("c%04d", config)),
+				String.format("r%02d", rep));
+	}
+
+	/**
+	 * Returns the setting values of a run: the values of the configuration
+	 * and the seeds of the repetition
+	 */
+	private Map<String, String> getRunSettings(Map<String, String> config,
+			int rep) {
+		Map<String, String> values = new LinkedHashMap<String, String>(config);
+		if (nrofReps == 1) {
+			return values;
+		}
+		Settings s = new Settings();
+		for (String seed : seedSettings) {
+			int base = s.contains(seed) ? s.getInt(seed) : 0;
+			values.put(seed, String.valueOf(base + rep));
+		}
+		return values;
+	}
+
+	private double getEndTime(Map<String, String> values) {
+		String name = SimScenario.SCENARIO_NS + "." + SimScenario.END_TIME_S;
+		if (values.containsKey(name)) {
+			return Double.parseDouble(values.get(name));
+		}
+		return new Settings(SimScenario.SCENARIO_NS).getDouble(
+				SimScenario.END_TIME_S);
+	}
+
+	/**
+	 * Parses the values of the collected reports of a finished run and
+	 * stores them, with the settings of the run, to the run's directory.
+	 */
+	private void collectStats(File runDir, Map<String, String> values) {
+		Properties stats = new Properties();
+		for (Map.Entry<String, String> e : values.entrySet()) {
+			stats.setProperty(SETTING_PREFIX + e.getKey(), e.getValue());
+		}
+
+		File[] files = runDir.listFiles();
+		for (String report : reports) {
+			String suffix = "_" + report + Report.OUT_SUFFIX;
+			for (File f : files == null ? new File[0] : files) {
+				if (!f.getName().endsWith(suffix)) {
+					continue;
+				}
+				try {
+					BufferedReader in = new BufferedReader(new FileReader(f));
+					try {
+						for (Map.Entry<String, Double> e :
+								parseStats(in, report).entrySet()) {
+							stats.setProperty(STAT_PREFIX + e.getKey(),
+									String.valueOf(e.getValue()));
+						}
+					} finally {
+						in.close();
+					}
+				} catch (IOException e) {
+					throw new SimError("Can't read report " + f + ": " +
+							e.getMessage(), e);
+				}
+			}
+		}
+
+		runDir.mkdirs();
+		try {
+			OutputStream out = new FileOutputStream(new File(runDir,
+					STATS_FILE));
+			try {
+				stats.store(out, "Values of " + runDir.getPath());
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't write values of " + runDir + ": " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the stored values of a run
+	 * @return Map of value names to values, or null if the run has no stored
+	 * values or they were created with different settings
+	 */
+	private Map<String, Double> readStats(File runDir,
+			Map<String, String> values) {
+		File file = new File(runDir, STATS_FILE);
+		if (!file.exists()) {
+			return null;
+		}
+		Properties stats = new Properties();
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				stats.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null; // run it again
+		}
+
+		Map<String, Double> result = new TreeMap<String, Double>();
+		int nrofSettings = 0;
+		for (String name : stats.stringPropertyNames()) {
+			String value = stats.getProperty(name);
+			if (name.startsWith(SETTING_PREFIX)) {
+				String setting = name.substring(SETTING_PREFIX.length());
+				if (!value.equals(values.get(setting))) {
+					return null; // configuration has changed
+				}
+				nrofSettings++;
+			}
+			else if (name.startsWith(STAT_PREFIX)) {
+				result.put(name.substring(STAT_PREFIX.length()),
+						Double.parseDouble(value));
+			}
+		}
+		return nrofSettings == values.size() ? result : null;
+	}
+
+	/**
+	 * Parses the numeric values of a report
+	 * @param in Reader of the report
+	 * @param prefix Prefix for the value names (e.g., report's name)
+	 * @return Map of value names to values, in the order of the report
+	 * @throws IOException if reading fails
+	 */
+	public static Map<String, Double> parseStats(BufferedReader in,
+			String prefix) throws IOException {
+		Map<String, Double> stats = new LinkedHashMap<String, Double>();
+		String line;
+		int lineNro = 0;
+
+		while ((line = in.readLine()) != null) {
+			lineNro++;
+			line = line.trim();
+			int sep = -1;
+			for (int i = 0; i < line.length() && sep < 0; i++) {
+				char c = line.charAt(i);
+				if (c == ':' || c == '=') {
+					sep = i;
+				}
+			}
+			String name;
+			String values;
+			if (sep >= 0) {
+				name = line.substring(0, sep).trim();
+				values = line.substring(sep + 1);
+			}
+			else {
+				sep = line.indexOf(',');
+				name = sep < 0 ? line : line.substring(0, sep).trim();
+				values = sep < 0 ? "" : line.substring(sep + 1);
+				if (parseDoubles(name) != null) { // only numbers on the line
+					name = "line" + lineNro;
+					values = line;
+				}
+			}
+
+			double[] v = parseDoubles(values);
+			if (name.length() == 0 || v == null) {
+				continue;
+			}
+			name = prefix + "." + name.replaceAll("\\s+", "_");
+			if (v.length == 1) {
+				stats.put(name, v[0]);
+			}
+			else {
+				for (int i = 0; i < v.length; i++) {
+					stats.put(name + "_" + (i + 1), v[i]);
+				}
+			}
+		}
+		return stats;
+	}
+
+	private static double[] parseDoubles(String csv) {
+		if (csv.trim().length() == 0) {
+			return null;
+		}
+		String[] parts = csv.split(",");
+		double[] values = new double[parts.length];
+		try {
+			for (int i = 0; i < parts.length; i++) {
+				values[i] = Double.parseDouble(parts[i].trim());
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the mean of the values and the half width of its 95%
+	 * confidence interval (using Student's t distribution). NaN values are
+	 * ignored.
+	 * @param values The values
+	 * @return Array of the mean and the half width. The half width is NaN
+	 * if there are less than two values.
+	 */
+	public static double[] meanAndInterval(List<Double> values) {
+		double sum = 0;
+		int n = 0;
+		for (double v : values) {
+			if (!Double.isNaN(v)) {
+				sum += v;
+				n++;
+			}
+		}
+		if (n == 0) {
+			return new double[] {Double.NaN, Double.NaN};
+		}
+		double mean = sum / n;
+		if (n == 1) {
+			return new double[] {mean, Double.NaN};
+		}
+
+		double squares = 0;
+		for (double v : values) {
+			if (!Double.isNaN(v)) {
+				squares += (v - mean) * (v - mean);
+			}
+		}
+		double stdDev = Math.sqrt(squares / (n - 1));
+		double t = n - 1 <= T_95.length ? T_95[n - 2] : Z_95;
+		return new double[] {mean, t * stdDev / Math.sqrt(n)};
+	}
+
+	/**
+	 * Quotes a value for CSV output if it contains commas or quotes
+	 */
+	private static String csvValue(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	/**
+	 * Writes the mean and confidence interval of every value of every
+	 * configuration to the results file
+	 */
+	private void writeResults(List<Map<String, String>> configs,
+			Set<String> swept) {
+		List<Map<String, List<Double>>> results =
+			new ArrayList<Map<String, List<Double>>>();
+		Set<String> names = new TreeSet<String>();
+
+		for (int c = 0; c < configs.size(); c++) {
+			Map<String, List<Double>> values =
+				new TreeMap<String, List<Double>>();
+			for (int r = 0; r < nrofReps; r++) {
+				Map<String, Double> stats = readStats(getRunDir(c, r),
+						getRunSettings(configs.get(c), r));
+				if (stats == null) {
+					continue; // failed run
+				}
+				for (Map.Entry<String, Double> e : stats.entrySet()) {
+					List<Double> list = values.get(e.getKey());
+					if (list == null) {
+						list = new ArrayList<Double>();
+						values.put(e.getKey(), list);
+					}
+					list.add(e.getValue());
+				}
+			}
+			names.addAll(values.keySet());
+			results.add(values);
+		}
+
+		try {
+			PrintWriter out = new PrintWriter(new FileWriter(output));
+			StringBuilder header = new StringBuilder("config");
+			for (String s : swept) {
+				header.append(",").append(csvValue(s));
+			}
+			for (String name : names) {
+				header.append(",").append(name).append("_mean,")
+					.append(name).append("_ci95");
+			}
+			out.println(header);
+
+			for (int c = 0; c < configs.size(); c++) {
+				StringBuilder row = new StringBuilder(String.valueOf(c));
+				for (String s : swept) {
+					row.append(",").append(csvValue(configs.get(c).get(s)));
+				}
+				for (String name : names) {
+					List<Double> values = results.get(c).get(name);
+					if (values == null) {
+						row.append(",,");
+						continue;
+					}
+					double[] mi = meanAndInterval(values);
+					row.append(",").append(mi[0]).append(",").append(mi[1]);
+				}
+				out.println(row);
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Can't write sweep results to " + output +
+					": " + e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Locations of the hosts of a simulation in two <CODE>double</CODE> arrays
+ * indexed by the host address. The hosts keep their location here in sync
+ * with their {@link DTNHost#getLocation()} coordinates, so the hot loops
+ * (e.g., range checks) can read the locations without chasing a
+ * {@link Coord} reference per host. Range checks compare squared distances
+ * and don't need a square root.
+ * <P>
+ * A store is owned by a {@link SimulationContext}. The arrays grow only when
+ * new hosts are created, so a host may write its own location concurrently
+ * with the other hosts (e.g., in a parallel movement phase).</P>
+ */
+public class PositionStore {
+	/** Initial number of hosts the store has room for */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private double[] x;
+	private double[] y;
+
+	/**
+	 * Creates a new, empty, store
+	 */
+	public PositionStore() {
+		this.x = new double[INITIAL_CAPACITY];
+		this.y = new double[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Makes room for a host address. Called when a host is created.
+	 * @param address The address of the host
+	 */
+	synchronized void ensureCapacity(int address) {
+		if (address >= x.length) {
+			int capacity = Math.max(address + 1, x.length * 2);
+			this.x = Arrays.copyOf(x, capacity);
+			this.y = Arrays.copyOf(y, capacity);
+		}
+	}
+
+	/**
+	 * Sets the location of a host
+	 * @param address Address of the host
+	 * @param px The X coordinate
+	 * @param py The Y coordinate
+	 */
+	public void set(int address, double px, double py) {
+		x[address] = px;
+		y[address] = py;
+	}
+
+	/**
+	 * Returns the X coordinate of a host
+	 * @param address Address of the host
+	 * @return The X coordinate
+	 */
+	public double getX(int address) {
+		return x[address];
+	}
+
+	/**
+	 * Returns the Y coordinate of a host
+	 * @param address Address of the host
+	 * @return The Y coordinate
+	 */
+	public double getY(int address) {
+		return y[address];
+	}
+
+	/**
+	 * Returns the squared distance of two hosts
+	 * @param a Address of the first host
+	 * @param b Address of the second host
+	 * @return The squared distance
+	 */
+	public double distanceSquared(int a, int b) {
+		double dx = x[a] - x[b];
+		double dy = y[a] - y[b];
+		return dx*dx + dy*dy;
+	}
+
+	/**
+	 * Returns true if two hosts are within the given range from each other
+	 * @param a Address of the first host
+	 * @param b Address of the second host
+	 * @param range The range
+	 * @return true if the distance of the hosts is at most the range
+	 */
+	public boolean isWithinRange(int a, int b, double range) {
+		return distanceSquared(a, b) <= range * range;
+	}
+}
@@ -12,11 +12,12 @@ import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.Stack;
+import java.util.TreeMap;
 
 /**
  * Interface for simulation settings stored in setting file(s). Settings class
@@ -33,13 +34,13 @@ import java.util.Stack;
  * {@link #setRunIndex(int)}). In file paths directory separator should always
  * be forward slash ("/").
  * </P>
+ * <P>
+ * The settings are kept in the current {@link SimulationContext}, so
+ * concurrent simulations can each have settings of their own.
+ * </P>
  */
 public class Settings {
 
-    /**
-     * properties object where the setting files are read into
-     */
-    protected static Properties props;
     /**
      * file name of the default settings file ({@value})
      */
@@ -59,16 +60,6 @@ public class Settings {
      */
     public static final String FILL_DELIMITER = "%%";
 
-    /**
-     * Stream where all read settings are written to
-     */
-    private static PrintStream out = null;
-    private static Set<String> writtenSettings = new HashSet<String>();
-
-    /**
-     * run index for run-specific settings
-     */
-    private static int runIndex = 0;
     private String namespace = null; // namespace to look the settings from
     private String secondaryNamespace = null;
     private Stack<String> oldNamespaces;
@@ -110,8 +101,18 @@ public class Settings {
      * disable run indexing
      */
     public static void setRunIndex(int index) {
-        runIndex = index;
-        writtenSettings.clear();
+        SimulationContext.current().setRunIndex(index);
+        SimulationContext.current().getWrittenSettings().clear();
+    }
+
+    /**
+     * Returns the run index of the current simulation context
+     *
+     * @return The run index
+     * @see #setRunIndex(int)
+     */
+    public static int getRunIndex() {
+        return SimulationContext.current().getRunIndex();
     }
 
     /**
@@ -161,7 +162,8 @@ public class Settings {
             return null;
         }
 
-        if (props.getProperty(getFullPropertyName(setting, false)) != null) {
+        if (getProperties().getProperty(
+                getFullPropertyName(setting, false)) != null) {
             return getFullPropertyName(setting, false);
         } // not found from primary, but Settings contains -> must be from 2ndary
         else {
@@ -224,6 +226,7 @@ public class Settings {
      */
     public static void init(String propFile) throws SettingsError {
         String outFile;
+        Properties props;
         try {
             if (new File(DEF_SETTINGS_FILE).exists()) {
                 Properties defProperties = new Properties();
@@ -238,14 +241,16 @@ public class Settings {
         } catch (IOException e) {
             throw new SettingsError(e);
         }
+        setProperties(props);
 
         outFile = props.getProperty(SETTING_OUTPUT_S);
         if (outFile != null) {
             if (outFile.trim().length() == 0) {
-                out = System.out;
+                SimulationContext.current().setSettingsOutput(System.out);
             } else {
                 try {
-                    out = new PrintStream(new File(outFile));
+                    SimulationContext.current().setSettingsOutput(
+                            new PrintStream(new File(outFile)));
                 } catch (FileNotFoundException e) {
                     throw new SettingsError("Can't open Settings output file:"
                             + e);
@@ -254,6 +259,25 @@ public class Settings {
         }
     }
 
+    /**
+     * Returns the properties object where the setting files of the current
+     * simulation context are read into
+     *
+     * @return The properties or null if the settings haven't been initialized
+     */
+    protected static Properties getProperties() {
+        return SimulationContext.current().getSettings();
+    }
+
+    /**
+     * Replaces the settings of the current simulation context
+     *
+     * @param props The new settings
+     */
+    protected static void setProperties(Properties props) {
+        SimulationContext.current().setSettings(props);
+    }
+
     /**
      * Reads another settings file and adds the key-value pairs to the current
      * settings overriding any values that already existed with the same keys.
@@ -264,7 +288,7 @@ public class Settings {
      */
     public static void addSettings(String propFile) throws SettingsError {
         try {
-            props.load(new FileInputStream(propFile));
+            getProperties().load(new FileInputStream(propFile));
         } catch (IOException e) {
             throw new SettingsError(e);
         }
@@ -276,9 +300,12 @@ public class Settings {
      * @param setting The string to write
      */
     private static void outputSetting(String setting) {
+        SimulationContext context = SimulationContext.current();
+        PrintStream out = context.getSettingsOutput();
+        Set<String> writtenSettings = context.getWrittenSettings();
         if (out != null && !writtenSettings.contains(setting)) {
             if (writtenSettings.size() == 0) {
-                out.println("# Settings for run " + (runIndex + 1));
+                out.println("# Settings for run " + (getRunIndex() + 1));
             }
             out.println(setting);
             writtenSettings.add(setting);
@@ -336,9 +363,10 @@ public class Settings {
      */
     public String getSetting(String name) {
         String fullPropName;
-        if (props == null) {
+        if (getProperties() == null) {
             init(null);
         }
+        Properties props = getProperties();
         fullPropName = getFullPropertyName(name, false);
         String value = props.getProperty(fullPropName);
 
@@ -373,6 +401,25 @@ public class Settings {
      * @return The runIndex % arrayLength'th value of the run array
      */
     private static String parseRunSetting(String value) {
+        int runIndex = getRunIndex();
+        String[] valueArr = splitRunArray(value);
+
+        if (valueArr == null || runIndex < 0) {
+            return value; // standard format setting -> return
+        }
+
+        int arrIndex = runIndex % valueArr.length;
+        return valueArr[arrIndex].trim();
+    }
+
+    /**
+     * Splits a run array value to its values
+     *
+     * @param value The (trimmed) value of a setting
+     * @return The values of the run array or null if the value is not a run
+     * array
+     */
+    private static String[] splitRunArray(String value) {
         final String RUN_ARRAY_START = "[";
         final String RUN_ARRAY_END = "]";
         final String RUN_ARRAY_DELIM = ";";
@@ -380,17 +427,39 @@ public class Settings {
 
         if (!value.startsWith(RUN_ARRAY_START)
                 || !value.endsWith(RUN_ARRAY_END)
-                || runIndex < 0
                 || value.length() < MIN_LENGTH) {
-            return value; // standard format setting -> return
+            return null;
         }
 
         value = value.substring(1, value.length() - 1); // remove brackets
         String[] valueArr = value.split(RUN_ARRAY_DELIM);
-        int arrIndex = runIndex % valueArr.length;
-        value = valueArr[arrIndex].trim();
+        for (int i = 0; i < valueArr.length; i++) {
+            valueArr[i] = valueArr[i].trim();
+        }
+        return valueArr;
+    }
 
-        return value;
+    /**
+     * Returns all the settings that have a run array value (see
+     * {@link #setRunIndex(int)}), including the ones from the default
+     * settings file.
+     *
+     * @return Map of full setting names to the values of their run arrays,
+     * sorted by the setting name
+     */
+    public static Map<String, String[]> getRunArrays() {
+        if (getProperties() == null) {
+            init(null);
+        }
+        Properties props = getProperties();
+        Map<String, String[]> arrays = new TreeMap<String, String[]>();
+        for (String name : props.stringPropertyNames()) {
+            String[] values = splitRunArray(props.getProperty(name).trim());
+            if (values != null) {
+                arrays.put(name, values);
+            }
+        }
+        return arrays;
     }
 
     /**
@@ -783,7 +852,7 @@ public class Settings {
      * @return a String representation of the stored settings
      */
     public String toString() {
-        return props.toString();
+        return String.valueOf(getProperties());
     }
 
 }
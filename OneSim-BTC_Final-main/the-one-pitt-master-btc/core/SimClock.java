@@ -6,17 +6,17 @@ package core;
 
 
 /**
- * Wall clock for checking the simulation time.
+ * Wall clock for checking the simulation time. Every 
+ * {@link SimulationContext} has a clock of its own and the static methods
+ * use the clock of the current context.
  */
 public class SimClock {
-	private static double clockTime = 0.0;
-	private static SimClock clock = null;
+	private double clockTime = 0.0;
 	
-	private SimClock() {}
+	SimClock() {}
 	
 	static {
 		DTNSim.registerForReset(SimClock.class.getCanonicalName());
-		reset();
 	}
 	
 	/**
@@ -24,10 +24,7 @@ public class SimClock {
 	 * @return The instance of this clock
 	 */
 	public static SimClock getInstance() {
-		if (clock == null) {
-			clock = new SimClock();
-		}
-		return clock;
+		return SimulationContext.current().getClock();
 	}
 	
 	/**
@@ -35,7 +32,7 @@ public class SimClock {
 	 * @return Time as a double
 	 */
 	public static double getTime() {
-		return clockTime;
+		return getInstance().clockTime;
 	}
 	
 	/**
@@ -43,7 +40,7 @@ public class SimClock {
 	 * @return Time as integer
 	 */
 	public static int getIntTime() {
-		return (int)Math.round(clockTime);
+		return (int)Math.round(getTime());
 	}
 	
 	/**
@@ -71,9 +68,9 @@ public class SimClock {
 	}
 	
 	/**
-	 * Resets the static fields of the class
+	 * Resets the clock of the current context
 	 */
 	public static void reset() {
-		clockTime = 0;
+		getInstance().clockTime = 0;
 	}
 }
@@ -31,7 +31,6 @@ public class SimScenario implements Serializable {
     /**
      * a way to get a hold of this...
      */
-    private static SimScenario myinstance = null;
 
     /**
      * namespace of scenario settings ({@value})
@@ -241,7 +240,7 @@ public class SimScenario implements Serializable {
     }
 
     public static void reset() {
-        myinstance = null;
+        SimulationContext.current().setScenario(null);
     }
 
     /**
@@ -288,32 +287,35 @@ public class SimScenario implements Serializable {
     }
 
     /**
-     * Returns the SimScenario instance and creates one if it doesn't exist yet
+     * Returns the SimScenario instance of the current simulation context and
+     * creates one if it doesn't exist yet
      */
     public static SimScenario getInstance() {
-        if (myinstance == null) {
-            myinstance = new SimScenario();
+        SimulationContext context = SimulationContext.current();
+        if (context.getScenario() == null) {
+            context.setScenario(new SimScenario());
         }
-        return myinstance;
+        return context.getScenario();
     }
 
     /**
      * Intialize DT, IT, and Sus between verificator and every host
      */
     public void initQLearn() {
+        Map<DTNHost, Map<DTNHost, Double>> directTrust = QLearn.getDirectTrust();
         for (DTNHost v : verificator) {
             for (DTNHost m : hosts) {
                 if (m.toString().startsWith("Mis") || m.toString().startsWith("Mes")) {
                     Map<DTNHost, Double> initDT = new HashMap<DTNHost, Double>();
                     initDT.put(m, 0.0);
-                    if (!QLearn.directTrust.containsKey(v)) {
-                        QLearn.directTrust.put(v, initDT);
+                    if (!directTrust.containsKey(v)) {
+                        directTrust.put(v, initDT);
                     } else {
-                        QLearn.directTrust.get(v).put(m, 0.0);
+                        directTrust.get(v).put(m, 0.0);
                     }
-                    QLearn.indirectTrust.put(m, new ArrayList());
-                    QLearn.suspension.put(m, 0.0);
-                    QLearn.updateCounter.put(m, 0);
+                    QLearn.getIndirectTrust().put(m, new ArrayList());
+                    QLearn.getSuspension().put(m, 0.0);
+                    QLearn.getUpdateCounter().put(m, 0);
                 }
             }
         }
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import btc.Incentive;
+import btc.Ledger;
+import interfaces.ConnectivityOptimizer;
+import rLearn.QLearn;
+
+/**
+ * Owns the mutable state of one simulation: the settings, the clock, the
+ * scenario, the ledger, the incentive state, the trust tables, the address
+ * and ID counters, the host positions and the shared random number
+ * generators. The static accessors of those classes (e.g.,
+ * {@link Settings}, {@link SimClock#getTime()},
+ * {@link SimScenario#getInstance()} and {@link btc.BlockChain}) delegate to
+ * the context that is bound to the
+ * calling thread, or to a process wide default context if no context is
+ * bound. Hence several simulations can be run concurrently in one JVM by
+ * running each of them in a thread of its own with a context of its own.
+ * <P>
+ * Classes that are not listed here (e.g., the control systems of some
+ * movement models and the oracle routers) still keep process wide static
+ * state and can't be used by concurrent simulations.</P>
+ */
+public class SimulationContext {
+	private static final ThreadLocal<SimulationContext> bound =
+		new ThreadLocal<SimulationContext>();
+	/** Context of threads that have no context of their own */
+	private static final SimulationContext DEFAULT = new SimulationContext();
+
+	private Properties settings;
+	private PrintStream settingsOut;
+	private Set<String> writtenSettings = new HashSet<String>();
+
+	private SimClock clock;
+	private SimScenario scenario;
+	private int runIndex;
+
+	private int nextHostAddress;
+	private int nextMessageId;
+	private HashMap<String, Integer> internedMessageIds =
+		new HashMap<String, Integer>();
+	private int nextNetAddress;
+	private Random netRng;
+	private Random movementRng;
+	private HashMap<Integer, ConnectivityOptimizer> grids;
+	private PositionStore positions;
+
+	private Ledger ledger;
+	private Incentive incentive;
+	private QLearn qlearn;
+
+	/**
+	 * Creates a new, empty, simulation context. The new context starts with
+	 * the settings of the current context; {@link Settings#init(String)}
+	 * replaces the settings of the context it is called in only.
+	 */
+	public SimulationContext() {
+		SimulationContext parent = bound.get();
+		if (parent == null) {
+			parent = DEFAULT; // null while the default context is created
+		}
+		if (parent != null) {
+			this.settings = parent.settings;
+			this.settingsOut = parent.settingsOut;
+		}
+		this.clock = new SimClock();
+		this.netRng = new Random(0);
+		this.grids = new HashMap<Integer, ConnectivityOptimizer>();
+		this.positions = new PositionStore();
+	}
+
+	/**
+	 * Returns the context bound to the calling thread or the default context
+	 * if the thread has no context of its own.
+	 * @return The current context
+	 */
+	public static SimulationContext current() {
+		SimulationContext c = bound.get();
+		return c != null ? c : DEFAULT;
+	}
+
+	/**
+	 * Binds a context to the calling thread
+	 * @param context The context to bind or null to use the default context
+	 * @return The context that was bound before (null if none)
+	 */
+	public static SimulationContext bind(SimulationContext context) {
+		SimulationContext old = bound.get();
+		if (context == null) {
+			bound.remove();
+		}
+		else {
+			bound.set(context);
+		}
+		return old;
+	}
+
+	/**
+	 * Runs a task with this context bound to the calling thread and restores
+	 * the previous binding afterwards.
+	 * @param task The task to run
+	 */
+	public void run(Runnable task) {
+		SimulationContext old = bind(this);
+		try {
+			task.run();
+		} finally {
+			bind(old);
+		}
+	}
+
+	/**
+	 * Returns the settings of this context
+	 * @return the settings or null if they haven't been initialized
+	 */
+	Properties getSettings() {
+		return this.settings;
+	}
+
+	void setSettings(Properties settings) {
+		this.settings = settings;
+	}
+
+	/**
+	 * Returns the stream where the read settings are written to
+	 * @return the stream or null if the settings are not written anywhere
+	 */
+	PrintStream getSettingsOutput() {
+		return this.settingsOut;
+	}
+
+	void setSettingsOutput(PrintStream out) {
+		this.settingsOut = out;
+	}
+
+	/**
+	 * Returns the settings already written to the settings output during
+	 * the current run
+	 */
+	Set<String> getWrittenSettings() {
+		return this.writtenSettings;
+	}
+
+	/**
+	 * Returns the clock of this context
+	 * @return the clock of this context
+	 */
+	public SimClock getClock() {
+		return this.clock;
+	}
+
+	/**
+	 * Returns the scenario of this context, or null if it hasn't been
+	 * created yet
+	 * @return the scenario of this context
+	 */
+	public SimScenario getScenario() {
+		return this.scenario;
+	}
+
+	/**
+	 * Sets the scenario of this context
+	 * @param scenario The scenario (or null to clear it)
+	 */
+	void setScenario(SimScenario scenario) {
+		this.scenario = scenario;
+	}
+
+	/**
+	 * Returns the run index used for run-array settings
+	 * @return the run index
+	 * @see Settings#setRunIndex(int)
+	 */
+	public int getRunIndex() {
+		return this.runIndex;
+	}
+
+	void setRunIndex(int runIndex) {
+		this.runIndex = runIndex;
+	}
+
+	/**
+	 * Returns the ledger of this context (created on first call)
+	 * @return the ledger of this context
+	 */
+	public synchronized Ledger getLedger() {
+		if (this.ledger == null) {
+			this.ledger = new Ledger();
+		}
+		return this.ledger;
+	}
+
+	/**
+	 * Returns the incentive state of this context (created on first call)
+	 * @return the incentive state of this context
+	 */
+	public synchronized Incentive getIncentive() {
+		if (this.incentive == null) {
+			this.incentive = new Incentive();
+		}
+		return this.incentive;
+	}
+
+	/**
+	 * Returns the trust tables of this context (created on first call)
+	 * @return the trust tables of this context
+	 */
+	public synchronized QLearn getQLearn() {
+		if (this.qlearn == null) {
+			this.qlearn = new QLearn();
+		}
+		return this.qlearn;
+	}
+
+	/**
+	 * Returns a new host address and increments the address for subsequent
+	 * calls
+	 */
+	synchronized int nextHostAddress() {
+		return nextHostAddress++;
+	}
+
+	void resetHostAddresses() {
+		this.nextHostAddress = 0;
+	}
+
+	/**
+	 * Returns a new unique message ID and increments the ID for subsequent
+	 * calls
+	 */
+	synchronized int nextMessageId() {
+		return nextMessageId++;
+	}
+
+	void resetMessageIds() {
+		this.nextMessageId = 0;
+		this.internedMessageIds.clear();
+	}
+
+	/**
+	 * Returns the interned integer form of a message ID. The first ID gets
+	 * zero, the next new ID one and so on.
+	 * @param id The message ID
+	 * @return The interned ID
+	 */
+	synchronized int internMessageId(String id) {
+		Integer interned = internedMessageIds.get(id);
+		if (interned == null) {
+			interned = internedMessageIds.size();
+			internedMessageIds.put(id, interned);
+		}
+		return interned;
+	}
+
+	/**
+	 * Returns a new network interface address and increments the address for
+	 * subsequent calls
+	 */
+	synchronized int nextNetAddress() {
+		return nextNetAddress++;
+	}
+
+	void resetNetAddresses(Random rng) {
+		this.nextNetAddress = 0;
+		this.netRng = rng;
+	}
+
+	/**
+	 * Returns the random number generator shared by network interfaces
+	 * @return the random number generator shared by network interfaces
+	 */
+	public Random getNetRng() {
+		return this.netRng;
+	}
+
+	/**
+	 * Returns the random number generator shared by movement models
+	 * @return the random number generator shared by movement models
+	 */
+	public Random getMovementRng() {
+		return this.movementRng;
+	}
+
+	/**
+	 * Sets the random number generator shared by movement models
+	 * @param rng The random number generator
+	 */
+	public void setMovementRng(Random rng) {
+		this.movementRng = rng;
+	}
+
+	/**
+	 * Returns the host positions of this context
+	 * @return the host positions of this context
+	 */
+	public PositionStore getPositions() {
+		return this.positions;
+	}
+
+	/**
+	 * Returns the connectivity optimizers of this context, keyed by interface
+	 * type
+	 * @return the connectivity optimizers of this context
+	 */
+	public HashMap<Integer, ConnectivityOptimizer> getConnectivityGrids() {
+		return this.grids;
+	}
+
+	/**
+	 * Removes all connectivity optimizers of this context
+	 */
+	public void resetConnectivityGrids() {
+		this.grids = new HashMap<Integer, ConnectivityOptimizer>();
+	}
+}
@@ -6,13 +6,18 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.MergedEventQueue;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityGrid;
+import interfaces.KineticConnectivity;
+import interfaces.ParallelConnectivity;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import rLearn.QLearn;
 
 /**
@@ -30,7 +35,8 @@ public class World {
      * Single ConnectivityCell's size is the biggest radio range times this.
      * Larger values save memory and decrease startup time but may result in
      * slower simulation. Default value is {@link #DEF_CON_CELL_SIZE_MULT}.
-     * Smallest accepted value is 2.
+     * Smallest accepted value is 2. The kinetic connectivity engine uses
+     * the same multiplier for the cells of its candidate grid.
      *
      * @see ConnectivityGrid
      */
@@ -41,6 +47,145 @@ public class World {
      * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
      */
     public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+    /**
+     * Should only the hosts that an external event touched be updated after
+     * the event -setting id ({@value}). Boolean (true/false) variable. If
+     * true, the hosts an event looks up with {@link #getNodeByAddress(int)}
+     * (e.g., the hosts of a connection or message creation event) and the
+     * hosts that are not quiescent (see {@link DTNHost#isQuiescent()}, e.g.,
+     * hosts with connections or awake routers) are updated after the event,
+     * in the same order as in the full update. The other hosts' updates
+     * wouldn't do anything, so the results are the same as with the full
+     * update; the suspensions of all hosts are aged as usual. Events that
+     * touch no hosts (e.g. scheduled update requests) and the interval
+     * updates still update all hosts. This makes dense event traces of
+     * event driven routers (see {@link #EVENT_DRIVEN_ROUTERS_S}) much
+     * faster to run. Default is {@link #DEF_TARGETED_UPDATES}.
+     */
+    public static final String TARGETED_UPDATES_S = "targetedUpdates";
+    /**
+     * Fast-forward through idle periods -setting id ({@value}). Boolean
+     * (true/false) variable. If true, the world skips the update intervals
+     * during which nothing can happen: every host is waiting at a waypoint
+     * (or is inactive), no connection is transferring, no router needs an
+     * update and there are no external events, message expirations or
+     * suspension ends. The clock then jumps (in whole update intervals) to
+     * just before the earliest of those times. Routers that are not event
+     * driven (see {@link #EVENT_DRIVEN_ROUTERS_S}) and routers with
+     * applications always need an update, and update listeners (e.g.,
+     * reports that sample every interval) must see every update, so nothing
+     * is skipped while there are any of them and the results don't depend on
+     * this setting. Default is {@link #DEF_FAST_FORWARD}.
+     */
+    public static final String FAST_FORWARD_S = "fastForward";
+    /**
+     * Compute the contacts of simple broadcast interfaces kinetically
+     * -setting id ({@value}). Boolean (true/false) variable. If true, the
+     * connections of {@link interfaces.SimpleBroadcastInterface}s (that have
+     * no scan interval) are created and destroyed at the exact times the
+     * hosts' linear trajectories enter and leave the transmit range, and the
+     * interfaces don't poll their neighbors on every update. Default is
+     * {@link #DEF_KINETIC_CONNECTIVITY}.
+     *
+     * @see KineticConnectivity
+     */
+    public static final String KINETIC_CONNECTIVITY_S = "kineticConnectivity";
+    /**
+     * Detect the connectivity changes of simple broadcast interfaces in
+     * parallel -setting id ({@value}). Boolean (true/false) variable. If
+     * true, the pairs of {@link interfaces.SimpleBroadcastInterface}s that
+     * enter or leave range are searched by several threads before the hosts
+     * are updated, and each host applies its changes just before its own
+     * update, in a deterministic order. Interfaces that are handled by
+     * {@link #KINETIC_CONNECTIVITY_S} are not affected. Default is
+     * {@link #DEF_PARALLEL_CONNECTIVITY}.
+     *
+     * @see ParallelConnectivity
+     */
+    public static final String PARALLEL_CONNECTIVITY_S =
+            "parallelConnectivity";
+    /**
+     * Number of threads for the parallel connectivity detection -setting id
+     * ({@value}). Integer. Default is the number of available processors.
+     */
+    public static final String CONNECTIVITY_THREADS_S = "connectivityThreads";
+    /**
+     * Move the hosts in parallel -setting id ({@value}). Boolean
+     * (true/false) variable. If true, the hosts whose movement models are
+     * thread safe (see {@link movement.MovementModel#isThreadSafe()}) are
+     * moved by several threads, in fixed chunks, and the movement models get
+     * per host random number streams (see
+     * {@link movement.MovementModel#HOST_RNG_STREAMS}) so the results don't
+     * depend on the number of threads. The other hosts are moved serially
+     * after them. Default is {@link #DEF_PARALLEL_MOVEMENT}.
+     */
+    public static final String PARALLEL_MOVEMENT_S = "parallelMovement";
+    /**
+     * Number of threads for the parallel movement -setting id ({@value}).
+     * Integer. Default is the number of available processors.
+     */
+    public static final String MOVEMENT_THREADS_S = "movementThreads";
+    /**
+     * Use the flat array based connectivity grid -setting id ({@value}).
+     * Boolean (true/false) variable. If true, the interfaces are kept in a
+     * {@link interfaces.FlatConnectivityGrid}, whose neighbor queries don't
+     * allocate memory, instead of a {@link ConnectivityGrid}. Default is
+     * {@link #DEF_FLAT_CONNECTIVITY_GRID}.
+     */
+    public static final String FLAT_CONNECTIVITY_GRID_S =
+            "flatConnectivityGrid";
+    /**
+     * Update routers only when they have something to do -setting id
+     * ({@value}). Boolean (true/false) variable. If true, the routers that
+     * support it (see {@link routing.ActiveRouter#canSleep()}) are updated
+     * only when a connection goes up or down, a message is created or
+     * received, a transfer they are sending is due to complete, or their
+     * next TTL check is due; otherwise they are skipped. Default is
+     * {@link #DEF_EVENT_DRIVEN_ROUTERS}.
+     */
+    public static final String EVENT_DRIVEN_ROUTERS_S = "eventDrivenRouters";
+    /**
+     * Skip the updates of quiescent hosts -setting id ({@value}). Boolean
+     * (true/false) variable. If true, the hosts are updated in the normal
+     * order, but a host that is quiescent (see {@link DTNHost#isQuiescent()})
+     * when its turn comes is skipped. A host that another host has woken up
+     * (e.g., connected to) earlier in the round is still updated, so the
+     * results are the same as without skipping. Best used with
+     * {@link #EVENT_DRIVEN_ROUTERS_S}. Default is
+     * {@link #DEF_SKIP_QUIESCENT_HOSTS}.
+     */
+    public static final String SKIP_QUIESCENT_HOSTS_S = "skipQuiescentHosts";
+    /**
+     * Keep the routers' send queues in order -setting id ({@value}). Boolean
+     * (true/false) variable. If true, the routers keep their messages in a
+     * {@link routing.SendQueue} that is ordered by the send queue mode as
+     * the messages are added and removed, instead of sorting (or shuffling)
+     * all the messages every time they try to send something. In the random
+     * queue mode, every message gets a random but fixed place in the queue.
+     * Default is {@link #DEF_PERSISTENT_SEND_QUEUES}.
+     */
+    public static final String PERSISTENT_SEND_QUEUES_S =
+            "persistentSendQueues";
+    /**
+     * Message ID store type -setting id ({@value}). Integer. How the routers
+     * remember the IDs of the messages they have received as the final
+     * recipient and the IDs of their tombstones (see
+     * {@link routing.MessageIdStore}). Valid values are<BR>
+     * <LI/> 0 : the IDs and the delivered messages are kept exactly
+     * <LI/> 1 : only 64-bit hashes of the IDs are kept
+     * <LI/> 2 : the IDs are kept in a scalable Bloom filter whose false
+     * positive rate is set with {@link #ID_STORE_FP_RATE_S}
+     * <BR>The compact types don't keep the delivered messages, so the
+     * routing info of a router doesn't list them. Default is
+     * {@link #DEF_ID_STORE_TYPE}.
+     */
+    public static final String ID_STORE_TYPE_S = "messageIdStore";
+    /**
+     * False positive rate of the Bloom filter message ID stores -setting id
+     * ({@value}). Double in range (0, 1). Default is
+     * {@link #DEF_ID_STORE_FP_RATE}.
+     */
+    public static final String ID_STORE_FP_RATE_S = "messageIdStoreFpRate";
     /**
      * default value for cell size multiplier ({@value})
      */
@@ -50,14 +195,76 @@ public class World {
      * ({@value})
      */
     public static final boolean DEF_RANDOMIZE_UPDATES = true;
+    /**
+     * should only the touched hosts be updated after external events
+     * -setting's default value ({@value})
+     */
+    public static final boolean DEF_TARGETED_UPDATES = false;
+    /**
+     * should idle periods be fast-forwarded -setting's default value
+     * ({@value})
+     */
+    public static final boolean DEF_FAST_FORWARD = false;
+    /**
+     * should contacts be computed kinetically -setting's default value
+     * ({@value})
+     */
+    public static final boolean DEF_KINETIC_CONNECTIVITY = false;
+    /**
+     * should the flat connectivity grid be used -setting's default value
+     * ({@value})
+     */
+    public static final boolean DEF_FLAT_CONNECTIVITY_GRID = false;
+    /**
+     * should connectivity changes be detected in parallel -setting's
+     * default value ({@value})
+     */
+    public static final boolean DEF_PARALLEL_CONNECTIVITY = false;
+    /**
+     * should the hosts be moved in parallel -setting's default value
+     * ({@value})
+     */
+    public static final boolean DEF_PARALLEL_MOVEMENT = false;
+    /**
+     * should routers be updated only when they have something to do
+     * -setting's default value ({@value})
+     */
+    public static final boolean DEF_EVENT_DRIVEN_ROUTERS = false;
+    /**
+     * should the updates of quiescent hosts be skipped -setting's default
+     * value ({@value})
+     */
+    public static final boolean DEF_SKIP_QUIESCENT_HOSTS = false;
+    /**
+     * should the routers keep their send queues in order -setting's default
+     * value ({@value})
+     */
+    public static final boolean DEF_PERSISTENT_SEND_QUEUES = false;
+    /**
+     * message ID store type -setting's default value ({@value})
+     */
+    public static final int DEF_ID_STORE_TYPE = routing.MessageIdStore.STORE_EXACT;
+    /**
+     * Bloom filter message ID stores' false positive rate -setting's default
+     * value ({@value})
+     */
+    public static final double DEF_ID_STORE_FP_RATE = 0.001;
+    /**
+     * number of hosts one parallel movement task moves
+     */
+    private static final int MOVEMENT_CHUNK = 32;
 
     private int sizeX;
     private int sizeY;
     private List<EventQueue> eventQueues;
     private double updateInterval;
     private SimClock simClock;
+    private SimulationContext context;
     private double nextQueueEventTime;
-    private EventQueue nextEventQueue;
+    /**
+     * the scheduled updates and the event queues in one heap
+     */
+    private MergedEventQueue mergedQueues;
     /**
      * list of nodes; nodes are indexed by their network address
      */
@@ -68,6 +275,47 @@ public class World {
      * randomized; null value means that the order should not be randomized)
      */
     private ArrayList<DTNHost> updateOrder;
+    /**
+     * should only the hosts touched by an external event be updated after it
+     */
+    private boolean targetedUpdates;
+    /**
+     * hosts looked up by the external event that is being processed, or null
+     * if no event is being processed (or touched hosts are not tracked)
+     */
+    private List<DTNHost> touchedHosts;
+    /**
+     * should idle periods be skipped
+     */
+    private boolean fastForward;
+    /**
+     * end time of the simulation (used only when fast-forwarding)
+     */
+    private double endTime;
+    /**
+     * kinetic connectivity engine, or null if contacts are polled
+     */
+    private KineticConnectivity kinetic;
+    /**
+     * parallel connectivity detection, or null if hosts detect their own
+     * connectivity changes
+     */
+    private ParallelConnectivity parallel;
+    /**
+     * thread pool of the parallel movement, or null if hosts are moved
+     * serially
+     */
+    private ForkJoinPool movementPool;
+    /**
+     * hosts that are moved in parallel and hosts that are moved serially
+     * (when the parallel movement is enabled)
+     */
+    private List<DTNHost> concurrentMovers;
+    private List<DTNHost> serialMovers;
+    /**
+     * should the updates of quiescent hosts be skipped
+     */
+    private boolean skipQuiescent;
     /**
      * is cancellation of simulation requested from UI
      */
@@ -97,10 +345,12 @@ public class World {
         this.simulateConnections = simulateConnections;
         this.eventQueues = eventQueues;
 
-        this.simClock = SimClock.getInstance();
+        this.context = SimulationContext.current();
+        this.simClock = context.getClock();
         this.scheduledUpdates = new ScheduledUpdatesQueue();
         this.isCancelled = false;
 
+        this.mergedQueues = createMergedQueues();
         setNextEventQueue();
         initSettings();
     }
@@ -122,6 +372,22 @@ public class World {
             this.updateOrder = null;
         }
 
+        if (s.contains(TARGETED_UPDATES_S)) {
+            this.targetedUpdates = s.getBoolean(TARGETED_UPDATES_S);
+        } else {
+            this.targetedUpdates = DEF_TARGETED_UPDATES;
+        }
+
+        if (s.contains(FAST_FORWARD_S)) {
+            this.fastForward = s.getBoolean(FAST_FORWARD_S);
+        } else {
+            this.fastForward = DEF_FAST_FORWARD;
+        }
+        if (this.fastForward) {
+            this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+                    SimScenario.END_TIME_S);
+        }
+
         if (s.contains(CELL_SIZE_MULT_S)) {
             conCellSizeMult = s.getInt(CELL_SIZE_MULT_S);
         } else {
@@ -133,6 +399,59 @@ public class World {
             throw new SettingsError("Too small value (" + conCellSizeMult
                     + ") for " + SETTINGS_NS + "." + CELL_SIZE_MULT_S);
         }
+
+        boolean kineticConnectivity = DEF_KINETIC_CONNECTIVITY;
+        if (s.contains(KINETIC_CONNECTIVITY_S)) {
+            kineticConnectivity = s.getBoolean(KINETIC_CONNECTIVITY_S);
+        }
+        if (kineticConnectivity && this.simulateConnections) {
+            this.kinetic = new KineticConnectivity(this.hosts, this.sizeX,
+                    this.sizeY, this.conCellSizeMult);
+            this.eventQueues = new ArrayList<EventQueue>(this.eventQueues);
+            this.eventQueues.add(this.kinetic);
+            this.mergedQueues = createMergedQueues();
+            setNextEventQueue();
+        }
+
+        boolean parallelConnectivity = DEF_PARALLEL_CONNECTIVITY;
+        if (s.contains(PARALLEL_CONNECTIVITY_S)) {
+            parallelConnectivity = s.getBoolean(PARALLEL_CONNECTIVITY_S);
+        }
+        if (parallelConnectivity && this.simulateConnections) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (s.contains(CONNECTIVITY_THREADS_S)) {
+                threads = s.getInt(CONNECTIVITY_THREADS_S);
+            }
+            this.parallel = new ParallelConnectivity(this.hosts, threads);
+        }
+
+        boolean parallelMovement = DEF_PARALLEL_MOVEMENT;
+        if (s.contains(PARALLEL_MOVEMENT_S)) {
+            parallelMovement = s.getBoolean(PARALLEL_MOVEMENT_S);
+        }
+        if (parallelMovement) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (s.contains(MOVEMENT_THREADS_S)) {
+                threads = s.getInt(MOVEMENT_THREADS_S);
+            }
+            this.concurrentMovers = new ArrayList<DTNHost>();
+            this.serialMovers = new ArrayList<DTNHost>();
+            for (DTNHost host : this.hosts) {
+                if (host.canMoveConcurrently()) {
+                    this.concurrentMovers.add(host);
+                } else {
+                    this.serialMovers.add(host);
+                }
+            }
+            if (threads > 1 && !this.concurrentMovers.isEmpty()) {
+                this.movementPool = new ForkJoinPool(threads);
+            }
+        }
+
+        this.skipQuiescent = DEF_SKIP_QUIESCENT_HOSTS;
+        if (s.contains(SKIP_QUIESCENT_HOSTS_S)) {
+            this.skipQuiescent = s.getBoolean(SKIP_QUIESCENT_HOSTS_S);
+        }
     }
 
     /**
@@ -159,23 +478,27 @@ public class World {
     }
 
     /**
-     * Goes through all event Queues and sets the event queue that has the next
-     * event.
+     * Merges the scheduled updates queue and the event queues. Scheduled
+     * updates are first and the event queues follow in their list order, so
+     * events at the same time are processed in that order.
+     * @return The merged queue
      */
-    public void setNextEventQueue() {
-        EventQueue nextQueue = scheduledUpdates;
-        double earliest = nextQueue.nextEventsTime();
-
-        /* find the queue that has the next event */
-        for (EventQueue eq : eventQueues) {
-            if (eq.nextEventsTime() < earliest) {
-                nextQueue = eq;
-                earliest = eq.nextEventsTime();
-            }
-        }
+    private MergedEventQueue createMergedQueues() {
+        List<EventQueue> queues = new ArrayList<EventQueue>();
+        queues.add(this.scheduledUpdates);
+        queues.addAll(this.eventQueues);
+        return new MergedEventQueue(queues);
+    }
 
-        this.nextEventQueue = nextQueue;
-        this.nextQueueEventTime = earliest;
+    /**
+     * Goes through all event Queues and sets the time of the next event.
+     * Called at the start of every update, so changes to queues that are
+     * filled asynchronously (e.g., by an external DTN2 daemon) are noticed
+     * once per update interval.
+     */
+    public void setNextEventQueue() {
+        this.mergedQueues.refreshAll();
+        this.nextQueueEventTime = this.mergedQueues.nextEventsTime();
     }
 
     /**
@@ -184,22 +507,41 @@ public class World {
      * and after one update interval.
      */
     public void update() {
-        double runUntil = SimClock.getTime() + this.updateInterval;
-
         setNextEventQueue();
 
+        if (this.fastForward) {
+            fastForward();
+        }
+
+        double runUntil = SimClock.getTime() + this.updateInterval;
+
         /* process all events that are due until next interval update */
         while (this.nextQueueEventTime <= runUntil) {
             simClock.setTime(this.nextQueueEventTime);
-            ExternalEvent ee = this.nextEventQueue.nextEvent();
-            ee.processEvent(this);
-            updateHosts(); // update all hosts after every event
-            setNextEventQueue();
+            ExternalEvent ee = this.mergedQueues.nextEvent();
+            if (this.targetedUpdates) {
+                processTargeted(ee);
+            } else {
+                ee.processEvent(this);
+                updateHosts(); // update all hosts after every event
+            }
+            /* only the queue of the event and the queues that the
+             * simulation itself fills can have changed */
+            this.mergedQueues.refresh(this.scheduledUpdates);
+            if (this.kinetic != null) {
+                this.mergedQueues.refresh(this.kinetic);
+            }
+            this.nextQueueEventTime = this.mergedQueues.nextEventsTime();
         }
 
         moveHosts(this.updateInterval);
         simClock.setTime(runUntil);
 
+        if (this.kinetic != null) {
+            this.kinetic.update();
+            this.mergedQueues.refresh(this.kinetic);
+        }
+
         updateHosts();
 
         /* inform all update listeners */
@@ -214,25 +556,130 @@ public class World {
      * random order.
      */
     private void updateHosts() {
-        if (this.updateOrder == null) { // randomizing is off
-            for (int i = 0, n = hosts.size(); i < n; i++) {
-                if (this.isCancelled) {
-                    break;
+        updateHosts(null);
+    }
+
+    /**
+     * Ages the suspensions of all hosts and updates the hosts (in random
+     * order if update order randomizing is on).
+     *
+     * @param touched If not null, only these hosts and the hosts that are not
+     * quiescent are updated (if null, the quiescent hosts are skipped only if
+     * skipping them is on). The others are still shuffled the same way, so
+     * the update order doesn't depend on which hosts were updated.
+     */
+    private void updateHosts(List<DTNHost> touched) {
+        List<DTNHost> order = shuffleUpdateOrder();
+        if (this.parallel != null && touched == null) {
+            this.parallel.detect(order);
+        }
+        for (int i = 0, n = hosts.size(); i < n; i++) {
+            if (this.isCancelled) {
+                break;
+            }
+            DTNHost host = order.get(i);
+            QLearn.updateSus(hosts.get(i), this.updateInterval);
+            if (touched == null) {
+                if (this.parallel != null) {
+                    this.parallel.commit(host);
+                }
+                if (this.skipQuiescent && host.isQuiescent()) {
+                    continue; // the update wouldn't do anything
                 }
-                QLearn.updateSus(hosts.get(i));
-                hosts.get(i).update(simulateConnections);
+            } else if (touched.contains(host) || !host.isQuiescent()) {
+                if (this.parallel != null) {
+                    this.parallel.updateSerially(host);
+                }
+            } else {
+                continue; // the update wouldn't do anything
             }
-        } else { // update order randomizing is on
-            assert this.updateOrder.size() == this.hosts.size() :
-                    "Nrof hosts has changed unexpectedly";
-            Random rng = new Random(SimClock.getIntTime());
-            Collections.shuffle(this.updateOrder, rng);
+            host.update(simulateConnections);
+        }
+    }
+
+    /**
+     * Shuffles the update order for the current time, if update order
+     * randomizing is on. The order is shuffled from the previous order, so
+     * every round must shuffle it for the order to be repeatable.
+     *
+     * @return The update order of the round
+     */
+    private List<DTNHost> shuffleUpdateOrder() {
+        if (this.updateOrder == null) { // randomizing is off
+            return this.hosts;
+        }
+        assert this.updateOrder.size() == this.hosts.size() :
+                "Nrof hosts has changed unexpectedly";
+        Random rng = new Random(SimClock.getIntTime());
+        Collections.shuffle(this.updateOrder, rng);
+        return this.updateOrder;
+    }
+
+    /**
+     * Processes an external event and updates the hosts the event touched
+     * and the hosts that are not quiescent, or all hosts if the event didn't
+     * touch any.
+     *
+     * @param ee The event to process
+     */
+    private void processTargeted(ExternalEvent ee) {
+        List<DTNHost> touched = new ArrayList<DTNHost>(2);
+        this.touchedHosts = touched;
+        try {
+            ee.processEvent(this);
+        } finally {
+            this.touchedHosts = null;
+        }
+
+        if (touched.isEmpty() || this.skipQuiescent) {
+            updateHosts();
+        } else {
+            updateHosts(touched);
+        }
+    }
+
+    /**
+     * Skips the update intervals during which all hosts are idle and
+     * nothing is scheduled to happen (see {@link #FAST_FORWARD_S}).
+     */
+    private void fastForward() {
+        if (!this.updateListeners.isEmpty()) {
+            return; // listeners expect an update every interval
+        }
+        double now = SimClock.getTime();
+        double until = Math.min(this.nextQueueEventTime, this.endTime);
+
+        for (int i = 0, n = hosts.size(); i < n && until > now; i++) {
+            DTNHost host = hosts.get(i);
+            if (host.getRouter().needsUpdate()) {
+                return; // e.g., a polled router or one with applications
+            }
+            until = Math.min(until, host.getIdleUntil());
+            until = Math.min(until, host.getRouter().getNextTimedUpdate());
+        }
+        if (until - now < 2 * this.updateInterval) {
+            return; // not idle long enough
+        }
+        until = Math.min(until, now + QLearn.getMinSuspension());
+        for (int i = 0, n = hosts.size(); i < n; i++) {
+            for (Message m : hosts.get(i).getMessageCollection()) {
+                until = Math.min(until, m.getExpiryTime());
+            }
+        }
+
+        /* leave the interval where something happens to a normal update */
+        int skip = (int) Math.floor((until - now) / this.updateInterval) - 1;
+        if (skip < 1) {
+            return;
+        }
+        /* the skipped rounds still advance the clock, shuffle the update
+         * order and age the suspensions the same way as the full rounds, so
+         * the rest of the run doesn't depend on the skip */
+        for (int k = 0; k < skip; k++) {
+            simClock.setTime(SimClock.getTime() + this.updateInterval);
+            shuffleUpdateOrder();
             for (int i = 0, n = hosts.size(); i < n; i++) {
-                if (this.isCancelled) {
-                    break;
-                }
-                QLearn.updateSus(hosts.get(i));
-                this.updateOrder.get(i).update(simulateConnections);
+                QLearn.updateSus(hosts.get(i), this.updateInterval);
             }
         }
     }
@@ -243,12 +690,56 @@ public class World {
      * @param timeIncrement The time how long all nodes should move
      */
     private void moveHosts(double timeIncrement) {
+        if (this.movementPool != null) {
+            this.movementPool.invoke(new MoveTask(0,
+                    this.concurrentMovers.size(), timeIncrement));
+            for (int i = 0, n = serialMovers.size(); i < n; i++) {
+                serialMovers.get(i).move(timeIncrement);
+            }
+            return;
+        }
         for (int i = 0, n = hosts.size(); i < n; i++) {
             DTNHost host = hosts.get(i);
             host.move(timeIncrement);
         }
     }
 
+    /**
+     * Fork/join task that moves a range of the concurrently moved hosts.
+     * The tasks run with the simulation context of this world bound, since
+     * the movement models read the simulation clock.
+     */
+    private class MoveTask extends RecursiveAction {
+        private static final long serialVersionUID = 42L;
+
+        private int first;
+        private int end;
+        private double timeIncrement;
+
+        public MoveTask(int first, int end, double timeIncrement) {
+            this.first = first;
+            this.end = end;
+            this.timeIncrement = timeIncrement;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > MOVEMENT_CHUNK) {
+                int middle = first + (end - first) / 2;
+                invokeAll(new MoveTask(first, middle, timeIncrement),
+                        new MoveTask(middle, end, timeIncrement));
+                return;
+            }
+            context.run(new Runnable() {
+                public void run() {
+                    for (int i = first; i < end; i++) {
+                        concurrentMovers.get(i).move(timeIncrement);
+                    }
+                }
+            });
+        }
+    }
+
     /**
      * Asynchronously cancels the currently running simulation
      */
@@ -256,6 +747,15 @@ public class World {
         this.isCancelled = true;
     }
 
+    /**
+     * Returns the simulation context this world belongs to
+     *
+     * @return the simulation context of this world
+     */
+    public SimulationContext getContext() {
+        return this.context;
+    }
+
     /**
      * Returns the hosts in a list
      *
@@ -299,6 +799,10 @@ public class World {
         assert node.getAddress() == address : "Node indexing failed. "
                 + "Node " + node + " in index " + address;
 
+        if (this.touchedHosts != null && !this.touchedHosts.contains(node)) {
+            this.touchedHosts.add(node);
+        }
+
         return node;
     }
 
@@ -310,5 +814,7 @@ public class World {
      */
     public void scheduleUpdate(double simTime) {
         scheduledUpdates.addUpdate(simTime);
+        this.mergedQueues.refresh(scheduledUpdates);
+        this.nextQueueEventTime = this.mergedQueues.nextEventsTime();
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event queue that merges several event queues into one. The queues are kept
+ * in a binary heap keyed by their next event's time, so finding the queue
+ * with the next event takes constant time and taking an event from it takes
+ * logarithmic time. Queues whose next events are at the same time are
+ * ordered by their position in the list the merged queue was created with,
+ * so the earlier queue's events are processed first.
+ * <P>
+ * The heap knows a queue's next event time only when the queue is added or
+ * refreshed. The queue an event is taken from is refreshed automatically;
+ * if the next event time of any other queue changes (e.g., an update is
+ * scheduled to a {@link ScheduledUpdatesQueue}), that queue must be
+ * refreshed with {@link #refresh(EventQueue)}, or all queues with
+ * {@link #refreshAll()}.</P>
+ */
+public class MergedEventQueue implements EventQueue {
+	private EventQueue[] queues;
+	/** Next event time of every queue when it was last refreshed */
+	private double[] times;
+	/** The heap of queue indices */
+	private int[] heap;
+	/** Position of every queue index in the heap */
+	private int[] position;
+	/** Index of every queue */
+	private Map<EventQueue, Integer> indices;
+
+	/**
+	 * Creates a merged queue of the given queues
+	 * @param queues The queues to merge, in tie-breaking order
+	 */
+	public MergedEventQueue(List<? extends EventQueue> queues) {
+		int n = queues.size();
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.position = new int[n];
+		this.indices = new IdentityHashMap<EventQueue, Integer>();
+		for (int i = 0; i < n; i++) {
+			indices.put(this.queues[i], i);
+			heap[i] = i;
+			position[i] = i;
+		}
+		refreshAll();
+	}
+
+	/**
+	 * Re-reads the next event times of all the queues
+	 */
+	public void refreshAll() {
+		for (int i = 0; i < queues.length; i++) {
+			times[i] = queues[i].nextEventsTime();
+		}
+		for (int k = queues.length / 2 - 1; k >= 0; k--) {
+			siftDown(k);
+		}
+	}
+
+	/**
+	 * Re-reads the next event time of a queue
+	 * @param queue The queue whose next event time may have changed
+	 */
+	public void refresh(EventQueue queue) {
+		Integer i = indices.get(queue);
+		if (i != null) {
+			refresh(i.intValue());
+		}
+	}
+
+	private void refresh(int i) {
+		double old = times[i];
+		times[i] = queues[i].nextEventsTime();
+		if (times[i] < old) {
+			siftUp(position[i]);
+		} else if (times[i] > old) {
+			siftDown(position[i]);
+		}
+	}
+
+	/**
+	 * Returns the queue that has the next event (or any queue if there are
+	 * no events left)
+	 * @return The queue that has the next event
+	 */
+	public EventQueue nextQueue() {
+		return queues[heap[0]];
+	}
+
+	/**
+	 * Returns the next event of the queue that has the earliest event
+	 * @return The next event or event with time Double.MAX_VALUE if there
+	 * are no events (or no queues)
+	 */
+	public ExternalEvent nextEvent() {
+		if (queues.length == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		int i = heap[0];
+		ExternalEvent ee = queues[i].nextEvent();
+		refresh(i);
+		return ee;
+	}
+
+	/**
+	 * Returns the time of the earliest event of the queues
+	 * @return The next event's time or Double.MAX_VALUE if there are no
+	 * events left
+	 */
+	public double nextEventsTime() {
+		if (queues.length == 0) {
+			return Double.MAX_VALUE;
+		}
+		return times[heap[0]];
+	}
+
+	/**
+	 * Returns true if queue i should be before queue j in the heap
+	 */
+	private boolean before(int i, int j) {
+		return times[i] < times[j] || (times[i] == times[j] && i < j);
+	}
+
+	private void siftUp(int k) {
+		int i = heap[k];
+		while (k > 0) {
+			int parent = (k - 1) / 2;
+			if (!before(i, heap[parent])) {
+				break;
+			}
+			heap[k] = heap[parent];
+			position[heap[k]] = k;
+			k = parent;
+		}
+		heap[k] = i;
+		position[i] = k;
+	}
+
+	private void siftDown(int k) {
+		int i = heap[k];
+		int n = heap.length;
+		while (true) {
+			int child = 2 * k + 1;
+			if (child >= n) {
+				break;
+			}
+			if (child + 1 < n && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], i)) {
+				break;
+			}
+			heap[k] = heap[child];
+			position[heap[k]] = k;
+			k = child;
+		}
+		heap[k] = i;
+		position[i] = k;
+	}
+}
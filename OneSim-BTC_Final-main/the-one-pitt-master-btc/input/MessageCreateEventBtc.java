@@ -4,9 +4,11 @@
  */
 package input;
 
+import btc.HopChain;
 import btc.Wallet;
 import core.DTNHost;
 import core.Message;
+import core.MessageAttribute;
 import core.World;
 import java.util.LinkedList;
 import java.util.List;
@@ -15,6 +17,17 @@ import java.util.List;
  * External event for creating a message.
  */
 public class MessageCreateEventBtc extends MessageEvent {
+	/** Message attribute for the reward of delivering the message */
+	public static final MessageAttribute<Float> REWARDS =
+		MessageAttribute.register("rewards", Float.class);
+	/** Message attribute for the wallets of the message */
+	public static final MessageAttribute<List<Wallet>> WALLETS =
+		MessageAttribute.register("wallets", List.class);
+	/** Message attribute for the signatures of the hosts that have
+	 * forwarded the message */
+	public static final MessageAttribute<List<byte[]>> SIGNATURES =
+		MessageAttribute.register("signatures", List.class);
+
 	private int size;
 	private int responseSize;
         private float price;
@@ -48,11 +61,11 @@ public class MessageCreateEventBtc extends MessageEvent {
 		
 		Message m = new Message(from, to, this.id, this.size);
 		List<Wallet> wallets = new LinkedList<Wallet>();
-                List<byte[]> signatures = new LinkedList<byte[]>();
+                List<byte[]> signatures = new HopChain();
                 m.setResponseSize(this.responseSize);
-                m.addProperty("rewards", this.price);
-                m.addProperty("wallets", wallets);
-                m.addProperty("signatures", signatures);
+                m.set(REWARDS, this.price);
+                m.set(WALLETS, wallets);
+                m.set(SIGNATURES, signatures);
 		from.createNewMessage(m);
 	}
 	
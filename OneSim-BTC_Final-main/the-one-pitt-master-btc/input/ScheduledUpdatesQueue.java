@@ -5,24 +5,30 @@
 package input;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time 
- * are merged to a single update.
+ * are merged to a single update. The updates are kept in a binary heap, so
+ * adding and removing an update takes logarithmic time.
  */
 public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	/** Scheduled updates, earliest first */
+	private PriorityQueue<ExternalEvent> updates;
+	/** Times of the scheduled updates (for merging the duplicates) */
+	private Set<Double> times;
 	
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.updates = new PriorityQueue<ExternalEvent>();
+		this.times = new HashSet<Double>();
 	}
 	
 	/**
@@ -31,15 +37,12 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
+		ExternalEvent event = this.updates.poll();
 		
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
+		if (event == null) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
-		else {
-			this.nextEvent = this.updates.remove(0);
-		}
-		
+		this.times.remove(event.getTime());
 		return event;
 	}
 	
@@ -49,7 +52,8 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		ExternalEvent event = this.updates.peek();
+		return event == null ? Double.MAX_VALUE : event.getTime();
 	}
 
 	/**
@@ -57,47 +61,20 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
-		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
-		}
-		else { // given event happens later..
-			putToQueue(ee);
-		}
-	}
-	
-	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
-	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
-			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
-			}
+		simTime += 0.0; // -0.0 to 0.0, they are the same time
+		if (this.times.add(simTime)) { // no update with the given time yet
+			this.updates.add(new ExternalEvent(simTime));
 		}
-		
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);  
 	}
 	
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		List<Double> sorted = new ArrayList<Double>(this.times);
+		Collections.sort(sorted);
+		String times = "updates @ " + (sorted.isEmpty() ? Double.MAX_VALUE :
+			sorted.remove(0));
 		
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (double time : sorted) {
+			times += ", " + time;
 		}
 		
 		return times;
@@ -5,8 +5,12 @@
 package interfaces;
 
 import java.util.Collection;
+import java.util.HashMap;
 
 import core.NetworkInterface;
+import core.Settings;
+import core.SimulationContext;
+import core.World;
 
 /**
  * A superclass for schemes for optimizing the location of possible contacts
@@ -14,6 +18,36 @@ import core.NetworkInterface;
  */
 abstract public class ConnectivityOptimizer {
 
+	/**
+	 * Returns the connectivity optimizer of the given key, creating it on
+	 * the first call. The type of the optimizer is chosen with the
+	 * {@link World#FLAT_CONNECTIVITY_GRID_S} setting.
+	 * @param key A hash value that separates different interfaces from each
+	 * 	other
+	 * @param cellSize Cell's edge's length (must be larger than the largest
+	 * 	radio coverage's diameter)
+	 * @return The optimizer for a specific interface
+	 */
+	public static ConnectivityOptimizer getOptimizer(int key, double cellSize) {
+		Settings s = new Settings(World.SETTINGS_NS);
+		boolean flat = World.DEF_FLAT_CONNECTIVITY_GRID;
+		if (s.contains(World.FLAT_CONNECTIVITY_GRID_S)) {
+			flat = s.getBoolean(World.FLAT_CONNECTIVITY_GRID_S);
+		}
+		if (!flat) {
+			return ConnectivityGrid.ConnectivityGridFactory(key, cellSize);
+		}
+
+		HashMap<Integer,ConnectivityOptimizer> optimizers =
+			SimulationContext.current().getConnectivityGrids();
+		ConnectivityOptimizer optimizer = optimizers.get(key);
+		if (optimizer == null) {
+			optimizer = new FlatConnectivityGrid((int)Math.ceil(cellSize));
+			optimizers.put(key, optimizer);
+		}
+		return optimizer;
+	}
+
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
 	 */
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.NetworkInterface;
+import core.Settings;
+
+/**
+ * Overlay grid like {@link ConnectivityGrid} that keeps its state in flat
+ * primitive arrays. Every interface gets a local index (looked up from its
+ * network address through an <CODE>int</CODE> array), its position is kept in
+ * <CODE>double</CODE> arrays and every cell is a bucket of interface indices.
+ * Moving an interface between cells swaps it out of its old bucket in
+ * constant time. Neighbor queries fill a scratch list that is reused by
+ * every query, so they don't allocate memory.
+ * <P>
+ * <strong>Note:</strong> the collection returned by
+ * {@link #getNearInterfaces(NetworkInterface)} is valid only until the next
+ * query to the same grid. Like {@link ConnectivityGrid}, this class does NOT
+ * support negative coordinates.</P>
+ */
+public class FlatConnectivityGrid extends ConnectivityOptimizer {
+	/** Initial capacity of a cell's bucket */
+	private static final int EXPECTED_INTERFACE_COUNT = 4;
+	/** Index of an address that is not in the grid */
+	private static final int NOT_IN_GRID = -1;
+
+	private int cellSize;
+	private int rows;
+	private int cols;
+	/** number of columns including the empty border columns */
+	private int stride;
+
+	/** interface indices of every cell (rows+2 x cols+2, row major) */
+	private int[][] buckets;
+	/** number of interfaces in every cell */
+	private int[] bucketSizes;
+
+	/** interfaces by their local index */
+	private NetworkInterface[] interfaces;
+	private int nrofInterfaces;
+	/** local index of every network address (or NOT_IN_GRID) */
+	private int[] indexOfAddress;
+	/** cell of every interface */
+	private int[] cellOf;
+	/** position of every interface in its cell's bucket */
+	private int[] slotOf;
+	/** last known location of every interface */
+	private double[] xs;
+	private double[] ys;
+
+	/** all interfaces of the grid, in insertion order */
+	private List<NetworkInterface> all;
+	private Collection<NetworkInterface> allView;
+	/** reused result list of the neighbor queries */
+	private ArrayList<NetworkInterface> near;
+
+	/**
+	 * Creates a new flat connectivity grid
+	 * @param cellSize Cell's edge's length (must be larger than the largest
+	 * 	radio coverage's diameter)
+	 */
+	public FlatConnectivityGrid(int cellSize) {
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+
+		this.cellSize = cellSize;
+		this.rows = worldSize[1]/cellSize + 1;
+		this.cols = worldSize[0]/cellSize + 1;
+		// leave empty cells on both sides to make neighbor search easier
+		this.stride = cols + 2;
+		this.buckets = new int[(rows + 2) * stride][];
+		this.bucketSizes = new int[buckets.length];
+
+		int capacity = 16;
+		this.interfaces = new NetworkInterface[capacity];
+		this.cellOf = new int[capacity];
+		this.slotOf = new int[capacity];
+		this.xs = new double[capacity];
+		this.ys = new double[capacity];
+		this.indexOfAddress = new int[capacity];
+		Arrays.fill(indexOfAddress, NOT_IN_GRID);
+
+		this.all = new ArrayList<NetworkInterface>();
+		this.allView = Collections.unmodifiableList(all);
+		this.near = new ArrayList<NetworkInterface>();
+	}
+
+	/**
+	 * Returns the local index of an interface or {@link #NOT_IN_GRID}
+	 */
+	private int indexOf(NetworkInterface ni) {
+		int address = ni.getAddress();
+		if (address >= indexOfAddress.length) {
+			return NOT_IN_GRID;
+		}
+		return indexOfAddress[address];
+	}
+
+	/**
+	 * Returns the index of the cell that has the given coordinates
+	 */
+	private int cellIndex(double x, double y) {
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(y/cellSize) + 1;
+		int col = (int)(x/cellSize) + 1;
+
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location (" +
+			x + "," + y + ") is out of world's bounds";
+
+		return row * stride + col;
+	}
+
+	/**
+	 * Makes room for at least the given number of interfaces and the given
+	 * network address
+	 */
+	private void ensureCapacity(int size, int address) {
+		if (size > interfaces.length) {
+			int capacity = Math.max(size, interfaces.length * 2);
+			interfaces = Arrays.copyOf(interfaces, capacity);
+			cellOf = Arrays.copyOf(cellOf, capacity);
+			slotOf = Arrays.copyOf(slotOf, capacity);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+		}
+		if (address >= indexOfAddress.length) {
+			int oldLength = indexOfAddress.length;
+			indexOfAddress = Arrays.copyOf(indexOfAddress,
+					Math.max(address + 1, oldLength * 2));
+			Arrays.fill(indexOfAddress, oldLength, indexOfAddress.length,
+					NOT_IN_GRID);
+		}
+	}
+
+	/**
+	 * Adds an interface index to a cell's bucket
+	 */
+	private void addToCell(int index, int cell) {
+		int[] bucket = buckets[cell];
+		int size = bucketSizes[cell];
+		if (bucket == null) {
+			bucket = new int[EXPECTED_INTERFACE_COUNT];
+			buckets[cell] = bucket;
+		}
+		else if (size == bucket.length) {
+			bucket = Arrays.copyOf(bucket, size * 2);
+			buckets[cell] = bucket;
+		}
+		bucket[size] = index;
+		bucketSizes[cell] = size + 1;
+		cellOf[index] = cell;
+		slotOf[index] = size;
+	}
+
+	/**
+	 * Removes an interface index from its cell's bucket by moving the last
+	 * index of the bucket to its place
+	 */
+	private void removeFromCell(int index) {
+		int cell = cellOf[index];
+		int[] bucket = buckets[cell];
+		int last = --bucketSizes[cell];
+		int slot = slotOf[index];
+		int moved = bucket[last];
+		bucket[slot] = moved;
+		slotOf[moved] = slot;
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (indexOf(ni) != NOT_IN_GRID) {
+			return;
+		}
+		int index = nrofInterfaces;
+		ensureCapacity(index + 1, ni.getAddress());
+		nrofInterfaces++;
+
+		Coord loc = ni.getLocation();
+		interfaces[index] = ni;
+		indexOfAddress[ni.getAddress()] = index;
+		xs[index] = loc.getX();
+		ys[index] = loc.getY();
+		addToCell(index, cellIndex(xs[index], ys[index]));
+		all.add(ni);
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Removes a network interface from the grid. The interface that has the
+	 * last local index takes the index of the removed one.
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		int index = indexOf(ni);
+		if (index == NOT_IN_GRID) {
+			return;
+		}
+		removeFromCell(index);
+		indexOfAddress[ni.getAddress()] = NOT_IN_GRID;
+		all.remove(ni);
+
+		int last = --nrofInterfaces;
+		if (index != last) {
+			NetworkInterface moved = interfaces[last];
+			interfaces[index] = moved;
+			xs[index] = xs[last];
+			ys[index] = ys[last];
+			cellOf[index] = cellOf[last];
+			slotOf[index] = slotOf[last];
+			buckets[cellOf[index]][slotOf[index]] = index;
+			indexOfAddress[moved.getAddress()] = index;
+		}
+		interfaces[last] = null;
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's position in the grid
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int index = indexOf(ni);
+		if (index == NOT_IN_GRID) {
+			return;
+		}
+		Coord loc = ni.getLocation();
+		xs[index] = loc.getX();
+		ys[index] = loc.getY();
+
+		int cell = cellIndex(xs[index], ys[index]);
+		if (cell != cellOf[index]) {
+			removeFromCell(index);
+			addToCell(index, cell);
+		}
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return allView;
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that are in
+	 * neighboring cells. The returned list is reused by the next query.
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf) {
+		near.clear();
+		int index = indexOf(netinterf);
+		if (index == NOT_IN_GRID) {
+			return near;
+		}
+
+		Coord loc = netinterf.getLocation();
+		int center = cellIndex(loc.getX(), loc.getY());
+		for (int row = center - stride; row <= center + stride;
+				row += stride) {
+			for (int cell = row - 1; cell <= row + 1; cell++) {
+				int[] bucket = buckets[cell];
+				for (int i = 0, n = bucketSizes[cell]; i < n; i++) {
+					near.add(interfaces[bucket[i]]);
+				}
+			}
+		}
+		return near;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
+}
@@ -0,0 +1,548 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import input.EventQueue;
+import input.ExternalEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+import core.World;
+
+/**
+ * Kinetic connectivity engine for {@link SimpleBroadcastInterface}s. Instead
+ * of polling the distances of the interfaces on every update, the engine
+ * models every host as moving along a straight line with constant speed
+ * towards its current waypoint (and waiting there after arriving), and
+ * solves for every pair of interfaces of the same type the exact time when
+ * their distance crosses the transmit range. Those times are queued as
+ * connection up/down events that the {@link World} processes at their exact
+ * times.
+ * <P>
+ * The world calls {@link #update()} after moving the hosts. The engine
+ * then checks which hosts got a new waypoint, speed or activeness and
+ * predicts again the contacts of only those hosts. If a host turns at a
+ * waypoint in the middle of an update interval, its position can differ
+ * from the prediction by at most one interval's movement until the next
+ * update.</P>
+ * <P>
+ * Only the hosts in the neighboring cells of a grid are candidates for a
+ * contact. The cells are larger than the transmit range, so a host outside
+ * the neighboring cells can't come within range before the other host has
+ * moved the difference; every host's contacts are predicted again before
+ * that can happen.</P>
+ * <P>
+ * Interfaces with a scan interval are not managed by the engine and are
+ * still polled.</P>
+ */
+public class KineticConnectivity implements EventQueue {
+	/** Tolerance (meters) for the range comparisons */
+	private static final double RANGE_EPSILON = 1e-6;
+	/** Minimum time (seconds) between two events of the same pair */
+	private static final double TIME_EPSILON = 1e-9;
+
+	private List<DTNHost> hosts;
+	/** Managed interfaces */
+	private List<SimpleBroadcastInterface> interfaces;
+	/** Index of the host (in {@link #hosts}) of every managed interface */
+	private int[] hostOf;
+	/** Managed interface indices of every host */
+	private List<List<Integer>> ifacesOf;
+	/** Prediction epoch of every host; events of older epochs are stale */
+	private int[] epoch;
+
+	/* The trajectory of every host since its last change: the host is at
+	 * (x, y) at time t0, moves with velocity (vx, vy) until time arrival and
+	 * stays at its destination after that */
+	private double[] x, y, t0, vx, vy, arrival;
+	private boolean[] active;
+	/** The destination and speed the trajectories were computed for */
+	private Coord[] destination;
+	private double[] speed;
+
+	/** Edge length of the cells of the candidate grid */
+	private double cellSize;
+	private int rows, cols;
+	/** Hosts (indices) in every cell of the candidate grid */
+	private List<List<Integer>> cells;
+	/** Grid cell of every host with managed interfaces (-1 for others) */
+	private int[] cellOf;
+	/** Largest transmit range of the managed interfaces */
+	private double maxRange;
+	/** Time before which the contacts of every host are predicted again */
+	private double[] refreshAt;
+	private double lastUpdate;
+
+	private PriorityQueue<ContactEvent> events;
+	private boolean initialized;
+
+	/**
+	 * Creates a new engine for the simple broadcast interfaces of the hosts
+	 * @param hosts All the hosts of the world, indexed by their address
+	 * @param sizeX Width of the world
+	 * @param sizeY Height of the world
+	 * @param cellSizeMult The edge length of the candidate grid's cells is
+	 * the largest transmit range times this (at least 2)
+	 */
+	public KineticConnectivity(List<DTNHost> hosts, int sizeX, int sizeY,
+			int cellSizeMult) {
+		this.hosts = hosts;
+		this.interfaces = new ArrayList<SimpleBroadcastInterface>();
+		this.ifacesOf = new ArrayList<List<Integer>>();
+		List<Integer> owners = new ArrayList<Integer>();
+
+		for (int h = 0, n = hosts.size(); h < n; h++) {
+			List<Integer> own = new ArrayList<Integer>();
+			for (NetworkInterface ni : hosts.get(h).getInterfaces()) {
+				if (!(ni instanceof SimpleBroadcastInterface) ||
+						ni.getScanInterval() > 0 ||
+						((SimpleBroadcastInterface)ni).isManaged()) {
+					continue;
+				}
+				int index = interfaces.size();
+				interfaces.add((SimpleBroadcastInterface)ni);
+				owners.add(h);
+				own.add(index);
+				((SimpleBroadcastInterface)ni).setManaged(true);
+			}
+			ifacesOf.add(own);
+		}
+
+		this.hostOf = new int[owners.size()];
+		for (int i = 0; i < hostOf.length; i++) {
+			hostOf[i] = owners.get(i);
+			maxRange = Math.max(maxRange,
+					interfaces.get(i).getTransmitRange());
+		}
+
+		int n = hosts.size();
+		this.cellSize = Math.max(cellSizeMult, 2) * maxRange;
+		if (this.cellSize <= 0) {
+			this.cellSize = Math.max(sizeX, sizeY) + 1; // one cell
+		}
+		this.rows = (int)(sizeY / cellSize) + 1;
+		this.cols = (int)(sizeX / cellSize) + 1;
+		this.cells = new ArrayList<List<Integer>>(rows * cols);
+		for (int i = 0; i < rows * cols; i++) {
+			cells.add(new ArrayList<Integer>());
+		}
+		this.cellOf = new int[n];
+		this.refreshAt = new double[n];
+		this.epoch = new int[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.t0 = new double[n];
+		this.vx = new double[n];
+		this.vy = new double[n];
+		this.arrival = new double[n];
+		this.active = new boolean[n];
+		this.destination = new Coord[n];
+		this.speed = new double[n];
+		this.events = new PriorityQueue<ContactEvent>();
+	}
+
+	/**
+	 * Updates the trajectories of the hosts whose movement or activeness has
+	 * changed, or whose contacts are due to be predicted again, and predicts
+	 * their contacts again. Must be called after the hosts have been moved.
+	 */
+	public void update() {
+		double now = SimClock.getTime();
+		int n = hosts.size();
+
+		if (!initialized) {
+			for (int h = 0; h < n; h++) {
+				setTrajectory(h);
+				cellOf[h] = -1;
+				if (!ifacesOf.get(h).isEmpty()) {
+					cellOf[h] = cellIndex(h);
+					cells.get(cellOf[h]).add(h);
+				}
+			}
+			double maxSpeed = maxSpeed(now);
+			for (int h = 0; h < n; h++) {
+				predictContacts(h, null, now, maxSpeed);
+			}
+			initialized = true;
+			lastUpdate = now;
+			return;
+		}
+
+		/* contacts that are due before the next update are predicted now */
+		double next = now + (now - lastUpdate);
+		lastUpdate = now;
+		boolean[] changed = null;
+		List<Integer> changedHosts = null;
+		for (int h = 0; h < n; h++) {
+			if (cellOf[h] < 0) {
+				continue; // no managed interfaces
+			}
+			updateCell(h);
+			if (!hasChanged(h) && refreshAt[h] > next) {
+				continue;
+			}
+			if (changed == null) {
+				changed = new boolean[n];
+				changedHosts = new ArrayList<Integer>();
+			}
+			setTrajectory(h);
+			epoch[h]++;
+			changed[h] = true;
+			changedHosts.add(h);
+		}
+		if (changedHosts == null) {
+			return;
+		}
+
+		double maxSpeed = maxSpeed(now);
+		for (int h : changedHosts) {
+			predictContacts(h, changed, now, maxSpeed);
+		}
+	}
+
+	/**
+	 * Predicts the contacts of a host with the hosts in the neighboring cells
+	 * of the candidate grid and sets the time when they must be predicted
+	 * again
+	 * @param h The host
+	 * @param changed The hosts whose contacts are predicted at the same
+	 * time, or null if all are. Pairs of two such hosts are predicted only
+	 * from the side of the host with the smaller index.
+	 * @param now The current time
+	 * @param maxSpeed The highest speed of any host
+	 */
+	private void predictContacts(int h, boolean[] changed, double now,
+			double maxSpeed) {
+		if (cellOf[h] < 0) {
+			return;
+		}
+		int row = cellOf[h] / cols;
+		int col = cellOf[h] % cols;
+		for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1);
+				r++) {
+			for (int c = Math.max(col - 1, 0);
+					c <= Math.min(col + 1, cols - 1); c++) {
+				List<Integer> cell = cells.get(r * cols + c);
+				for (int i = 0, m = cell.size(); i < m; i++) {
+					int other = cell.get(i);
+					if (other == h || (other < h &&
+							(changed == null || changed[other]))) {
+						continue; // same host or predicted from its side
+					}
+					predictPair(h, other, now);
+				}
+			}
+		}
+
+		/* a host outside the neighboring cells is farther than the cell
+		 * size away and needs this long to come within the range */
+		double speeds = currentSpeed(h, now) + maxSpeed;
+		refreshAt[h] = speeds > 0 ? now + (cellSize - maxRange) / speeds :
+			Double.MAX_VALUE;
+	}
+
+	/**
+	 * Predicts the contacts of the interfaces of the same type of two hosts
+	 */
+	private void predictPair(int ha, int hb, double now) {
+		for (int a : ifacesOf.get(ha)) {
+			String type = interfaces.get(a).getInterfaceType();
+			for (int b : ifacesOf.get(hb)) {
+				if (interfaces.get(b).getInterfaceType().equals(type)) {
+					predict(a, b, now);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the speed of a host along its trajectory at the given time
+	 */
+	private double currentSpeed(int h, double time) {
+		return time < arrival[h] ? speed[h] : 0;
+	}
+
+	/**
+	 * Returns the highest speed of the hosts along their trajectories
+	 */
+	private double maxSpeed(double time) {
+		double max = 0;
+		for (int h = 0, n = hosts.size(); h < n; h++) {
+			max = Math.max(max, currentSpeed(h, time));
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the index of the grid cell of a host's current location
+	 */
+	private int cellIndex(int h) {
+		Coord loc = hosts.get(h).getLocation();
+		int row = Math.max(0, Math.min(rows - 1,
+				(int)(loc.getY() / cellSize)));
+		int col = Math.max(0, Math.min(cols - 1,
+				(int)(loc.getX() / cellSize)));
+		return row * cols + col;
+	}
+
+	/**
+	 * Moves a host to the grid cell of its current location
+	 */
+	private void updateCell(int h) {
+		int cell = cellIndex(h);
+		if (cell != cellOf[h]) {
+			cells.get(cellOf[h]).remove(Integer.valueOf(h));
+			cells.get(cell).add(h);
+			cellOf[h] = cell;
+		}
+	}
+
+	/**
+	 * Returns true if the waypoint, speed or activeness of a host differs
+	 * from the ones its trajectory was computed with
+	 */
+	private boolean hasChanged(int h) {
+		DTNHost host = hosts.get(h);
+		if (host.isActive() != active[h]) {
+			return true;
+		}
+		Coord dest = host.getDestination();
+		if (dest == null || destination[h] == null) {
+			return dest != destination[h];
+		}
+		return !dest.equals(destination[h]) || host.getSpeed() != speed[h];
+	}
+
+	/**
+	 * Sets the trajectory of a host to start from its current location
+	 */
+	private void setTrajectory(int h) {
+		DTNHost host = hosts.get(h);
+		Coord loc = host.getLocation();
+		Coord dest = host.getDestination();
+		double now = SimClock.getTime();
+
+		x[h] = loc.getX();
+		y[h] = loc.getY();
+		t0[h] = now;
+		active[h] = host.isActive();
+		destination[h] = dest == null ? null : dest.clone();
+		speed[h] = host.getSpeed();
+		vx[h] = 0;
+		vy[h] = 0;
+		arrival[h] = now;
+
+		if (dest != null && speed[h] > 0) {
+			double distance = loc.distance(dest);
+			if (distance > 0) {
+				vx[h] = (dest.getX() - x[h]) / distance * speed[h];
+				vy[h] = (dest.getY() - y[h]) / distance * speed[h];
+				arrival[h] = now + distance / speed[h];
+			}
+		}
+	}
+
+	private double posX(int h, double time) {
+		return x[h] + vx[h] * (Math.min(time, arrival[h]) - t0[h]);
+	}
+
+	private double posY(int h, double time) {
+		return y[h] + vy[h] * (Math.min(time, arrival[h]) - t0[h]);
+	}
+
+	/**
+	 * Returns true if two interfaces are connected to each other
+	 */
+	private static boolean isConnected(NetworkInterface a, NetworkInterface b) {
+		List<Connection> cons = a.getConnections();
+		for (int i = 0, n = cons.size(); i < n; i++) {
+			if (cons.get(i).getOtherInterface(a) == b) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Predicts the next time when the connection state of two interfaces
+	 * should change and queues an event for it (if there is such a time)
+	 * @param a Index of the first interface
+	 * @param b Index of the second interface
+	 * @param from The time from which on to look for the change
+	 */
+	private void predict(int a, int b, double from) {
+		int ha = hostOf[a];
+		int hb = hostOf[b];
+		NetworkInterface ia = interfaces.get(a);
+		NetworkInterface ib = interfaces.get(b);
+		boolean up = isConnected(ia, ib);
+		double range = Math.min(ia.getTransmitRange(), ib.getTransmitRange());
+
+		if (!active[ha] || !active[hb]) {
+			return; // only moving in range of active hosts connects them
+		}
+
+		/* is the state already wrong (e.g., after a change of activeness) */
+		double dx = posX(ha, from) - posX(hb, from);
+		double dy = posY(ha, from) - posY(hb, from);
+		double dist = Math.sqrt(dx * dx + dy * dy);
+		if (up ? dist > range + RANGE_EPSILON : dist < range - RANGE_EPSILON) {
+			queue(a, b, from, !up);
+			return;
+		}
+
+		/* go through the pieces where both hosts have a constant velocity */
+		double start = from;
+		while (true) {
+			double end = Double.MAX_VALUE;
+			if (arrival[ha] > start) {
+				end = Math.min(end, arrival[ha]);
+			}
+			if (arrival[hb] > start) {
+				end = Math.min(end, arrival[hb]);
+			}
+			if (end == Double.MAX_VALUE) {
+				return; // both hosts are stationary from now on
+			}
+
+			double wx = vx[ha] - vx[hb];
+			double wy = vy[ha] - vy[hb];
+			dx = posX(ha, start) - posX(hb, start);
+			dy = posY(ha, start) - posY(hb, start);
+
+			double time = crossing(dx, dy, wx, wy, range, up);
+			if (time >= 0 && start + time <= end) {
+				queue(a, b, Math.max(start + time, from + TIME_EPSILON), !up);
+				return;
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Solves when two points, with a distance (dx, dy) and relative velocity
+	 * (wx, wy), leave (if up) or enter (if not up) the given range.
+	 * @return The time from now, or -1 if that doesn't happen
+	 */
+	private static double crossing(double dx, double dy, double wx, double wy,
+			double range, boolean up) {
+		double a = wx * wx + wy * wy;
+		if (a == 0) {
+			return -1; // no relative movement
+		}
+		double b = 2 * (dx * wx + dy * wy);
+		double c = dx * dx + dy * dy - range * range;
+		if (!up && b >= 0) {
+			/* not approaching, so the distance only grows; rounding right
+			 * after leaving the range could otherwise enter it again */
+			return -1;
+		}
+		double disc = b * b - 4 * a * c;
+		if (disc < 0) {
+			return -1; // never within range
+		}
+		double sqrt = Math.sqrt(disc);
+		double enter = (-b - sqrt) / (2 * a);
+		double leave = (-b + sqrt) / (2 * a);
+
+		if (up) {
+			return leave > 0 ? leave : -1;
+		}
+		if (leave <= 0) {
+			return -1; // the closest point is already behind
+		}
+		return Math.max(enter, 0);
+	}
+
+	private void queue(int a, int b, double time, boolean up) {
+		events.add(new ContactEvent(time, a, b, up, epoch[hostOf[a]],
+				epoch[hostOf[b]]));
+	}
+
+	/**
+	 * Removes the events of outdated predictions from the head of the queue
+	 */
+	private void removeStale() {
+		while (!events.isEmpty()) {
+			ContactEvent e = events.peek();
+			if (e.epochA == epoch[hostOf[e.a]] &&
+					e.epochB == epoch[hostOf[e.b]]) {
+				return;
+			}
+			events.poll();
+		}
+	}
+
+	public ExternalEvent nextEvent() {
+		removeStale();
+		if (events.isEmpty()) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		return events.poll();
+	}
+
+	public double nextEventsTime() {
+		removeStale();
+		if (events.isEmpty()) {
+			return Double.MAX_VALUE;
+		}
+		return events.peek().getTime();
+	}
+
+	/**
+	 * Connection up or down event of two interfaces
+	 */
+	private class ContactEvent extends ExternalEvent {
+		private static final long serialVersionUID = 42L;
+
+		private int a;
+		private int b;
+		private boolean up;
+		private int epochA;
+		private int epochB;
+
+		public ContactEvent(double time, int a, int b, boolean up,
+				int epochA, int epochB) {
+			super(time);
+			this.a = a;
+			this.b = b;
+			this.up = up;
+			this.epochA = epochA;
+			this.epochB = epochB;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			SimpleBroadcastInterface ia = interfaces.get(a);
+			SimpleBroadcastInterface ib = interfaces.get(b);
+			/* look the hosts up so that the world knows who were touched */
+			world.getNodeByAddress(ia.getHost().getAddress());
+			world.getNodeByAddress(ib.getHost().getAddress());
+
+			boolean connected = isConnected(ia, ib);
+			if (up && !connected) {
+				ia.createConnection(ib);
+			}
+			else if (!up && connected) {
+				ia.destroyConnection(ib);
+			}
+			predict(a, b, this.time);
+		}
+
+		@Override
+		public String toString() {
+			return "CONTACT " + (up ? "up" : "down") + " @" + this.time + " " +
+				interfaces.get(a).getHost() + "<->" +
+				interfaces.get(b).getHost();
+		}
+	}
+}
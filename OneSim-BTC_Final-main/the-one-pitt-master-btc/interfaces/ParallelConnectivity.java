@@ -0,0 +1,485 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import movement.MovementModel;
+
+import core.Connection;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.PositionStore;
+import core.Settings;
+import core.SimulationContext;
+
+/**
+ * Two-phase connectivity update for {@link SimpleBroadcastInterface}s.
+ * <P>
+ * In the detection phase ({@link #detect(List)}) the locations (from the
+ * {@link PositionStore}) and activeness of the hosts are copied to arrays, the interfaces are sorted to
+ * grid cells and the pairs of interfaces that enter or leave each other's
+ * range are searched in parallel, in fixed chunks of cells, by a fork/join
+ * pool. The detection phase only reads the simulation state.</P>
+ * <P>
+ * In the commit phase the world calls {@link #commit(DTNHost)} for every
+ * host just before updating it. That applies the changes the host would have
+ * made in its own interface update: a pair is connected by the host of the
+ * pair that is updated first and disconnected by the first active host of
+ * the pair. The changes of a host are applied in the order of the other
+ * host's address, disconnections first. Since the chunks don't depend on
+ * the number of threads, the results are identical with any number of
+ * threads.</P>
+ * <P>
+ * Only interface types whose every interface is a simple broadcast interface
+ * without a scan interval are handled. The tasks of the pool don't use the
+ * simulation context of the world's thread, so everything they need is read
+ * to arrays before they are started.</P>
+ */
+public class ParallelConnectivity {
+	/** Number of grid cells one task handles */
+	private static final int CELLS_PER_CHUNK = 64;
+	/** Index of an address that is not managed */
+	private static final int NOT_MANAGED = -1;
+
+	private List<DTNHost> hosts;
+	private PositionStore positions;
+	private ForkJoinPool pool;
+
+	/** Managed interfaces */
+	private SimpleBroadcastInterface[] interfaces;
+	/** Address of the host of every managed interface */
+	private int[] hostOf;
+	/** Index of the interface type of every managed interface */
+	private int[] typeOf;
+	/** Managed interface indices of every host (by host address) */
+	private int[][] ifacesOf;
+	/** Index of every managed interface by its network address */
+	private int[] indexOfAddress;
+
+	/* per-update snapshot of the world */
+	private double[] x;
+	private double[] y;
+	private double[] range;
+	private boolean[] active;
+	private int[] rank;
+
+	/* the grid: cell size, dimensions and the interfaces sorted by cell */
+	private int[] worldSize;
+	private double cellSize;
+	private int rows;
+	private int cols;
+	private int[] cellOf;
+	private int[] cellStart;
+	private int[] sorted;
+
+	/** found changes of every chunk: (interface, interface, up) triplets */
+	private int[][] chunkChanges;
+	private int[] chunkSizes;
+
+	/** changes of the current update in commit order */
+	private List<Change> changes;
+	private int nextChange;
+
+	/**
+	 * Creates a new connectivity updater
+	 * @param hosts All the hosts of the world, indexed by their address
+	 * @param nrofThreads Number of threads the detection phase uses
+	 */
+	public ParallelConnectivity(List<DTNHost> hosts, int nrofThreads) {
+		this.hosts = hosts;
+		this.positions = SimulationContext.current().getPositions();
+		this.pool = nrofThreads > 1 ? new ForkJoinPool(nrofThreads) : null;
+		this.changes = new ArrayList<Change>();
+		initInterfaces();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		this.worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+
+		int n = interfaces.length;
+		this.x = new double[n];
+		this.y = new double[n];
+		this.range = new double[n];
+		this.cellOf = new int[n];
+		this.sorted = new int[n];
+		this.active = new boolean[hosts.size()];
+		this.rank = new int[hosts.size()];
+		setCellSize(1);
+	}
+
+	/**
+	 * Sets the size of the grid cells (must be at least the largest range)
+	 * @param size The size of the cells
+	 */
+	private void setCellSize(double size) {
+		this.cellSize = size;
+		this.cols = (int)(worldSize[0] / cellSize) + 1;
+		this.rows = (int)(worldSize[1] / cellSize) + 1;
+		this.cellStart = new int[rows * cols + 1];
+
+		int nrofChunks = (rows * cols + CELLS_PER_CHUNK - 1) / CELLS_PER_CHUNK;
+		this.chunkChanges = new int[nrofChunks][];
+		this.chunkSizes = new int[nrofChunks];
+	}
+
+	/**
+	 * Finds the interface types that can be managed and marks their
+	 * interfaces managed
+	 */
+	private void initInterfaces() {
+		Map<String, List<SimpleBroadcastInterface>> byType =
+			new HashMap<String, List<SimpleBroadcastInterface>>();
+		List<String> unmanaged = new ArrayList<String>();
+		int maxAddress = 0;
+
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				String type = ni.getInterfaceType();
+				maxAddress = Math.max(maxAddress, ni.getAddress());
+				if (!(ni instanceof SimpleBroadcastInterface) ||
+						ni.getScanInterval() > 0 ||
+						((SimpleBroadcastInterface)ni).isManaged()) {
+					unmanaged.add(type);
+					continue;
+				}
+				List<SimpleBroadcastInterface> list = byType.get(type);
+				if (list == null) {
+					list = new ArrayList<SimpleBroadcastInterface>();
+					byType.put(type, list);
+				}
+				list.add((SimpleBroadcastInterface)ni);
+			}
+		}
+		for (String type : unmanaged) {
+			byType.remove(type);
+		}
+
+		List<SimpleBroadcastInterface> all =
+			new ArrayList<SimpleBroadcastInterface>();
+		List<Integer> types = new ArrayList<Integer>();
+		List<String> typeNames = new ArrayList<String>(byType.keySet());
+		Collections.sort(typeNames);
+		for (int t = 0; t < typeNames.size(); t++) {
+			for (SimpleBroadcastInterface ni : byType.get(typeNames.get(t))) {
+				all.add(ni);
+				types.add(t);
+			}
+		}
+
+		int n = all.size();
+		this.interfaces = all.toArray(new SimpleBroadcastInterface[n]);
+		this.hostOf = new int[n];
+		this.typeOf = new int[n];
+		this.indexOfAddress = new int[maxAddress + 1];
+		Arrays.fill(indexOfAddress, NOT_MANAGED);
+		int[] counts = new int[hosts.size()];
+
+		for (int i = 0; i < n; i++) {
+			hostOf[i] = interfaces[i].getHost().getAddress();
+			typeOf[i] = types.get(i);
+			indexOfAddress[interfaces[i].getAddress()] = i;
+			counts[hostOf[i]]++;
+			interfaces[i].setManaged(true);
+		}
+		this.ifacesOf = new int[hosts.size()][];
+		for (int h = 0; h < counts.length; h++) {
+			ifacesOf[h] = new int[counts[h]];
+			counts[h] = 0;
+		}
+		for (int i = 0; i < n; i++) {
+			ifacesOf[hostOf[i]][counts[hostOf[i]]++] = i;
+		}
+	}
+
+	/**
+	 * Detection phase: finds the pairs of interfaces that enter or leave
+	 * each other's range and orders the changes for the commit phase.
+	 * @param order The hosts in the order they are going to be updated
+	 */
+	public void detect(List<DTNHost> order) {
+		for (int i = 0, n = order.size(); i < n; i++) {
+			DTNHost host = order.get(i);
+			rank[host.getAddress()] = i;
+			active[host.getAddress()] = host.isActive();
+		}
+
+		/* snapshot the locations and ranges */
+		double maxRange = 0;
+		for (int i = 0; i < interfaces.length; i++) {
+			range[i] = interfaces[i].getTransmitRange();
+			maxRange = Math.max(maxRange, range[i]);
+		}
+		if (maxRange > cellSize) { // ranges can change during the simulation
+			setCellSize(maxRange);
+		}
+
+		/* sort the interfaces to cells */
+		Arrays.fill(cellStart, 0);
+		for (int i = 0; i < interfaces.length; i++) {
+			SimpleBroadcastInterface ni = interfaces[i];
+			x[i] = positions.getX(hostOf[i]);
+			y[i] = positions.getY(hostOf[i]);
+			cellOf[i] = cellIndex(x[i], y[i]);
+			cellStart[cellOf[i] + 1]++;
+			ni.updateLocation(); // for the serial updates between intervals
+		}
+		for (int c = 0; c < rows * cols; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		int[] fill = Arrays.copyOf(cellStart, cellStart.length - 1);
+		for (int i = 0; i < interfaces.length; i++) {
+			sorted[fill[cellOf[i]]++] = i;
+		}
+
+		/* find the changes of every chunk */
+		Arrays.fill(chunkSizes, 0);
+		DetectTask task = new DetectTask(0, chunkChanges.length);
+		if (pool != null) {
+			pool.invoke(task);
+		} else {
+			task.compute();
+		}
+
+		/* order the changes by the host that commits them */
+		changes.clear();
+		nextChange = 0;
+		for (int k = 0; k < chunkChanges.length; k++) {
+			int[] found = chunkChanges[k];
+			for (int i = 0; i < chunkSizes[k]; i += 3) {
+				changes.add(new Change(found[i], found[i + 1],
+						found[i + 2] == 1));
+			}
+		}
+		Collections.sort(changes, COMMIT_ORDER);
+	}
+
+	/**
+	 * Commit phase: applies the changes the given host makes. Must be called
+	 * for the hosts in the order given to {@link #detect(List)}.
+	 * @param host The host that is about to be updated
+	 */
+	public void commit(DTNHost host) {
+		int hostRank = rank[host.getAddress()];
+		while (nextChange < changes.size()) {
+			Change c = changes.get(nextChange);
+			if (c.order > hostRank) {
+				break;
+			}
+			nextChange++;
+			if (c.order < hostRank) {
+				continue; // host was skipped (e.g., cancelled update)
+			}
+			if (c.up) {
+				interfaces[c.owner].createConnection(interfaces[c.other]);
+			} else {
+				interfaces[c.owner].destroyConnection(interfaces[c.other]);
+			}
+		}
+	}
+
+	/**
+	 * Updates the connections of a host right away, the same way as its
+	 * interfaces would do if they weren't managed. Used when only some of
+	 * the hosts are updated.
+	 * @param host The host to update
+	 */
+	public void updateSerially(DTNHost host) {
+		if (!host.isActive()) {
+			return;
+		}
+		for (int i : ifacesOf[host.getAddress()]) {
+			interfaces[i].updateConnections();
+		}
+	}
+
+	/**
+	 * Returns the index of the cell that has the given coordinates
+	 */
+	private int cellIndex(double cx, double cy) {
+		int row = Math.max(0, Math.min(rows - 1, (int)(cy / cellSize)));
+		int col = Math.max(0, Math.min(cols - 1, (int)(cx / cellSize)));
+		return row * cols + col;
+	}
+
+	/**
+	 * Returns true if two managed interfaces are in each other's range
+	 */
+	private boolean inRange(int a, int b) {
+		double dx = x[a] - x[b];
+		double dy = y[a] - y[b];
+		double r = Math.min(range[a], range[b]);
+		return dx*dx + dy*dy <= r * r;
+	}
+
+	/**
+	 * Returns true if a managed interface is connected to another one
+	 */
+	private boolean isConnected(int a, int b) {
+		List<Connection> cons = interfaces[a].getConnections();
+		for (int i = 0, n = cons.size(); i < n; i++) {
+			if (cons.get(i).getOtherInterface(interfaces[a]) == interfaces[b]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the changes of the interfaces in the given chunk of cells
+	 */
+	private void detectChunk(int chunk) {
+		int firstCell = chunk * CELLS_PER_CHUNK;
+		int endCell = Math.min(firstCell + CELLS_PER_CHUNK, rows * cols);
+		int[] found = chunkChanges[chunk];
+		int size = 0;
+		if (found == null) {
+			found = new int[3 * 16];
+		}
+
+		for (int c = firstCell; c < endCell; c++) {
+			int row = c / cols;
+			int col = c % cols;
+			for (int s = cellStart[c]; s < cellStart[c + 1]; s++) {
+				int a = sorted[s];
+
+				/* connections leaving the range (reported by the lower
+				 * index of the pair) */
+				List<Connection> cons = interfaces[a].getConnections();
+				for (int k = 0, n = cons.size(); k < n; k++) {
+					NetworkInterface other =
+						cons.get(k).getOtherInterface(interfaces[a]);
+					int b = other.getAddress() < indexOfAddress.length ?
+							indexOfAddress[other.getAddress()] : NOT_MANAGED;
+					if (b <= a || inRange(a, b) ||
+							!(active[hostOf[a]] || active[hostOf[b]])) {
+						continue;
+					}
+					if (found.length < size + 3) {
+						found = Arrays.copyOf(found, found.length * 2);
+					}
+					found[size++] = a;
+					found[size++] = b;
+					found[size++] = 0;
+				}
+
+				/* pairs entering the range: the rest of this cell and the
+				 * forward half of the neighbor cells */
+				for (int dr = 0; dr <= 1; dr++) {
+					for (int dc = -1; dc <= 1; dc++) {
+						if (dr == 0 && dc < 0) {
+							continue;
+						}
+						int r2 = row + dr;
+						int c2 = col + dc;
+						if (r2 >= rows || c2 < 0 || c2 >= cols) {
+							continue;
+						}
+						int other = r2 * cols + c2;
+						int from = other == c ? s + 1 : cellStart[other];
+						for (int t = from; t < cellStart[other + 1]; t++) {
+							int b = sorted[t];
+							if (typeOf[a] != typeOf[b] ||
+									!active[hostOf[a]] || !active[hostOf[b]] ||
+									!inRange(a, b) || isConnected(a, b)) {
+								continue;
+							}
+							if (found.length < size + 3) {
+								found = Arrays.copyOf(found, found.length * 2);
+							}
+							found[size++] = a;
+							found[size++] = b;
+							found[size++] = 1;
+						}
+					}
+				}
+			}
+		}
+		chunkChanges[chunk] = found;
+		chunkSizes[chunk] = size;
+	}
+
+	/**
+	 * Fork/join task that detects the changes of a range of chunks
+	 */
+	private class DetectTask extends RecursiveAction {
+		private static final long serialVersionUID = 42L;
+
+		private int first;
+		private int end;
+
+		public DetectTask(int first, int end) {
+			this.first = first;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - first <= 1) {
+				for (int k = first; k < end; k++) {
+					detectChunk(k);
+				}
+				return;
+			}
+			int middle = (first + end) / 2;
+			invokeAll(new DetectTask(first, middle),
+					new DetectTask(middle, end));
+		}
+	}
+
+	/** Orders changes by the committing host, disconnections first and then
+	 * by the address of the other host */
+	private static final Comparator<Change> COMMIT_ORDER =
+		new Comparator<Change>() {
+		public int compare(Change c1, Change c2) {
+			if (c1.order != c2.order) {
+				return c1.order < c2.order ? -1 : 1;
+			}
+			if (c1.up != c2.up) {
+				return c1.up ? 1 : -1;
+			}
+			if (c1.otherHost != c2.otherHost) {
+				return c1.otherHost < c2.otherHost ? -1 : 1;
+			}
+			return c1.other - c2.other;
+		}
+	};
+
+	/**
+	 * A connection change of a pair of interfaces
+	 */
+	private class Change {
+		/** Interface of the host that commits the change */
+		private int owner;
+		private int other;
+		private int otherHost;
+		/** update order position of the committing host */
+		private int order;
+		private boolean up;
+
+		public Change(int a, int b, boolean up) {
+			int ha = hostOf[a];
+			int hb = hostOf[b];
+			/* the first (active) host of the pair makes the change */
+			boolean aFirst = rank[ha] < rank[hb] || (rank[ha] == rank[hb] &&
+					a < b);
+			if (!up && active[ha] != active[hb]) {
+				aFirst = active[ha];
+			}
+			this.owner = aFirst ? a : b;
+			this.other = aFirst ? b : a;
+			this.otherHost = hostOf[other];
+			this.order = rank[hostOf[owner]];
+			this.up = up;
+		}
+	}
+}
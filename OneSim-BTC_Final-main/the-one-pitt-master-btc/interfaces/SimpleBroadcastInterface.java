@@ -17,6 +17,12 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	/** Are the connections of this interface managed by a connectivity
+	 * engine (true) or by polling in {@link #update()} */
+	private boolean managed = false;
+	/** Transmit range at the last update of the connections */
+	private double rangeAtUpdate = -1;
+	
 	/**
 	 * Reads the interface settings from the Settings file
 	 *  
@@ -66,6 +72,19 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 	 * that are out of range).
 	 */
 	public void update() {
+		if (this.managed) {
+			return; // connections are created and broken by the engine
+		}
+		updateConnections();
+	}
+
+	/**
+	 * Tears down the connections that are out of range and connects to the
+	 * interfaces that are in range, even if the connections of this
+	 * interface are managed by a connectivity engine.
+	 */
+	public void updateConnections() {
+		this.rangeAtUpdate = getTransmitRange();
 		// First break the old ones
 		optimizer.updateLocation(this);
 		for (int i=0; i<this.connections.size(); ) {
@@ -110,6 +129,73 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 		}
 	}
 
+	/**
+	 * Sets the connections of this interface to be managed by a
+	 * connectivity engine (e.g., {@link KineticConnectivity}) instead of
+	 * polling in {@link #update()}
+	 * @param managed True if the connections are managed by an engine
+	 */
+	public void setManaged(boolean managed) {
+		this.managed = managed;
+	}
+
+	/**
+	 * Updates the location of this interface in the connectivity optimizer
+	 */
+	public void updateLocation() {
+		optimizer.updateLocation(this);
+	}
+
+	/**
+	 * Returns true if the connections of this interface are managed by a
+	 * connectivity engine
+	 * @return true if the connections are managed by an engine
+	 */
+	public boolean isManaged() {
+		return this.managed;
+	}
+
+	/**
+	 * Returns true if this interface has no connections and doesn't need to
+	 * look for new ones: either a connectivity engine manages its
+	 * connections, or it scans continuously and neither it nor any of the
+	 * interfaces near it has changed since the last update. An update would
+	 * connect this interface to a near interface that has moved into its
+	 * range before the other interface's own update does.
+	 * @param moved True if the host has moved since its last update
+	 * @return true if the update of this interface can be skipped
+	 */
+	@Override
+	public boolean isQuiescent(boolean moved) {
+		if (!this.connections.isEmpty() || getScanInterval() > 0) {
+			return false;
+		}
+		if (this.managed) {
+			return true;
+		}
+		return !moved && getTransmitRange() == this.rangeAtUpdate &&
+			!nearInterfacesChanged();
+	}
+
+	/**
+	 * Returns true if any interface near this one has moved, changed its
+	 * range or its activeness since its last update
+	 */
+	private boolean nearInterfacesChanged() {
+		for (NetworkInterface i : optimizer.getNearInterfaces(this)) {
+			if (i == this) {
+				continue;
+			}
+			if (!(i instanceof SimpleBroadcastInterface) ||
+					i.getTransmitRange() !=
+						((SimpleBroadcastInterface)i).rangeAtUpdate ||
+					i.getHost().hasChangedSinceUpdate()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Returns a string representation of the object.
 	 * @return a string representation of the object.
@@ -70,10 +70,12 @@ public class ActivenessHandler {
 	}
 	
 	/**
-	 * Returns true if node should be active at the moment
+	 * Returns true if node should be active at the moment. Synchronized
+	 * because the handler is shared by all replicas of a movement model,
+	 * which may be moved concurrently.
 	 * @return true if node should be active at the moment
 	 */
-	public boolean isActive() {
+	public synchronized boolean isActive() {
 		if (this.activeTimes == null) {
 			return true; // no inactive times 
 		}
@@ -93,6 +95,29 @@ public class ActivenessHandler {
 		
 		return curRange.isInRange(time);
 	}
+	
+	/**
+	 * Returns the next time when the activeness of the node may change
+	 * @return The time of the next activeness change or Double.MAX_VALUE if
+	 * the activeness never changes again
+	 */
+	public synchronized double nextChangeTime() {
+		if (this.activeTimes == null) {
+			return Double.MAX_VALUE;
+		}
+		
+		double time = SimClock.getTime();
+		while (this.curRange != null && this.curRange.isOut(time)) {
+			this.curRange = activeTimes.poll(); // skip the past time ranges
+		}
+		if (this.curRange == null) {
+			return Double.MAX_VALUE;
+		}
+		if (time < this.curRange.start) {
+			return this.curRange.start;
+		}
+		return this.curRange.end;
+	}
 
 	/**
 	 * Class for handling time ranges
@@ -400,6 +400,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
 	}
+
+	/**
+	 * Returns true for this class (but not for its subclasses); replicas
+	 * share no mutable state.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return getClass() == MapBasedMovement.class;
+	}
 	
 	public Coord getLastLocation() {
 		if (lastMapNode != null) {
@@ -12,6 +12,8 @@ import core.ModuleCommunicationBus;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
+import core.SimulationContext;
+import core.World;
 
 /**
  * <P>Superclass for all movement models. All subclasses must contain at least a 
@@ -43,9 +45,17 @@ public abstract class MovementModel {
 	public static final String WORLD_SIZE = "worldSize";
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
+	/** Per host random number streams -setting id ({@value}). Boolean. If
+	 * true, the movement model of every host draws its random numbers from a
+	 * stream of its own that is seeded from {@link #RNG_SEED} and the host's
+	 * address, so the movement of a host doesn't depend on the order the
+	 * hosts are moved in. Default is false, unless parallel movement
+	 * ({@link World#PARALLEL_MOVEMENT_S}) is enabled. */
+	public static final String HOST_RNG_STREAMS = "hostRngStreams";
         
-	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	/** common rng for all movement models in the simulation (shared through
+	 * the simulation context) */
+	protected Random rng; 
 	
 	private ActivenessHandler ah;
 		
@@ -101,6 +111,7 @@ public abstract class MovementModel {
 		double[] times;
 		
 		ah = new ActivenessHandler(settings);
+		this.rng = sharedRng();
 		
                 if (settings.contains(MOVEAREA)) {
 			moveArea = settings.getInt(MOVEAREA);
@@ -154,6 +165,7 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		this.rng = sharedRng();
 	}
 		
 	/**
@@ -214,6 +226,75 @@ public abstract class MovementModel {
 	 */
 	public abstract Coord getInitialLocation();
 	
+	/**
+	 * Gives this model the random number stream of the host with the given
+	 * address, if per host streams are enabled (see
+	 * {@link #HOST_RNG_STREAMS}). Called by the host right after it has
+	 * replicated the model.
+	 * @param address Address of the host that uses this model
+	 */
+	public void setHostAddress(int address) {
+		if (!useHostRngStreams()) {
+			return;
+		}
+		Settings s = new Settings(MOVEMENT_MODEL_NS);
+		long seed = s.contains(RNG_SEED) ? s.getInt(RNG_SEED) : 0;
+		this.rng = new Random(hostSeed(seed, address));
+		rngChanged();
+	}
+
+	/**
+	 * Called when the random number generator of this model has been
+	 * replaced with a host specific one. Models that have passed the
+	 * generator to their helpers (or share helpers with mutable state
+	 * between replicas) should renew the helpers here.
+	 */
+	protected void rngChanged() {
+		// nothing to renew by default
+	}
+
+	/**
+	 * Returns true if the path related methods ({@link #getPath()},
+	 * {@link #nextPathAvailable()} and {@link #isActive()}) of different
+	 * replicas of this model can be called concurrently from different
+	 * threads (when the models use per host random number streams). Only
+	 * models that don't share mutable state between replicas should return
+	 * true, and subclasses should not inherit the answer, so this
+	 * implementation returns false.
+	 * @return true if replicas of this model can move hosts concurrently
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the movement models get per host random number streams
+	 */
+	private static boolean useHostRngStreams() {
+		Settings s = new Settings(MOVEMENT_MODEL_NS);
+		if (s.contains(HOST_RNG_STREAMS) && s.getBoolean(HOST_RNG_STREAMS)) {
+			return true;
+		}
+		s = new Settings(World.SETTINGS_NS);
+		return s.contains(World.PARALLEL_MOVEMENT_S) &&
+			s.getBoolean(World.PARALLEL_MOVEMENT_S);
+	}
+
+	/**
+	 * Derives the seed of a host's random number stream from the common
+	 * seed and the host's address (like the streams of
+	 * {@link java.util.SplittableRandom}, with a SplitMix64 mixing function)
+	 * @param seed The common seed
+	 * @param address Address of the host
+	 * @return The seed of the host's stream
+	 */
+	public static long hostSeed(long seed, int address) {
+		long z = seed + (address + 1L) * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
 	/**
 	 * Returns true if this node is active at the moment (false if not)
 	 * @return true if this node is active (false if not)
@@ -221,6 +302,15 @@ public abstract class MovementModel {
 	public boolean isActive() {
 		return ah.isActive();
 	}
+	
+	/**
+	 * Returns the next time when the node's activeness may change
+	 * @return The time of the next activeness change or Double.MAX_VALUE if
+	 * the activeness never changes again
+	 */
+	public double nextActivenessChange() {
+		return ah.nextChangeTime();
+	}
 		
 	/**
 	 * Returns a sim time when the next path is available. This implementation
@@ -262,10 +352,25 @@ public abstract class MovementModel {
 	public abstract MovementModel replicate();
 	
 	/**
-	 * Resets all static fields to default values
+	 * Returns the random number generator that is shared by all movement
+	 * models of the current simulation context
+	 * @return the shared random number generator
+	 */
+	protected static Random sharedRng() {
+		SimulationContext context = SimulationContext.current();
+		if (context.getMovementRng() == null) {
+			reset();
+		}
+		return context.getMovementRng();
+	}
+	
+	/**
+	 * Resets the shared random number generator of the current simulation
+	 * context
 	 */
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
+		Random rng;
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
 			rng = new Random(seed);
@@ -274,6 +379,7 @@ public abstract class MovementModel {
 		else {
 			rng = new Random(0);
 		}
+		SimulationContext.current().setMovementRng(rng);
 	}
 	
 }
@@ -81,6 +81,15 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		return new RandomWalk(this);
 	}
 
+	/**
+	 * Returns true for this class (but not for its subclasses); replicas
+	 * share no mutable state.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return getClass() == RandomWalk.class;
+	}
+
 	public Coord getLastLocation() {
 		return lastWaypoint;
 	}
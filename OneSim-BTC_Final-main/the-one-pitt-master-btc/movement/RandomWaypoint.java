@@ -58,6 +58,15 @@ public class RandomWaypoint extends MovementModel {
 	public RandomWaypoint replicate() {
 		return new RandomWaypoint(this);
 	}
+
+	/**
+	 * Returns true for this class (but not for its subclasses); replicas
+	 * share no mutable state.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return getClass() == RandomWaypoint.class;
+	}
 	
 	protected Coord randomCoord() {
 		return new Coord(rng.nextDouble() * getMaxX(),
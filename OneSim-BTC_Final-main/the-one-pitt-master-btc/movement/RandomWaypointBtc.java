@@ -63,6 +63,15 @@ public class RandomWaypointBtc extends MovementModel {
         return new RandomWaypointBtc(this);
     }
 
+    /**
+     * Returns true for this class (but not for its subclasses); replicas
+     * share no mutable state.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return getClass() == RandomWaypointBtc.class;
+    }
+
     protected Coord randomCoord() {
         switch (this.moveArea) {
             case 1:
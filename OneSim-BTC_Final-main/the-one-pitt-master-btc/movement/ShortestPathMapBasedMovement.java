@@ -45,6 +45,16 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		this.pois = mbm.pois;
 	}
 	
+	/**
+	 * Creates a path finder and a POI handler of its own for this replica,
+	 * since the ones of the prototype are shared by the other replicas
+	 */
+	@Override
+	protected void rngChanged() {
+		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		this.pois = new PointsOfInterest(pois, rng);
+	}
+
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
@@ -70,4 +80,14 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		return new ShortestPathMapBasedMovement(this);
 	}
 
+	/**
+	 * Returns true for this class (but not for its subclasses); replicas
+	 * that use per host random number streams have path finders and POI
+	 * handlers of their own (see {@link #rngChanged()}).
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return getClass() == ShortestPathMapBasedMovement.class;
+	}
+
 }
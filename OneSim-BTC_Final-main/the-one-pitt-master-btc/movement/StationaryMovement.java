@@ -67,4 +67,13 @@ public class StationaryMovement extends MovementModel {
 		return new StationaryMovement(this);
 	}
 
+	/**
+	 * Returns true for this class (but not for its subclasses); replicas
+	 * share no mutable state.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return getClass() == StationaryMovement.class;
+	}
+
 }
@@ -65,6 +65,20 @@ public class PointsOfInterest {
 		this.rng = rng;
 		readPois(settings);
 	}
+
+	/**
+	 * Creates a POI handler that shares the POIs of another handler but
+	 * uses a different random number generator
+	 * @param proto The handler whose POIs are shared
+	 * @param rng The random number generator to use
+	 */
+	public PointsOfInterest(PointsOfInterest proto, Random rng) {
+		this.poiLists = proto.poiLists;
+		this.poiProbs = proto.poiProbs;
+		this.map = proto.map;
+		this.okMapNodeTypes = proto.okMapNodeTypes;
+		this.rng = rng;
+	}
 	
 	/**
 	 * Selects a random destination from POIs or all MapNodes. Selecting among
@@ -8,6 +8,7 @@ package rLearn;
 import core.DTNHost;
 import core.Settings;
 import core.SimScenario;
+import core.SimulationContext;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -21,53 +22,83 @@ import java.util.Set;
  */
 public class QLearn {
 
-    public static Map<DTNHost, Map<DTNHost, Double>> directTrust = new HashMap<DTNHost, Map<DTNHost, Double>>();
-    public static Map<DTNHost, Double> suspension = new HashMap<DTNHost, Double>();
-    public static Map<DTNHost, ArrayList<Double>> indirectTrust = new HashMap<DTNHost, ArrayList<Double>>();
+    private Map<DTNHost, Map<DTNHost, Double>> directTrust = new HashMap<DTNHost, Map<DTNHost, Double>>();
+    private Map<DTNHost, Double> suspension = new HashMap<DTNHost, Double>();
+    private Map<DTNHost, ArrayList<Double>> indirectTrust = new HashMap<DTNHost, ArrayList<Double>>();
     
  
-   public static Map<DTNHost, Integer> updateCounter = new HashMap<DTNHost, Integer>();
+   private Map<DTNHost, Integer> updateCounter = new HashMap<DTNHost, Integer>();
 
     public QLearn(Settings settings) {
     }
 
+    /**
+     * Creates the trust tables of one simulation. Use {@link #current()}
+     * to get the tables of the current simulation context.
+     */
+    public QLearn() {
+    }
+
+    /**
+     * Returns the trust tables of the current simulation context
+     * @return the trust tables of the current simulation context
+     */
+    public static QLearn current() {
+        return SimulationContext.current().getQLearn();
+    }
+
+    public static Map<DTNHost, Map<DTNHost, Double>> getDirectTrust() {
+        return current().directTrust;
+    }
+
+    public static Map<DTNHost, Double> getSuspension() {
+        return current().suspension;
+    }
+
+    public static Map<DTNHost, Integer> getUpdateCounter() {
+        return current().updateCounter;
+    }
+
     public static Map<DTNHost, ArrayList<Double>> getIndirectTrust() {
-        return indirectTrust;
+        return current().indirectTrust;
     }
 
     public static Set<DTNHost> getSuspended() {
-        return suspended;
+        return current().suspended;
     }
 
     public static void setSuspended(Set<DTNHost> suspended) {
-        QLearn.suspended = suspended;
+        current().suspended = suspended;
     }
-    public static Set<DTNHost> suspended = new HashSet<DTNHost>();
+    private Set<DTNHost> suspended = new HashSet<DTNHost>();
 
     private static Double BSI = 43200.0; //12 jam
 
     private static void satisfiedTrx(DTNHost verificator, DTNHost host) {
-        directTrust.get(verificator).put(host, directTrust.get(verificator).get(host) + verificator.getCoopFactor() * (1 - Math.abs(directTrust.get(verificator).get(host))));
-        if ((suspension.get(host) - 1800.0) >= 0.0) {
-            suspension.put(host, suspension.get(host) - 1800.0);
+        QLearn state = current();
+        state.directTrust.get(verificator).put(host, state.directTrust.get(verificator).get(host) + verificator.getCoopFactor() * (1 - Math.abs(state.directTrust.get(verificator).get(host))));
+        if ((state.suspension.get(host) - 1800.0) >= 0.0) {
+            state.suspension.put(host, state.suspension.get(host) - 1800.0);
         } else {
-            suspension.put(host, 0.0);
+            state.suspension.put(host, 0.0);
         }
     }
 
     private static void unsatisfiedTrx(DTNHost verificator, DTNHost host) {
-        if ((suspension.get(host) + BSI) >= 86400.0) {
-            suspension.put(host, 86400.0);
+        QLearn state = current();
+        if ((state.suspension.get(host) + BSI) >= 86400.0) {
+            state.suspension.put(host, 86400.0);
         } else {
-            suspension.put(host, suspension.get(host) + BSI);
+            state.suspension.put(host, state.suspension.get(host) + BSI);
         }
-        directTrust.get(verificator).put(host, directTrust.get(verificator).get(host) + verificator.getNegativeFactor() * (1 - Math.abs(directTrust.get(verificator).get(host))));
+        state.directTrust.get(verificator).put(host, state.directTrust.get(verificator).get(host) + verificator.getNegativeFactor() * (1 - Math.abs(state.directTrust.get(verificator).get(host))));
     }
 
     public static void updateIT(DTNHost host, DTNHost verificator) {
-        ArrayList curIT = indirectTrust.get(host);
-        curIT.add((directTrust.get(verificator).get(host)));
-        indirectTrust.put(host, curIT);
+        QLearn state = current();
+        ArrayList curIT = state.indirectTrust.get(host);
+        curIT.add((state.directTrust.get(verificator).get(host)));
+        state.indirectTrust.put(host, curIT);
     }
 
     public static void updateQ(DTNHost host, DTNHost verificator, boolean status) {
@@ -84,19 +115,44 @@ public class QLearn {
     }
 
     public static void updateSus(DTNHost host) {
-        if (QLearn.suspension.containsKey(host)) {
-            if (QLearn.suspension.get(host) - SimScenario.getInstance().getUpdateInterval() > 0.0) {
-                QLearn.suspended.add(host);
-                QLearn.suspension.put(host, QLearn.suspension.get(host) - SimScenario.getInstance().getUpdateInterval());
-            } else if (QLearn.suspension.get(host) - SimScenario.getInstance().getUpdateInterval() <= 0.0) {
-                QLearn.suspension.put(host, 0.0);
-                QLearn.suspended.remove(host);
+        updateSus(host, SimScenario.getInstance().getUpdateInterval());
+    }
+
+    /**
+     * Decreases the suspension time of a host by the given amount of time
+     * @param host The host
+     * @param elapsed How much time (seconds) has passed
+     */
+    public static void updateSus(DTNHost host, double elapsed) {
+        QLearn state = current();
+        if (state.suspension.containsKey(host)) {
+            if (state.suspension.get(host) - elapsed > 0.0) {
+                state.suspended.add(host);
+                state.suspension.put(host, state.suspension.get(host) - elapsed);
+            } else if (state.suspension.get(host) - elapsed <= 0.0) {
+                state.suspension.put(host, 0.0);
+                state.suspended.remove(host);
+            }
+        }
+    }
+
+    /**
+     * Returns the shortest remaining suspension time of the suspended hosts
+     * @return The shortest remaining suspension time or Double.MAX_VALUE if
+     * no host is suspended
+     */
+    public static double getMinSuspension() {
+        double min = Double.MAX_VALUE;
+        for (double s : current().suspension.values()) {
+            if (s > 0.0 && s < min) {
+                min = s;
             }
         }
+        return min;
     }
     
    public static double getAvgIT(DTNHost h){
-       ArrayList<Double> ITList = indirectTrust.get(h);
+       ArrayList<Double> ITList = current().indirectTrust.get(h);
        Double sum = 0.0;
        for (Double it : ITList) {
            sum += it;
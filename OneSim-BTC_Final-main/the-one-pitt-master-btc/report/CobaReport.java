@@ -42,20 +42,20 @@ public class CobaReport extends Report {
             cetak += "," + h.toString();
         }
         write(cetak);
-        for (Map.Entry<DTNHost, Map<DTNHost, Double>> entryDT : QLearn.directTrust.entrySet()) {
+        for (Map.Entry<DTNHost, Map<DTNHost, Double>> entryDT : QLearn.getDirectTrust().entrySet()) {
             out.print(entryDT.getKey());
             for (DTNHost h : listHost) {
-                out.print("," + QLearn.directTrust.get(entryDT.getKey()).get(h));
+                out.print("," + QLearn.getDirectTrust().get(entryDT.getKey()).get(h));
             }
             write("");
         }
         write("\nIndirect Trust");
-        for (Map.Entry<DTNHost, ArrayList<Double>> entryIT : QLearn.indirectTrust.entrySet()) {
+        for (Map.Entry<DTNHost, ArrayList<Double>> entryIT : QLearn.getIndirectTrust().entrySet()) {
             write(entryIT.getKey() + "," + QLearn.getAvgIT(entryIT.getKey()));
         }
 
         write("\nsuspension");
-        for (Map.Entry<DTNHost, Double> entrySus : QLearn.suspension.entrySet()) {
+        for (Map.Entry<DTNHost, Double> entrySus : QLearn.getSuspension().entrySet()) {
             write(entrySus.getKey() + "," + entrySus.getValue());
         }
 
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.File;
+
+import btc.BlockChain;
+import btc.LedgerJournal;
+import core.Settings;
+
+/**
+ * Streams all the mined blocks of the {@link BlockChain} to a binary
+ * {@link LedgerJournal} file that can be replayed offline with
+ * {@link btc.LedgerJournalReader}. The text output of the report only
+ * contains a summary of the journal. The journal is written to
+ * <CODE>reportDir/scenarioName_LedgerJournal.bin</CODE> unless
+ * {@link #JOURNAL_FILE_S} is defined.
+ */
+public class LedgerJournalReport extends Report {
+	/** Path of the journal file -setting id ({@value}) */
+	public static final String JOURNAL_FILE_S = "journalFile";
+	/** Suffix of the journal file if no explicit path is given */
+	public static final String JOURNAL_SUFFIX = ".bin";
+
+	private LedgerJournal journal;
+
+	/**
+	 * Constructor.
+	 */
+	public LedgerJournalReport() {
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		Settings s = getSettings();
+		String fileName;
+
+		if (s.contains(JOURNAL_FILE_S)) {
+			fileName = s.valueFillString(s.getSetting(JOURNAL_FILE_S));
+		}
+		else {
+			s.setNameSpace(null);
+			String outDir = s.getSetting(REPORTDIR_SETTING);
+			if (!outDir.endsWith("/")) {
+				outDir += "/";
+			}
+			fileName = outDir + getScenarioName() + "_LedgerJournal" +
+				JOURNAL_SUFFIX;
+		}
+
+		this.journal = new LedgerJournal(new File(fileName));
+		BlockChain.setJournal(journal);
+	}
+
+	@Override
+	public void done() {
+		BlockChain.setJournal(null);
+		journal.close();
+
+		write("journal: " + journal.getFile().getPath());
+		write("blocks: " + journal.getNrofBlocks());
+		write("bytes: " + (journal.getBytesWritten() +
+				LedgerJournal.HEADER_SIZE));
+		super.done();
+	}
+}
@@ -77,7 +77,7 @@ public class ReportSignature extends Report implements MessageListener {
             String cetak = "";
 		for(Message m : pesen){
                     cetak += m + " : " + m.getHops() + "\n";
-                    signatures = (LinkedList<byte[]>) m.getProperty("signatures");
+                    signatures = (List<byte[]>) m.getProperty("signatures");
                     for(byte[] signature : signatures){
                         cetak += DatatypeConverter.printHexBinary(signature);
                         cetak += "\n";
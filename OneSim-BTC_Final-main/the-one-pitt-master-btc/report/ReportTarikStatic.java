@@ -5,7 +5,6 @@
 package report;
 
 import btc.BlockChain;
-import static btc.BlockChain.blockchain;
 import btc.Incentive;
 import btc.Transaction;
 import btc.Wallet;
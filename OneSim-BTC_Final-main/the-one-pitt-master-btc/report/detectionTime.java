@@ -22,7 +22,7 @@ public class detectionTime extends Report {
     @Override
     public void done() {
         write("host,detection time");
-        for (Map.Entry<DTNHost, Double> detTime : Incentive.detectionTime.entrySet()) {
+        for (Map.Entry<DTNHost, Double> detTime : Incentive.getDetectionTime().entrySet()) {
             write(detTime.getKey() + "," + detTime.getValue());
         }
         super.done();
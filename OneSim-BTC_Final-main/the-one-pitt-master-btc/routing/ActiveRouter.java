@@ -5,11 +5,11 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
+import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
@@ -17,6 +17,7 @@ import core.MessageListener;
 import core.Settings;
 import core.SimClock;
 import core.Tuple;
+import core.World;
 
 /**
  * Superclass of active routers. Contains convenience methods (e.g. 
@@ -40,6 +41,12 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ArrayList<Connection> sendingConnections;
 	/** sim time when the last TTL check was done */
 	private double lastTtlCheck;
+	/** should the router be updated only when it has something to do
+	 * (see {@link World#EVENT_DRIVEN_ROUTERS_S}) */
+	private boolean eventDriven;
+	/** has something happened since the last update that may give the
+	 * router work to do */
+	private boolean awake;
 	
 
 	/**
@@ -56,6 +63,13 @@ public abstract class ActiveRouter extends MessageRouter {
 		else {
 			this.deleteDelivered = false;
 		}
+		
+		Settings optimization = new Settings(World.SETTINGS_NS);
+		this.eventDriven = World.DEF_EVENT_DRIVEN_ROUTERS;
+		if (optimization.contains(World.EVENT_DRIVEN_ROUTERS_S)) {
+			this.eventDriven = optimization.getBoolean(
+					World.EVENT_DRIVEN_ROUTERS_S);
+		}
 	}
 	
 	/**
@@ -65,6 +79,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.eventDriven = r.eventDriven;
 	}
 	
 	@Override
@@ -72,6 +87,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		this.awake = true;
 	}
 	
 	/**
@@ -91,12 +107,10 @@ public abstract class ActiveRouter extends MessageRouter {
 		/* do a copy to avoid concurrent modification exceptions 
 		 * (startTransfer may remove messages) */
 		ArrayList<Message> temp = 
-			new ArrayList<Message>(this.getMessageCollection());
+			new ArrayList<Message>(getMessageBuffer().getMessagesTo(other));
 		for (Message m : temp) {
-			if (other == m.getTo()) {
-				if (startTransfer(m, con) == RCV_OK) {
-					return true;
-				}
+			if (startTransfer(m, con) == RCV_OK) {
+				return true;
 			}
 		}
 		return false;
@@ -105,6 +119,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	@Override 
 	public boolean createNewMessage(Message m) {
 		makeRoomForNewMessage(m.getSize());
+		wakeUp();
 		return super.createNewMessage(m);	
 	}
 	
@@ -122,6 +137,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message m = super.messageTransferred(id, from);
+		wakeUp();
 
 		/**
 		 *  N.B. With application support the following if-block
@@ -140,6 +156,12 @@ public abstract class ActiveRouter extends MessageRouter {
 		return m;
 	}
 	
+	@Override
+	public void messageAborted(String id, DTNHost from, int bytesRemaining) {
+		super.messageAborted(id, from, bytesRemaining);
+		wakeUp();
+	}
+	
 	/**
 	 * Returns a list of connections this host currently has with other hosts.
 	 * @return a list of connections this host currently has with other hosts
@@ -259,12 +281,10 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Drops messages whose TTL is less than zero.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
-			}
+		List<Message> expired = 
+			getMessageBuffer().getExpired(SimClock.getTime());
+		for (int i=0, n=expired.size(); i<n; i++) {
+			deleteMessage(expired.get(i).getId(), true);
 		}
 	}
 	
@@ -291,23 +311,16 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-			
+		/* messages that were received at the same time are in the order
+		 * they were added to the buffer */
+		for (Message m : getMessageBuffer().byReceiveTime()) {
 			if (excludeMsgBeingSent && isSending(m.getId())) {
 				continue; // skip the message(s) that router is sending
 			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
 	}
 	
 	/**
@@ -323,12 +336,12 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
-				}
+		List<Connection> connections = getConnections();
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			DTNHost to = con.getOtherNode(getHost());
+			for (Message m : getMessageBuffer().getMessagesTo(to)) {
+				forTuples.add(new Tuple<Message, Connection>(m,con));
 			}
 		}
 		
@@ -337,18 +350,17 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Tries to send messages for the connections that are mentioned
-	 * in the Tuples in the order they are in the list until one of
+	 * in the Tuples in the order they are iterated until one of
 	 * the connections starts transferring or all tuples have been tried.
+	 * The tuples after the accepted one are not iterated, so lazily ordered
+	 * tuples (see {@link SendQueue#lazilySorted(List, java.util.Comparator)})
+	 * are ordered only as far as needed.
 	 * @param tuples The tuples to try
 	 * @return The tuple whose connection accepted the message or null if
 	 * none of the connections accepted the message that was meant for them.
 	 */
 	protected Tuple<Message, Connection> tryMessagesForConnected(
-			List<Tuple<Message, Connection>> tuples) {
-		if (tuples.size() == 0) {
-			return null;
-		}
-		
+			Iterable<Tuple<Message, Connection>> tuples) {
 		for (Tuple<Message, Connection> t : tuples) {
 			Message m = t.getKey();
 			Connection con = t.getValue();
@@ -365,11 +377,12 @@ public abstract class ActiveRouter extends MessageRouter {
 	  * for receiving (or doesn't accept any). If a transfer is started, the
 	  * connection is included in the list of sending connections.
 	  * @param con Connection trough which the messages are sent
-	  * @param messages A list of messages to try
+	  * @param messages The messages to try
 	  * @return The message whose transfer was started or null if no 
 	  * transfer was started. 
 	  */
-	protected Message tryAllMessages(Connection con, List<Message> messages) {
+	protected Message tryAllMessages(Connection con,
+			Iterable<Message> messages) {
 		for (Message m : messages) {
 			int retVal = startTransfer(m, con); 
 			if (retVal == RCV_OK) {
@@ -386,15 +399,15 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Tries to send all given messages to all given connections. Connections
 	 * are first iterated in the order they are in the list and for every
-	 * connection, the messages are tried in the order they are in the list.
+	 * connection, the messages are tried in the order they are iterated.
 	 * Once an accepting connection is found, no other connections or messages
 	 * are tried.
-	 * @param messages The list of Messages to try
+	 * @param messages The Messages to try
 	 * @param connections The list of Connections to try
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
-	protected Connection tryMessagesToConnections(List<Message> messages,
+	protected Connection tryMessagesToConnections(Iterable<Message> messages,
 			List<Connection> connections) {
 		for (int i=0, n=connections.size(); i<n; i++) {
 			Connection con = connections.get(i);
@@ -410,8 +423,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Tries to send all messages that this router is carrying to all
 	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
-	 * {@link #tryMessagesToConnections(List, List)} for sending details.
+	 * {@link MessageRouter#getMessagesInQueueOrder()}. See 
+	 * {@link #tryMessagesToConnections(Iterable, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
@@ -423,11 +436,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-
-		return tryMessagesToConnections(messages, connections);
+		return tryMessagesToConnections(getMessagesInQueueOrder(),
+				connections);
 	}
 		
 	/**
@@ -539,7 +549,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	@Override
 	public void update() {
-		
+		this.awake = false;
 		super.update();
 		
 		/* in theory we can have multiple sending connections even though
@@ -571,6 +581,7 @@ public abstract class ActiveRouter extends MessageRouter {
 					this.makeRoomForMessage(0);
 				}
 				sendingConnections.remove(i);
+				wakeUp(); // neighbors may have waited for this to finish
 			}
 			else {
 				/* index increase needed only if nothing was removed */
@@ -586,6 +597,98 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 	
+	/**
+	 * Returns true if this router's {@link #update()} does nothing else than
+	 * finalizes transfers, drops expired messages and tries to start new
+	 * transfers, i.e., the router can sleep between the events that can give
+	 * it something to do. This version returns false; subclasses whose
+	 * update doesn't depend on the passing time may override this.
+	 * @return true if the router can be updated only when needed
+	 * @see World#EVENT_DRIVEN_ROUTERS_S
+	 */
+	protected boolean canSleep() {
+		return false;
+	}
+	
+	/**
+	 * Wakes up this router and, if it is event driven, also the routers of
+	 * the hosts this host is connected to, since a change in this router
+	 * (e.g., a finished transfer or a removed message) may give them
+	 * something to send to it.
+	 */
+	@Override
+	public void wakeUp() {
+		this.awake = true;
+		if (!this.eventDriven) {
+			return;
+		}
+		DTNHost host = getHost();
+		List<Connection> connections = host.getConnections();
+		for (int i=0, n=connections.size(); i<n; i++) {
+			MessageRouter r = connections.get(i).getOtherNode(host).getRouter();
+			if (r instanceof ActiveRouter) {
+				((ActiveRouter)r).awake = true;
+			}
+		}
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			wakeUp(); // neighbors may send the message again
+		}
+		return m;
+	}
+	
+	/**
+	 * Returns true if the router can have something to do: an event has
+	 * woken it up, a transfer it is sending is due to complete, or its next
+	 * TTL check is due. Connection changes, new and removed messages and
+	 * finished transfers wake up the router and its neighbors, so having
+	 * messages and connections alone doesn't need an update.
+	 * Routers that are not event driven always need updates.
+	 */
+	@Override
+	public boolean needsUpdate() {
+		if (!this.eventDriven || this.awake || !canSleep() || 
+				hasApplications()) {
+			return true;
+		}
+		
+		double now = SimClock.getTime();
+		for (int i=0, n=this.sendingConnections.size(); i<n; i++) {
+			Connection con = this.sendingConnections.get(i);
+			if (con.getMessage() == null || 
+					!(con instanceof CBRConnection)) {
+				return true; // aborted or completion time is not known
+			}
+			CBRConnection cbr = (CBRConnection)con;
+			/* transfer is done when less than one byte is remaining */
+			if (now >= cbr.getTransferDoneTime() - 1.0 / cbr.getSpeed()) {
+				return true;
+			}
+		}
+		if (this.sendingConnections.size() > 0 || 
+				this.getNrofMessages() == 0) {
+			return false;
+		}
+		
+		return now - lastTtlCheck >= TTL_CHECK_INTERVAL;
+	}
+	
+	/**
+	 * Returns the time of the next TTL check, if the router has messages
+	 * whose TTL to check.
+	 */
+	@Override
+	public double getNextTimedUpdate() {
+		if (this.getNrofMessages() == 0) {
+			return Double.MAX_VALUE;
+		}
+		return lastTtlCheck + TTL_CHECK_INTERVAL;
+	}
+	
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()} 
 	 * due connection going down. This happens on the sending host. 
@@ -6,6 +6,7 @@ import btc.Wallet;
 import java.util.*;
 
 import core.*;
+import input.MessageCreateEventBtc;
 import org.bouncycastle.asn1.esf.OtherHash;
 import static routing.MessageRouter.DENIED_DELIVERED;
 import static routing.MessageRouter.DENIED_OLD;
@@ -102,14 +103,33 @@ public class DecisionEngineRouter extends ActiveRouter {
     public static final String ENGINE_SETTING = "decisionEngine";
     public static final String TOMBSTONE_SETTING = "tombstones";
     public static final String CONNECTION_STATE_SETTING = "";
+    /**
+     * Hop chains of replicates -setting id ({@value}). Boolean. If true, a
+     * hop's signature is added only to the hop chain of the replicate it
+     * signs (the replicates share their common prefix); if false (default),
+     * all the replicates of a message share one chain.
+     */
+    public static final String REPLICA_HOP_CHAINS_SETTING = "replicaHopChains";
+    /**
+     * Hash-chained attestations -setting id ({@value}). Boolean. If true, a
+     * hop signs the digest <CODE>H(previous digest || message || hop)</CODE>
+     * (see {@link HopChain#link(Hash256, String, String)}) instead of the
+     * message and hop names. Default is false.
+     */
+    public static final String HASH_CHAINED_SETTING = "hashChainedAttestations";
 
     public Double estimatedTrust = 0.0;
 
     protected boolean tombstoning;
+    protected boolean replicaHopChains;
+    protected boolean hashChainedAttestations;
     protected RoutingDecisionEngine decider;
-    protected List<Tuple<Message, Connection>> outgoingMessages;
+    /**
+     * Messages to send, in a queue for every connection
+     */
+    protected OutgoingQueues outgoingMessages;
 
-    protected Set<String> tombstones;
+    protected MessageIdStore tombstones;
 
     //trusttoken yang dibawa oleh tiap2 node
 //    protected List<Message> trustToken;
@@ -125,7 +145,10 @@ public class DecisionEngineRouter extends ActiveRouter {
     protected KeyPair keyPair;
 
     protected Map<DTNHost, PublicKey> publicKeys;
-    protected Map<String, Transaction> deposits;
+    /**
+     * Deposits of messages by their interned IDs
+     */
+    protected IntMap<Transaction> deposits;
 
     protected Set<DTNHost> blacklist;
     private int misbehavingCount = 0;
@@ -141,7 +164,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 
         Settings routeSettings = new Settings(PUBSUB_NS);
 
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new OutgoingQueues();
 
         decider = (RoutingDecisionEngine) routeSettings.createIntializedObject(
                 "routing." + routeSettings.getSetting(ENGINE_SETTING));
@@ -151,33 +174,43 @@ public class DecisionEngineRouter extends ActiveRouter {
         } else {
             tombstoning = false;
         }
+        if (routeSettings.contains(REPLICA_HOP_CHAINS_SETTING)) {
+            replicaHopChains = routeSettings.getBoolean(
+                    REPLICA_HOP_CHAINS_SETTING);
+        }
+        if (routeSettings.contains(HASH_CHAINED_SETTING)) {
+            hashChainedAttestations = routeSettings.getBoolean(
+                    HASH_CHAINED_SETTING);
+        }
 
         if (tombstoning) {
-            tombstones = new HashSet<String>(10);
+            tombstones = createMessageIdStore(false);
         }
         conStates = new HashMap<Connection, Integer>(4);
         trustToken = new HashMap<DTNHost, Set<byte[]>>();
         publicKeys = new HashMap<DTNHost, PublicKey>();
-        deposits = new HashMap<String, Transaction>();
+        deposits = new IntMap<Transaction>();
         blacklist = new HashSet<DTNHost>();
         
     }
 
     public DecisionEngineRouter(DecisionEngineRouter r) {
         super(r);
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new OutgoingQueues();
         decider = r.decider.replicate();
         tombstoning = r.tombstoning;
+        replicaHopChains = r.replicaHopChains;
+        hashChainedAttestations = r.hashChainedAttestations;
 
         if (this.tombstoning) {
-            tombstones = new HashSet<String>(10);
+            tombstones = createMessageIdStore(false);
         }
         conStates = new HashMap<Connection, Integer>(4);
 
         //inisialisasi trusttoken
         trustToken = new HashMap<DTNHost, Set<byte[]>>();
         publicKeys = new HashMap<DTNHost, PublicKey>();
-        deposits = new HashMap<String, Transaction>();
+        deposits = new IntMap<Transaction>();
         blacklist = new HashSet<DTNHost>();
     }
 
@@ -191,7 +224,7 @@ public class DecisionEngineRouter extends ActiveRouter {
         if (decider.newMessage(m)) {
 // if(m.getId().equals("M14"))
 // System.out.println("Host: " + getHost() + "Creating M14");
-            float price = (float) m.getProperty("rewards");
+            float price = m.get(MessageCreateEventBtc.REWARDS);
 
             if (getHost().getWallet().getBalance() > price) {
                 makeRoomForNewMessage(m.getSize());
@@ -201,9 +234,10 @@ public class DecisionEngineRouter extends ActiveRouter {
                 //proses deposit
                 Wallet fromWallet = getHost().getWallet();
                 Wallet toWallet = m.getTo().getWallet();
-                deposits.put(m.toString(), fromWallet.sendFunds(toWallet.publicKey, price));
+                deposits.put(m.getInternedId(), fromWallet.sendFunds(toWallet.publicKey, price));
                 addSignatureToMessage(m, this.getHost());
                 findConnectionsForNewMessage(m, getHost());
+                wakeUp();
                 return true;
             }
         }
@@ -288,11 +322,11 @@ public class DecisionEngineRouter extends ActiveRouter {
 
             //jika verificator bertemu dengan messenger
             if (isVerificator(getHost()) && (isMessenger(otherNode) || isMisbehave(otherNode))) {
-                Map<String, Transaction> otherDeposits = ((DecisionEngineRouter) otherNode.getRouter()).getDeposits();
+                IntMap<Transaction> otherDeposits = ((DecisionEngineRouter) otherNode.getRouter()).getDeposits();
 
                 if (!otherDeposits.isEmpty()) {
-                    for (Map.Entry<String, Transaction> entry : otherDeposits.entrySet()) {
-                        Incentive.setDeposit(entry.getKey(), entry.getValue());
+                    for (int key : otherDeposits.keys()) {
+                        Incentive.setDeposit(key, otherDeposits.get(key));
                     }
                     otherDeposits.clear();
                 }
@@ -332,14 +366,12 @@ public class DecisionEngineRouter extends ActiveRouter {
 
             //jika volunteer bertemu shelter akan meminta deposit
             if ((isMessenger(getHost()) || isMisbehave(getHost())) && isShelter(otherNode)) {
-                Map<String, Transaction> otherDeposits = ((DecisionEngineRouter) otherNode.getRouter()).getDeposits();
+                IntMap<Transaction> otherDeposits = ((DecisionEngineRouter) otherNode.getRouter()).getDeposits();
                 if (!otherDeposits.isEmpty()) {
 //                    MessageRouter mroute = otherNode.getRouter();
 //                    DecisionEngineRouter deRoute = (DecisionEngineRouter) mroute;
                     //volunteere meminta map shelter
-                    for (Map.Entry<String, Transaction> entry : otherDeposits.entrySet()) {
-                        this.deposits.put(entry.getKey(), entry.getValue());
-                    }
+                    this.deposits.putAll(otherDeposits);
                     //hapus map shelter
                     otherDeposits.clear();
                 }
@@ -377,7 +409,7 @@ public class DecisionEngineRouter extends ActiveRouter {
             for (Message m : msgs) {
                 if (decider.shouldSendMessageToHost(m, otherNode, this.getHost())) {
 
-                    outgoingMessages.add(new Tuple<Message, Connection>(m, con));
+                    outgoingMessages.add(m, con);
 
                     //mencatat trusttoken dirinya
                     addTrustToken(this.getHost(), m);
@@ -411,17 +443,11 @@ public class DecisionEngineRouter extends ActiveRouter {
              * If we  were trying to send message to this peer, we need to remove them
              * from the outgoing List.
              */
-            for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                    i.hasNext();) {
-                Tuple<Message, Connection> t = i.next();
-                if (t.getValue() == con) {
-                    i.remove();
-                }
-            }
+            outgoingMessages.removeConnection(con);
         }
     }
 
-    public Map<String, Transaction> getDeposits() {
+    public IntMap<Transaction> getDeposits() {
         return deposits;
     }
 
@@ -544,14 +570,15 @@ public class DecisionEngineRouter extends ActiveRouter {
         if (isFirstDelivery) {
 //            Incentive.setAck(aMessage);
             Incentive.setAck(aMessage, this.publicKeys);
-            this.deliveredMessages.put(id, aMessage);
+            this.deliveredMessages.add(id, aMessage);
         }
-        this.deliveredMessages.put(id, aMessage);
+        this.deliveredMessages.add(id, aMessage);
 
         for (MessageListener ml : this.mListeners) {
             ml.messageTransferred(aMessage, from, getHost(),
                     isFirstDelivery);
         }
+        wakeUp();
 
         return aMessage;
     }
@@ -560,15 +587,7 @@ public class DecisionEngineRouter extends ActiveRouter {
     protected void transferDone(Connection con) {
         Message transferred = this.getMessage(con.getMessage().getId());
 
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(transferred.getId())
-                    && t.getValue().equals(con)) {
-                i.remove();
-                break;
-            }
-        }
+        outgoingMessages.remove(transferred.getId(), con);
 
         if (decider.shouldDeleteSentMessage(transferred, con.getOtherNode(getHost()))) {
 // if(transferred.getId().equals("M14"))
@@ -588,16 +607,12 @@ public class DecisionEngineRouter extends ActiveRouter {
     }
 
     @Override
-    public void deleteMessage(String id, boolean drop) {
-        super.deleteMessage(id, drop);
-
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(id)) {
-                i.remove();
-            }
+    protected Message removeFromMessages(String id) {
+        Message m = super.removeFromMessages(id);
+        if (m != null) {
+            outgoingMessages.removeMessage(id);
         }
+        return m;
     }
 
     @Override
@@ -611,14 +626,16 @@ public class DecisionEngineRouter extends ActiveRouter {
         }
 
         tryMessagesForConnected(outgoingMessages);
+    }
 
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (!this.hasMessage(t.getKey().getId())) {
-                i.remove();
-            }
-        }
+    /**
+     * The decision engines of this tree don't do anything in their update,
+     * so the router can sleep. Note that when the router sleeps, the update
+     * of the decision engine isn't called either.
+     */
+    @Override
+    protected boolean canSleep() {
+        return getClass() == DecisionEngineRouter.class;
     }
 
     public RoutingDecisionEngine getDecisionEngine() {
@@ -640,7 +657,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 //                if(isVolunteer(other) || isMisbehave(other) || m.getTo()==other){
 //                        if(!blacklist.contains(other) && !m.getHops().contains(other)){
 
-                outgoingMessages.add(new Tuple<Message, Connection>(m, c));
+                outgoingMessages.add(m, c);
 
                 //mencatat trusttoken dirinya
                 addTrustToken(this.getHost(), m);
@@ -746,16 +763,21 @@ public class DecisionEngineRouter extends ActiveRouter {
     }
 
     private void addSignatureToMessage(Message m, DTNHost thisHost) {
-        List<byte[]> signatures = (List<byte[]>) m.getProperty("signatures");
+        List<byte[]> signatures = m.get(MessageCreateEventBtc.SIGNATURES);
 
-        String signature = m.toString() + getHost().toString();
+        Hash256 digest = attestationDigest(signatures, m, getHost());
+        if (digest != null && signedLast((HopChain) signatures, m, getHost())) {
+            return; // one link per hop, even if sent over many connections
+        }
+        String signature = digest != null ? digest.toString()
+                : m.toString() + getHost().toString();
         byte[] result = null;
         try {
             result = do_RSAEncryption(signature, keyPair.getPrivate());
             if (signatures.isEmpty()) {
-                signatures.add(result);
+                addAttestation(m, signatures, result, digest);
             } else if (!result.equals(signatures.get(signatures.size() - 1))) {
-                signatures.add(result);
+                addAttestation(m, signatures, result, digest);
             }
 
 //            if(m.toString().equals("M6") || m.toString().equals("M1")){
@@ -771,19 +793,64 @@ public class DecisionEngineRouter extends ActiveRouter {
     }
 
     private void addSignatureMisToMessage(Message m, DTNHost host) {
-        List<byte[]> signatures = new LinkedList<byte[]>();
-        signatures = (List<byte[]>) m.getProperty("signatures");
+        List<byte[]> signatures = m.get(MessageCreateEventBtc.SIGNATURES);
 
-        String signature = m.toString() + host.toString();
+        Hash256 digest = attestationDigest(signatures, m, host);
+        String signature = digest != null ? digest.toString()
+                : m.toString() + host.toString();
         DecisionEngineRouter otherDe = (DecisionEngineRouter) host.getRouter();
 
         try {
-            signatures.add(do_RSAEncryption(signature, otherDe.getKeyPair().getPrivate()));
+            addAttestation(m, signatures, do_RSAEncryption(signature,
+                    otherDe.getKeyPair().getPrivate()), digest);
         } catch (Exception ex) {
 
         }
+    }
+
+    /**
+     * Returns the digest a host signs as the next hop of a message, or null
+     * if the attestations aren't hash-chained
+     */
+    private Hash256 attestationDigest(List<byte[]> signatures, Message m,
+            DTNHost host) {
+        if (!hashChainedAttestations || !(signatures instanceof HopChain)) {
+            return null;
+        }
+        return HopChain.link(((HopChain) signatures).lastDigest(), m.getId(),
+                host.toString());
+    }
 
-        m.updateProperty("signatures", signatures);
+    /**
+     * Returns true if a host has signed the last link of a hash-chained hop
+     * chain, i.e., the last digest is the one the host signs on top of the
+     * digest before it
+     */
+    private static boolean signedLast(HopChain chain, Message m,
+            DTNHost host) {
+        int n = chain.size();
+        if (n == 0 || chain.lastDigest() == null) {
+            return false;
+        }
+        Hash256 previous = n > 1 ? chain.getDigest(n - 2) : null;
+        return chain.lastDigest().equals(HopChain.link(previous, m.getId(),
+                host.toString()));
+    }
+
+    /**
+     * Adds an attestation to the hop chain of a message; only to the chain of
+     * this replicate if the replicates have chains of their own
+     */
+    private void addAttestation(Message m, List<byte[]> signatures,
+            byte[] attestation, Hash256 digest) {
+        if (!(signatures instanceof HopChain)) {
+            signatures.add(attestation);
+        } else if (replicaHopChains) {
+            m.set(MessageCreateEventBtc.SIGNATURES,
+                    ((HopChain) signatures).append(attestation, digest));
+        } else {
+            ((HopChain) signatures).appendInPlace(attestation, digest);
+        }
     }
 
 //    public List<Message> getTrustToken() {
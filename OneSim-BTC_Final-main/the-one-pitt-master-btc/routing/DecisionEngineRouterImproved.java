@@ -26,9 +26,12 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
 
     protected boolean tombstoning;
     protected RoutingDecisionEngineImproved decider;
-    protected List<Tuple<Message, Connection>> outgoingMessages;
+    /**
+     * Messages to send, in a queue for every connection
+     */
+    protected OutgoingQueues outgoingMessages;
 
-    protected Set<String> tombstones;
+    protected MessageIdStore tombstones;
 
     protected Map<Connection, Integer> conStates;
 
@@ -37,7 +40,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
 
         Settings routeSettings = new Settings(PUBSUB_NS);
 
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new OutgoingQueues();
 
         decider = (RoutingDecisionEngineImproved) routeSettings.createIntializedObject(
                 "routing." + routeSettings.getSetting(ENGINE_SETTING));
@@ -49,19 +52,19 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         }
 
         if (tombstoning) {
-            tombstones = new HashSet<String>(10);
+            tombstones = createMessageIdStore(false);
         }
         conStates = new HashMap<Connection, Integer>(4);
     }
 
     public DecisionEngineRouterImproved(DecisionEngineRouterImproved r) {
         super(r);
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new OutgoingQueues();
         decider = r.decider.replicate();
         tombstoning = r.tombstoning;
 
         if (this.tombstoning) {
-            tombstones = new HashSet<String>(10);
+            tombstones = createMessageIdStore(false);
         }
         conStates = new HashMap<Connection, Integer>(4);
     }
@@ -100,7 +103,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
             Collection<Message> msgs = getMessageCollection();
             for (Message m : msgs) {
                 if (decider.shouldSendMessageToHost(m, otherNode)) {
-                    outgoingMessages.add(new Tuple<Message, Connection>(m, con));
+                    outgoingMessages.add(m, con);
                 }
             }
         } else {
@@ -108,13 +111,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
 
             conStates.remove(con);
 
-            for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                    i.hasNext();) {
-                Tuple<Message, Connection> t = i.next();
-                if (t.getValue() == con) {
-                    i.remove();
-                }
-            }
+            outgoingMessages.removeConnection(con);
         }
     }
 
@@ -194,7 +191,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         }
 
         if (isFirstDelivery) {
-            this.deliveredMessages.put(id, aMessage);
+            this.deliveredMessages.add(id, aMessage);
         }
 
         for (MessageListener ml : this.mListeners) {
@@ -209,15 +206,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
     protected void transferDone(Connection con) {
         Message transferred = this.getMessage(con.getMessage().getId());
 
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(transferred.getId())
-                    && t.getValue().equals(con)) {
-                i.remove();
-                break;
-            }
-        }
+        outgoingMessages.remove(transferred.getId(), con);
 
         if (decider.shouldDeleteSentMessage(transferred, con.getOtherNode(getHost()))) {
             this.deleteMessage(transferred.getId(), false);
@@ -226,16 +215,12 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
     }
 
     @Override
-    public void deleteMessage(String id, boolean drop) {
-        super.deleteMessage(id, drop);
-
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(id)) {
-                i.remove();
-            }
+    protected Message removeFromMessages(String id) {
+        Message m = super.removeFromMessages(id);
+        if (m != null) {
+            outgoingMessages.removeMessage(id);
         }
+        return m;
     }
 
     @Override
@@ -248,14 +233,6 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         }
 
         tryMessagesForConnected(outgoingMessages);
-
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (!this.hasMessage(t.getKey().getId())) {
-                i.remove();
-            }
-        }
     }
 
     public RoutingDecisionEngineImproved getDecisionEngine() {
@@ -271,7 +248,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         for (Connection c : getConnections()) {
             DTNHost other = c.getOtherNode(getHost());
             if (other != from && decider.shouldSendMessageToHost(m, other)) {
-                outgoingMessages.add(new Tuple<Message, Connection>(m, c));
+                outgoingMessages.add(m, c);
             }
         }
     }
@@ -32,6 +32,11 @@ public class DirectDeliveryRouter extends ActiveRouter {
 		}
 	}
 	
+	@Override
+	protected boolean canSleep() {
+		return getClass() == DirectDeliveryRouter.class;
+	}
+	
 	@Override
 	public DirectDeliveryRouter replicate() {
 		return new DirectDeliveryRouter(this);
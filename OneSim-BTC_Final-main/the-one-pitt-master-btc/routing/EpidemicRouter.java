@@ -48,6 +48,11 @@ public class EpidemicRouter extends ActiveRouter {
 	}
 	
 	
+	@Override
+	protected boolean canSleep() {
+		return getClass() == EpidemicRouter.class;
+	}
+	
 	@Override
 	public EpidemicRouter replicate() {
 		return new EpidemicRouter(this);
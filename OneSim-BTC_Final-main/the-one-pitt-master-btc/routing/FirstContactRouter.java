@@ -65,6 +65,11 @@ public class FirstContactRouter extends ActiveRouter {
 		this.deleteMessage(con.getMessage().getId(), false);
 	}
 		
+	@Override
+	protected boolean canSleep() {
+		return getClass() == FirstContactRouter.class;
+	}
+	
 	@Override
 	public FirstContactRouter replicate() {
 		return new FirstContactRouter(this);
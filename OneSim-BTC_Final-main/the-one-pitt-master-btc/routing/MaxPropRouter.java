@@ -322,7 +322,7 @@ public class MaxPropRouter extends ActiveRouter {
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
 	 * hop counts and their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * @return The return value of {@link #tryMessagesForConnected(Iterable)}
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
 		List<Tuple<Message, Connection>> messages = 
@@ -357,8 +357,8 @@ public class MaxPropRouter extends ActiveRouter {
 		
 		/* sort the message-connection tuples according to the criteria
 		 * defined in MaxPropTupleComparator */ 
-		Collections.sort(messages, new MaxPropTupleComparator(calcThreshold()));
-		return tryMessagesForConnected(messages);	
+		return tryMessagesForConnected(sortForSending(messages,
+				new MaxPropTupleComparator(calcThreshold())));	
 	}
 	
 	/**
@@ -465,7 +465,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
 	 * hop counts and their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * @return The return value of {@link #tryMessagesForConnected(Iterable)}
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
 		List<Tuple<Message, Connection>> messages = 
@@ -500,8 +500,8 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 		
 		/* sort the message-connection tuples according to the criteria
 		 * defined in MaxPropTupleComparator */ 
-		Collections.sort(messages, new MaxPropTupleComparator(calcThreshold()));
-		return tryMessagesForConnected(messages);	
+		return tryMessagesForConnected(sortForSending(messages,
+				new MaxPropTupleComparator(calcThreshold())));	
 	}
 	
 	/**
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Message buffer of a router. The messages are stored by their IDs (in the
+ * same kind of hash map as before, so iterating the buffer gives the same
+ * order) and indexed by their receive time, their expiry time and their
+ * destination. The oldest message, the expired messages and the messages
+ * to a host can be found without scanning the whole buffer, and the buffer
+ * keeps track of the number of bytes it holds.
+ * <P>
+ * The receive time and the TTL of a message must not change while it is in
+ * the buffer; they are read when the message is added.</P>
+ */
+public class MessageBuffer {
+	/** Orders entries by their receive time (and by insertion order) */
+	private static final Comparator<Entry> RECEIVE_ORDER =
+		new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			int c = Double.compare(e1.receiveTime, e2.receiveTime);
+			return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+		}
+	};
+	/** Orders entries by their expiry time (and by insertion order) */
+	private static final Comparator<Entry> EXPIRY_ORDER =
+		new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			int c = Double.compare(e1.expiryTime, e2.expiryTime);
+			return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+		}
+	};
+
+	private HashMap<String, Message> messages;
+	private HashMap<String, Entry> entries;
+	private TreeSet<Entry> byReceiveTime;
+	private TreeSet<Entry> byExpiryTime;
+	private Map<DTNHost, Set<Message>> byDestination;
+	/** number of bytes the messages take */
+	private long occupancy;
+	/** sequence number of the next added message */
+	private long nextSeq;
+
+	/**
+	 * Creates a new, empty, buffer
+	 */
+	public MessageBuffer() {
+		this.messages = new HashMap<String, Message>();
+		this.entries = new HashMap<String, Entry>();
+		this.byReceiveTime = new TreeSet<Entry>(RECEIVE_ORDER);
+		this.byExpiryTime = new TreeSet<Entry>(EXPIRY_ORDER);
+		this.byDestination = new HashMap<DTNHost, Set<Message>>();
+	}
+
+	/**
+	 * Adds a message to the buffer. A message with the same ID is replaced.
+	 * @param m The message to add
+	 */
+	public void add(Message m) {
+		Entry old = entries.remove(m.getId());
+		if (old != null) {
+			unindex(old);
+		}
+		Entry e = new Entry(m, nextSeq++);
+		messages.put(m.getId(), m);
+		entries.put(m.getId(), e);
+		byReceiveTime.add(e);
+		byExpiryTime.add(e);
+
+		Set<Message> toDest = byDestination.get(m.getTo());
+		if (toDest == null) {
+			toDest = new LinkedHashSet<Message>();
+			byDestination.put(m.getTo(), toDest);
+		}
+		toDest.add(m);
+		occupancy += m.getSize();
+	}
+
+	/**
+	 * Removes a message from the buffer
+	 * @param id ID of the message to remove
+	 * @return The removed message or null if there was no message with the
+	 * ID in the buffer
+	 */
+	public Message remove(String id) {
+		Entry e = entries.remove(id);
+		if (e == null) {
+			return null;
+		}
+		messages.remove(id);
+		unindex(e);
+		return e.message;
+	}
+
+	/**
+	 * Removes an entry from the indexes
+	 */
+	private void unindex(Entry e) {
+		byReceiveTime.remove(e);
+		byExpiryTime.remove(e);
+
+		Set<Message> toDest = byDestination.get(e.message.getTo());
+		toDest.remove(e.message);
+		if (toDest.isEmpty()) {
+			byDestination.remove(e.message.getTo());
+		}
+		occupancy -= e.message.getSize();
+	}
+
+	/**
+	 * Returns a message by ID
+	 * @param id ID of the message
+	 * @return The message or null if there is no such message in the buffer
+	 */
+	public Message get(String id) {
+		return messages.get(id);
+	}
+
+	/**
+	 * Returns true if the buffer has a message with the given ID
+	 * @param id ID of the message
+	 * @return true if the message is in the buffer
+	 */
+	public boolean contains(String id) {
+		return messages.containsKey(id);
+	}
+
+	/**
+	 * Returns the number of messages in the buffer
+	 * @return The number of messages
+	 */
+	public int size() {
+		return messages.size();
+	}
+
+	/**
+	 * Returns the number of bytes the messages in the buffer take
+	 * @return The total size of the messages
+	 */
+	public long getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * Returns the messages of the buffer. The collection is backed by the
+	 * buffer, so it must be copied if the buffer may change during an
+	 * iteration.
+	 * @return The messages
+	 */
+	public Collection<Message> getMessages() {
+		return messages.values();
+	}
+
+	/**
+	 * Returns the messages of the buffer in the order they were received
+	 * (oldest first). The buffer must not be changed during the iteration.
+	 * @return The messages in receive order
+	 */
+	public Iterable<Message> byReceiveTime() {
+		return new Iterable<Message>() {
+			public Iterator<Message> iterator() {
+				final Iterator<Entry> i = byReceiveTime.iterator();
+				return new Iterator<Message>() {
+					public boolean hasNext() {
+						return i.hasNext();
+					}
+					public Message next() {
+						return i.next().message;
+					}
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Returns the messages whose TTL has expired at the given time, in the
+	 * order of their expiry times
+	 * @param time The time
+	 * @return The expired messages (a new list)
+	 */
+	public List<Message> getExpired(double time) {
+		List<Message> expired = new ArrayList<Message>();
+		for (Entry e : byExpiryTime) {
+			/* the TTL is rounded, so check also the messages that are
+			 * about to expire */
+			if (e.expiryTime > time + 1) {
+				break;
+			}
+			if (e.message.getTtl() <= 0) {
+				expired.add(e.message);
+			}
+		}
+		return expired;
+	}
+
+	/**
+	 * Returns the messages whose final recipient is the given host
+	 * @param to The host
+	 * @return The messages to the host (in the order they were added)
+	 */
+	public Collection<Message> getMessagesTo(DTNHost to) {
+		Set<Message> toDest = byDestination.get(to);
+		if (toDest == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(toDest);
+	}
+
+	/**
+	 * Index entry of a message
+	 */
+	private static class Entry {
+		private Message message;
+		private double receiveTime;
+		private double expiryTime;
+		private long seq;
+
+		public Entry(Message message, long seq) {
+			this.message = message;
+			this.receiveTime = message.getReceiveTime();
+			this.expiryTime = message.getExpiryTime();
+			this.seq = seq;
+		}
+	}
+}
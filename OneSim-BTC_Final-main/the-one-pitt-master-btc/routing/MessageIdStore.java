@@ -0,0 +1,330 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import core.Message;
+import core.SettingsError;
+
+/**
+ * Set of message IDs a router has seen, e.g., the IDs of the messages it has
+ * received as the final recipient or the tombstones of a
+ * {@link DecisionEngineRouter}. Depending on the store type the IDs are kept
+ * exactly (optionally with the messages), as 64-bit hashes or in a scalable
+ * Bloom filter. The compact types use only a fraction of the memory, but
+ * can report an ID that was never added (a false positive); they never
+ * miss an ID that was added.
+ */
+public abstract class MessageIdStore {
+	/** Store type: the IDs (and the messages) are kept exactly ({@value}) */
+	public static final int STORE_EXACT = 0;
+	/** Store type: only 64-bit hashes of the IDs are kept ({@value}) */
+	public static final int STORE_HASH = 1;
+	/** Store type: the IDs are kept in a scalable Bloom filter ({@value}) */
+	public static final int STORE_BLOOM = 2;
+
+	/**
+	 * Creates a new, empty, store
+	 * @param type Type of the store ({@link #STORE_EXACT},
+	 * {@link #STORE_HASH} or {@link #STORE_BLOOM})
+	 * @param fpRate The highest false positive rate of a Bloom filter store
+	 * @param keepMessages If true, an exact store keeps also the messages
+	 * @return The store
+	 * @throws SettingsError if the type or the rate is invalid
+	 */
+	public static MessageIdStore create(int type, double fpRate,
+			boolean keepMessages) {
+		switch (type) {
+		case STORE_EXACT:
+			return keepMessages ? new MessageMap() : new IdSet();
+		case STORE_HASH:
+			return new HashSet64();
+		case STORE_BLOOM:
+			if (fpRate <= 0 || fpRate >= 1) {
+				throw new SettingsError("Invalid false positive rate " +
+						fpRate + " for a Bloom filter");
+			}
+			return new ScalableBloomFilter(fpRate);
+		default:
+			throw new SettingsError("Unknown message ID store type " + type);
+		}
+	}
+
+	/**
+	 * Adds an ID to the store
+	 * @param id The ID to add
+	 */
+	public void add(String id) {
+		add(id, null);
+	}
+
+	/**
+	 * Adds an ID to the store
+	 * @param id The ID to add
+	 * @param m The message with the ID; kept only by stores that keep the
+	 * messages
+	 */
+	public abstract void add(String id, Message m);
+
+	/**
+	 * Returns true if the ID is (or, for a compact store, may be) in the store
+	 * @param id The ID to look for
+	 * @return true if the ID is in the store
+	 */
+	public abstract boolean contains(String id);
+
+	/**
+	 * Returns the number of different IDs added to the store. For a Bloom
+	 * filter this is an estimate, since IDs that give a false positive
+	 * aren't counted.
+	 * @return The number of IDs
+	 */
+	public abstract int size();
+
+	/**
+	 * Returns the messages the store keeps. Only exact stores that were
+	 * created to keep the messages return any.
+	 * @return The messages (a read-only view)
+	 */
+	public Collection<Message> getMessages() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Returns a 64-bit hash of an ID (FNV-1a over the characters, followed
+	 * by the SplitMix64 finalizer to spread the bits)
+	 * @param id The ID
+	 * @return The hash
+	 */
+	static long hash64(String id) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0, n = id.length(); i < n; i++) {
+			h ^= id.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return mix64(h);
+	}
+
+	/**
+	 * SplitMix64 finalizer
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Exact store that keeps the messages by their IDs
+	 */
+	private static class MessageMap extends MessageIdStore {
+		private HashMap<String, Message> messages =
+			new HashMap<String, Message>();
+
+		public void add(String id, Message m) {
+			messages.put(id, m);
+		}
+
+		public boolean contains(String id) {
+			return messages.containsKey(id);
+		}
+
+		public int size() {
+			return messages.size();
+		}
+
+		public Collection<Message> getMessages() {
+			return Collections.unmodifiableCollection(messages.values());
+		}
+	}
+
+	/**
+	 * Exact store that keeps only the IDs
+	 */
+	private static class IdSet extends MessageIdStore {
+		private HashSet<String> ids = new HashSet<String>();
+
+		public void add(String id, Message m) {
+			ids.add(id);
+		}
+
+		public boolean contains(String id) {
+			return ids.contains(id);
+		}
+
+		public int size() {
+			return ids.size();
+		}
+	}
+
+	/**
+	 * Store that keeps 64-bit hashes of the IDs in an open addressing hash
+	 * table. Two IDs are mixed up only if their hashes collide.
+	 */
+	private static class HashSet64 extends MessageIdStore {
+		/** the hash used in the table for IDs whose hash is the empty slot
+		 * value (zero) */
+		private static final long ZERO_HASH = 1;
+		private long[] table = new long[16];
+		private int size;
+
+		public void add(String id, Message m) {
+			if (insert(table, slotHash(id))) {
+				size++;
+				if (size * 2 > table.length) {
+					long[] old = table;
+					table = new long[old.length * 2];
+					for (long h : old) {
+						if (h != 0) {
+							insert(table, h);
+						}
+					}
+				}
+			}
+		}
+
+		public boolean contains(String id) {
+			long h = slotHash(id);
+			int mask = table.length - 1;
+			for (int i = (int)h & mask; table[i] != 0; i = (i + 1) & mask) {
+				if (table[i] == h) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		private static long slotHash(String id) {
+			long h = hash64(id);
+			return h == 0 ? ZERO_HASH : h;
+		}
+
+		/**
+		 * Inserts a hash to a table (that must have free slots)
+		 * @return true if the hash wasn't in the table already
+		 */
+		private static boolean insert(long[] table, long h) {
+			int mask = table.length - 1;
+			int i = (int)h & mask;
+			for (; table[i] != 0; i = (i + 1) & mask) {
+				if (table[i] == h) {
+					return false;
+				}
+			}
+			table[i] = h;
+			return true;
+		}
+	}
+
+	/**
+	 * Scalable Bloom filter (Almeida et al.): a series of Bloom filters whose
+	 * capacities grow and false positive rates shrink geometrically, so that
+	 * the total false positive rate stays below the given rate however many
+	 * IDs are added.
+	 */
+	private static class ScalableBloomFilter extends MessageIdStore {
+		/** capacity of the first filter */
+		private static final int INITIAL_CAPACITY = 1024;
+		/** capacity growth factor of the following filters */
+		private static final int GROWTH = 2;
+		/** false positive rate tightening ratio of the following filters */
+		private static final double TIGHTENING = 0.5;
+
+		private List<BloomFilter> filters = new ArrayList<BloomFilter>();
+		private double nextFpRate;
+		private int size;
+
+		public ScalableBloomFilter(double fpRate) {
+			/* the rates of the filters sum up to (at most) fpRate */
+			this.nextFpRate = fpRate * (1 - TIGHTENING);
+			filters.add(new BloomFilter(INITIAL_CAPACITY, nextFpRate));
+		}
+
+		public void add(String id, Message m) {
+			long h = hash64(id);
+			if (contains(h)) {
+				return;
+			}
+
+			BloomFilter last = filters.get(filters.size() - 1);
+			if (last.count >= last.capacity) {
+				nextFpRate *= TIGHTENING;
+				last = new BloomFilter(last.capacity * GROWTH, nextFpRate);
+				filters.add(last);
+			}
+			last.add(h);
+			size++;
+		}
+
+		public boolean contains(String id) {
+			return contains(hash64(id));
+		}
+
+		private boolean contains(long h) {
+			for (int i = 0, n = filters.size(); i < n; i++) {
+				if (filters.get(i).contains(h)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Bloom filter of 64-bit hashes. The bit indexes are derived from the
+	 * hash by double hashing.
+	 */
+	private static class BloomFilter {
+		private long[] bits;
+		private long nrofBits;
+		private int nrofHashes;
+		private int capacity;
+		private int count;
+
+		public BloomFilter(int capacity, double fpRate) {
+			double ln2 = Math.log(2);
+			this.capacity = capacity;
+			this.nrofBits = Math.max(64,
+					(long)Math.ceil(-capacity * Math.log(fpRate) / (ln2 * ln2)));
+			this.nrofHashes = Math.max(1,
+					(int)Math.round((double)nrofBits / capacity * ln2));
+			this.bits = new long[(int)((nrofBits + 63) / 64)];
+		}
+
+		public void add(long h) {
+			long h2 = mix64(h) | 1;
+			for (int i = 0; i < nrofHashes; i++) {
+				long bit = Math.floorMod(h + i * h2, nrofBits);
+				bits[(int)(bit >>> 6)] |= 1L << bit;
+			}
+			count++;
+		}
+
+		public boolean contains(long h) {
+			long h2 = mix64(h) | 1;
+			for (int i = 0; i < nrofHashes; i++) {
+				long bit = Math.floorMod(h + i * h2, nrofBits);
+				if ((bits[(int)(bit >>> 6)] & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -22,6 +23,7 @@ import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import core.Tuple;
+import core.World;
 
 /**
  * Superclass for message routers.
@@ -98,11 +100,11 @@ public abstract class MessageRouter {
     /**
      * The messages this router is carrying
      */
-    private HashMap<String, Message> messages;
+    private MessageBuffer messages;
     /**
      * The messages this router has received as the final recipient
      */
-    protected HashMap<String, Message> deliveredMessages;
+    protected MessageIdStore deliveredMessages;
     /**
      * Host where this router belongs to
      */
@@ -119,6 +121,24 @@ public abstract class MessageRouter {
      * Queue mode for sending messages
      */
     private int sendQueueMode;
+    /**
+     * Should the messages be kept in a persistent send queue
+     * (see {@link World#PERSISTENT_SEND_QUEUES_S})
+     */
+    private boolean persistentSendQueue;
+    /**
+     * The messages in the sending order or null if the send queue isn't
+     * persistent
+     */
+    private SendQueue sendQueue;
+    /**
+     * Type of the message ID stores (see {@link World#ID_STORE_TYPE_S})
+     */
+    private int idStoreType;
+    /**
+     * False positive rate of Bloom filter message ID stores
+     */
+    private double idStoreFpRate;
 
     /**
      * applications attached to the host
@@ -160,6 +180,32 @@ public abstract class MessageRouter {
             sendQueueMode = Q_MODE_RANDOM;
         }
 
+        Settings optimization = new Settings(World.SETTINGS_NS);
+        this.persistentSendQueue = World.DEF_PERSISTENT_SEND_QUEUES;
+        if (optimization.contains(World.PERSISTENT_SEND_QUEUES_S)) {
+            this.persistentSendQueue = optimization.getBoolean(
+                    World.PERSISTENT_SEND_QUEUES_S);
+        }
+        this.idStoreType = World.DEF_ID_STORE_TYPE;
+        if (optimization.contains(World.ID_STORE_TYPE_S)) {
+            this.idStoreType = optimization.getInt(World.ID_STORE_TYPE_S);
+        }
+        this.idStoreFpRate = World.DEF_ID_STORE_FP_RATE;
+        if (optimization.contains(World.ID_STORE_FP_RATE_S)) {
+            this.idStoreFpRate = optimization.getDouble(
+                    World.ID_STORE_FP_RATE_S);
+        }
+        if (idStoreType < MessageIdStore.STORE_EXACT
+                || idStoreType > MessageIdStore.STORE_BLOOM) {
+            throw new SettingsError("Invalid value for "
+                    + optimization.getFullPropertyName(World.ID_STORE_TYPE_S));
+        }
+        if (idStoreType == MessageIdStore.STORE_BLOOM
+                && (idStoreFpRate <= 0 || idStoreFpRate >= 1)) {
+            throw new SettingsError("Invalid value for "
+                    + optimization.getFullPropertyName(
+                            World.ID_STORE_FP_RATE_S));
+        }
     }
 
     /**
@@ -171,10 +217,14 @@ public abstract class MessageRouter {
      */
     public void init(DTNHost host, List<MessageListener> mListeners) {
         this.incomingMessages = new HashMap<String, Message>();
-        this.messages = new HashMap<String, Message>();
-        this.deliveredMessages = new HashMap<String, Message>();
+        this.messages = new MessageBuffer();
+        this.deliveredMessages = createMessageIdStore(true);
         this.mListeners = mListeners;
         this.host = host;
+        if (this.persistentSendQueue) {
+            this.sendQueue = new SendQueue(sendQueueMode == Q_MODE_FIFO
+                    ? SendQueue.FIFO : SendQueue.random(host.getAddress()));
+        }
 //        Random rnd = new Random();
 //        for (int i = 0; i < 5; i++) {
 //            if (i > 0 && nodeList.contains(nodeList.get(i - 1))) {
@@ -195,6 +245,9 @@ public abstract class MessageRouter {
         this.bufferSize = r.bufferSize;
         this.msgTtl = r.msgTtl;
         this.sendQueueMode = r.sendQueueMode;
+        this.persistentSendQueue = r.persistentSendQueue;
+        this.idStoreType = r.idStoreType;
+        this.idStoreFpRate = r.idStoreFpRate;
         this.nodeSelfish = r.nodeSelfish;
         this.nodeList = r.nodeList;
         this.applications = new HashMap<String, Collection<Application>>();
@@ -224,6 +277,48 @@ public abstract class MessageRouter {
      */
     public abstract void changedConnection(Connection con);
 
+    /**
+     * Returns true if this router has something to do in its next
+     * {@link #update()}. Hosts don't update routers that return false. This
+     * version always returns true but event driven routers may override
+     * this.
+     *
+     * @return true if the router should be updated
+     */
+    public boolean needsUpdate() {
+        return true;
+    }
+
+    /**
+     * Informs the router that something has happened (e.g., a connection
+     * went up or down) that may give it work to do in its next update. This
+     * version doesn't do anything.
+     */
+    public void wakeUp() {
+    }
+
+    /**
+     * Returns the simulation time when this router needs an update next even
+     * if nothing wakes it up (see {@link #wakeUp()}) before that, e.g., for a
+     * periodic check. Used for skipping idle periods. This version returns
+     * Double.MAX_VALUE, i.e., no timed updates.
+     *
+     * @return The time of the next timed update
+     */
+    public double getNextTimedUpdate() {
+        return Double.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if this router has applications whose update must be
+     * called on every update round.
+     *
+     * @return true if there are applications attached to this router
+     */
+    protected boolean hasApplications() {
+        return !this.applications.isEmpty();
+    }
+
     /**
      * Returns a message by ID.
      *
@@ -241,7 +336,7 @@ public abstract class MessageRouter {
      * @return True if the router has message with this id, false if not
      */
     public boolean hasMessage(String id) {
-        return this.messages.containsKey(id);
+        return this.messages.contains(id);
     }
 
     /**
@@ -254,7 +349,19 @@ public abstract class MessageRouter {
      * as the final recipient.
      */
     protected boolean isDeliveredMessage(Message m) {
-        return (this.deliveredMessages.containsKey(m.getId()));
+        return (this.deliveredMessages.contains(m.getId()));
+    }
+
+    /**
+     * Creates a new store for message IDs of the type defined by the
+     * {@link World#ID_STORE_TYPE_S} setting.
+     *
+     * @param keepMessages If true and the store keeps the IDs exactly, the
+     * store keeps also the messages that are added to it
+     * @return The new, empty, store
+     */
+    protected MessageIdStore createMessageIdStore(boolean keepMessages) {
+        return MessageIdStore.create(idStoreType, idStoreFpRate, keepMessages);
     }
 
     /**
@@ -267,7 +374,7 @@ public abstract class MessageRouter {
      * @return a reference to the messages of this router in collection
      */
     public Collection<Message> getMessageCollection() {
-        return this.messages.values();
+        return this.messages.getMessages();
     }
 
     /**
@@ -297,17 +404,22 @@ public abstract class MessageRouter {
      * isn't defined)
      */
     public int getFreeBufferSize() {
-        int occupancy = 0;
-
         if (this.getBufferSize() == Integer.MAX_VALUE) {
             return Integer.MAX_VALUE;
         }
 
-        for (Message m : getMessageCollection()) {
-            occupancy += m.getSize();
-        }
+        return (int)(this.getBufferSize() - this.messages.getOccupancy());
+    }
 
-        return this.getBufferSize() - occupancy;
+    /**
+     * Returns the message buffer of this router. The buffer has indexes for
+     * finding, e.g., the oldest or expired messages without going through
+     * all the messages.
+     *
+     * @return The message buffer
+     */
+    protected MessageBuffer getMessageBuffer() {
+        return this.messages;
     }
 
     /**
@@ -414,7 +526,7 @@ public abstract class MessageRouter {
             // -> put to buffer
             addToMessages(aMessage, false);
         } else if (isFirstDelivery) {
-            this.deliveredMessages.put(id, aMessage);
+            this.deliveredMessages.add(id, aMessage);
         }
 
         for (MessageListener ml : this.mListeners) {
@@ -468,7 +580,10 @@ public abstract class MessageRouter {
      * message, if false, nothing is informed.
      */
     protected void addToMessages(Message m, boolean newMessage) {
-        this.messages.put(m.getId(), m);
+        this.messages.add(m);
+        if (this.sendQueue != null) {
+            this.sendQueue.add(m);
+        }
 
         if (newMessage) {
             for (MessageListener ml : this.mListeners) {
@@ -485,6 +600,9 @@ public abstract class MessageRouter {
      */
     protected Message removeFromMessages(String id) {
         Message m = this.messages.remove(id);
+        if (m != null && this.sendQueue != null) {
+            this.sendQueue.remove(id);
+        }
         return m;
     }
 
@@ -522,6 +640,47 @@ public abstract class MessageRouter {
         return true;
     }
 
+    /**
+     * Returns the messages of this router in the order of the current sending
+     * queue mode. If the send queue is persistent, the messages are iterated
+     * lazily from the queue and the buffer may change during the iteration;
+     * otherwise the messages are copied to a new list and sorted (or
+     * shuffled) with {@link #sortByQueueMode(List)}.
+     *
+     * @return The messages in the sending order
+     */
+    protected Iterable<Message> getMessagesInQueueOrder() {
+        if (this.sendQueue != null) {
+            return this.sendQueue;
+        }
+
+        List<Message> list = new ArrayList<Message>(this.getMessageCollection());
+        sortByQueueMode(list);
+        return list;
+    }
+
+    /**
+     * Orders the given items for sending with a comparator whose order may
+     * change over time (e.g., one based on the delivery predictabilities of
+     * the connected hosts). If the send queues are persistent, the items are
+     * ordered lazily (see {@link SendQueue#lazilySorted(List, Comparator)}),
+     * so only the items that are actually tried get ordered; otherwise the
+     * list is sorted in place.
+     *
+     * @param list The items to order
+     * @param comparator The comparator that defines the order
+     * @return The items in the sending order
+     */
+    protected <T> Iterable<T> sortForSending(List<T> list,
+            Comparator<? super T> comparator) {
+        if (this.persistentSendQueue) {
+            return SendQueue.lazilySorted(list, comparator);
+        }
+
+        Collections.sort(list, comparator);
+        return list;
+    }
+
     /**
      * Deletes a message from the buffer and informs message listeners about the
      * event
@@ -554,32 +713,34 @@ public abstract class MessageRouter {
     @SuppressWarnings(value = "unchecked")
     /* ugly way to make this generic */
     protected List sortByQueueMode(List list) {
+        if (this.sendQueue != null) {
+            /* order by the (fixed) keys of the persistent queue */
+            final SendQueue.Priority priority = this.sendQueue.getPriority();
+            final boolean tuples = containsTuples(list);
+            Collections.sort(list, new Comparator<Object>() {
+                public int compare(Object o1, Object o2) {
+                    return Double.compare(
+                            priority.getKey(messageOf(o1, tuples)),
+                            priority.getKey(messageOf(o2, tuples)));
+                }
+            });
+            return list;
+        }
+
         switch (sendQueueMode) {
             case Q_MODE_RANDOM:
                 Collections.shuffle(list, new Random(SimClock.getIntTime()));
                 break;
             case Q_MODE_FIFO:
+                final boolean tuples = containsTuples(list);
                 Collections.sort(list,
                         new Comparator() {
                     /**
                      * Compares two tuples by their messages' receiving time
                      */
                     public int compare(Object o1, Object o2) {
-                        double diff;
-                        Message m1, m2;
-
-                        if (o1 instanceof Tuple) {
-                            m1 = ((Tuple<Message, Connection>) o1).getKey();
-                            m2 = ((Tuple<Message, Connection>) o2).getKey();
-                        } else if (o1 instanceof Message) {
-                            m1 = (Message) o1;
-                            m2 = (Message) o2;
-                        } else {
-                            throw new SimError("Invalid type of objects in "
-                                    + "the list");
-                        }
-
-                        diff = m1.getReceiveTime() - m2.getReceiveTime();
+                        double diff = messageOf(o1, tuples).getReceiveTime()
+                                - messageOf(o2, tuples).getReceiveTime();
                         if (diff == 0) {
                             return 0;
                         }
@@ -595,6 +756,36 @@ public abstract class MessageRouter {
         return list;
     }
 
+    /**
+     * Checks (once, by the first element) whether a list given to
+     * {@link #sortByQueueMode(List)} contains Tuple<Message, Connection> or
+     * Message objects.
+     *
+     * @param list The list to check
+     * @return true if the list contains tuples, false if it contains
+     * messages (or is empty)
+     */
+    private static boolean containsTuples(List<?> list) {
+        if (list.isEmpty() || list.get(0) instanceof Message) {
+            return false;
+        } else if (list.get(0) instanceof Tuple) {
+            return true;
+        }
+        throw new SimError("Invalid type of objects in the list");
+    }
+
+    /**
+     * Returns the message of a Message or Tuple<Message, Connection> object
+     *
+     * @param o The object
+     * @param tuple true if the object is a tuple
+     * @return The message
+     */
+    @SuppressWarnings(value = "unchecked")
+    private static Message messageOf(Object o, boolean tuple) {
+        return tuple ? ((Tuple<Message, Connection>) o).getKey() : (Message) o;
+    }
+
     /**
      * Gives the order of the two given messages as defined by the current queue
      * mode
@@ -644,7 +835,7 @@ public abstract class MessageRouter {
             incoming.addMoreInfo(new RoutingInfo(m));
         }
 
-        for (Message m : this.deliveredMessages.values()) {
+        for (Message m : this.deliveredMessages.getMessages()) {
             delivered.addMoreInfo(new RoutingInfo(m + " path:" + m.getHops()));
         }
 
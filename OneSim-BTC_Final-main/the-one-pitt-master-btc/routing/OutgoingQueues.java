@@ -0,0 +1,229 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import core.Connection;
+import core.Message;
+import core.Tuple;
+
+/**
+ * Outgoing messages of a router, i.e., the messages that the router has
+ * decided to send over its connections. Every connection has its own queue
+ * of message IDs and a message is in the queue of a connection at most once.
+ * The messages of a connection can be dropped when the connection goes down
+ * and the queue entries of a message when the message is deleted, without
+ * going through the outgoing messages of the other connections (or
+ * messages).
+ * <P>
+ * Iterating gives the message-connection tuples in the order they were
+ * added. The queues can be changed during an iteration, e.g., when starting
+ * a transfer deletes a message.</P>
+ */
+public class OutgoingQueues implements Iterable<Tuple<Message, Connection>> {
+	/** all the tuples in the order they were added */
+	private LinkedHashSet<Tuple<Message, Connection>> tuples;
+	/** the queue of every connection, by message ID */
+	private Map<Connection, Map<String, Tuple<Message, Connection>>>
+		byConnection;
+	/** the tuples of every message, by connection */
+	private Map<String, Map<Connection, Tuple<Message, Connection>>>
+		byMessage;
+
+	/**
+	 * Creates new, empty, queues
+	 */
+	public OutgoingQueues() {
+		this.tuples = new LinkedHashSet<Tuple<Message, Connection>>();
+		this.byConnection = new HashMap<Connection,
+			Map<String, Tuple<Message, Connection>>>();
+		this.byMessage = new HashMap<String,
+			Map<Connection, Tuple<Message, Connection>>>();
+	}
+
+	/**
+	 * Adds a message to the end of a connection's queue, unless the message
+	 * is in the queue already
+	 * @param m The message
+	 * @param con The connection
+	 * @return true if the message was added, false if it was in the queue
+	 */
+	public boolean add(Message m, Connection con) {
+		Map<String, Tuple<Message, Connection>> queue = byConnection.get(con);
+		if (queue == null) {
+			queue = new LinkedHashMap<String, Tuple<Message, Connection>>();
+			byConnection.put(con, queue);
+		}
+		else if (queue.containsKey(m.getId())) {
+			return false;
+		}
+
+		Tuple<Message, Connection> t = new Tuple<Message, Connection>(m, con);
+		queue.put(m.getId(), t);
+
+		Map<Connection, Tuple<Message, Connection>> ofMessage =
+			byMessage.get(m.getId());
+		if (ofMessage == null) {
+			ofMessage = new HashMap<Connection, Tuple<Message, Connection>>(2);
+			byMessage.put(m.getId(), ofMessage);
+		}
+		ofMessage.put(con, t);
+		tuples.add(t);
+		return true;
+	}
+
+	/**
+	 * Removes a message from a connection's queue
+	 * @param id ID of the message
+	 * @param con The connection
+	 * @return true if the message was in the queue
+	 */
+	public boolean remove(String id, Connection con) {
+		Map<String, Tuple<Message, Connection>> queue = byConnection.get(con);
+		if (queue == null) {
+			return false;
+		}
+		Tuple<Message, Connection> t = queue.remove(id);
+		if (t == null) {
+			return false;
+		}
+		if (queue.isEmpty()) {
+			byConnection.remove(con);
+		}
+		unindexMessage(t);
+		tuples.remove(t);
+		return true;
+	}
+
+	/**
+	 * Removes the whole queue of a connection
+	 * @param con The connection
+	 * @return How many messages were in the queue
+	 */
+	public int removeConnection(Connection con) {
+		Map<String, Tuple<Message, Connection>> queue = byConnection.remove(con);
+		if (queue == null) {
+			return 0;
+		}
+		for (Tuple<Message, Connection> t : queue.values()) {
+			unindexMessage(t);
+			tuples.remove(t);
+		}
+		return queue.size();
+	}
+
+	/**
+	 * Removes a message from the queues of all connections
+	 * @param id ID of the message
+	 * @return From how many queues the message was removed
+	 */
+	public int removeMessage(String id) {
+		Map<Connection, Tuple<Message, Connection>> ofMessage =
+			byMessage.remove(id);
+		if (ofMessage == null) {
+			return 0;
+		}
+		for (Tuple<Message, Connection> t : ofMessage.values()) {
+			Connection con = t.getValue();
+			Map<String, Tuple<Message, Connection>> queue =
+				byConnection.get(con);
+			queue.remove(id);
+			if (queue.isEmpty()) {
+				byConnection.remove(con);
+			}
+			tuples.remove(t);
+		}
+		return ofMessage.size();
+	}
+
+	/**
+	 * Removes a tuple from the message index
+	 */
+	private void unindexMessage(Tuple<Message, Connection> t) {
+		String id = t.getKey().getId();
+		Map<Connection, Tuple<Message, Connection>> ofMessage =
+			byMessage.get(id);
+		ofMessage.remove(t.getValue());
+		if (ofMessage.isEmpty()) {
+			byMessage.remove(id);
+		}
+	}
+
+	/**
+	 * Returns true if a message is in the queue of a connection
+	 * @param id ID of the message
+	 * @param con The connection
+	 * @return true if the message is in the queue
+	 */
+	public boolean contains(String id, Connection con) {
+		Map<String, Tuple<Message, Connection>> queue = byConnection.get(con);
+		return queue != null && queue.containsKey(id);
+	}
+
+	/**
+	 * Returns the IDs of the messages in a connection's queue, in the order
+	 * they were added
+	 * @param con The connection
+	 * @return The message IDs (a read-only view)
+	 */
+	public Collection<String> getQueue(Connection con) {
+		Map<String, Tuple<Message, Connection>> queue = byConnection.get(con);
+		if (queue == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(queue.keySet());
+	}
+
+	/**
+	 * Returns the number of message-connection tuples in the queues
+	 * @return The number of tuples
+	 */
+	public int size() {
+		return tuples.size();
+	}
+
+	/**
+	 * Returns an iterator over the message-connection tuples in the order
+	 * they were added. The iterator goes through the tuples that were in the
+	 * queues when it was created and skips the ones that have been removed
+	 * since. The iterator doesn't support removing.
+	 */
+	public Iterator<Tuple<Message, Connection>> iterator() {
+		final List<Tuple<Message, Connection>> snapshot =
+			new ArrayList<Tuple<Message, Connection>>(tuples);
+		return new Iterator<Tuple<Message, Connection>>() {
+			private int next = 0;
+
+			public boolean hasNext() {
+				while (next < snapshot.size() &&
+						!tuples.contains(snapshot.get(next))) {
+					next++; // removed after the iterator was created
+				}
+				return next < snapshot.size();
+			}
+
+			public Tuple<Message, Connection> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return snapshot.get(next++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
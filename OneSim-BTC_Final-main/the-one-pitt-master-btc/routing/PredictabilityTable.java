@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Delivery predictability table of the PRoPHET routers. The entries are
+ * kept in primitive arrays and found by the addresses of the hosts, so
+ * reading and updating a predictability doesn't box (or hash) anything.
+ * <P>
+ * The entries are aged lazily: every entry keeps its value and the time it
+ * was last aged, and is aged when it's read:
+ * <CODE>P = P_old * (GAMMA ^ k)</CODE>, where k is the number of time units
+ * since the entry was last aged. Entries aged at the same time share the
+ * same multiplier, which is computed only once.</P>
+ */
+public class PredictabilityTable {
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** aging constant */
+	private double gamma;
+	/** number of seconds in a time unit */
+	private final double secondsInTimeUnit;
+
+	/** entry position + 1 by host address (0 = no entry) */
+	private int[] positions;
+	/** addresses of the hosts of the entries */
+	private int[] addresses;
+	/** the hosts of the entries */
+	private DTNHost[] hosts;
+	/** the predictabilities, as of the times in {@link #times} */
+	private double[] values;
+	/** the (sim)times the entries were last aged */
+	private double[] times;
+	private int size;
+
+	/** the last time any entry was read or updated */
+	private double lastAged;
+	/** time difference (in time units) of the cached multiplier */
+	private double cachedDiff;
+	/** cached multiplier: GAMMA ^ cachedDiff */
+	private double cachedMult;
+
+	/**
+	 * Creates a new, empty, table
+	 * @param gamma The aging constant
+	 * @param secondsInTimeUnit How many seconds one time unit of aging is
+	 */
+	public PredictabilityTable(double gamma, double secondsInTimeUnit) {
+		this.gamma = gamma;
+		this.secondsInTimeUnit = secondsInTimeUnit;
+		this.positions = new int[INITIAL_CAPACITY];
+		this.addresses = new int[INITIAL_CAPACITY];
+		this.hosts = new DTNHost[INITIAL_CAPACITY];
+		this.values = new double[INITIAL_CAPACITY];
+		this.times = new double[INITIAL_CAPACITY];
+		this.cachedDiff = 0;
+		this.cachedMult = 1;
+	}
+
+	/**
+	 * Returns the current predictability for a host
+	 * @param host The host
+	 * @return The predictability or 0 if there's no entry for the host
+	 */
+	public double get(DTNHost host) {
+		double now = now();
+		int pos = indexOf(host.getAddress());
+		return pos < 0 ? 0 : aged(pos, now);
+	}
+
+	/**
+	 * Sets the current predictability for a host
+	 * @param host The host
+	 * @param value The predictability
+	 */
+	public void put(DTNHost host, double value) {
+		double now = now();
+		int pos = indexOf(host.getAddress());
+		if (pos < 0) {
+			add(host, value, now);
+		}
+		else {
+			values[pos] = value;
+			times[pos] = now;
+		}
+	}
+
+	/**
+	 * Returns true if the table has an entry for a host
+	 * @param host The host
+	 * @return true if the host has an entry
+	 */
+	public boolean contains(DTNHost host) {
+		return indexOf(host.getAddress()) >= 0;
+	}
+
+	/**
+	 * Returns the position of a host's entry. The entries keep their
+	 * positions and new entries are added to the end, so the entries that
+	 * were in the table at some point are the ones before the size of the
+	 * table at that point.
+	 * @param host The host
+	 * @return The position or -1 if the host has no entry
+	 */
+	public int indexOf(DTNHost host) {
+		return indexOf(host.getAddress());
+	}
+
+	/**
+	 * Returns the number of entries
+	 * @return The number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the host of an entry
+	 * @param index Position of the entry
+	 * @return The host
+	 */
+	public DTNHost getHost(int index) {
+		checkIndex(index);
+		return hosts[index];
+	}
+
+	/**
+	 * Returns the current predictability of an entry
+	 * @param index Position of the entry
+	 * @return The predictability
+	 */
+	public double getValue(int index) {
+		checkIndex(index);
+		return aged(index, now());
+	}
+
+	/**
+	 * Updates transitive (A->B->C) delivery predictabilities of this (A's)
+	 * table with the table of host B.
+	 * <CODE>P(a,c) = P(a,c)_old + (1 - P(a,c)_old) * P(a,b) * P(b,c) * BETA
+	 * </CODE>
+	 * @param other B's table
+	 * @param pForHost P(a,b)
+	 * @param beta The transitivity scaling constant
+	 * @param self Host A, that isn't added to its own table
+	 */
+	public void updateTransitive(PredictabilityTable other, double pForHost,
+			double beta, DTNHost self) {
+		double now = now();
+		other.lastAged = now;
+		int selfAddress = self.getAddress();
+
+		for (int i = 0, n = other.size; i < n; i++) {
+			int address = other.addresses[i];
+			if (address == selfAddress) {
+				continue; // don't add yourself
+			}
+			double pOther = other.aged(i, now); // P(b,c)
+			int pos = indexOf(address);
+			if (pos < 0) {
+				add(other.hosts[i], pForHost * pOther * beta, now);
+			}
+			else {
+				double pOld = aged(pos, now); // P(a,c)_old
+				values[pos] = pOld + (1 - pOld) * pForHost * pOther * beta;
+			}
+		}
+	}
+
+	/**
+	 * Changes the aging constant. The entries are first aged, with the old
+	 * constant, up to the last time the table was read or updated.
+	 * @param gamma The new aging constant
+	 */
+	public void setGamma(double gamma) {
+		if (gamma == this.gamma) {
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			aged(i, lastAged);
+		}
+		this.gamma = gamma;
+		this.cachedDiff = 0;
+		this.cachedMult = 1;
+	}
+
+	/**
+	 * Returns the current simulation time and records it as the last aging
+	 * time of the table
+	 */
+	private double now() {
+		this.lastAged = SimClock.getTime();
+		return this.lastAged;
+	}
+
+	/**
+	 * Ages an entry up to the given time and returns its value
+	 */
+	private double aged(int pos, double time) {
+		double timeDiff = time - times[pos];
+		if (timeDiff != 0) {
+			values[pos] *= multiplier(timeDiff / secondsInTimeUnit);
+			times[pos] = time;
+		}
+		return values[pos];
+	}
+
+	/**
+	 * Returns GAMMA ^ units, reusing the previous multiplier if the number of
+	 * units is the same
+	 */
+	private double multiplier(double units) {
+		if (units != cachedDiff) {
+			cachedMult = Math.pow(gamma, units);
+			cachedDiff = units;
+		}
+		return cachedMult;
+	}
+
+	private int indexOf(int address) {
+		return address < positions.length ? positions[address] - 1 : -1;
+	}
+
+	private void add(DTNHost host, double value, double time) {
+		int address = host.getAddress();
+		if (address >= positions.length) {
+			positions = Arrays.copyOf(positions,
+					Math.max(address + 1, positions.length * 2));
+		}
+		if (size == values.length) {
+			int capacity = size * 2;
+			addresses = Arrays.copyOf(addresses, capacity);
+			hosts = Arrays.copyOf(hosts, capacity);
+			values = Arrays.copyOf(values, capacity);
+			times = Arrays.copyOf(times, capacity);
+		}
+		addresses[size] = address;
+		hosts[size] = host;
+		values[size] = value;
+		times[size] = time;
+		positions[address] = ++size;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index +
+					", Size: " + size);
+		}
+	}
+}
@@ -23,7 +23,6 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
 
     protected double beta;
     protected double pinit;
-    protected double lastAgeUpdate;
     protected int secondsInTimeUnit;
     
     private Set<Message> msgStamp;
@@ -33,7 +32,7 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
     /**
      * delivery predictabilities
      */
-    private Map<DTNHost, Double> preds;
+    private PredictabilityTable preds;
 
     public ProphetDecisionEngine(Settings s) {
         if (s.contains(BETA_SETTING)) {
@@ -54,8 +53,7 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
             secondsInTimeUnit = DEFAULT_UNIT;
         }
 
-        preds = new HashMap<DTNHost, Double>();
-        this.lastAgeUpdate = 0.0;
+        preds = new PredictabilityTable(GAMMA, secondsInTimeUnit);
     }
 
     public ProphetDecisionEngine(ProphetDecisionEngine de) {
@@ -65,8 +63,7 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
         meHost = de.meHost;
         msgStamp = new HashSet<>();
         relayed = new HashMap<>();
-        preds = new HashMap<DTNHost, Double>();
-        this.lastAgeUpdate = de.lastAgeUpdate;
+        preds = new PredictabilityTable(GAMMA, secondsInTimeUnit);
     }
 
     public RoutingDecisionEngine replicate() {
@@ -82,13 +79,10 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
     public void doExchangeForNewConnection(Connection con, DTNHost peer) {
         DTNHost myHost = con.getOtherNode(peer);
         ProphetDecisionEngine de = getOtherProphetDecisionEngine(peer);
-        Set<DTNHost> hostSet = new HashSet<DTNHost>(this.preds.size()
-                + de.preds.size());
-        hostSet.addAll(this.preds.keySet());
-        hostSet.addAll(de.preds.keySet());
-
-        this.agePreds();
-        de.agePreds();
+        /* the hosts known before this contact: the entries before these
+           positions (new entries are added to the end of the tables) */
+        int myKnown = this.preds.size(),
+                peerKnown = de.preds.size();
 
         // Update preds for this connection
         double myOldValue = this.getPredFor(peer),
@@ -99,23 +93,34 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
         de.preds.put(myHost, peerPforMe);
 
         // Update transistivities
-        for (DTNHost h : hostSet) {
-            myOldValue = 0.0;
-            peerOldValue = 0.0;
-
-            if (preds.containsKey(h)) {
-                myOldValue = preds.get(h);
+        for (int i = 0; i < myKnown; i++) {
+            updateTransitivePreds(de, preds.getHost(i), myHost, peer,
+                    myPforHost, peerPforMe);
+        }
+        for (int i = 0; i < peerKnown; i++) {
+            DTNHost h = de.preds.getHost(i);
+            int myIndex = preds.indexOf(h);
+            if (myIndex < 0 || myIndex >= myKnown) { // not updated above
+                updateTransitivePreds(de, h, myHost, peer, myPforHost,
+                        peerPforMe);
             }
-            if (de.preds.containsKey(h)) {
+        }
+    }
+
+    /**
+     * Updates the transitive predictabilities of both hosts for a host
+     */
+    private void updateTransitivePreds(ProphetDecisionEngine de, DTNHost h,
+            DTNHost myHost, DTNHost peer, double myPforHost,
+            double peerPforMe) {
+        double myOldValue = preds.get(h),
                 peerOldValue = de.preds.get(h);
-            }
 
-            if (h != myHost) {
-                preds.put(h, myOldValue + (1 - myOldValue) * myPforHost * peerOldValue * beta);
-            }
-            if (h != peer) {
-                de.preds.put(h, peerOldValue + (1 - peerOldValue) * peerPforMe * myOldValue * beta);
-            }
+        if (h != myHost) {
+            preds.put(h, myOldValue + (1 - myOldValue) * myPforHost * peerOldValue * beta);
+        }
+        if (h != peer) {
+            de.preds.put(h, peerOldValue + (1 - peerOldValue) * peerPforMe * myOldValue * beta);
         }
     }
 
@@ -161,22 +166,6 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
         return (ProphetDecisionEngine) ((DecisionEngineRouter) otherRouter).getDecisionEngine();
     }
 
-    private void agePreds() {
-        double timeDiff = (SimClock.getTime() - this.lastAgeUpdate)
-                / secondsInTimeUnit;
-
-        if (timeDiff == 0) {
-            return;
-        }
-
-        double mult = Math.pow(GAMMA, timeDiff);
-        for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-            e.setValue(e.getValue() * mult);
-        }
-
-        this.lastAgeUpdate = SimClock.getTime();
-    }
-
     /**
      * Returns the current prediction (P) value for a host or 0 if entry for the
      * host doesn't exist.
@@ -185,12 +174,7 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
      * @return the current P value
      */
     private double getPredFor(DTNHost host) {
-        agePreds(); // make sure preds are updated before getting
-        if (preds.containsKey(host)) {
-            return preds.get(host);
-        } else {
-            return 0;
-        }
+        return preds.get(host); // aged when read
     }
 
     @Override
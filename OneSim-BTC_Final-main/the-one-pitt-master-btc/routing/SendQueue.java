@@ -0,0 +1,241 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import movement.MovementModel;
+import core.Message;
+
+/**
+ * Sending queue of a router's messages. The queue is kept in order as the
+ * messages are added and removed, so the router doesn't have to sort its
+ * buffer every time it looks for something to send. The order is defined by
+ * a {@link Priority} that gives every message a key when it is added;
+ * messages with equal keys are in the order they were added.
+ * <P>
+ * Iterating the queue is lazy and doesn't fail if messages are added or
+ * removed during the iteration, so a router can stop at the first message
+ * that is accepted.</P>
+ * <P>
+ * Priorities that change over time or depend on the receiving host (e.g.,
+ * MaxProp's costs or PRoPHET's delivery predictabilities) can't be kept in a
+ * persistent queue; {@link #lazilySorted(List, Comparator)} orders such
+ * candidates lazily instead.</P>
+ */
+public class SendQueue implements Iterable<Message> {
+
+	/**
+	 * Priority of the messages in a queue
+	 */
+	public interface Priority {
+		/**
+		 * Returns the key of a message. Messages with smaller keys are sent
+		 * first. The key must not change while the message is in the queue.
+		 * @param m The message
+		 * @return The key
+		 */
+		public double getKey(Message m);
+	}
+
+	/** First in, first out: the message received first is sent first */
+	public static final Priority FIFO = new Priority() {
+		public double getKey(Message m) {
+			return m.getReceiveTime();
+		}
+	};
+
+	/**
+	 * Returns a priority that orders the messages randomly, but always the
+	 * same way for the same seed
+	 * @param seed The seed of the order
+	 * @return The priority
+	 */
+	public static Priority random(final long seed) {
+		return new Priority() {
+			public double getKey(Message m) {
+				long hash = MovementModel.hostSeed(seed, m.getId().hashCode());
+				return (hash >>> 11) * 0x1.0p-53;
+			}
+		};
+	}
+
+	private Priority priority;
+	private TreeSet<Entry> queue;
+	private HashMap<String, Entry> entries;
+	private long nextSeq;
+
+	/**
+	 * Creates a new, empty, queue
+	 * @param priority The priority of the messages
+	 */
+	public SendQueue(Priority priority) {
+		this.priority = priority;
+		this.queue = new TreeSet<Entry>();
+		this.entries = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Adds a message to the queue. A message with the same ID is replaced.
+	 * @param m The message to add
+	 */
+	public void add(Message m) {
+		remove(m.getId());
+		Entry e = new Entry(m, priority.getKey(m), nextSeq++);
+		queue.add(e);
+		entries.put(m.getId(), e);
+	}
+
+	/**
+	 * Removes a message from the queue
+	 * @param id ID of the message to remove
+	 * @return true if the message was in the queue
+	 */
+	public boolean remove(String id) {
+		Entry e = entries.remove(id);
+		if (e == null) {
+			return false;
+		}
+		queue.remove(e);
+		return true;
+	}
+
+	/**
+	 * Returns the number of messages in the queue
+	 * @return The number of messages
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the priority of the messages in the queue
+	 * @return The priority
+	 */
+	public Priority getPriority() {
+		return this.priority;
+	}
+
+	/**
+	 * Returns an iterator that goes through the messages in the queue order.
+	 * The iterator sees the changes made to the queue during the iteration.
+	 */
+	public Iterator<Message> iterator() {
+		return new Iterator<Message>() {
+			private Entry next = queue.isEmpty() ? null : queue.first();
+
+			public boolean hasNext() {
+				/* skip the message if it was removed after it was found */
+				while (next != null && entries.get(next.message.getId())
+						!= next) {
+					next = queue.higher(next);
+				}
+				return next != null;
+			}
+
+			public Message next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Entry current = next;
+				next = queue.higher(current);
+				return current.message;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns the given items in the order defined by a comparator. The
+	 * items are sorted lazily: the order of the first items is resolved in
+	 * linear time and every following item costs logarithmic time, so taking
+	 * only the first few items is cheaper than sorting the whole list. The
+	 * order is the same as a (stable) sort of the list would give.
+	 * @param items The items to order
+	 * @param comparator The comparator that defines the order
+	 * @return The items in the order
+	 */
+	public static <T> Iterable<T> lazilySorted(final List<T> items,
+			final Comparator<? super T> comparator) {
+		return new Iterable<T>() {
+			public Iterator<T> iterator() {
+				List<Ranked<T>> ranked = new ArrayList<Ranked<T>>(items.size());
+				for (int i = 0, n = items.size(); i < n; i++) {
+					ranked.add(new Ranked<T>(items.get(i), i, comparator));
+				}
+				/* a heap built of a whole collection is built in linear time,
+				 * unlike one that the items are added to one by one */
+				final PriorityQueue<Ranked<T>> heap =
+					new PriorityQueue<Ranked<T>>(ranked);
+
+				return new Iterator<T>() {
+					public boolean hasNext() {
+						return !heap.isEmpty();
+					}
+					public T next() {
+						if (heap.isEmpty()) {
+							throw new NoSuchElementException();
+						}
+						return heap.poll().item;
+					}
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Queue entry of a message
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private Message message;
+		private double key;
+		private long seq;
+
+		public Entry(Message message, double key, long seq) {
+			this.message = message;
+			this.key = key;
+			this.seq = seq;
+		}
+
+		public int compareTo(Entry e) {
+			int c = Double.compare(this.key, e.key);
+			return c != 0 ? c : Long.compare(this.seq, e.seq);
+		}
+	}
+
+	/**
+	 * An item and its position in the original list. Ranked items are
+	 * ordered by the comparator and then by the position.
+	 */
+	private static class Ranked<T> implements Comparable<Ranked<T>> {
+		private T item;
+		private int index;
+		private Comparator<? super T> comparator;
+
+		public Ranked(T item, int index, Comparator<? super T> comparator) {
+			this.item = item;
+			this.index = index;
+			this.comparator = comparator;
+		}
+
+		public int compareTo(Ranked<T> r) {
+			int c = comparator.compare(this.item, r.item);
+			return c != 0 ? c : this.index - r.index;
+		}
+	}
+}
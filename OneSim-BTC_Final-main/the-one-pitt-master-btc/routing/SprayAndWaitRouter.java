@@ -10,6 +10,7 @@ import java.util.List;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageAttribute;
 import core.Settings;
 
 /**
@@ -28,6 +29,10 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = SPRAYANDWAIT_NS + "." +
 		"copies";
+	/** Message attribute for the number of copies (named
+	 * {@link #MSG_COUNT_PROPERTY}) */
+	public static final MessageAttribute<Integer> MSG_COUNT =
+		MessageAttribute.register(MSG_COUNT_PROPERTY, Integer.class);
 	
 	protected int initialNrofCopies;
 	protected boolean isBinary;
@@ -58,7 +63,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message msg = super.messageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		Integer nrofCopies = msg.get(MSG_COUNT);
 		
 		assert nrofCopies != null : "Not a SnW message: " + msg;
 		
@@ -71,7 +76,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			nrofCopies = 1;
 		}
 		
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.set(MSG_COUNT, nrofCopies);
 		return msg;
 	}
 	
@@ -116,7 +121,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		List<Message> list = new ArrayList<Message>();
 
 		for (Message m : getMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
+			Integer nrofCopies = m.get(MSG_COUNT);
 			assert nrofCopies != null : "SnW message " + m + " didn't have " + 
 				"nrof copies property!";
 			if (nrofCopies > 1) {
@@ -146,14 +151,19 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 		
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.get(MSG_COUNT);
 		if (isBinary) { 
 			nrofCopies /= 2;
 		}
 		else {
 			nrofCopies--;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.set(MSG_COUNT, nrofCopies);
+	}
+	
+	@Override
+	protected boolean canSleep() {
+		return getClass() == SprayAndWaitRouter.class;
 	}
 	
 	@Override
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Superclass for the tests of the routers' message containers. Sets up two
+ * hosts for the messages to be from and to.
+ */
+public abstract class AbstractMessageContainerTest extends TestCase {
+	protected SimClock clock;
+	protected TestUtils utils;
+	protected DTNHost h1;
+	protected DTNHost h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		utils = new TestUtils(null, null, new TestSettings());
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+	}
+
+	/**
+	 * Returns the IDs of the messages in their iteration order
+	 */
+	protected static List<String> ids(Iterable<Message> messages) {
+		List<String> ids = new ArrayList<String>();
+		for (Message m : messages) {
+			ids.add(m.getId());
+		}
+		return ids;
+	}
+}
@@ -70,5 +70,23 @@ public class ActivenessHandlerTest extends TestCase {
 
 	}
 	
+	public void testNextChangeTime() {
+		assertEquals(in, ah.nextChangeTime());
+		clock.setTime(in + 1);
+		assertTrue(ah.isActive());
+		assertEquals(out, ah.nextChangeTime());
+		
+		clock.setTime(50);
+		assertFalse(ah.isActive());
+		assertEquals(100.0, ah.nextChangeTime());
+		
+		clock.setTime(500);
+		assertFalse(ah.isActive());
+		assertEquals(Double.MAX_VALUE, ah.nextChangeTime());
+		
+		ah = new ActivenessHandler(new TestSettings());
+		assertEquals(Double.MAX_VALUE, ah.nextChangeTime());
+	}
+	
 }
 
@@ -49,7 +49,29 @@ public class AllTests {
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(LedgerJournalTest.class);
+		suite.addTestSuite(Hash256Test.class);
+		suite.addTestSuite(SimulationContextTest.class);
+		suite.addTestSuite(ParameterSweepTest.class);
 		//$JUnit-END$
+		suite.addTestSuite(FlatConnectivityGridTest.class);
+		suite.addTestSuite(ParallelConnectivityTest.class);
+		suite.addTestSuite(HostRngStreamsTest.class);
+		suite.addTestSuite(PositionStoreTest.class);
+		suite.addTestSuite(MergedEventQueueTest.class);
+		suite.addTestSuite(EventDrivenRouterTest.class);
+		suite.addTestSuite(MessageBufferTest.class);
+		suite.addTestSuite(HostConnectionsTest.class);
+		suite.addTestSuite(SendQueueTest.class);
+		suite.addTestSuite(PersistentSendQueueTest.class);
+		suite.addTestSuite(OutgoingQueuesTest.class);
+		suite.addTestSuite(MessageIdStoreTest.class);
+		suite.addTestSuite(IntMapTest.class);
+		suite.addTestSuite(HopChainTest.class);
+		suite.addTestSuite(PredictabilityTableTest.class);
+		suite.addTestSuite(WorldOptimizationsTest.class);
+		suite.addTestSuite(KineticConnectivityTest.class);
+		suite.addTestSuite(AttestationChainTest.class);
 		return suite;
 	}
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.MessageCreateEventBtc;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import routing.DecisionEngineRouter;
+import routing.MessageRouter;
+import btc.HopChain;
+import btc.Incentive;
+import btc.Wallet;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests the hash-chained hop attestations of DecisionEngineRouter from
+ * signing to verifying them with {@link Incentive#setAck}
+ */
+public class AttestationChainTest extends AbstractRouterTest {
+	private static final int MSG_SIZE = 10;
+	private static final String ENGINE_S = DecisionEngineRouter.PUBSUB_NS +
+		"." + DecisionEngineRouter.ENGINE_SETTING;
+	private static final String HASH_CHAINED_S =
+		DecisionEngineRouter.PUBSUB_NS + "." +
+		DecisionEngineRouter.HASH_CHAINED_SETTING;
+	private static final String REPLICA_CHAINS_S =
+		DecisionEngineRouter.PUBSUB_NS + "." +
+		DecisionEngineRouter.REPLICA_HOP_CHAINS_SETTING;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.MSG_TTL_S, "300");
+		ts.putSetting(MessageRouter.B_SIZE_S, "" + BUFFER_SIZE);
+		ts.putSetting(ENGINE_S, "ProphetDecisionEngine");
+		ts.putSetting(HASH_CHAINED_S, "true");
+		ts.putSetting(REPLICA_CHAINS_S, "true");
+		setRouterProto(new DecisionEngineRouter(ts));
+		super.setUp();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ts.putSetting(HASH_CHAINED_S, "false");
+		ts.putSetting(REPLICA_CHAINS_S, "false");
+		super.tearDown();
+	}
+
+	/**
+	 * Tests that a relay that queues a message for the same peer twice
+	 * signs the hop only once, so that all the relays are verified
+	 */
+	public void testRelayQueuedTwiceIsVerified() {
+		DTNHost src = h1;
+		DTNHost relay1 = h2;
+		DTNHost relay2 = h3;
+		DTNHost dst = h4;
+		src.setName("Src");
+		relay1.setName("Mes1");
+		relay2.setName("Mes2");
+		dst.setName("Dst");
+		src.setInitBalance(100);
+
+		/* encounters that make the relays better carriers towards dst and
+		 * give the hosts their key pairs */
+		meet(relay2, dst);
+		meet(relay1, relay2);
+		src.forceConnection(relay1, null, true);
+
+		Message m = new Message(src, dst, msgId1, MSG_SIZE);
+		m.set(MessageCreateEventBtc.REWARDS, 1f);
+		m.set(MessageCreateEventBtc.WALLETS, new LinkedList<Wallet>());
+		m.set(MessageCreateEventBtc.SIGNATURES, new HopChain());
+		src.createNewMessage(m);
+		transfer();
+		disconnect(src);
+
+		/* the message is queued (and the hop signed) on both connections */
+		relay1.forceConnection(relay2, null, true);
+		disconnect(relay1);
+		relay1.forceConnection(relay2, null, true);
+		transfer();
+		disconnect(relay1);
+
+		relay2.forceConnection(dst, null, true);
+		transfer();
+
+		Message delivered = null;
+		while (mc.next()) {
+			if (mc.getLastType() == mc.TYPE_RELAY && mc.getLastTo() == dst) {
+				delivered = mc.getLastMsg();
+			}
+		}
+		assertNotNull(delivered);
+		assertEquals(Arrays.asList(src, relay1, relay2, dst),
+				delivered.getHops());
+		HopChain chain = (HopChain)delivered.get(
+				MessageCreateEventBtc.SIGNATURES);
+		assertEquals(3, chain.size());
+
+		Map<DTNHost, PublicKey> keys = new HashMap<DTNHost, PublicKey>();
+		for (DTNHost h : utils.getAllHosts()) {
+			keys.putAll(((DecisionEngineRouter)h.getRouter()).getPublicKeys());
+		}
+		Incentive.setAck(delivered, keys);
+		assertEquals(Arrays.asList(relay1, relay2),
+				Incentive.getAck().get(delivered));
+	}
+
+	/**
+	 * Connects two hosts and disconnects them right away
+	 */
+	private void meet(DTNHost from, DTNHost to) {
+		from.forceConnection(to, null, true);
+		disconnect(from);
+	}
+
+	/**
+	 * Updates the hosts long enough for a message to be transferred
+	 */
+	private void transfer() {
+		updateAllNodes();
+		clock.advance((1.0 * MSG_SIZE) / TRANSMIT_SPEED);
+		updateAllNodes();
+	}
+}
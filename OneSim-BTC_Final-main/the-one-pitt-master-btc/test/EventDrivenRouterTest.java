@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import core.Message;
+import core.World;
+
+/**
+ * Runs the {@link EpidemicRouterTest} tests with event driven router
+ * updates (see {@link World#EVENT_DRIVEN_ROUTERS_S}) and tests when the
+ * routers and hosts need updates.
+ */
+public class EventDrivenRouterTest extends EpidemicRouterTest {
+	private static final String EVENT_DRIVEN = World.SETTINGS_NS + "." +
+		World.EVENT_DRIVEN_ROUTERS_S;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(EVENT_DRIVEN, "true");
+		super.setUp();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ts.putSetting(EVENT_DRIVEN, "false");
+		super.tearDown();
+	}
+
+	public void testNeedsUpdate() {
+		updateAllNodes();
+		assertFalse(h1.getRouter().needsUpdate()); // no messages
+		assertFalse(h2.getRouter().needsUpdate());
+
+		h1.createNewMessage(new Message(h1, h3, msgId1, 10));
+		assertTrue(h1.getRouter().needsUpdate()); // new message
+		h1.update(true);
+		assertFalse(h1.getRouter().needsUpdate()); // nobody to send to
+
+		h1.connect(h2);
+		assertTrue(h1.getRouter().needsUpdate()); // new connection
+		assertTrue(h2.getRouter().needsUpdate());
+		h1.update(true); // starts a transfer that takes one second
+		h2.update(true);
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_CREATE, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertFalse(h1.getRouter().needsUpdate()); // transfer not done yet
+		assertFalse(h2.getRouter().needsUpdate()); // still no messages
+
+		clock.advance(0.5);
+		assertFalse(h1.getRouter().needsUpdate());
+		clock.advance(0.5);
+		assertTrue(h1.getRouter().needsUpdate()); // transfer done
+		h1.update(true);
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertTrue(h2.getRouter().needsUpdate()); // received a message
+	}
+
+	public void testFinishedTransferWakesUpNeighbors() {
+		h2.createNewMessage(new Message(h2, h5, msgId2, 10));
+		h2.connect(h3);
+		h2.update(true); // starts a transfer that takes one second
+		h3.update(true);
+
+		h1.createNewMessage(new Message(h1, h5, msgId1, 10));
+		h1.connect(h3);
+		h1.update(true); // h3 is busy receiving from h2
+		h3.update(true);
+		assertFalse(h1.getRouter().needsUpdate()); // waits for h3
+
+		clock.advance(1);
+		h2.update(true); // finishes the transfer
+		assertTrue(h1.getRouter().needsUpdate()); // h3 is free again
+		mc.reset();
+		h1.update(true);
+		checkTransferStart(h1, h3, msgId1);
+	}
+
+	public void testTtlCheckWakesUp() {
+		h1.createNewMessage(new Message(h1, h3, msgId1, 10));
+		h1.update(true);
+		assertFalse(h1.getRouter().needsUpdate());
+
+		clock.advance(59);
+		assertFalse(h1.getRouter().needsUpdate());
+		clock.advance(1);
+		assertTrue(h1.getRouter().needsUpdate()); // TTL check is due
+	}
+
+	public void testQuiescentHosts() {
+		updateAllNodes();
+		assertTrue(h1.isQuiescent());
+		assertTrue(h2.isQuiescent());
+
+		h1.createNewMessage(new Message(h1, h3, msgId1, 10));
+		assertFalse(h1.isQuiescent()); // router has work to do
+		h1.update(true);
+		assertTrue(h1.isQuiescent()); // nobody to send to
+
+		h1.connect(h2);
+		assertFalse(h1.isQuiescent()); // connected
+		assertFalse(h2.isQuiescent());
+		disconnect(h2);
+		h1.update(true);
+		h2.update(true);
+		assertTrue(h1.isQuiescent());
+		assertTrue(h2.isQuiescent());
+	}
+}
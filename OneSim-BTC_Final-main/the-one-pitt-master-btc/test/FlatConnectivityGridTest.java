@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import interfaces.FlatConnectivityGrid;
+
+/**
+ * Tests for the flat array based connectivity grid.
+ */
+public class FlatConnectivityGridTest extends TestCase {
+	private static final int CELL_SIZE = 10;
+	private FlatConnectivityGrid grid;
+	private TestUtils utils;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		utils = new TestUtils(null, null, ts);
+		grid = new FlatConnectivityGrid(CELL_SIZE);
+	}
+
+	private NetworkInterface add(double x, double y) {
+		DTNHost host = utils.createHost(new Coord(x, y));
+		NetworkInterface ni = host.getInterfaces().get(0);
+		grid.addInterface(ni);
+		return ni;
+	}
+
+	private void assertNear(NetworkInterface ni, NetworkInterface... expected) {
+		Collection<NetworkInterface> near = grid.getNearInterfaces(ni);
+		assertEquals(expected.length, near.size());
+		for (NetworkInterface e : expected) {
+			assertTrue(e + " not in " + near, near.contains(e));
+		}
+	}
+
+	public void testNearInterfaces() {
+		NetworkInterface a = add(5, 5);
+		NetworkInterface b = add(15, 15);
+		NetworkInterface c = add(35, 5);
+
+		assertNear(a, a, b);
+		assertNear(b, a, b);
+		assertNear(c, c);
+		assertEquals(3, grid.getAllInterfaces().size());
+
+		grid.addInterface(a); // already present
+		assertEquals(3, grid.getAllInterfaces().size());
+	}
+
+	public void testUpdateLocation() {
+		NetworkInterface a = add(5, 5);
+		NetworkInterface b = add(15, 15);
+		NetworkInterface c = add(35, 5);
+
+		c.getHost().setLocation(new Coord(25, 5));
+		grid.updateLocation(c);
+		assertNear(a, a, b);
+		assertNear(b, a, b, c);
+		assertNear(c, b, c);
+
+		a.getHost().setLocation(new Coord(55, 55));
+		grid.updateLocation(a);
+		assertNear(a, a);
+		assertNear(b, b, c);
+	}
+
+	public void testRemoveInterface() {
+		NetworkInterface a = add(5, 5);
+		NetworkInterface b = add(6, 6);
+		NetworkInterface c = add(7, 7);
+
+		grid.removeInterface(a);
+		assertNear(b, b, c);
+		assertFalse(grid.getAllInterfaces().contains(a));
+
+		c.getHost().setLocation(new Coord(45, 45));
+		grid.updateLocation(c);
+		assertNear(b, b);
+		assertNear(c, c);
+		assertNear(a);
+	}
+
+	public void testManyInterfaces() {
+		ArrayList<NetworkInterface> all = new ArrayList<NetworkInterface>();
+		for (int i = 0; i < 50; i++) {
+			all.add(add(5, 5));
+		}
+		assertEquals(50, grid.getNearInterfaces(all.get(0)).size());
+		for (int i = 0; i < 50; i += 2) {
+			all.get(i).getHost().setLocation(new Coord(95, 95));
+			grid.updateLocation(all.get(i));
+		}
+		assertEquals(25, grid.getNearInterfaces(all.get(1)).size());
+		assertEquals(25, grid.getNearInterfaces(all.get(0)).size());
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.security.MessageDigest;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+import btc.Hash256;
+import btc.StringUtil;
+
+/**
+ * Tests for the Hash256 id type.
+ */
+public class Hash256Test extends TestCase {
+
+	private Hash256 hashOf(String s) throws Exception {
+		MessageDigest md = StringUtil.sha256();
+		md.update(s.getBytes("UTF-8"));
+		return Hash256.digest(md);
+	}
+
+	public void testHex() throws Exception {
+		assertEquals(StringUtil.applySha256("abc"), hashOf("abc").toString());
+		assertEquals(64, Hash256.ZERO.toString().length());
+	}
+
+	public void testEquality() throws Exception {
+		Hash256 a = hashOf("a");
+		Hash256 a2 = Hash256.of(a.toByteArray());
+		Hash256 b = hashOf("b");
+
+		assertEquals(a, a2);
+		assertEquals(a.hashCode(), a2.hashCode());
+		assertFalse(a.equals(b));
+
+		HashMap<Hash256, String> map = new HashMap<Hash256, String>();
+		map.put(a, "a");
+		assertEquals("a", map.get(a2));
+		assertNull(map.get(b));
+	}
+
+	public void testLeadingZeros() {
+		byte[] bytes = new byte[Hash256.LENGTH];
+		bytes[0] = 0;
+		bytes[1] = 0x0f;
+		bytes[2] = 0x10;
+		Hash256 h = Hash256.of(bytes);
+
+		assertTrue(h.hasLeadingZeros(0));
+		assertTrue(h.hasLeadingZeros(2));
+		assertTrue(h.hasLeadingZeros(3));
+		assertFalse(h.hasLeadingZeros(4));
+		assertTrue(Hash256.ZERO.hasLeadingZeros(64));
+		assertEquals(h.toString().startsWith("000"), h.hasLeadingZeros(3));
+	}
+}
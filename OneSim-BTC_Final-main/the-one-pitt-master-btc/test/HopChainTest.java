@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import btc.Hash256;
+import btc.HopChain;
+
+/**
+ * Tests for the HopChain
+ */
+public class HopChainTest extends TestCase {
+	private static final byte[] A = {1};
+	private static final byte[] B = {2};
+	private static final byte[] C = {3};
+	private static final byte[] D = {4};
+
+	public void testAppendIsPersistent() {
+		HopChain empty = new HopChain();
+		HopChain one = empty.append(A, null);
+		HopChain two = one.append(B, null);
+
+		assertEquals(0, empty.size());
+		assertEquals(1, one.size());
+		assertEquals(2, two.size());
+		assertSame(A, two.get(0));
+		assertSame(B, two.get(1));
+	}
+
+	public void testDivergentAppend() {
+		HopChain prefix = new HopChain().append(A, null).append(B, null);
+		HopChain first = prefix.append(C, null);
+		HopChain second = prefix.append(D, null);
+
+		assertEquals(3, first.size());
+		assertEquals(3, second.size());
+		assertSame(C, first.get(2));
+		assertSame(D, second.get(2));
+		assertSame(A, second.get(0));
+		assertSame(B, second.get(1));
+		assertEquals(2, prefix.size());
+
+		/* both branches can still grow without affecting each other */
+		HopChain firstLonger = first.append(D, null);
+		HopChain secondLonger = second.append(C, null);
+		assertSame(D, firstLonger.get(3));
+		assertSame(C, secondLonger.get(3));
+		assertSame(C, first.get(2));
+	}
+
+	public void testAddInPlace() {
+		HopChain chain = new HopChain();
+		for (int i = 0; i < 20; i++) {
+			chain.add(new byte[] {(byte)i});
+		}
+		assertEquals(20, chain.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals(i, chain.get(i)[0]);
+		}
+		assertNull(chain.lastDigest());
+		assertFalse(chain.isHashChained());
+	}
+
+	public void testGetOutOfRange() {
+		HopChain prefix = new HopChain().append(A, null);
+		prefix.append(B, null);
+		try {
+			prefix.get(1); /* in the shared store but not in this chain */
+			fail("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			/* expected */
+		}
+	}
+
+	public void testLink() {
+		Hash256 h1 = HopChain.link(null, "M1", "n1");
+		assertEquals(h1, HopChain.link(null, "M1", "n1"));
+		assertEquals(h1, HopChain.link(Hash256.ZERO, "M1", "n1"));
+		assertFalse(h1.equals(HopChain.link(null, "M1", "n2")));
+		assertFalse(h1.equals(HopChain.link(null, "M11", "")));
+
+		Hash256 h2 = HopChain.link(h1, "M1", "n2");
+		assertFalse(h2.equals(HopChain.link(null, "M1", "n2")));
+
+		HopChain chain = new HopChain().append(A, h1).append(B, h2);
+		assertTrue(chain.isHashChained());
+		assertEquals(h1, chain.getDigest(0));
+		assertEquals(h2, chain.lastDigest());
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests the connection list view of DTNHost
+ */
+public class HostConnectionsTest extends TestCase {
+	private TestSettings ts;
+	private ModuleCommunicationBus comBus;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+		ts = new TestSettings();
+		comBus = new ModuleCommunicationBus();
+	}
+
+	private DTNHost createHost(Coord loc, int nrofInterfaces) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		for (int i = 0; i < nrofInterfaces; i++) {
+			li.add(new TestInterface(10, 1));
+		}
+		return new DTNHost(null, null, "h", li, comBus,
+				new StationaryMovement(loc), new PassiveRouter(ts));
+	}
+
+	private void checkConnections(DTNHost host, int nrof) {
+		List<Connection> cons = host.getConnections();
+		assertEquals(nrof, cons.size());
+		int total = 0;
+		for (NetworkInterface ni : host.getInterfaces()) {
+			for (Connection c : ni.getConnections()) {
+				assertTrue(cons.contains(c));
+				total++;
+			}
+		}
+		assertEquals(nrof, total);
+	}
+
+	public void testSingleInterface() {
+		DTNHost h1 = createHost(new Coord(0, 0), 1);
+		DTNHost h2 = createHost(new Coord(0, 0), 1);
+		List<Connection> view = h1.getConnections();
+		assertEquals(0, view.size());
+
+		h1.connect(h2);
+		assertEquals(1, view.size()); // the view is kept up to date
+		checkConnections(h2, 1);
+
+		try {
+			view.clear();
+			fail("The connection list should be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testManyInterfaces() {
+		DTNHost h1 = createHost(new Coord(0, 0), 2);
+		DTNHost h2 = createHost(new Coord(0, 0), 1);
+		DTNHost h3 = createHost(new Coord(0, 0), 1);
+		checkConnections(h1, 0);
+
+		h1.getInterfaces().get(0).connect(h2.getInterfaces().get(0));
+		checkConnections(h1, 1);
+		h1.getInterfaces().get(1).connect(h3.getInterfaces().get(0));
+		checkConnections(h1, 2);
+
+		/* the interfaces of h1 tear down their connections to h3 */
+		h3.setLocation(new Coord(100, 100));
+		h1.update(true);
+		checkConnections(h1, 1);
+		checkConnections(h3, 0);
+
+		/* h2 tears down the connection */
+		h2.setLocation(new Coord(100, 100));
+		h2.update(true);
+		checkConnections(h1, 0);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import movement.RandomWaypoint;
+import core.Coord;
+
+/**
+ * Tests for the per host random number streams of the movement models.
+ */
+public class HostRngStreamsTest extends TestCase {
+	private TestSettings ts;
+	private RandomWaypoint proto;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.HOST_RNG_STREAMS, "true");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "3");
+		proto = new RandomWaypoint(new TestSettings("rwpGroup"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.HOST_RNG_STREAMS, "false");
+		super.tearDown();
+	}
+
+	private MovementModel forHost(int address) {
+		MovementModel mm = proto.replicate();
+		mm.setHostAddress(address);
+		return mm;
+	}
+
+	private static void assertSameMovement(MovementModel m1,
+			MovementModel m2) {
+		assertEquals(m1.getInitialLocation(), m2.getInitialLocation());
+		for (int i = 0; i < 5; i++) {
+			Path p1 = m1.getPath();
+			Path p2 = m2.getPath();
+			assertEquals(p1.getCoords(), p2.getCoords());
+			assertEquals(p1.getSpeed(), p2.getSpeed());
+		}
+	}
+
+	public void testStreamDoesNotDependOnOrder() {
+		MovementModel a = forHost(5);
+		forHost(6).getInitialLocation(); // consumes from another stream
+		proto.replicate().getInitialLocation(); // and from the shared one
+		MovementModel b = forHost(5);
+		assertSameMovement(a, b);
+	}
+
+	public void testHostsGetDifferentStreams() {
+		Coord c1 = forHost(1).getInitialLocation();
+		Coord c2 = forHost(2).getInitialLocation();
+		assertFalse(c1.equals(c2));
+
+		assertFalse(MovementModel.hostSeed(3, 1) ==
+			MovementModel.hostSeed(3, 2));
+		assertFalse(MovementModel.hostSeed(3, 1) ==
+			MovementModel.hostSeed(4, 1));
+		assertTrue(MovementModel.hostSeed(3, 1) ==
+			MovementModel.hostSeed(3, 1));
+	}
+
+	public void testThreadSafeModels() {
+		assertTrue(proto.isThreadSafe());
+		assertFalse(new StationaryMovement(new Coord(0, 0)).isThreadSafe());
+	}
+}
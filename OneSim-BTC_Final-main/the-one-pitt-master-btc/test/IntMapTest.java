@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.IntMap;
+
+/**
+ * Tests for the IntMap
+ */
+public class IntMapTest extends TestCase {
+
+	public void testPutGetRemove() {
+		IntMap<String> map = new IntMap<String>();
+		assertTrue(map.isEmpty());
+		assertNull(map.put(1, "one"));
+		assertNull(map.put(-5, "minus five"));
+		assertEquals("one", map.put(1, "uno"));
+		assertEquals(2, map.size());
+		assertEquals("uno", map.get(1));
+		assertTrue(map.containsKey(-5));
+		assertFalse(map.containsKey(2));
+		assertNull(map.get(2));
+
+		assertEquals("minus five", map.remove(-5));
+		assertNull(map.remove(-5));
+		assertEquals(1, map.size());
+		assertFalse(map.containsKey(-5));
+	}
+
+	public void testAgainstHashMap() {
+		IntMap<Integer> map = new IntMap<Integer>();
+		Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		Random rng = new Random(1);
+
+		for (int i = 0; i < 20000; i++) {
+			int key = rng.nextInt(500) * 16; // keys that share low bits
+			if (rng.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+		}
+
+		assertEquals(expected.size(), map.size());
+		for (int key = 0; key < 500 * 16; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+
+		int[] keys = map.keys();
+		Arrays.sort(keys);
+		assertEquals(expected.size(), keys.length);
+		for (int key : keys) {
+			assertTrue(expected.containsKey(key));
+		}
+	}
+
+	public void testPutAllAndClear() {
+		IntMap<String> map = new IntMap<String>();
+		IntMap<String> other = new IntMap<String>();
+		map.put(1, "a");
+		other.put(1, "b");
+		other.put(2, "c");
+
+		map.putAll(other);
+		assertEquals(2, map.size());
+		assertEquals("b", map.get(1));
+		assertEquals("c", map.get(2));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(1));
+	}
+}
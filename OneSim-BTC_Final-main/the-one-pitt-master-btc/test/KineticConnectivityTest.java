@@ -0,0 +1,240 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import interfaces.KineticConnectivity;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import movement.RandomWaypoint;
+import routing.PassiveRouter;
+import core.Connection;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests for {@link KineticConnectivity}
+ */
+public class KineticConnectivityTest extends TestCase {
+	private static final double RANGE = 10;
+	private static final int WORLD_SIZE = 100;
+	private static final double UP_INTERVAL = 1;
+	/* for rounding errors of the contact times */
+	private static final double TIME_DELTA = 0.000001;
+
+	private TestSettings ts;
+	private List<String> contacts;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+		ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.KINETIC_CONNECTIVITY_S,
+				"true");
+		contacts = new ArrayList<String>();
+	}
+
+	/**
+	 * Creates a prototype of a simple broadcast interface whose connection
+	 * listener records the times of the contacts
+	 */
+	private SimpleBroadcastInterface createInterface(String ns, double range) {
+		ts.putSetting(ns + "." + NetworkInterface.TRANSMIT_RANGE_S,
+				"" + range);
+		ts.putSetting(ns + "." + NetworkInterface.TRANSMIT_SPEED_S, "1");
+		SimpleBroadcastInterface proto =
+			new SimpleBroadcastInterface(new TestSettings(ns));
+
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				contacts.add("up " + SimClock.getTime());
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				contacts.add("down " + SimClock.getTime());
+			}
+		});
+		proto.setClisteners(cl);
+		return proto;
+	}
+
+	private DTNHost createHost(NetworkInterface proto, MovementModel mm) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(proto);
+		return new DTNHost(null, null, "h", li, new ModuleCommunicationBus(),
+				mm, new PassiveRouter(ts));
+	}
+
+	private World createWorld(List<DTNHost> hosts, int size,
+			double interval) {
+		return new World(hosts, size, size, interval,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+	}
+
+	private static boolean isConnected(DTNHost h1, DTNHost h2) {
+		for (Connection c : h1.getConnections()) {
+			if (c.getOtherNode(h1) == h2) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static double contactTime(String contact) {
+		return Double.parseDouble(contact.substring(contact.indexOf(' ') + 1));
+	}
+
+	public void testCrossingPaths() {
+		NetworkInterface ni = createInterface("kineticCrossing", RANGE);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(createHost(ni, new LinePath(1,
+				new Coord(0, 50), new Coord(100, 50))));
+		hosts.add(createHost(ni, new LinePath(1,
+				new Coord(50, 0), new Coord(50, 100))));
+		World world = createWorld(hosts, WORLD_SIZE, UP_INTERVAL);
+
+		while (SimClock.getTime() < 100) {
+			world.update();
+		}
+
+		/* distance is sqrt(2) * |50 - t|, which is the range at these times */
+		assertEquals(2, contacts.size());
+		assertTrue(contacts.get(0).startsWith("up"));
+		assertEquals(50 - Math.sqrt(50), contactTime(contacts.get(0)),
+				TIME_DELTA);
+		assertTrue(contacts.get(1).startsWith("down"));
+		assertEquals(50 + Math.sqrt(50), contactTime(contacts.get(1)),
+				TIME_DELTA);
+	}
+
+	public void testStalePredictionsAreDropped() {
+		NetworkInterface ni = createInterface("kineticStale", RANGE);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		/* the first leg ends at (40,50), where the second host would come
+		 * within range at t=50, but the host turns away at t=30 */
+		hosts.add(createHost(ni, new LinePath(1, new Coord(10, 50),
+				new Coord(40, 50), new Coord(40, 0))));
+		hosts.add(createHost(ni, new LinePath(1,
+				new Coord(100, 50), new Coord(49, 50))));
+		World world = createWorld(hosts, WORLD_SIZE, UP_INTERVAL);
+
+		while (SimClock.getTime() < 100) {
+			world.update();
+		}
+
+		assertEquals(0, contacts.size());
+	}
+
+	public void testSameConnectionsAsPolling() {
+		int worldSize = 300;
+		double range = 30;
+		double maxSpeed = 1.5;
+		double interval = 0.5;
+		String group = "kineticGroup";
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, worldSize + "," + worldSize);
+		ts.putSetting(group + ".speed", "0.5," + maxSpeed);
+		ts.putSetting(group + ".waitTime", "0,10");
+
+		NetworkInterface ni = createInterface("kineticRandom", range);
+		RandomWaypoint mm = new RandomWaypoint(new TestSettings(group));
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < 30; i++) {
+			hosts.add(createHost(ni, mm));
+		}
+		World world = createWorld(hosts, worldSize, interval);
+
+		/* the first predictions are made after the first move and the
+		 * connections they find are created on the next update */
+		world.update();
+
+		/* a host can be off its predicted line by one interval's movement
+		 * after turning at a waypoint */
+		double tolerance = 2 * maxSpeed * interval;
+		int nrofConnected = 0;
+		for (int round = 0; round < 2000; round++) {
+			world.update();
+			for (DTNHost h1 : hosts) {
+				for (DTNHost h2 : hosts) {
+					if (h1 == h2) {
+						continue;
+					}
+					double dist = h1.getLocation().distance(h2.getLocation());
+					if (Math.abs(dist - range) < tolerance) {
+						continue;
+					}
+					boolean connected = isConnected(h1, h2);
+					assertEquals("Hosts " + h1 + " and " + h2 + " at " +
+							SimClock.getTime() + " distance " + dist,
+							dist < range, connected);
+					if (connected) {
+						nrofConnected++;
+					}
+				}
+			}
+		}
+		assertTrue(nrofConnected > 0);
+	}
+
+	/**
+	 * Movement model that moves once along the given waypoints
+	 */
+	private static class LinePath extends MovementModel {
+		private double speed;
+		private Coord[] waypoints;
+		private boolean moved;
+
+		public LinePath(double speed, Coord... waypoints) {
+			this.speed = speed;
+			this.waypoints = waypoints;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return waypoints[0].clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(speed);
+			for (Coord c : waypoints) {
+				p.addWaypoint(c.clone());
+			}
+			this.moved = true;
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return moved ? Double.MAX_VALUE : 0;
+		}
+
+		@Override
+		public LinePath replicate() {
+			return new LinePath(speed, waypoints);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import btc.Block;
+import btc.BlockChain;
+import btc.Hash256;
+import btc.LedgerJournal;
+import btc.LedgerJournalReader;
+import btc.Transaction;
+import btc.TransactionOutput;
+import btc.Wallet;
+import core.SimClock;
+
+/**
+ * Tests for writing a ledger journal and replaying it offline.
+ */
+public class LedgerJournalTest extends TestCase {
+	private File file;
+	private HashMap<Hash256, TransactionOutput> oldUTXOs;
+	private Wallet alice;
+	private Wallet bob;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("ledger", ".bin");
+		file.deleteOnExit();
+		oldUTXOs = new HashMap<Hash256, TransactionOutput>(BlockChain.getUTXOs());
+		SimClock.getInstance().setTime(0);
+
+		alice = new Wallet();
+		bob = new Wallet();
+		BlockChain.registerOwner(alice.publicKey, "alice");
+		BlockChain.registerOwner(bob.publicKey, "bob");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BlockChain.getUTXOs().clear();
+		BlockChain.getUTXOs().putAll(oldUTXOs);
+		file.delete();
+		super.tearDown();
+	}
+
+	private Transaction genesis(Wallet w, float value) {
+		Transaction t = new Transaction(BlockChain.getCoinbase().publicKey,
+				w.publicKey, value, null);
+		t.transactionId = Hash256.ZERO;
+		t.outputs.add(new TransactionOutput(t.reciepient, value, Hash256.ZERO));
+		BlockChain.getUTXOs().put(t.outputs.get(0).id, t.outputs.get(0));
+		return t;
+	}
+
+	public void testReplay() throws Exception {
+		LedgerJournal journal = new LedgerJournal(file);
+
+		Block genesis = new Block(Hash256.ZERO);
+		genesis.addTransaction(genesis(alice, 100));
+		genesis.addTransaction(genesis(bob, 50));
+		genesis.mineBlock(1);
+		journal.writeBlock(genesis);
+
+		SimClock.getInstance().setTime(100);
+		Block b1 = new Block(genesis.hash);
+		assertTrue(b1.addTransaction(alice.sendFunds(bob.publicKey, 30)));
+		b1.mineBlock(1);
+		journal.writeBlock(b1);
+
+		SimClock.getInstance().setTime(200);
+		Block b2 = new Block(b1.hash);
+		assertTrue(b2.addTransaction(bob.sendFunds(alice.publicKey, 70)));
+		b2.mineBlock(1);
+		journal.writeBlock(b2);
+		journal.close();
+
+		assertEquals(3, journal.getNrofBlocks());
+		assertEquals(file.length(),
+				journal.getBytesWritten() + LedgerJournal.HEADER_SIZE);
+
+		LedgerJournalReader reader = new LedgerJournalReader(file);
+		try {
+			assertEquals(3, reader.getNrofBlocks());
+
+			Map<String, Float> balances = reader.balancesAt(0);
+			assertEquals(100f, balances.get("alice"), 0.001);
+			assertEquals(50f, balances.get("bob"), 0.001);
+
+			balances = reader.balancesAt(150);
+			assertEquals(70f, balances.get("alice"), 0.001);
+			assertEquals(80f, balances.get("bob"), 0.001);
+
+			balances = reader.balancesAt(Double.MAX_VALUE);
+			assertEquals(140f, balances.get("alice"), 0.001);
+			assertEquals(10f, balances.get("bob"), 0.001);
+
+			Map<String, Float> payouts = reader.payoutsPerHost();
+			assertEquals(70f, payouts.get("alice"), 0.001);
+			assertEquals(30f, payouts.get("bob"), 0.001);
+			assertEquals(2, payouts.size());
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testOutputWithoutOwner() throws Exception {
+		LedgerJournal journal = new LedgerJournal(file);
+		Block genesis = new Block(Hash256.ZERO);
+		Transaction t = genesis(alice, 10);
+		TransactionOutput unowned = new TransactionOutput(bob.publicKey, 5,
+				Hash256.ZERO);
+		unowned.reciepient = null;
+		t.outputs.add(unowned);
+		genesis.addTransaction(t);
+		genesis.mineBlock(1);
+		journal.writeBlock(genesis);
+		journal.close();
+
+		LedgerJournalReader reader = new LedgerJournalReader(file);
+		try {
+			Map<String, Float> balances = reader.balancesAt(0);
+			assertEquals(10f, balances.get("alice"), 0.001);
+			assertEquals(1, balances.size());
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testTruncatedJournal() throws Exception {
+		LedgerJournal journal = new LedgerJournal(file);
+		Block genesis = new Block(Hash256.ZERO);
+		genesis.addTransaction(genesis(alice, 10));
+		genesis.mineBlock(1);
+		journal.writeBlock(genesis);
+		journal.writeBlock(genesis);
+		journal.close();
+
+		java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw");
+		raf.setLength(file.length() - 3);
+		raf.close();
+
+		LedgerJournalReader reader = new LedgerJournalReader(file);
+		try {
+			assertEquals(1, reader.getNrofBlocks());
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.MergedEventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the MergedEventQueue
+ */
+public class MergedEventQueueTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+	private List<ScheduledUpdatesQueue> queues;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		queues = new ArrayList<ScheduledUpdatesQueue>();
+		for (int i = 0; i < 5; i++) {
+			queues.add(new ScheduledUpdatesQueue());
+		}
+	}
+
+	public void testEmpty() {
+		MergedEventQueue empty =
+			new MergedEventQueue(new ArrayList<EventQueue>());
+		assertEquals(MAX, empty.nextEventsTime());
+		assertEquals(MAX, empty.nextEvent().getTime());
+
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		assertEquals(MAX, meq.nextEventsTime());
+	}
+
+	public void testOrder() {
+		queues.get(0).addUpdate(3);
+		queues.get(1).addUpdate(1);
+		queues.get(2).addUpdate(2);
+		queues.get(3).addUpdate(0.5);
+		queues.get(3).addUpdate(4);
+		MergedEventQueue meq = new MergedEventQueue(queues);
+
+		double[] expected = {0.5, 1, 2, 3, 4};
+		for (double time : expected) {
+			assertEquals(time, meq.nextEventsTime());
+			assertEquals(time, meq.nextEvent().getTime());
+		}
+		assertEquals(MAX, meq.nextEventsTime());
+	}
+
+	public void testTieBreaking() {
+		for (int i = queues.size() - 1; i >= 0; i--) {
+			queues.get(i).addUpdate(1);
+		}
+		MergedEventQueue meq = new MergedEventQueue(queues);
+
+		for (int i = 0; i < queues.size(); i++) {
+			assertSame(queues.get(i), meq.nextQueue());
+			assertEquals(1.0, meq.nextEvent().getTime());
+		}
+		assertEquals(MAX, meq.nextEventsTime());
+	}
+
+	public void testRefresh() {
+		queues.get(0).addUpdate(5);
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		assertEquals(5.0, meq.nextEventsTime());
+
+		/* the merged queue doesn't see the change before a refresh */
+		queues.get(4).addUpdate(2);
+		assertEquals(5.0, meq.nextEventsTime());
+		meq.refresh(queues.get(4));
+		assertEquals(2.0, meq.nextEventsTime());
+		assertSame(queues.get(4), meq.nextQueue());
+
+		queues.get(2).addUpdate(2);
+		queues.get(1).addUpdate(1);
+		meq.refreshAll();
+		assertSame(queues.get(1), meq.nextQueue());
+		assertEquals(1.0, meq.nextEvent().getTime());
+		assertSame(queues.get(2), meq.nextQueue());
+		assertEquals(2.0, meq.nextEvent().getTime());
+		assertSame(queues.get(4), meq.nextQueue());
+		assertEquals(2.0, meq.nextEvent().getTime());
+		assertEquals(5.0, meq.nextEvent().getTime());
+		assertEquals(MAX, meq.nextEventsTime());
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.MessageBuffer;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the MessageBuffer
+ */
+public class MessageBufferTest extends AbstractMessageContainerTest {
+	private MessageBuffer buffer;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		buffer = new MessageBuffer();
+	}
+
+	private Message message(String id, DTNHost to, int size, int ttl) {
+		Message m = new Message(h1, to, id, size);
+		m.setTtl(ttl);
+		m.setReceiveTime(SimClock.getTime());
+		return m;
+	}
+
+	public void testAddAndRemove() {
+		buffer.add(message("M1", h1, 10, 5));
+		buffer.add(message("M2", h2, 20, 5));
+		assertEquals(2, buffer.size());
+		assertEquals(30, buffer.getOccupancy());
+		assertTrue(buffer.contains("M1"));
+		assertEquals("M2", buffer.get("M2").getId());
+
+		assertEquals("M1", buffer.remove("M1").getId());
+		assertNull(buffer.remove("M1"));
+		assertFalse(buffer.contains("M1"));
+		assertEquals(1, buffer.size());
+		assertEquals(20, buffer.getOccupancy());
+
+		/* a message with the same ID replaces the old one */
+		buffer.add(message("M2", h2, 5, 5));
+		assertEquals(1, buffer.size());
+		assertEquals(5, buffer.getOccupancy());
+	}
+
+	public void testReceiveOrder() {
+		buffer.add(message("M1", h2, 10, 5));
+		clock.setTime(10);
+		buffer.add(message("M2", h2, 10, 5));
+		buffer.add(message("M3", h2, 10, 5));
+		Message old = message("M0", h2, 10, 5);
+		old.setReceiveTime(5);
+		buffer.add(old);
+
+		assertEquals("[M1, M0, M2, M3]",
+				ids(buffer.byReceiveTime()).toString());
+		buffer.remove("M0");
+		assertEquals("[M1, M2, M3]", ids(buffer.byReceiveTime()).toString());
+	}
+
+	public void testExpired() {
+		buffer.add(message("M1", h2, 10, 3));
+		buffer.add(message("M2", h2, 10, 1));
+		buffer.add(message("M3", h2, 10, Message.INFINITE_TTL));
+
+		assertTrue(buffer.getExpired(0).isEmpty());
+		clock.setTime(1);
+		assertEquals("[M2]", ids(buffer.getExpired(1)).toString());
+		clock.setTime(120);
+		assertEquals("[M2]", ids(buffer.getExpired(120)).toString());
+		clock.setTime(121);
+		assertEquals("[M2, M1]", ids(buffer.getExpired(121)).toString());
+		clock.setTime(1000000);
+		assertEquals("[M2, M1]", ids(buffer.getExpired(1000000)).toString());
+	}
+
+	public void testMessagesTo() {
+		buffer.add(message("M1", h2, 10, 5));
+		buffer.add(message("M2", h1, 10, 5));
+		buffer.add(message("M3", h2, 10, 5));
+
+		assertEquals("[M1, M3]", ids(buffer.getMessagesTo(h2)).toString());
+		assertEquals("[M2]", ids(buffer.getMessagesTo(h1)).toString());
+		buffer.remove("M2");
+		assertTrue(buffer.getMessagesTo(h1).isEmpty());
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.MessageIdStore;
+import core.DTNHost;
+import core.Message;
+import core.SettingsError;
+
+/**
+ * Tests for the MessageIdStore types
+ */
+public class MessageIdStoreTest extends TestCase {
+	private static final int NROF_IDS = 20000;
+
+	private void checkStore(MessageIdStore store) {
+		for (int i = 0; i < NROF_IDS; i++) {
+			store.add("M" + i);
+		}
+		store.add("M1"); // again
+
+		/* an added ID is never missed */
+		for (int i = 0; i < NROF_IDS; i++) {
+			assertTrue("M" + i, store.contains("M" + i));
+		}
+		assertTrue(store.size() <= NROF_IDS);
+		assertTrue(store.size() > NROF_IDS * 0.99);
+	}
+
+	private int falsePositives(MessageIdStore store) {
+		int count = 0;
+		for (int i = 0; i < NROF_IDS; i++) {
+			if (store.contains("X" + i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void testExact() {
+		MessageIdStore store = MessageIdStore.create(
+				MessageIdStore.STORE_EXACT, 0, false);
+		checkStore(store);
+		assertEquals(NROF_IDS, store.size());
+		assertEquals(0, falsePositives(store));
+		assertTrue(store.getMessages().isEmpty());
+	}
+
+	public void testExactWithMessages() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		DTNHost h = utils.createHost();
+		MessageIdStore store = MessageIdStore.create(
+				MessageIdStore.STORE_EXACT, 0, true);
+		Message m = new Message(h, h, "M1", 10);
+		store.add(m.getId(), m);
+		assertTrue(store.contains("M1"));
+		assertFalse(store.contains("M2"));
+		assertEquals(1, store.getMessages().size());
+		assertSame(m, store.getMessages().iterator().next());
+	}
+
+	public void testHash() {
+		MessageIdStore store = MessageIdStore.create(
+				MessageIdStore.STORE_HASH, 0, true);
+		checkStore(store);
+		assertEquals(NROF_IDS, store.size());
+		assertEquals(0, falsePositives(store));
+		assertTrue(store.getMessages().isEmpty());
+	}
+
+	public void testBloom() {
+		double fpRate = 0.01;
+		MessageIdStore store = MessageIdStore.create(
+				MessageIdStore.STORE_BLOOM, fpRate, true);
+		assertFalse(store.contains("M1"));
+		checkStore(store);
+		/* the filter has grown many times, but the rate still holds (with
+		 * some slack for the randomness) */
+		assertTrue(falsePositives(store) < NROF_IDS * fpRate * 2);
+	}
+
+	public void testInvalid() {
+		try {
+			MessageIdStore.create(MessageIdStore.STORE_BLOOM, 1.5, false);
+			fail("Invalid rate accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+		try {
+			MessageIdStore.create(3, 0.1, false);
+			fail("Invalid type accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+}
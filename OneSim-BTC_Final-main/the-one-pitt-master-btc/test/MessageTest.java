@@ -4,6 +4,8 @@
  */
 package test;
 
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 
 import org.junit.Before;
@@ -11,7 +13,9 @@ import org.junit.Test;
 
 import core.DTNHost;
 import core.Message;
+import core.MessageAttribute;
 import core.SimClock;
+import core.SimError;
 
 public class MessageTest extends TestCase {
 
@@ -49,6 +53,18 @@ public class MessageTest extends TestCase {
 
 	}
 
+	@Test
+	public void testGetExpiryTime() {
+		assertEquals(10 + 9 * 60.0, msg.getExpiryTime());
+		sc.setTime(msg.getExpiryTime());
+		assertEquals(1, msg.getTtl());
+		sc.advance(0.1);
+		assertEquals(0, msg.getTtl());
+		
+		msg.setTtl(Message.INFINITE_TTL);
+		assertEquals(Double.MAX_VALUE, msg.getExpiryTime());
+	}
+
 	@Test
 	public void testAddProperty() {
 		String value1 = "value1";
@@ -59,6 +75,97 @@ public class MessageTest extends TestCase {
 		assertEquals(value1, msg.getProperty("foo"));
 		assertEquals(value2, msg.getProperty("bar"));
 	}
+	
+	public void testAttributes() {
+		MessageAttribute<Integer> count =
+			MessageAttribute.register("MessageTest.count", Integer.class);
+		assertSame(count,
+				MessageAttribute.register("MessageTest.count", Integer.class));
+		
+		assertNull(msg.get(count));
+		msg.set(count, 3);
+		assertEquals(Integer.valueOf(3), msg.get(count));
+		/* the same attribute through the property interface */
+		assertEquals(3, msg.getProperty("MessageTest.count"));
+		msg.updateProperty("MessageTest.count", 4);
+		assertEquals(Integer.valueOf(4), msg.get(count));
+		
+		try {
+			msg.updateProperty("MessageTest.count", "four");
+			fail("Value of a wrong type accepted");
+		} catch (SimError e) {
+			// expected
+		}
+		try {
+			MessageAttribute.register("MessageTest.count", String.class);
+			fail("Attribute declared again with another type");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+	
+	public void testInternedId() {
+		Message other = new Message(from, to, "MessageTest.other", 100);
+		int id = msg.getInternedId();
+		assertTrue(id >= 0);
+		assertEquals(id, msg.getInternedId());
+		assertEquals(id, msg.replicate().getInternedId());
+		assertEquals(id, new Message(from, to, "M", 10).getInternedId());
+		assertEquals(id, Message.internId("M"));
+		assertTrue(id != other.getInternedId());
+	}
+	
+	public void testAttributesOfReplicates() {
+		MessageAttribute<String> name =
+			MessageAttribute.register("MessageTest.name", String.class);
+		msg.set(name, "original");
+		msg.addProperty("MessageTest.other", "other");
+		
+		Message copy = msg.replicate();
+		assertEquals("original", copy.get(name));
+		assertEquals("other", copy.getProperty("MessageTest.other"));
+		
+		/* changing the replicate doesn't change the original... */
+		copy.set(name, "copy");
+		assertEquals("copy", copy.get(name));
+		assertEquals("original", msg.get(name));
+		
+		/* ...and vice versa */
+		Message copy2 = msg.replicate();
+		msg.set(name, "changed");
+		assertEquals("original", copy2.get(name));
+		assertEquals("copy", copy.get(name));
+		assertEquals("other", msg.getProperty("MessageTest.other"));
+	}
+	
+	public void testHopsOfReplicates() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		DTNHost h1 = utils.createHost();
+		DTNHost h2 = utils.createHost();
+		DTNHost h3 = utils.createHost();
+		
+		msg.addNodeOnPath(h1);
+		Message copy = msg.replicate();
+		assertSame(msg.getPath(), copy.getPath());
+		
+		copy.addNodeOnPath(h2);
+		msg.addNodeOnPath(h3);
+		assertEquals(2, copy.getHopCount());
+		assertEquals(2, msg.getHopCount());
+		assertEquals(Arrays.asList(from, h1, h2), copy.getHops());
+		assertEquals(Arrays.asList(from, h1, h3), msg.getHops());
+		assertSame(msg.getPath().getParent(), copy.getPath().getParent());
+		assertTrue(copy.getHops().contains(h2));
+		assertFalse(msg.getHops().contains(h2));
+		assertEquals(h1, msg.getHops().get(1));
+		
+		try {
+			msg.getHops().add(h2);
+			fail("The hops should be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
 
 
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.OutgoingQueues;
+import core.CBRConnection;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+import core.Tuple;
+
+/**
+ * Tests for the OutgoingQueues
+ */
+public class OutgoingQueuesTest extends TestCase {
+	private OutgoingQueues queues;
+	private Message m1, m2, m3;
+	private Connection c1, c2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		DTNHost h1 = utils.createHost();
+		DTNHost h2 = utils.createHost();
+		DTNHost h3 = utils.createHost();
+		m1 = new Message(h1, h2, "M1", 10);
+		m2 = new Message(h1, h2, "M2", 10);
+		m3 = new Message(h1, h3, "M3", 10);
+		c1 = new CBRConnection(h1, h1.getInterfaces().get(0),
+				h2, h2.getInterfaces().get(0), 10);
+		c2 = new CBRConnection(h1, h1.getInterfaces().get(0),
+				h3, h3.getInterfaces().get(0), 10);
+		queues = new OutgoingQueues();
+	}
+
+	/**
+	 * Returns the tuples as "messageId@otherHost" strings
+	 */
+	private List<String> tuples() {
+		List<String> list = new ArrayList<String>();
+		for (Tuple<Message, Connection> t : queues) {
+			list.add(t.getKey().getId() + "@" + (t.getValue() == c1 ? 1 : 2));
+		}
+		return list;
+	}
+
+	public void testAddKeepsOrderWithoutDuplicates() {
+		assertTrue(queues.add(m1, c1));
+		assertTrue(queues.add(m2, c2));
+		assertTrue(queues.add(m2, c1));
+		assertFalse(queues.add(m1, c1));
+		assertTrue(queues.add(m1, c2));
+
+		assertEquals(4, queues.size());
+		assertEquals(Arrays.asList("M1@1", "M2@2", "M2@1", "M1@2"), tuples());
+		assertEquals(Arrays.asList("M1", "M2"),
+				new ArrayList<String>(queues.getQueue(c1)));
+		assertTrue(queues.contains("M2", c2));
+		assertFalse(queues.contains("M3", c2));
+	}
+
+	public void testRemove() {
+		queues.add(m1, c1);
+		queues.add(m2, c1);
+		queues.add(m1, c2);
+
+		assertTrue(queues.remove("M1", c1));
+		assertFalse(queues.remove("M1", c1));
+		assertFalse(queues.remove("M3", c1));
+		assertEquals(Arrays.asList("M2@1", "M1@2"), tuples());
+
+		/* removed message can be added again (to the end) */
+		assertTrue(queues.add(m1, c1));
+		assertEquals(Arrays.asList("M2@1", "M1@2", "M1@1"), tuples());
+	}
+
+	public void testRemoveConnection() {
+		queues.add(m1, c1);
+		queues.add(m3, c2);
+		queues.add(m2, c1);
+
+		assertEquals(2, queues.removeConnection(c1));
+		assertEquals(0, queues.removeConnection(c1));
+		assertEquals(Arrays.asList("M3@2"), tuples());
+		assertTrue(queues.getQueue(c1).isEmpty());
+		assertEquals(0, queues.removeMessage("M1"));
+	}
+
+	public void testRemoveMessage() {
+		queues.add(m1, c1);
+		queues.add(m2, c1);
+		queues.add(m1, c2);
+
+		assertEquals(2, queues.removeMessage("M1"));
+		assertEquals(0, queues.removeMessage("M1"));
+		assertEquals(Arrays.asList("M2@1"), tuples());
+		assertTrue(queues.getQueue(c2).isEmpty());
+		assertEquals(1, queues.removeConnection(c1));
+		assertEquals(0, queues.size());
+	}
+
+	public void testChangesDuringIteration() {
+		queues.add(m1, c1);
+		queues.add(m2, c1);
+		queues.add(m3, c2);
+		queues.add(m1, c2);
+
+		Iterator<Tuple<Message, Connection>> i = queues.iterator();
+		assertEquals("M1", i.next().getKey().getId());
+		queues.removeMessage("M1"); // the current one and a later one
+		queues.add(m2, c2);
+		assertEquals("M2", i.next().getKey().getId());
+		queues.removeConnection(c2);
+		assertFalse(i.hasNext());
+		assertEquals(Arrays.asList("M2@1"), tuples());
+	}
+}
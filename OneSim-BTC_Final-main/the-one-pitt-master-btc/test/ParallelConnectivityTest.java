@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ParallelConnectivity;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+
+/**
+ * Tests that the parallel connectivity detection makes the same connections
+ * as the hosts' own interface updates, and that the results don't depend on
+ * the number of threads.
+ */
+public class ParallelConnectivityTest extends TestCase {
+	private static final int NROF_HOSTS = 150;
+	private static final int NROF_ROUNDS = 10;
+	private static final double RANGE = 40;
+
+	private TestSettings ts;
+	private PassiveRouter router;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		router = new PassiveRouter(ts);
+	}
+
+	/**
+	 * Creates hosts with a simple broadcast interface each. The hosts are
+	 * numbered from zero so that they can be indexed by their address.
+	 */
+	private List<DTNHost> createHosts(String ifaceNs, Coord[] locs) {
+		ts.putSetting(ifaceNs + "." + NetworkInterface.TRANSMIT_RANGE_S,
+				"" + RANGE);
+		ts.putSetting(ifaceNs + "." + NetworkInterface.TRANSMIT_SPEED_S, "1");
+		SimpleBroadcastInterface proto =
+			new SimpleBroadcastInterface(new TestSettings(ifaceNs));
+
+		DTNHost.reset();
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (Coord loc : locs) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(proto);
+			hosts.add(new DTNHost(null, null, "h", li,
+					new ModuleCommunicationBus(), new StationaryMovement(loc),
+					router));
+		}
+		return hosts;
+	}
+
+	private Coord[] randomLocations(Random rng) {
+		Coord[] locs = new Coord[NROF_HOSTS];
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			locs[i] = new Coord(rng.nextDouble() * 1000,
+					rng.nextDouble() * 1000);
+		}
+		return locs;
+	}
+
+	private static void moveTo(List<DTNHost> hosts, Coord[] locs) {
+		for (int i = 0; i < locs.length; i++) {
+			hosts.get(i).setLocation(locs[i].clone());
+		}
+	}
+
+	/**
+	 * Returns the connections of the hosts as "host-other" strings, with
+	 * "-initiator" appended if requested
+	 */
+	private static List<String> connections(List<DTNHost> hosts,
+			boolean initiator) {
+		List<String> list = new ArrayList<String>();
+		for (DTNHost h : hosts) {
+			for (Connection c : h.getConnections()) {
+				list.add(h.getAddress() + "-" + c.getOtherNode(h).getAddress() +
+						(initiator ? "-" + c.isInitiator(h) : ""));
+			}
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	private List<String> runSerial(long seed) {
+		Random rng = new Random(seed);
+		List<DTNHost> hosts = createHosts("serialIface", randomLocations(rng));
+		List<String> result = new ArrayList<String>();
+		for (int round = 0; round < NROF_ROUNDS; round++) {
+			moveTo(hosts, randomLocations(rng));
+			for (DTNHost h : hosts) {
+				((SimpleBroadcastInterface)h.getInterfaces().get(0)).
+					updateConnections();
+			}
+			result.addAll(connections(hosts, false));
+			result.add("round " + round);
+		}
+		return result;
+	}
+
+	private List<String> runParallel(long seed, String ns, int threads,
+			boolean initiator) {
+		Random rng = new Random(seed);
+		List<DTNHost> hosts = createHosts(ns, randomLocations(rng));
+		ParallelConnectivity pc = new ParallelConnectivity(hosts, threads);
+		List<String> result = new ArrayList<String>();
+		for (int round = 0; round < NROF_ROUNDS; round++) {
+			moveTo(hosts, randomLocations(rng));
+			pc.detect(hosts);
+			for (DTNHost h : hosts) {
+				pc.commit(h);
+			}
+			result.addAll(connections(hosts, initiator));
+			result.add("round " + round);
+		}
+		return result;
+	}
+
+	public void testSameAsSerial() {
+		List<String> serial = runSerial(7);
+		assertTrue(serial.size() > 2 * NROF_ROUNDS);
+		assertEquals(serial, runParallel(7, "parallelIface", 4, false));
+	}
+
+	public void testSameWithAnyNumberOfThreads() {
+		List<String> single = runParallel(11, "threadsIface1", 1, true);
+		assertEquals(single, runParallel(11, "threadsIface3", 3, true));
+		assertEquals(single, runParallel(11, "threadsIface8", 8, true));
+	}
+
+	public void testManagedInterfacesDontPoll() {
+		Coord[] locs = {new Coord(10, 10), new Coord(20, 10)};
+		List<DTNHost> hosts = createHosts("managedIface", locs);
+		new ParallelConnectivity(hosts, 1);
+		hosts.get(0).getInterfaces().get(0).update();
+		assertEquals(0, hosts.get(0).getConnections().size());
+	}
+}
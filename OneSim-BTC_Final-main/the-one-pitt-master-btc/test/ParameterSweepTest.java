@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+import core.ParameterSweep;
+
+/**
+ * Tests for the parameter sweep's configuration expansion and result
+ * aggregation.
+ */
+public class ParameterSweepTest extends TestCase {
+
+	public void testExpand() {
+		Map<String, String[]> arrays = new TreeMap<String, String[]>();
+		arrays.put("A.a", new String[] {"1", "2"});
+		arrays.put("B.b", new String[] {"x", "y", "z"});
+
+		List<Map<String, String>> configs = ParameterSweep.expand(arrays);
+		assertEquals(6, configs.size());
+		assertEquals("1", configs.get(0).get("A.a"));
+		assertEquals("x", configs.get(0).get("B.b"));
+		assertEquals("1", configs.get(2).get("A.a"));
+		assertEquals("z", configs.get(2).get("B.b"));
+		assertEquals("2", configs.get(3).get("A.a"));
+		assertEquals("x", configs.get(3).get("B.b"));
+
+		configs = ParameterSweep.expand(new TreeMap<String, String[]>());
+		assertEquals(1, configs.size());
+		assertEquals(0, configs.get(0).size());
+	}
+
+	public void testParseStats() throws Exception {
+		String report = "Message stats for scenario test\n" +
+			"sim_time: 100.0000\n" +
+			"created: 12\n" +
+			"delivery_prob: 0.5000\n" +
+			"latency_avg: NaN\n" +
+			"Blacklist : [Mis1, Mis2]\n" +
+			",Messenger,Misbehave\n" +
+			"Messenger,8,2\n" +
+			" % Mes = 0.75\n" +
+			"12.5,3,0.4\n";
+		Map<String, Double> stats = ParameterSweep.parseStats(
+				new BufferedReader(new StringReader(report)), "R");
+
+		assertEquals(100.0, stats.get("R.sim_time"), 0.0001);
+		assertEquals(12.0, stats.get("R.created"), 0.0001);
+		assertEquals(0.5, stats.get("R.delivery_prob"), 0.0001);
+		assertTrue(stats.get("R.latency_avg").isNaN());
+		assertFalse(stats.containsKey("R.Blacklist"));
+		assertEquals(8.0, stats.get("R.Messenger_1"), 0.0001);
+		assertEquals(2.0, stats.get("R.Messenger_2"), 0.0001);
+		assertEquals(0.75, stats.get("R.%_Mes"), 0.0001);
+		assertEquals(12.5, stats.get("R.line10_1"), 0.0001);
+		assertEquals(0.4, stats.get("R.line10_3"), 0.0001);
+		assertEquals(10, stats.size());
+	}
+
+	public void testMeanAndInterval() {
+		List<Double> values = new ArrayList<Double>(
+				Arrays.asList(1.0, 2.0, 3.0, Double.NaN));
+		double[] mi = ParameterSweep.meanAndInterval(values);
+		assertEquals(2.0, mi[0], 0.0001);
+		/* s = 1, n = 3 -> t(0.975, 2) * 1 / sqrt(3) */
+		assertEquals(4.303 / Math.sqrt(3), mi[1], 0.0001);
+
+		mi = ParameterSweep.meanAndInterval(Arrays.asList(5.0));
+		assertEquals(5.0, mi[0], 0.0001);
+		assertTrue(Double.isNaN(mi[1]));
+	}
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import core.World;
+
+/**
+ * Runs the {@link EpidemicRouterTest} tests with persistent send queues
+ * (see {@link World#PERSISTENT_SEND_QUEUES_S}).
+ */
+public class PersistentSendQueueTest extends EpidemicRouterTest {
+	private static final String PERSISTENT_QUEUES = World.SETTINGS_NS + "." +
+		World.PERSISTENT_SEND_QUEUES_S;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(PERSISTENT_QUEUES, "true");
+		super.setUp();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ts.putSetting(PERSISTENT_QUEUES, "false");
+		super.tearDown();
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.PositionStore;
+import core.SimulationContext;
+
+/**
+ * Tests for the host position store.
+ */
+public class PositionStoreTest extends TestCase {
+
+	public void testDistances() {
+		PositionStore store = new PositionStore();
+		store.set(0, 0, 0);
+		store.set(1, 3, 4);
+		assertEquals(25.0, store.distanceSquared(0, 1));
+		assertTrue(store.isWithinRange(0, 1, 5));
+		assertFalse(store.isWithinRange(0, 1, 4.99));
+	}
+
+	public void testHostsKeepStoreInSync() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		DTNHost h1 = utils.createHost(new Coord(10, 20));
+		DTNHost h2 = utils.createHost(new Coord(13, 24));
+		PositionStore store = SimulationContext.current().getPositions();
+
+		assertEquals(10.0, store.getX(h1.getAddress()));
+		assertEquals(20.0, store.getY(h1.getAddress()));
+		assertEquals(25.0, h1.distanceSquared(h2));
+
+		h2.setLocation(new Coord(10, 30));
+		assertEquals(10.0, store.getX(h2.getAddress()));
+		assertEquals(30.0, store.getY(h2.getAddress()));
+		assertEquals(100.0, h2.distanceSquared(h1));
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.PredictabilityTable;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Tests for the PredictabilityTable
+ */
+public class PredictabilityTableTest extends TestCase {
+	private static final double GAMMA = 0.98;
+	private static final double UNIT = 30;
+	private static final double DELTA = 1e-12;
+
+	private SimClock clock;
+	private DTNHost h1, h2, h3, h4;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+		h3 = utils.createHost();
+		h4 = utils.createHost();
+	}
+
+	public void testPutGet() {
+		PredictabilityTable t = new PredictabilityTable(GAMMA, UNIT);
+		assertEquals(0.0, t.get(h1));
+		assertFalse(t.contains(h1));
+
+		t.put(h2, 0.5);
+		t.put(h1, 0.75);
+		t.put(h2, 0.25);
+		assertEquals(2, t.size());
+		assertEquals(0.75, t.get(h1));
+		assertEquals(0.25, t.get(h2));
+		assertEquals(0, t.indexOf(h2));
+		assertEquals(1, t.indexOf(h1));
+		assertEquals(-1, t.indexOf(h3));
+		assertSame(h1, t.getHost(1));
+	}
+
+	public void testLazyAging() {
+		PredictabilityTable t = new PredictabilityTable(GAMMA, UNIT);
+		t.put(h1, 0.75);
+		clock.advance(UNIT * 2);
+		t.put(h2, 0.5);
+
+		clock.advance(UNIT / 10);
+		/* the same values as when aging every entry at every step */
+		assertEquals(0.75 * Math.pow(GAMMA, 2) * Math.pow(GAMMA, 0.1),
+				t.get(h1), DELTA);
+		assertEquals(0.5 * Math.pow(GAMMA, 0.1), t.get(h2), DELTA);
+
+		clock.advance(UNIT);
+		assertEquals(0.5 * Math.pow(GAMMA, 1.1), t.getValue(1), DELTA);
+	}
+
+	public void testTransitive() {
+		PredictabilityTable a = new PredictabilityTable(GAMMA, UNIT);
+		PredictabilityTable b = new PredictabilityTable(GAMMA, UNIT);
+		double beta = 0.25;
+		a.put(h2, 0.75);
+		a.put(h3, 0.5);
+		b.put(h1, 0.75);
+		b.put(h3, 0.4);
+		b.put(h4, 0.2);
+
+		a.updateTransitive(b, 0.75, beta, h1);
+		assertEquals(3, a.size());
+		assertEquals(0.75, a.get(h2), DELTA);
+		assertEquals(0.5 + 0.5 * 0.75 * 0.4 * beta, a.get(h3), DELTA);
+		assertEquals(0.75 * 0.2 * beta, a.get(h4), DELTA);
+		assertFalse(a.contains(h1));
+		assertEquals(3, b.size()); /* the other table isn't changed */
+		assertEquals(0.4, b.get(h3), DELTA);
+	}
+
+	public void testSetGamma() {
+		PredictabilityTable t = new PredictabilityTable(GAMMA, UNIT);
+		t.put(h1, 0.75);
+		clock.advance(UNIT);
+		t.put(h2, 0.5); /* table last read/updated at UNIT */
+
+		double newGamma = 0.5;
+		clock.advance(UNIT);
+		t.setGamma(newGamma);
+		/* aged with the old gamma up to UNIT and with the new one after */
+		assertEquals(0.75 * GAMMA * newGamma, t.get(h1), DELTA);
+		assertEquals(0.5 * newGamma, t.get(h2), DELTA);
+	}
+}
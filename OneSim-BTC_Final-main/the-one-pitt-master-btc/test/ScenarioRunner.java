@@ -0,0 +1,188 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.MessageEventGenerator;
+import interfaces.SimpleBroadcastInterface;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import report.BufferOccupancyReport;
+import report.MessageStatsReport;
+import report.Report;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+import core.SimulationContext;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Runs a small scenario of randomly moving epidemic routing hosts, without
+ * a scenario file, and returns what the reports wrote. Tests use this for
+ * checking that a setting doesn't change the results of a simulation.
+ * Every run has a simulation context of its own, so several runs can be
+ * made concurrently.
+ */
+public class ScenarioRunner {
+	public static final int NROF_HOSTS = 20;
+	public static final int WORLD_SIZE = 300;
+	public static final double UPDATE_INTERVAL = 0.5;
+
+	/** Name space of the movement and router settings of the hosts */
+	public static final String GROUP_NS = "ScenarioRunnerGroup";
+	private static final String IFACE_NS = "ScenarioRunnerIface";
+	/** Name space of the message event generator settings */
+	public static final String EVENTS_NS = "ScenarioRunnerEvents";
+
+	private String[] settings;
+	private boolean bufferReport = true;
+
+	/**
+	 * Creates a runner for the scenario
+	 * @param settings Extra settings of the runs as setting name and value
+	 * pairs (e.g., "Optimization.fastForward", "true")
+	 */
+	public ScenarioRunner(String... settings) {
+		this.settings = settings;
+	}
+
+	/**
+	 * Sets whether the run has a {@link BufferOccupancyReport}, i.e., an
+	 * update listener. Default is true.
+	 * @param bufferReport True to include the buffer occupancy report
+	 */
+	public void setBufferReport(boolean bufferReport) {
+		this.bufferReport = bufferReport;
+	}
+
+	/**
+	 * Runs the scenario in a new simulation context that is bound to the
+	 * calling thread for the duration of the run
+	 * @param endTime Simulation time when the run ends
+	 * @return The output of the reports
+	 */
+	public String run(final double endTime) {
+		final String[] result = new String[1];
+		new SimulationContext().run(new Runnable() {
+			public void run() {
+				try {
+					result[0] = simulate(endTime);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		return result[0];
+	}
+
+	private String simulate(double endTime) throws IOException {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.END_TIME_S,
+				"" + endTime);
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, WORLD_SIZE + "," + WORLD_SIZE);
+		ts.putSetting(GROUP_NS + ".speed", "0.5,1.5");
+		ts.putSetting(GROUP_NS + ".waitTime", "0,120");
+		ts.putSetting(GROUP_NS + "." + MessageRouter.B_SIZE_S, "5k");
+		ts.putSetting(GROUP_NS + "." + MessageRouter.MSG_TTL_S, "30");
+		ts.putSetting(IFACE_NS + "." + NetworkInterface.TRANSMIT_RANGE_S,
+				"30");
+		ts.putSetting(IFACE_NS + "." + NetworkInterface.TRANSMIT_SPEED_S,
+				"250");
+		ts.putSetting(EVENTS_NS + "." + MessageEventGenerator.MESSAGE_SIZE_S,
+				"500,1000");
+		ts.putSetting(EVENTS_NS + "." +
+				MessageEventGenerator.MESSAGE_INTERVAL_S, "25,35");
+		ts.putSetting(EVENTS_NS + "." + MessageEventGenerator.HOST_RANGE_S,
+				"0," + NROF_HOSTS);
+		ts.putSetting(EVENTS_NS + "." +
+				MessageEventGenerator.MESSAGE_ID_PREFIX_S, "M");
+		for (int i = 0; i + 1 < settings.length; i += 2) {
+			ts.putSetting(settings[i], settings[i + 1]);
+		}
+
+		File statsFile = outputFile(ts, MessageStatsReport.class);
+		MessageStatsReport stats = new MessageStatsReport();
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(stats);
+
+		File bufferFile = null;
+		BufferOccupancyReport buffers = null;
+		List<UpdateListener> ul = new ArrayList<UpdateListener>();
+		if (this.bufferReport) {
+			bufferFile = outputFile(ts, BufferOccupancyReport.class);
+			ts.putSetting(BufferOccupancyReport.class.getSimpleName() + "." +
+					BufferOccupancyReport.BUFFER_REPORT_INTERVAL, "30");
+			buffers = new BufferOccupancyReport();
+			ul.add(buffers);
+		}
+
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new SimpleBroadcastInterface(new Settings(IFACE_NS)));
+		RandomWaypoint mm = new RandomWaypoint(new Settings(GROUP_NS));
+		EpidemicRouter router = new EpidemicRouter(new Settings(GROUP_NS));
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			hosts.add(new DTNHost(ml, null, "n", li,
+					new ModuleCommunicationBus(), mm, router));
+		}
+
+		List<EventQueue> events = new ArrayList<EventQueue>();
+		events.add(new MessageEventGenerator(new Settings(EVENTS_NS)));
+
+		World world = new World(hosts, WORLD_SIZE, WORLD_SIZE,
+				UPDATE_INTERVAL, ul, true, events);
+		while (SimClock.getTime() < endTime) {
+			world.update();
+		}
+		stats.done();
+		if (buffers == null) {
+			return read(statsFile);
+		}
+		buffers.done();
+		return read(statsFile) + read(bufferFile);
+	}
+
+	/**
+	 * Creates a temporary output file for a report
+	 */
+	private static File outputFile(TestSettings ts,
+			Class<? extends Report> report) throws IOException {
+		File f = File.createTempFile(report.getSimpleName(), ".tmp");
+		f.deleteOnExit();
+		ts.putSetting(report.getSimpleName() + "." + Report.OUTPUT_SETTING,
+				f.getAbsolutePath());
+		return f;
+	}
+
+	private static String read(File f) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new FileReader(f));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append('\n');
+			}
+		} finally {
+			reader.close();
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import routing.SendQueue;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the SendQueue
+ */
+public class SendQueueTest extends AbstractMessageContainerTest {
+
+	private Message message(String id, double receiveTime) {
+		Message m = new Message(h1, h2, id, 10);
+		m.setReceiveTime(receiveTime);
+		return m;
+	}
+
+	public void testFifo() {
+		SendQueue q = new SendQueue(SendQueue.FIFO);
+		q.add(message("M3", 30));
+		q.add(message("M1", 10));
+		q.add(message("M2", 20));
+		q.add(message("M4", 20));
+		assertEquals(4, q.size());
+		assertEquals(Arrays.asList("M1", "M2", "M4", "M3"), ids(q));
+
+		assertTrue(q.remove("M2"));
+		assertFalse(q.remove("M2"));
+		assertEquals(Arrays.asList("M1", "M4", "M3"), ids(q));
+
+		/* re-adding replaces the old entry */
+		q.add(message("M1", 40));
+		assertEquals(3, q.size());
+		assertEquals(Arrays.asList("M4", "M3", "M1"), ids(q));
+	}
+
+	public void testChangesDuringIteration() {
+		SendQueue q = new SendQueue(SendQueue.FIFO);
+		for (int i = 1; i <= 4; i++) {
+			q.add(message("M" + i, i));
+		}
+
+		Iterator<Message> i = q.iterator();
+		assertEquals("M1", i.next().getId());
+		q.remove("M2"); // the next one
+		q.remove("M1"); // the current one
+		q.add(message("M5", 5));
+		q.add(message("M0", 0)); // before the current position
+		assertEquals("M3", i.next().getId());
+		assertEquals("M4", i.next().getId());
+		assertEquals("M5", i.next().getId());
+		assertFalse(i.hasNext());
+	}
+
+	public void testRandom() {
+		SendQueue q1 = new SendQueue(SendQueue.random(1));
+		SendQueue q2 = new SendQueue(SendQueue.random(1));
+		List<Message> msgs = new ArrayList<Message>();
+		for (int i = 0; i < 50; i++) {
+			msgs.add(message("M" + i, SimClock.getTime()));
+		}
+
+		for (Message m : msgs) {
+			q1.add(m);
+		}
+		Collections.reverse(msgs);
+		for (Message m : msgs) {
+			q2.add(m);
+		}
+
+		/* the order doesn't depend on the insertion order... */
+		assertEquals(ids(q1), ids(q2));
+		/* ...and isn't the insertion order either */
+		assertFalse(ids(q1).equals(ids(msgs)));
+
+		SendQueue q3 = new SendQueue(SendQueue.random(2));
+		for (Message m : msgs) {
+			q3.add(m);
+		}
+		assertFalse(ids(q1).equals(ids(q3)));
+	}
+
+	public void testLazilySorted() {
+		List<Integer> items = Arrays.asList(5, 3, 8, 3, 1, 8, 0);
+		/* compare by the value divided by two so that there are ties */
+		Comparator<Integer> c = new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return (i1 / 2) - (i2 / 2);
+			}
+		};
+
+		List<Integer> sorted = new ArrayList<Integer>(items);
+		Collections.sort(sorted, c);
+
+		List<Integer> lazy = new ArrayList<Integer>();
+		for (Integer i : SendQueue.lazilySorted(items, c)) {
+			lazy.add(i);
+		}
+		assertEquals(sorted, lazy);
+		assertEquals(Arrays.asList(5, 3, 8, 3, 1, 8, 0), items);
+
+		Iterator<Integer> i = SendQueue.lazilySorted(
+				new ArrayList<Integer>(), c).iterator();
+		assertFalse(i.hasNext());
+	}
+}
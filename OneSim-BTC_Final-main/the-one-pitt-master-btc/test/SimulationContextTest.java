@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import btc.BlockChain;
+import btc.Ledger;
+import core.Message;
+import core.Settings;
+import core.SimClock;
+import core.SimulationContext;
+
+/**
+ * Tests that simulation state is kept per simulation context.
+ */
+public class SimulationContextTest extends TestCase {
+
+	@Override
+	protected void tearDown() throws Exception {
+		SimulationContext.bind(null);
+		super.tearDown();
+	}
+
+	public void testBinding() {
+		SimulationContext def = SimulationContext.current();
+		SimulationContext c = new SimulationContext();
+
+		assertNull(SimulationContext.bind(c));
+		assertSame(c, SimulationContext.current());
+		assertSame(c, SimulationContext.bind(null));
+		assertSame(def, SimulationContext.current());
+	}
+
+	public void testIsolation() {
+		SimulationContext c1 = new SimulationContext();
+		SimulationContext c2 = new SimulationContext();
+
+		c1.getClock().setTime(10);
+		c2.getClock().setTime(20);
+
+		SimulationContext.bind(c1);
+		assertEquals(10.0, SimClock.getTime());
+		Settings.setRunIndex(1);
+		Message m1 = new Message(null, null, "M", 1);
+		Ledger l1 = BlockChain.getLedger();
+
+		SimulationContext.bind(c2);
+		assertEquals(20.0, SimClock.getTime());
+		assertEquals(0, Settings.getRunIndex());
+		Message m2 = new Message(null, null, "M", 1);
+		assertEquals(m1.getUniqueId(), m2.getUniqueId());
+		assertNotSame(l1, BlockChain.getLedger());
+
+		SimulationContext.bind(c1);
+		assertEquals(1, Settings.getRunIndex());
+		assertSame(l1, BlockChain.getLedger());
+	}
+
+	public void testConcurrentRuns() throws Exception {
+		final ScenarioRunner runner = new ScenarioRunner();
+		final String[] results = new String[2];
+		Thread[] threads = new Thread[2];
+
+		String sequential = runner.run(600);
+		assertTrue(sequential.contains("delivered"));
+		assertEquals(sequential, runner.run(600));
+
+		for (int i = 0; i < 2; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					results[index] = runner.run(600);
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(sequential, results[0]);
+		assertEquals(sequential, results[1]);
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.World;
+
+/**
+ * Tests that the optimization settings of {@link World} don't change the
+ * reports of a simulation.
+ */
+public class WorldOptimizationsTest extends TestCase {
+	private static final double END_TIME = 600;
+	private static final String EVENT_DRIVEN = World.SETTINGS_NS + "." +
+		World.EVENT_DRIVEN_ROUTERS_S;
+	private static final String TARGETED = World.SETTINGS_NS + "." +
+		World.TARGETED_UPDATES_S;
+	private static final String FAST_FORWARD = World.SETTINGS_NS + "." +
+		World.FAST_FORWARD_S;
+	private static final String SKIP_QUIESCENT = World.SETTINGS_NS + "." +
+		World.SKIP_QUIESCENT_HOSTS_S;
+
+	public void testEventDrivenRouters() {
+		String polled = new ScenarioRunner(EVENT_DRIVEN, "false").run(END_TIME);
+		String eventDriven = new ScenarioRunner(EVENT_DRIVEN,
+				"true").run(END_TIME);
+
+		assertTrue(polled.contains("delivered"));
+		assertEquals(polled, eventDriven);
+	}
+
+	public void testTargetedUpdates() {
+		String full = new ScenarioRunner(EVENT_DRIVEN, "true",
+				TARGETED, "false").run(END_TIME);
+		String targeted = new ScenarioRunner(EVENT_DRIVEN, "true",
+				TARGETED, "true").run(END_TIME);
+
+		assertTrue(full.contains("delivered"));
+		assertEquals(full, targeted);
+	}
+
+	public void testSkipQuiescentHosts() {
+		String full = new ScenarioRunner(EVENT_DRIVEN, "true",
+				SKIP_QUIESCENT, "false").run(END_TIME);
+		String skipped = new ScenarioRunner(EVENT_DRIVEN, "true",
+				SKIP_QUIESCENT, "true").run(END_TIME);
+
+		assertTrue(full.contains("delivered"));
+		assertEquals(full, skipped);
+	}
+
+	public void testFastForward() {
+		/* long waits and few messages give idle periods to skip */
+		String[] idle = {EVENT_DRIVEN, "true",
+				ScenarioRunner.GROUP_NS + ".waitTime", "0,20000",
+				ScenarioRunner.EVENTS_NS + ".interval", "200,400",
+				FAST_FORWARD, "false"};
+		ScenarioRunner runner = new ScenarioRunner(idle);
+		runner.setBufferReport(false);
+		String full = runner.run(6000);
+
+		idle[idle.length - 1] = "true";
+		runner = new ScenarioRunner(idle);
+		runner.setBufferReport(false);
+		String skipped = runner.run(6000);
+
+		assertTrue(full.contains("delivered"));
+		assertEquals(full, skipped);
+	}
+
+	public void testFastForwardWithUpdateListeners() {
+		String full = new ScenarioRunner(EVENT_DRIVEN, "true",
+				FAST_FORWARD, "false").run(END_TIME);
+		String skipped = new ScenarioRunner(EVENT_DRIVEN, "true",
+				FAST_FORWARD, "true").run(END_TIME);
+
+		assertTrue(full.contains("delivered"));
+		assertEquals(full, skipped);
+	}
+}
@@ -4,6 +4,8 @@
  */
 package ui;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import core.SimClock;
 
 /**
@@ -14,6 +16,38 @@ public class DTNSimTextUI extends DTNSimUI {
 	private long startTime; // simulation start time
 	/** How often the UI view is updated (milliseconds) */
 	public static final long UI_UP_INTERVAL = 60000;
+	
+	/** Number of progress array fields per run */
+	public static final int PROGRESS_FIELDS = 3;
+	/** Progress array field of the current simulation time (ms) */
+	public static final int PROGRESS_TIME = 0;
+	/** Progress array field of the end time of the run (ms) */
+	public static final int PROGRESS_END = 1;
+	/** Progress array field that is 1 when the run is done */
+	public static final int PROGRESS_DONE = 2;
+	
+	/** Progress of all the runs of a parallel batch (or null) */
+	private AtomicLongArray progress;
+	/** Index of the fields of this run in the progress array */
+	private int progressIndex;
+	
+	/**
+	 * Creates a text UI that prints its progress to standard output
+	 */
+	public DTNSimTextUI() {
+		this(null, 0);
+	}
+	
+	/**
+	 * Creates a text UI for a run of a parallel batch. The progress of the
+	 * run is written to the progress array instead of printing it.
+	 * @param progress Progress of all the runs of the batch, or null
+	 * @param slot Index of this run in the batch
+	 */
+	public DTNSimTextUI(AtomicLongArray progress, int slot) {
+		this.progress = progress;
+		this.progressIndex = slot * PROGRESS_FIELDS;
+	}
 
 	protected void runSim() {
 		double simTime = SimClock.getTime();
@@ -41,6 +75,9 @@ public class DTNSimTextUI extends DTNSimUI {
 		simDone = true;
 		done();
 		this.update(true); // force final UI update
+		if (progress != null) {
+			progress.set(progressIndex + PROGRESS_DONE, 1);
+		}
 		
 		print("Simulation done in " + String.format("%.2f", duration) + "s");
 	
@@ -53,6 +90,13 @@ public class DTNSimTextUI extends DTNSimUI {
 	 * interval hasn't been reached.
 	 */
 	private void update(boolean forced) {
+		if (progress != null) {
+			progress.set(progressIndex + PROGRESS_TIME,
+					(long)(SimClock.getTime() * 1000));
+			if (!forced) {
+				return; // the batch executor prints the progress
+			}
+		}
 		long now = System.currentTimeMillis();
 		long diff = now - this.lastUpdateRt;
 		double dur = (now - startTime)/1000.0;
@@ -71,4 +115,38 @@ public class DTNSimTextUI extends DTNSimUI {
 		System.out.println(txt);
 	}
 	
+	/**
+	 * Prints the aggregated progress and estimated time of arrival of the
+	 * runs of a parallel batch.
+	 * @param progress Progress array of the runs
+	 * @param startTime Real time when the batch was started
+	 */
+	public static void printBatchProgress(AtomicLongArray progress,
+			long startTime) {
+		int nrofRuns = progress.length() / PROGRESS_FIELDS;
+		double simulated = 0;
+		double total = 0;
+		int nrofDone = 0;
+		
+		for (int i = 0; i < nrofRuns; i++) {
+			int index = i * PROGRESS_FIELDS;
+			long end = progress.get(index + PROGRESS_END);
+			total += end;
+			if (progress.get(index + PROGRESS_DONE) != 0) {
+				simulated += end;
+				nrofDone++;
+			}
+			else {
+				simulated += Math.min(end, progress.get(index + PROGRESS_TIME));
+			}
+		}
+		
+		double dur = (System.currentTimeMillis() - startTime)/1000.0;
+		double ratio = total > 0 ? simulated / total : 0;
+		String eta = ratio > 0 ? 
+				String.format("%.1f", dur * (1 - ratio) / ratio) : "?";
+		System.out.println(String.format("%.1f: %d/%d runs done, %.1f%%, " +
+				"ETA %ss", dur, nrofDone, nrofRuns, ratio * 100, eta));
+	}
+	
 }